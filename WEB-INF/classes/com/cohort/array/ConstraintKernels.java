@@ -0,0 +1,388 @@
+/* This file is Copyright (c) 2026, NOAA.
+ * See the MIT/X-like license in LICENSE.txt.
+ */
+package com.cohort.array;
+
+import com.cohort.util.Math2;
+import com.cohort.util.String2;
+import java.util.BitSet;
+
+/**
+ * ConstraintKernels has the fast versions of PrimitiveArray.applyConstraint for the common cases:
+ * ByteArray, ShortArray and IntArray (when value2 is an int), LongArray (when value2 is a long),
+ * FloatArray and DoubleArray, with the =, !=, &lt;, &lt;=, &gt;, &gt;= operators.
+ *
+ * <p>The operator is resolved once (not once per row) and there is one loop for each type and
+ * operator which reads the backing array directly (no virtual getXxx() call per row). The results
+ * are exactly the same as PrimitiveArray.applyConstraintGeneric's (see the testValueOpValue
+ * methods), including the treatment of missing values and the almostEqual fudge factors.
+ */
+class ConstraintKernels {
+
+  private static final int EQ = 0;
+  private static final int NE = 1;
+  private static final int LE = 2;
+  private static final int GE = 3;
+  private static final int LT = 4;
+  private static final int GT = 5;
+
+  /** Since the byte and short values are widened to ints, this is never a value. */
+  private static final int NO_MV = Integer.MIN_VALUE;
+
+  /**
+   * @return the operator's code, or -1 if op isn't one of the operators handled here (e.g., the
+   *     regex operator)
+   */
+  private static int opCode(String op) {
+    return switch (op) {
+      case "=" -> EQ;
+      case "!=" -> NE;
+      case "<=" -> LE;
+      case ">=" -> GE;
+      case "<" -> LT;
+      case ">" -> GT;
+      default -> -1;
+    };
+  }
+
+  /**
+   * This is like PrimitiveArray.applyConstraint, but only for the cases handled here.
+   *
+   * @return nStillGood, or -1 if this case isn't handled here (so the caller should use
+   *     applyConstraintGeneric)
+   */
+  static int apply(PrimitiveArray pa, boolean morePrecise, BitSet keep, String op, String value2) {
+    int opCode = opCode(op);
+    if (opCode < 0) return -1;
+    if (keep.length() > pa.size()) return -1; // so applyConstraintGeneric throws an exception
+
+    if (pa instanceof DoubleArray da) {
+      return applyDouble(da.array, morePrecise ? 12 : 9, keep, opCode, String2.parseDouble(value2));
+
+    } else if (pa instanceof FloatArray fa) {
+      return applyFloat(fa.array, keep, opCode, String2.parseFloat(value2));
+
+    } else if (pa instanceof LongArray la) {
+      double value2d = String2.parseDouble(value2);
+      long value2l = String2.parseLong(value2); // Long.MAX_VALUE if trouble
+      if (value2d != value2l || value2l == Long.MAX_VALUE) return -1; // needs 'exact' test
+      return applyLong(la.array, keep, opCode, value2l);
+
+    } else if (pa instanceof IntArray || pa instanceof ShortArray || pa instanceof ByteArray) {
+      double value2d = String2.parseDouble(value2);
+      int value2i = String2.parseInt(value2); // Integer.MAX_VALUE if trouble
+      if (value2d != value2i || value2d == Integer.MAX_VALUE) return -1; // needs 'exact' test
+      if (pa instanceof IntArray ia)
+        // IntArray.getInt always returns MAX_VALUE as is, and MAX_VALUE is always treated as a MV
+        return applyInt(ia.array, Integer.MAX_VALUE, keep, opCode, value2i);
+      int mv =
+          !pa.getMaxIsMV() ? NO_MV : pa instanceof ShortArray ? Short.MAX_VALUE : Byte.MAX_VALUE;
+      return pa instanceof ShortArray sa
+          ? applyShort(sa.array, mv, keep, opCode, value2i)
+          : applyByte(((ByteArray) pa).array, mv, keep, opCode, value2i);
+    }
+    return -1;
+  }
+
+  // For the integer types, value2 is never the missing value, so
+  //   "=" is v == value2 && v != mv
+  //   "!=" is v != value2 || v == mv
+  //   and the other operators are false if v == mv.
+  // For int and long, mv is MAX_VALUE and value2 isn't, so v == value2 implies v != mv.
+
+  private static int applyByte(byte[] a, int mv, BitSet keep, int opCode, int value2) {
+    int nStillGood = 0;
+    switch (opCode) {
+      case EQ -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v == value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case NE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v != value2 || v == mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v <= value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case GE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v >= value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LT -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v < value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      default -> { // GT
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v > value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+    }
+    return nStillGood;
+  }
+
+  private static int applyShort(short[] a, int mv, BitSet keep, int opCode, int value2) {
+    int nStillGood = 0;
+    switch (opCode) {
+      case EQ -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v == value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case NE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v != value2 || v == mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v <= value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case GE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v >= value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LT -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v < value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      default -> { // GT
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v > value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+    }
+    return nStillGood;
+  }
+
+  private static int applyInt(int[] a, int mv, BitSet keep, int opCode, int value2) {
+    int nStillGood = 0;
+    switch (opCode) {
+      case EQ -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          if (a[row] == value2) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case NE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          if (a[row] != value2) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v <= value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case GE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v >= value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LT -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v < value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      default -> { // GT
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          int v = a[row];
+          if (v > value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+    }
+    return nStillGood;
+  }
+
+  private static int applyLong(long[] a, BitSet keep, int opCode, long value2) {
+    final long mv = Long.MAX_VALUE;
+    int nStillGood = 0;
+    switch (opCode) {
+      case EQ -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          if (a[row] == value2) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case NE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          if (a[row] != value2) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          long v = a[row];
+          if (v <= value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case GE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          long v = a[row];
+          if (v >= value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LT -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          long v = a[row];
+          if (v < value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      default -> { // GT
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          long v = a[row];
+          if (v > value2 && v != mv) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+    }
+    return nStillGood;
+  }
+
+  // For float and double, these are the same tests as testValueOpValue(float or double).
+
+  private static int applyFloat(float[] a, BitSet keep, int opCode, float value2) {
+    final boolean value2IsNaN = Float.isNaN(value2);
+    int nStillGood = 0;
+    switch (opCode) {
+      case EQ -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          float v = a[row];
+          if ((value2IsNaN && Float.isNaN(v)) || Math2.almostEqual(6, v, value2)) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case NE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          float v = a[row];
+          if ((!value2IsNaN || !Float.isNaN(v)) && v != value2) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          float v = a[row];
+          if (v <= value2 || Math2.almostEqual(6, v, value2)) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case GE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          float v = a[row];
+          if (v >= value2 || Math2.almostEqual(6, v, value2)) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LT -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          if (a[row] < value2) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      default -> { // GT
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          if (a[row] > value2) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+    }
+    return nStillGood;
+  }
+
+  /**
+   * @param nDigits the number of significant digits for the almostEqual tests (9, or 12 if
+   *     morePrecise)
+   */
+  private static int applyDouble(double[] a, int nDigits, BitSet keep, int opCode, double value2) {
+    final boolean value2IsNaN = Double.isNaN(value2);
+    int nStillGood = 0;
+    switch (opCode) {
+      case EQ -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          double v = a[row];
+          if ((value2IsNaN && Double.isNaN(v)) || Math2.almostEqual(nDigits, v, value2))
+            nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case NE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          double v = a[row];
+          if ((!value2IsNaN || !Double.isNaN(v)) && v != value2) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          double v = a[row];
+          if (v <= value2 || Math2.almostEqual(nDigits, v, value2)) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case GE -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          double v = a[row];
+          if (v >= value2 || Math2.almostEqual(nDigits, v, value2)) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      case LT -> {
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          if (a[row] < value2) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+      default -> { // GT
+        for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
+          if (a[row] > value2) nStillGood++;
+          else keep.clear(row);
+        }
+      }
+    }
+    return nStillGood;
+  }
+}
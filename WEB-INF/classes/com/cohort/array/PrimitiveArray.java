@@ -5,6 +5,7 @@
  */
 package com.cohort.array;
 
+import com.cohort.util.LRUCache;
 import com.cohort.util.Math2;
 import com.cohort.util.SimpleException;
 import com.cohort.util.String2;
@@ -18,8 +19,10 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 import ucar.ma2.StructureData;
 
@@ -85,6 +88,10 @@ public abstract class PrimitiveArray {
    */
   public static final String REGEX_OP = "=~";
 
+  /** The recently used compiled regexes (see compiledPattern). */
+  private static final Map<String, Pattern> patternCache =
+      Collections.synchronizedMap(new LRUCache<>(100));
+
   /**
    * These are *not* final so EDStatic can replace them with translated Strings. These are
    * MessageFormat-style strings, so any single quote ' must be escaped as ''. Note that some are
@@ -3440,7 +3447,7 @@ public abstract class PrimitiveArray {
         return !value1.equals(value2);
       }
       case REGEX_OP -> {
-        return value1.matches(value2); // regex test
+        return compiledPattern(value2).matcher(value1).matches(); // regex test
       }
     }
 
@@ -3454,6 +3461,23 @@ public abstract class PrimitiveArray {
     };
   }
 
+  /**
+   * This returns the compiled regex. Since the same regexes are used over and over (e.g., for each
+   * chunk of each request, or for each file), the compiled Patterns are cached.
+   *
+   * @param regex a regular expression
+   * @return the compiled Pattern
+   * @throws java.util.regex.PatternSyntaxException if the regex is invalid
+   */
+  public static Pattern compiledPattern(String regex) {
+    Pattern p = patternCache.get(regex);
+    if (p == null) {
+      p = Pattern.compile(regex);
+      patternCache.put(regex, p);
+    }
+    return p;
+  }
+
   /** This is applies one constraint and just keeps the results. */
   public int applyConstraintAndKeep(boolean morePrecise, String op, String value2) {
     BitSet keep = new BitSet();
@@ -3487,12 +3511,23 @@ public abstract class PrimitiveArray {
    * @throws RuntimeException if trouble (e.g., invalid op or invalid keep element)
    */
   public int applyConstraint(boolean morePrecise, BitSet keep, String op, String value2) {
+    // the common types and operators have faster, type-specific kernels
+    int nKernel = ConstraintKernels.apply(this, morePrecise, keep, op, value2);
+    return nKernel >= 0 ? nKernel : applyConstraintGeneric(morePrecise, keep, op, value2);
+  }
+
+  /**
+   * This is the generic (slower) version of applyConstraint which works with all types and
+   * operators. It calls getXxx(row) and testValueOpValue for each row. applyConstraint uses this
+   * for the cases ConstraintKernels doesn't handle.
+   */
+  int applyConstraintGeneric(boolean morePrecise, BitSet keep, String op, String value2) {
 
     // regex
     if (op.equals(REGEX_OP)) {
       // String2.log("applyConstraint(regex)");
       int nStillGood = 0;
-      Pattern p = Pattern.compile(value2); // big time savings
+      Pattern p = compiledPattern(value2); // big time savings
       for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1)) {
         if (p.matcher(getString(row)).matches()) nStillGood++;
         else keep.clear(row);
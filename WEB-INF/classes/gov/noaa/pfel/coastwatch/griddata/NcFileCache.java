@@ -0,0 +1,258 @@
+/*
+ * NcFileCache Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.coastwatch.griddata;
+
+import com.cohort.util.Math2;
+import com.cohort.util.MustBe;
+import com.cohort.util.String2;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.Metrics;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import ucar.nc2.NetcdfFile;
+
+/**
+ * NcFileCache keeps recently used NetcdfFiles open so that repeated reads from the same files
+ * (e.g., time series requests which read from the same few hundred files over and over) don't
+ * have to open the file and parse the header (and, for NetCDF-4 files, the HDF5 metadata) each
+ * time.
+ *
+ * <p>A NetcdfFile isn't thread-safe, so each open file is used by only one thread at a time:
+ * acquire() takes an idle file for the fullName out of the cache (or opens a new one) and
+ * Handle.close() puts it back (unless the reading failed). The number of idle open files is limited
+ * to EDStatic.config.ncFileCacheSize (0 turns off caching); the least recently used files are
+ * closed first.
+ *
+ * <p>Files are identified by fullName, lastModified, size, and fileKey (e.g., the inode), so if a
+ * file is changed or replaced, the cached files for the old version are closed and the new version
+ * is opened. Remote files and .ncml files are never cached.
+ */
+public class NcFileCache {
+
+  /**
+   * Set this to true (by calling verbose=true in your program, not by changing the code here) if
+   * you want lots of diagnostic messages sent to String2.log.
+   */
+  public static boolean verbose = false;
+
+  /** The idle open files for each fullName. This is accessed in order of use (so it is LRU). */
+  private static final LinkedHashMap<String, Idle> idleFiles =
+      new LinkedHashMap<>(16, 0.75f, true); // true means 'eldest' based on when last accessed
+
+  private static int nIdle = 0;
+
+  /** One version of a file. fileKey may be null (see BasicFileAttributes.fileKey). */
+  private record Version(long lastModified, long size, Object fileKey) {}
+
+  /** The idle open files for one version of one file. */
+  private static class Idle {
+    final Version version;
+    final ArrayDeque<NetcdfFile> files = new ArrayDeque<>();
+
+    Idle(Version tVersion) {
+      version = tVersion;
+    }
+  }
+
+  /**
+   * A NetcdfFile acquired from the cache. Use it in a try-with-resources statement and call
+   * finished() when you have finished reading, so the NetcdfFile is returned to the cache when the
+   * handle is closed. If finished() isn't called (e.g., because reading threw an exception, which
+   * may leave the NetcdfFile in a bad state), the NetcdfFile is closed instead. Don't close the
+   * NetcdfFile yourself.
+   */
+  public static class Handle implements AutoCloseable {
+    private final String fullName;
+    private final Version version; // or null if not cacheable
+    private NetcdfFile file;
+    private boolean finished = false;
+
+    private Handle(String tFullName, Version tVersion, NetcdfFile tFile) {
+      fullName = tFullName;
+      version = tVersion;
+      file = tFile;
+    }
+
+    /** The open NetcdfFile. */
+    public NetcdfFile file() {
+      return file;
+    }
+
+    /** Call this when the NetcdfFile has been read successfully, so it can be reused. */
+    public void finished() {
+      finished = true;
+    }
+
+    /** This returns the NetcdfFile to the cache (if finished() was called) or closes it. */
+    @Override
+    public void close() throws Exception {
+      NetcdfFile tFile = file;
+      if (tFile == null) return;
+      file = null;
+      if (version == null || !finished || !release(fullName, version, tFile)) tFile.close();
+    }
+  }
+
+  /**
+   * The maximum number of idle open files. On Windows, open files can't be deleted or replaced, so
+   * files are never cached there.
+   */
+  private static int maxIdle() {
+    return EDStatic.config == null || String2.OSIsWindows ? 0 : EDStatic.config.ncFileCacheSize;
+  }
+
+  /**
+   * This gets an open NetcdfFile for a local file name (or an "http:" address, but that is
+   * discouraged) of a .nc file, like NcHelper.openFile, but from the cache if possible.
+   *
+   * @param fullName This may be a local file name, an "http:" address of a .nc file (discouraged),
+   *     or an opendap url. If this is an .ncml file, the name must end in .ncml.
+   * @return a Handle with the open NetcdfFile. ALWAYS close the handle when you are finished with
+   *     it, preferably with a try-with-resources statement.
+   * @throws Exception if trouble
+   */
+  public static Handle acquire(String fullName) throws Exception {
+    Version version =
+        maxIdle() <= 0
+                || fullName.endsWith(".ncml") // the files it refers to may change
+                || String2.isUrl(fullName)
+            ? null
+            : version(fullName);
+    if (version == null) return new Handle(fullName, null, NcHelper.openFile(fullName));
+
+    NetcdfFile file = null;
+    List<NetcdfFile> stale = null;
+    synchronized (idleFiles) {
+      Idle idle = idleFiles.get(fullName);
+      if (idle != null && !idle.version.equals(version)) {
+        // the file has changed, so the open files are for the old version
+        stale = new ArrayList<>(idle.files);
+        nIdle -= idle.files.size();
+        idleFiles.remove(fullName);
+        idle = null;
+      }
+      if (idle != null) {
+        file = idle.files.pollLast(); // the most recently used
+        nIdle--;
+        if (idle.files.isEmpty()) idleFiles.remove(fullName);
+      }
+    }
+    closeAll(stale);
+    incrementRequests(file != null);
+    if (file != null) return new Handle(fullName, version, file);
+
+    try {
+      file = NcHelper.openFile(fullName);
+    } catch (Exception e) {
+      if (e.toString().indexOf(Math2.TooManyOpenFiles) < 0) throw e;
+      // close all of the idle files and try again
+      String2.log(
+          "NcFileCache.acquire(" + fullName + "): " + Math2.TooManyOpenFiles + ", so clear()");
+      clear();
+      file = NcHelper.openFile(fullName);
+    }
+    return new Handle(fullName, version, file);
+  }
+
+  /** This returns the current version of a local file, or null if its attributes can't be read. */
+  private static Version version(String fullName) {
+    try {
+      BasicFileAttributes attrs =
+          Files.readAttributes(Path.of(fullName), BasicFileAttributes.class);
+      return new Version(attrs.lastModifiedTime().toMillis(), attrs.size(), attrs.fileKey());
+    } catch (IOException | RuntimeException e) {
+      return null; // e.g., the file doesn't exist, so NcHelper.openFile will throw the exception
+    }
+  }
+
+  /**
+   * This returns a file to the cache.
+   *
+   * @return true if the file was returned to the cache, or false if the caller should close it
+   */
+  private static boolean release(String fullName, Version version, NetcdfFile file) {
+    int tMaxIdle = maxIdle();
+    if (tMaxIdle <= 0) return false;
+    List<NetcdfFile> evicted = new ArrayList<>();
+    synchronized (idleFiles) {
+      Idle idle = idleFiles.get(fullName);
+      if (idle != null && !idle.version.equals(version)) {
+        // this file or the cached files are for an old version of the file
+        // (if it isn't clear which, acquire() will sort it out)
+        if (version.lastModified() <= idle.version.lastModified()) return false;
+        evicted.addAll(idle.files);
+        nIdle -= idle.files.size();
+        idleFiles.remove(fullName);
+        idle = null;
+      }
+      if (idle == null) {
+        idle = new Idle(version);
+        idleFiles.put(fullName, idle);
+      }
+      idle.files.addLast(file);
+      nIdle++;
+
+      // close the least recently used files
+      Iterator<Map.Entry<String, Idle>> it = idleFiles.entrySet().iterator();
+      while (nIdle > tMaxIdle && it.hasNext()) {
+        Idle eldest = it.next().getValue();
+        while (nIdle > tMaxIdle && !eldest.files.isEmpty()) {
+          evicted.add(eldest.files.pollFirst());
+          nIdle--;
+        }
+        if (eldest.files.isEmpty()) it.remove();
+      }
+    }
+    closeAll(evicted);
+    return true;
+  }
+
+  /** This closes all of the idle open files (e.g., when ERDDAP is shutting down). */
+  public static void clear() {
+    List<NetcdfFile> files = new ArrayList<>();
+    synchronized (idleFiles) {
+      for (Idle idle : idleFiles.values()) files.addAll(idle.files);
+      idleFiles.clear();
+      nIdle = 0;
+    }
+    closeAll(files);
+    if (verbose && !files.isEmpty())
+      String2.log("NcFileCache.clear() closed " + files.size() + " files.");
+  }
+
+  /** The number of idle open files in the cache. */
+  public static int getNIdle() {
+    synchronized (idleFiles) {
+      return nIdle;
+    }
+  }
+
+  private static void closeAll(List<NetcdfFile> files) {
+    if (files == null) return;
+    for (NetcdfFile file : files) {
+      try {
+        file.close();
+      } catch (Exception e) {
+        String2.log(MustBe.throwable("NcFileCache.closeAll(" + file.getLocation() + ")", e));
+      }
+    }
+  }
+
+  private static void incrementRequests(boolean cached) {
+    if (EDStatic.metrics != null)
+      EDStatic.metrics
+          .ncFileCacheRequest
+          .labelValues(cached ? Metrics.Cache.cached.name() : Metrics.Cache.not_cached.name())
+          .inc();
+  }
+}
@@ -49,6 +49,7 @@ import dods.dap.DataDDS;
 import gov.noaa.pfel.coastwatch.griddata.DataHelper;
 import gov.noaa.pfel.coastwatch.griddata.FileNameUtility;
 import gov.noaa.pfel.coastwatch.griddata.Matlab;
+import gov.noaa.pfel.coastwatch.griddata.NcFileCache;
 import gov.noaa.pfel.coastwatch.griddata.NcHelper;
 import gov.noaa.pfel.coastwatch.griddata.OpendapHelper;
 import gov.noaa.pfel.coastwatch.pointdata.parquet.ParquetWriterBuilder;
@@ -97,6 +98,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.function.Predicate;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.sound.sampled.AudioFileFormat;
@@ -105,10 +107,16 @@ import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.parquet.ParquetReadOptions;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.ColumnReader;
+import org.apache.parquet.column.impl.ColumnReadStoreImpl;
 import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.column.statistics.Statistics;
 import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
 import org.apache.parquet.hadoop.ParquetFileReader;
 import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
 import org.apache.parquet.hadoop.metadata.CompressionCodecName;
 import org.apache.parquet.io.ColumnIOFactory;
 import org.apache.parquet.io.InputFile;
@@ -160,6 +168,22 @@ public class Table {
     void apply(String[] columnNames) throws Exception;
   }
 
+  /** This receives the chunks of rows from readNccsvChunks. */
+  public static interface ChunkConsumer {
+    /**
+     * @param chunk a table with some rows (scalars are expanded)
+     * @return true to continue reading, or false to stop
+     */
+    boolean accept(Table chunk) throws Throwable;
+  }
+
+  /** This wraps a Throwable thrown by a ChunkConsumer so it gets through lowReadNccsv unchanged. */
+  private static class ChunkConsumerException extends RuntimeException {
+    ChunkConsumerException(Throwable cause) {
+      super(cause);
+    }
+  }
+
   /**
    * Set this to true (by calling verbose=true in your program, not by changing the code here) if
    * you want lots of diagnostic messages sent to String2.log.
@@ -3314,6 +3338,41 @@ public class Table {
    * @throws SimpleException if trouble (but doesn't close the reader)
    */
   public void lowReadNccsv(String fullName, boolean readData, BufferedReader reader) {
+    lowReadNccsv(fullName, readData, reader, Integer.MAX_VALUE, null);
+  }
+
+  /**
+   * This reads the data rows of an NCCSV .csv file a chunk at a time, so that a huge file (e.g., a
+   * response from a remote ERDDAP) needn't be held in memory all at once. As soon as chunkNRows
+   * rows have been read, they are passed to the consumer (and removed from this table), so the
+   * reader is only read as fast as the consumer can deal with the data. When this returns, this
+   * table has the metadata (scalars have 1 value, data columns have 0 values).
+   *
+   * @param fullName for error messages only
+   * @param reader from a file or URL
+   * @param chunkNRows the maximum number of rows in each chunk (&gt;=1)
+   * @param consumer This receives each chunk (a new Table with scalars expanded). If there are no
+   *     rows, it receives one chunk with 0 rows. If it returns false, no more data is read (e.g., so
+   *     the caller can close the reader and so the connection to the source).
+   * @throws Throwable if trouble (but doesn't close the reader). Throwables thrown by consumer are
+   *     rethrown unchanged.
+   */
+  public void readNccsvChunks(
+      String fullName, BufferedReader reader, int chunkNRows, ChunkConsumer consumer)
+      throws Throwable {
+    try {
+      lowReadNccsv(fullName, true, reader, Math.max(1, chunkNRows), consumer);
+    } catch (ChunkConsumerException e) {
+      throw e.getCause();
+    }
+  }
+
+  private void lowReadNccsv(
+      String fullName,
+      boolean readData,
+      BufferedReader reader,
+      int chunkNRows,
+      ChunkConsumer consumer) {
     long time = System.currentTimeMillis();
     long lineNumber = 0;
     clear();
@@ -3453,6 +3512,8 @@ public class Table {
 
       // read the data
       StringBuilder warnings = new StringBuilder();
+      long nRowsPassed = 0;
+      int nChunks = 0;
       while ((s = reader.readLine()) != null) {
         lineNumber++;
         if (s.startsWith(String2.NCCSV_END_DATA)) // extra commas are ignored
@@ -3493,6 +3554,13 @@ public class Table {
           // String2.log(">> dcol=" + dcol + " " + dpa[dcol].elementType() + " ts=" + ts + " -> " +
           // dpa[dcol].getString(dpa[dcol].size() - 1));
         }
+
+        // pass a full chunk to the consumer
+        if (consumer != null && dpa[0].size() >= chunkNRows) {
+          nRowsPassed += dpa[0].size();
+          nChunks++;
+          if (!passNccsvChunk(dpa, consumer)) break;
+        }
       }
       // if (s == null)  //NCCSV_END_DATA now optional
       //    throw new SimpleException(String2.NCCSV_END_DATA + NOT_FOUND_EOF);
@@ -3500,8 +3568,17 @@ public class Table {
       if (warnings.length() > 0)
         String2.log(WARNING_BAD_LINE_OF_DATA_IN + "readNccsv(" + fullName + "):\n" + warnings);
 
-      // expand scalars
-      ensureColumnsAreSameSize_LastValue();
+      if (consumer == null) {
+        // expand scalars
+        ensureColumnsAreSameSize_LastValue();
+      } else if (s == null || s.startsWith(String2.NCCSV_END_DATA)) {
+        // not stopped by consumer, so pass the last (partial) chunk
+        if (nChunks == 0 || dpa[0].size() > 0) {
+          nRowsPassed += dpa[0].size();
+          nChunks++;
+          passNccsvChunk(dpa, consumer);
+        }
+      }
 
       String2.log(
           "readNccsv("
@@ -3509,11 +3586,13 @@ public class Table {
               + ") finished successfully.  nColumns="
               + nColumns()
               + " nRows="
-              + nRows()
+              + (consumer == null ? nRows() : nRowsPassed + " nChunks=" + nChunks)
               + " time="
               + (System.currentTimeMillis() - time)
               + "ms");
 
+    } catch (ChunkConsumerException e) {
+      throw e;
     } catch (Exception e) {
       String2.log(MustBe.throwableToString(e));
       throw new SimpleException(
@@ -3527,6 +3606,37 @@ public class Table {
     }
   }
 
+  /**
+   * This moves the data rows (in dpa) of this table (which is being read by lowReadNccsv) to a new
+   * table and passes it to the consumer.
+   *
+   * @param dpa the data columns of this table. They are replaced by new, empty PrimitiveArrays.
+   * @return the consumer's response: true to continue reading, or false to stop
+   * @throws ChunkConsumerException if the consumer throws a Throwable
+   */
+  private boolean passNccsvChunk(PrimitiveArray dpa[], ChunkConsumer consumer) {
+    Table chunk = new Table();
+    chunk.globalAttributes().set(globalAttributes);
+    int nc = nColumns();
+    for (int col = 0; col < nc; col++) {
+      PrimitiveArray pa = columns.get(col);
+      int dcol = String2.indexOfObject(dpa, pa);
+      if (dcol >= 0) {
+        dpa[dcol] = PrimitiveArray.factory(pa.elementType(), pa.size(), false);
+        columns.set(col, dpa[dcol]);
+      } else {
+        pa = (PrimitiveArray) pa.clone(); // a scalar
+      }
+      chunk.addColumn(col, getColumnName(col), pa, (Attributes) columnAttributes(col).clone());
+    }
+    chunk.ensureColumnsAreSameSize_LastValue(); // expand scalars
+    try {
+      return consumer.accept(chunk);
+    } catch (Throwable t) {
+      throw new ChunkConsumerException(t);
+    }
+  }
+
   /** This is like saveAsNccsv(true, true, Integer.MAX_VALUE) */
   public String saveAsNccsv() throws Exception {
     return saveAsNccsv(true, true, 0, Integer.MAX_VALUE);
@@ -5468,7 +5578,8 @@ public class Table {
     String msg = "  Table.readFlatNc " + fullName;
     long time = System.currentTimeMillis();
     Attributes gridMappingAtts = null;
-    try (NetcdfFile netcdfFile = NcHelper.openFile(fullName)) {
+    try (NcFileCache.Handle ncHandle = NcFileCache.acquire(fullName)) {
+      NetcdfFile netcdfFile = ncHandle.file();
       Variable loadVariables[] = NcHelper.findVariables(netcdfFile, loadColumns);
 
       // fill the table
@@ -5507,6 +5618,7 @@ public class Table {
                 + " TIME="
                 + (System.currentTimeMillis() - time)
                 + "ms");
+      ncHandle.finished();
     }
   }
 
@@ -5526,7 +5638,8 @@ public class Table {
 
     // get information
     Attributes gridMappingAtts = null;
-    try (NetcdfFile netcdfFile = NcHelper.openFile(fullName)) {
+    try (NcFileCache.Handle ncHandle = NcFileCache.acquire(fullName)) {
+      NetcdfFile netcdfFile = ncHandle.file();
       // fill the table
       clear();
       NcHelper.getGroupAttributes(netcdfFile.getRootGroup(), globalAttributes());
@@ -5564,6 +5677,7 @@ public class Table {
         convertToUnsignedPAs();
         standardize(standardizeWhat);
       }
+      ncHandle.finished();
     }
   }
 
@@ -5749,7 +5863,8 @@ public class Table {
     // get information
     Attributes gridMappingAtts = null;
     StringArray varsNotFound = new StringArray();
-    try (NetcdfFile ncFile = NcHelper.openFile(fullName)) {
+    try (NcFileCache.Handle ncHandle = NcFileCache.acquire(fullName)) {
+      NetcdfFile ncFile = ncHandle.file();
       // load the global metadata
       NcHelper.getGroupAttributes(ncFile.getRootGroup(), globalAttributes());
 
@@ -5782,6 +5897,7 @@ public class Table {
           if (nDims == 0) {
             if (verbose && varsNotFound.size() > 0)
               String2.log("  vars not found: " + varsNotFound);
+            ncHandle.finished();
             return; // empty table
           }
           // just load dimensions that aren't variables
@@ -5801,6 +5917,7 @@ public class Table {
           convertToUnsignedPAs();
           // no metadata so no unpack
           if (verbose && varsNotFound.size() > 0) String2.log("  vars not found: " + varsNotFound);
+          ncHandle.finished();
           return;
         }
       }
@@ -6117,6 +6234,7 @@ public class Table {
                 + " time="
                 + (System.currentTimeMillis() - time)
                 + "ms");
+      ncHandle.finished();
     }
   }
 
@@ -14086,21 +14204,50 @@ public class Table {
   public void readParquet(
       String fullFileName, StringArray colNames, String[] colTypes, boolean simplify)
       throws Exception {
+    readParquet(fullFileName, colNames, colTypes, simplify, null);
+  }
+
+  /**
+   * This reads a table from a parquet file. Currently this does not support compressed files.
+   *
+   * <p>Only the colNames columns are read from the file. If they are all simple (not nested or
+   * repeated) primitive columns, the values are decoded directly from each column chunk into the
+   * PrimitiveArrays. Otherwise, each record is assembled as a Group. Either way, rows where all of
+   * the file's columns have null values are skipped, so which rows are read doesn't depend on
+   * colNames. If the file may have such rows (see parquetMayHaveNullRows), the other columns are
+   * read too (but not stored) to find them.
+   *
+   * @param colNames the names of the columns to be read, or null to read all of the columns
+   * @param colTypes the types of the colNames columns (e.g., "float"), or null to read the values
+   *     as Strings (except booleans, which are read as bytes)
+   * @param rowGroupTest if not null, this is tested with each row group's metadata (e.g., the
+   *     column statistics) and the row group is skipped if this returns false (e.g., because it
+   *     can't have any rows which match the constraints)
+   * @throws Exception if serious trouble
+   */
+  public void readParquet(
+      String fullFileName,
+      StringArray colNames,
+      String[] colTypes,
+      boolean simplify,
+      Predicate<BlockMetaData> rowGroupTest)
+      throws Exception {
     clear();
     InputFile parquetFile = new LocalInputFile(java.nio.file.Path.of(fullFileName));
     try (ParquetFileReader fileReader =
         new ParquetFileReader(parquetFile, ParquetReadOptions.builder().build())) {
-      MessageType schema = fileReader.getFileMetaData().getSchema();
-
-      List<Type> fields = schema.getFields();
-      int numFields = fields.size();
-      PrimitiveArray pas[] = new PrimitiveArray[numFields];
-      boolean isBoolean[] = new boolean[numFields]; // all false
-      for (int c = 0; c < numFields; c++) {
-        Type field = fields.get(c);
+      MessageType fileSchema = fileReader.getFileMetaData().getSchema();
+      boolean readAllForNulls =
+          colNames != null && parquetMayHaveNullRows(fileSchema, fileReader.getRowGroups());
+
+      List<Type> fields = new ArrayList<>(); // the fields to be read
+      List<PrimitiveArray> paList = new ArrayList<>(); // null for fields just read to find nulls
+      BitSet isBooleanSet = new BitSet(); // all false
+      for (Type field : fileSchema.getFields()) {
         String tFieldName = field.getName();
         tFieldName = tFieldName.equals("null") ? "" : tFieldName;
         PrimitiveArray pa = null;
+        boolean isBoolean = false;
         boolean isParquetBoolean =
             field.isPrimitive()
                 && field.asPrimitiveType().getPrimitiveTypeName() == PrimitiveTypeName.BOOLEAN;
@@ -14111,7 +14258,7 @@ public class Table {
           if (isParquetBoolean) {
             pa = new ByteArray();
             pa.setMaxIsMV(true);
-            isBoolean[c] = true;
+            isBoolean = true;
           } else {
             pa = new StringArray();
           }
@@ -14122,80 +14269,81 @@ public class Table {
               if (isParquetBoolean) {
                 pa = new ByteArray();
                 pa.setMaxIsMV(true);
-                isBoolean[c] = true;
+                isBoolean = true;
               } else {
                 pa = new StringArray();
               }
             } else {
               PAType tPAType = PAType.fromCohortString(colTypes[which]); // it handles boolean
               pa = PrimitiveArray.factory(tPAType, 8, false);
-              isBoolean[c] = isParquetBoolean || "boolean".equals(colTypes[which]);
-              if (isBoolean[c]) {
+              isBoolean = isParquetBoolean || "boolean".equals(colTypes[which]);
+              if (isBoolean) {
                 pa.setMaxIsMV(true);
               }
             }
           }
         }
-        if (pa != null) {
-          pas[c] = pa;
-          addColumn(tFieldName, pa);
+        if (pa != null || readAllForNulls) {
+          if (isBoolean) isBooleanSet.set(fields.size());
+          fields.add(field);
+          paList.add(pa);
+          if (pa != null) addColumn(tFieldName, pa);
         }
       }
-
-      PageReadStore pages = null;
+      int numFields = fields.size();
+      PrimitiveArray pas[] = paList.toArray(new PrimitiveArray[numFields]);
+      boolean isBoolean[] = new boolean[numFields];
+      for (int c = 0; c < numFields; c++) isBoolean[c] = isBooleanSet.get(c);
+
+      // just read the requested columns
+      MessageType schema = new MessageType(fileSchema.getName(), fields);
+      if (numFields > 0) fileReader.setRequestedSchema(schema);
+
+      // can the values be decoded directly from the column chunks?
+      boolean byColumn = numFields > 0;
+      for (Type field : fields) {
+        if (!field.isPrimitive() || field.isRepetition(Type.Repetition.REPEATED)) {
+          byColumn = false;
+          break;
+        }
+        PrimitiveTypeName typeName = field.asPrimitiveType().getPrimitiveTypeName();
+        if (typeName == PrimitiveTypeName.INT96
+            || typeName == PrimitiveTypeName.FIXED_LEN_BYTE_ARRAY) {
+          byColumn = false;
+          break;
+        }
+      }
+      String createdBy = fileReader.getFileMetaData().getCreatedBy();
 
       StringBuilder warnings = new StringBuilder();
-      while (null != (pages = fileReader.readNextRowGroup())) {
+      int nRowGroupsSkipped = 0;
+      for (BlockMetaData rowGroup : fileReader.getRowGroups()) {
+        if (nColumns() == 0 || (rowGroupTest != null && !rowGroupTest.test(rowGroup))) {
+          fileReader.skipNextRowGroup();
+          nRowGroupsSkipped++;
+          continue;
+        }
+        PageReadStore pages = fileReader.readNextRowGroup();
+        if (pages == null) break;
+        int oNRows = nRows();
         try {
-          final long rows = pages.getRowCount();
-          // POTENTIAL IMPROVEMENT can we use filters to prevent reading clumns we don't care about?
-          final MessageColumnIO columnIO = new ColumnIOFactory().getColumnIO(schema);
-          final RecordReader<org.apache.parquet.example.data.Group> recordReader =
-              columnIO.getRecordReader(pages, new GroupRecordConverter(schema));
-          for (int i = 0; i < rows; i++) {
-            final org.apache.parquet.example.data.Group g = recordReader.read();
-            int fieldCount = g.getType().getFieldCount();
-            int countInRow = -1;
-            for (int field = 0; field < fieldCount; field++) {
-              countInRow = Math.max(g.getFieldRepetitionCount(field), countInRow);
-            }
-            for (int field = 0; field < fieldCount; field++) {
-              int valueCount = g.getFieldRepetitionCount(field);
-              for (int index = 0; index < valueCount; index++) {
-                if (pas[field] != null) {
-                  // POTENTIAL IMPROVEMENT use field types to avoid going to string and back?
-                  if (isBoolean[field]) {
-                    try {
-                      pas[field].addInt(g.getBoolean(field, index) ? 1 : 0);
-                    } catch (Exception e) {
-                      // Fallback if getBoolean fails for some reason
-                      String tValue = g.getValueToString(field, index);
-                      pas[field].addInt(String2.parseBooleanToInt(tValue));
-                    }
-                  } else {
-                    String tValue = g.getValueToString(field, index);
-                    if (tValue.equals("null")) tValue = "";
-                    pas[field].addString(tValue);
-                  }
-                }
-              }
-              // This is adding missing values to a column to ensure all columns have the
-              // proper number of rows at the end.
-              for (int index = valueCount; index < countInRow; index++) {
-                if (pas[field] != null) {
-                  if (isBoolean[field]) {
-                    pas[field].addInt(Integer.MAX_VALUE);
-                  } else {
-                    pas[field].addString("");
-                  }
-                }
-              }
-            }
-          }
+          if (byColumn) readParquetColumns(pages, schema, createdBy, pas, isBoolean);
+          else readParquetRecords(pages, schema, pas, isBoolean);
         } catch (Exception e) {
+          // remove this row group's partial data, so all the columns have the same size
+          for (PrimitiveArray pa : pas)
+            if (pa != null && pa.size() > oNRows) pa.removeRange(oNRows, pa.size());
           warnings.append("  rowIndex #" + pages.getRowIndexes() + ": " + e.getMessage() + "\n");
         }
       }
+      if (reallyVerbose && nRowGroupsSkipped > 0)
+        String2.log(
+            "  Table.readParquet skipped "
+                + nRowGroupsSkipped
+                + " of "
+                + fileReader.getRowGroups().size()
+                + " row groups in "
+                + fullFileName);
       if (warnings.length() > 0)
         String2.log(
             WARNING_BAD_LINE_OF_DATA_IN + "readParquet(" + fullFileName + "):\n" + warnings);
@@ -14248,6 +14396,180 @@ public class Table {
     }
   }
 
+  /**
+   * This assembles each record in a parquet row group as a Group and adds the values to pas. This
+   * works with nested and repeated fields: each record adds as many rows as its most repeated
+   * field. If pas[field] is null, the field's values are just used to find the row count.
+   */
+  private static void readParquetRecords(
+      PageReadStore pages, MessageType schema, PrimitiveArray pas[], boolean isBoolean[]) {
+    final long rows = pages.getRowCount();
+    final MessageColumnIO columnIO = new ColumnIOFactory().getColumnIO(schema);
+    final RecordReader<org.apache.parquet.example.data.Group> recordReader =
+        columnIO.getRecordReader(pages, new GroupRecordConverter(schema));
+    for (int i = 0; i < rows; i++) {
+      final org.apache.parquet.example.data.Group g = recordReader.read();
+      int fieldCount = g.getType().getFieldCount();
+      int countInRow = -1;
+      for (int field = 0; field < fieldCount; field++) {
+        countInRow = Math.max(g.getFieldRepetitionCount(field), countInRow);
+      }
+      for (int field = 0; field < fieldCount; field++) {
+        if (pas[field] == null) continue; // just read to find the rows with all nulls
+        int valueCount = g.getFieldRepetitionCount(field);
+        for (int index = 0; index < valueCount; index++) {
+          // POTENTIAL IMPROVEMENT use field types to avoid going to string and back?
+          if (isBoolean[field]) {
+            try {
+              pas[field].addInt(g.getBoolean(field, index) ? 1 : 0);
+            } catch (Exception e) {
+              // Fallback if getBoolean fails for some reason
+              String tValue = g.getValueToString(field, index);
+              pas[field].addInt(String2.parseBooleanToInt(tValue));
+            }
+          } else {
+            String tValue = g.getValueToString(field, index);
+            if (tValue.equals("null")) tValue = "";
+            pas[field].addString(tValue);
+          }
+        }
+        // This is adding missing values to a column to ensure all columns have the
+        // proper number of rows at the end.
+        for (int index = valueCount; index < countInRow; index++) {
+          if (isBoolean[field]) {
+            pas[field].addInt(Integer.MAX_VALUE);
+          } else {
+            pas[field].addString("");
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * This decodes the values in each column chunk of a parquet row group directly into pas,
+   * without assembling records. All of the columns in schema must be simple (not nested or
+   * repeated) primitive columns (not INT96 or FIXED_LEN_BYTE_ARRAY). The values are converted
+   * like readParquetRecords converts them (via Strings), but numbers are only converted to
+   * Strings if the PrimitiveArray can't take them directly. If pas[c] is null, the column is just
+   * used to find the rows where all of the values are null.
+   */
+  private void readParquetColumns(
+      PageReadStore pages,
+      MessageType schema,
+      String createdBy,
+      PrimitiveArray pas[],
+      boolean isBoolean[]) {
+    int nRows = Math2.narrowToInt(pages.getRowCount());
+    int oNRows = nRows();
+    BitSet hasValue = new BitSet(nRows); // rows with a non-null value in some column
+    ColumnReadStoreImpl readStore =
+        new ColumnReadStoreImpl(
+            pages, new GroupRecordConverter(schema).getRootConverter(), schema, createdBy);
+    List<ColumnDescriptor> descriptors = schema.getColumns();
+    for (int c = 0; c < pas.length; c++) {
+      ColumnDescriptor descriptor = descriptors.get(c);
+      ColumnReader reader = readStore.getColumnReader(descriptor);
+      if (reader.getTotalValueCount() != nRows)
+        throw new SimpleException(
+            "column="
+                + String.join(".", descriptor.getPath())
+                + " has nValues="
+                + reader.getTotalValueCount()
+                + " != nRows="
+                + nRows);
+      int maxDefinitionLevel = descriptor.getMaxDefinitionLevel();
+      PrimitiveArray pa = pas[c];
+      if (pa == null) {
+        for (int row = 0; row < nRows; row++) {
+          if (reader.getCurrentDefinitionLevel() == maxDefinitionLevel) hasValue.set(row);
+          reader.consume();
+        }
+        continue;
+      }
+      pa.ensureCapacity(pa.size() + (long) nRows);
+      PrimitiveTypeName typeName = descriptor.getPrimitiveType().getPrimitiveTypeName();
+      PAType paType = pa.elementType();
+      boolean paIsString = paType == PAType.STRING || paType == PAType.CHAR;
+      for (int row = 0; row < nRows; row++) {
+        if (reader.getCurrentDefinitionLevel() < maxDefinitionLevel) { // null
+          if (isBoolean[c]) pa.addInt(Integer.MAX_VALUE);
+          else pa.addString("");
+        } else {
+          hasValue.set(row);
+          if (isBoolean[c]) {
+            pa.addInt(
+                typeName == PrimitiveTypeName.BOOLEAN
+                    ? (reader.getBoolean() ? 1 : 0)
+                    : String2.parseBooleanToInt(parquetValueToString(reader, typeName)));
+          } else if (paIsString) {
+            String tValue = parquetValueToString(reader, typeName);
+            pa.addString(tValue.equals("null") ? "" : tValue);
+          } else {
+            switch (typeName) {
+              case INT32 -> pa.addInt(reader.getInteger());
+              case INT64 -> pa.addLong(reader.getLong());
+              case FLOAT -> {
+                if (paType == PAType.FLOAT) pa.addFloat(reader.getFloat());
+                else pa.addString(String.valueOf(reader.getFloat())); // e.g., 0.1f -> 0.1
+              }
+              case DOUBLE -> {
+                if (paType == PAType.DOUBLE) pa.addDouble(reader.getDouble());
+                else pa.addString(String.valueOf(reader.getDouble()));
+              }
+              default -> pa.addString(parquetValueToString(reader, typeName));
+            }
+          }
+        }
+        reader.consume();
+      }
+    }
+
+    // like readParquetRecords, skip rows where all values are null
+    if (hasValue.cardinality() < nRows) {
+      BitSet keep = new BitSet();
+      keep.set(0, oNRows);
+      for (int row = hasValue.nextSetBit(0); row >= 0; row = hasValue.nextSetBit(row + 1))
+        keep.set(oNRows + row);
+      justKeep(keep);
+    }
+  }
+
+  /**
+   * This returns true if the parquet file may have rows where all of the values are null. It
+   * doesn't if a top-level field is required or if, in each row group, some column's statistics
+   * say that it has no nulls.
+   */
+  private static boolean parquetMayHaveNullRows(
+      MessageType fileSchema, List<BlockMetaData> rowGroups) {
+    for (Type field : fileSchema.getFields())
+      if (field.isRepetition(Type.Repetition.REQUIRED)) return false;
+    for (BlockMetaData rowGroup : rowGroups) {
+      boolean someColumnHasNoNulls = false;
+      for (ColumnChunkMetaData column : rowGroup.getColumns()) {
+        Statistics<?> stats = column.getStatistics();
+        if (stats != null && stats.isNumNullsSet() && stats.getNumNulls() == 0) {
+          someColumnHasNoNulls = true;
+          break;
+        }
+      }
+      if (!someColumnHasNoNulls) return true;
+    }
+    return false;
+  }
+
+  /** This returns the current value of a parquet column reader as a String, like Group does. */
+  private static String parquetValueToString(ColumnReader reader, PrimitiveTypeName typeName) {
+    return switch (typeName) {
+      case BOOLEAN -> String.valueOf(reader.getBoolean());
+      case INT32 -> String.valueOf(reader.getInteger());
+      case INT64 -> String.valueOf(reader.getLong());
+      case FLOAT -> String.valueOf(reader.getFloat());
+      case DOUBLE -> String.valueOf(reader.getDouble());
+      default -> reader.getBinary().toStringUsingUTF8();
+    };
+  }
+
   private boolean isTimeColumn(int col) {
     return "time".equalsIgnoreCase(getColumnName(col))
         && Calendar2.SECONDS_SINCE_1970.equals(columnAttributes.get(col).getString("units"));
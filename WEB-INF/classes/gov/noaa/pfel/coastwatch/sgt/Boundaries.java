@@ -5,6 +5,7 @@
 package gov.noaa.pfel.coastwatch.sgt;
 
 import com.cohort.array.DoubleArray;
+import com.cohort.array.IntArray;
 import com.cohort.util.File2;
 import com.cohort.util.LRUCache;
 import com.cohort.util.Math2;
@@ -15,8 +16,15 @@ import gov.noaa.pfel.erddap.util.Metrics;
 import gov.noaa.pmel.sgt.dm.SGTLine;
 import gov.noaa.pmel.sgt.dm.SimpleLine;
 import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
@@ -56,12 +64,19 @@ public class Boundaries {
    * Memory for each cached GP (CWBrowser typical use) is 2KB to 500KB (whole world, crude), (20KB
    * is typical). <br>
    * Crude estimate: 100 takes 2 MB per type. <br>
-   * There are 3 types of boundaries (National, State, Rivers).
+   * There are 3 types of boundaries (National, State, Rivers). <br>
+   * Requests which aren't in the cache (e.g., WMS tiles) are still fairly fast, because
+   * readSgtLineDouble only looks at the paths in the nearby tiles of a TiledPolygonIndex.
    */
   public static final int CACHE_SIZE = 100;
 
   private final Map<String, SGTLine> cache =
       Collections.synchronizedMap(new LRUCache<>(CACHE_SIZE));
+
+  /** The memory-mapped, indexed .double files (by full file name). */
+  private static final ConcurrentHashMap<String, BoundaryFile> boundaryFiles =
+      new ConcurrentHashMap<>();
+
   public BoundaryCounter counter;
 
   /** This identifies the subclass as National or State. */
@@ -277,171 +292,157 @@ public class Boundaries {
     }
     int nObjects = 0, nLatSkip = 0, nLonSkip = 0, nKeep = 0;
 
-    try (DataInputStream dis =
-        new DataInputStream(File2.getDecompressedBufferedInputStream(fullFileName))) {
-      // double minMinLon = 1e10, maxMaxLon = -1e10;   //file has minMinLon=6.10360875868E-4
-      // maxMaxLon=359.99969482
-      while (true) {
-        // read a path
-
-        // first value, first row should be NaN
-        if (!Double.isNaN(dis.readDouble())) {
-          // dis will be closed in finally{} below
-          throw new RuntimeException(
-              "Unexpected finite value at beginning of path in " + fullFileName);
-        }
-
-        // second value, first row is nPoints
-        int nPoints = Math2.roundToInt(dis.readDouble());
-        if (nPoints <= 0 || nPoints == Integer.MAX_VALUE) {
-          // end of file
-          break;
-        }
+    // get the paths which might be in the requested area
+    BoundaryFile file = getBoundaryFile(fullFileName);
+    BitSet candidates = file.index.candidates(requestMinX, requestMaxX, requestMinY, requestMaxY);
+    // double minMinLon = 1e10, maxMaxLon = -1e10;   //file has minMinLon=6.10360875868E-4
+    // maxMaxLon=359.99969482
+    for (int path = candidates.nextSetBit(0); path >= 0; path = candidates.nextSetBit(path + 1)) {
+      int start = file.start[path]; // the position of the path's header
+      int nPoints = Math2.roundToInt(file.doubles.get(start + 1));
+
+      // path's minLon minLat
+      double minLon = file.doubles.get(start + 2);
+      double minLat = file.doubles.get(start + 3);
+      double maxLon = file.doubles.get(start + 4);
+      double maxLat = file.doubles.get(start + 5);
+
+      // if (debug) {
+      //    minMinLon = Math.min(minMinLon, minLon);
+      //    maxMaxLon = Math.max(maxMaxLon, maxLon);
+      // }
+
+      // lat test is easy
+      if (minLat > requestMaxY || maxLat < requestMinY) {
+        // skip this path
+        nLatSkip++;
+        continue;
+      }
 
-        // read path's minLon minLat
-        double minLon = dis.readDouble();
-        double minLat = dis.readDouble();
-        double maxLon = dis.readDouble();
-        double maxLat = dis.readDouble();
-
-        // if (debug) {
-        //    minMinLon = Math.min(minMinLon, minLon);
-        //    maxMaxLon = Math.max(maxMaxLon, maxLon);
-        // }
-
-        // lat test is easy
-        if (minLat > requestMaxY || maxLat < requestMinY) {
-          // skip this path
-          nLatSkip++;
-          dis.skipBytes(nPoints * 16);
-          continue;
+      // lon test: always check for no overlap of request (min/requestMaxX)
+      //   and this path's original position, and shifted right
+      // |requestHere?| |-720|     |requestHere?|
+      // |requestHere?| |-360|     |requestHere?|
+      // |requestHere?| |original| |requestHere?|
+      // |requestHere?| |+360|     |requestHere?|
+      boolean displayIt = false;
+      for (int i = 0; i < 4; i++) {
+        doShift[i] = !(minLon + shift[i] >= requestMaxX || maxLon + shift[i] <= requestMinX);
+        if (doShift[i]) displayIt = true;
+      }
+      if (debug)
+        String2.log(
+            "> doShift -720="
+                + doShift[0]
+                + " -360="
+                + doShift[1]
+                + " 0="
+                + doShift[2]
+                + " 360="
+                + doShift[3]
+                + " requestX="
+                + requestMinX
+                + " "
+                + requestMaxX
+                + " polyLon="
+                + minLon
+                + " "
+                + maxLon);
+      if (!displayIt) {
+        // skip this path
+        nLonSkip++;
+        continue;
+      }
+      nKeep++;
+
+      // read the points
+      double oLon = 0; // irrelevant
+      double tLon = 0;
+      double tLat = 0;
+      double polyMinLon = 1e10,
+          polyMaxLon = -1e10; // see if actualy poly lon range is as promised
+      int pointsStart = start + BoundaryFile.HEADER_NDOUBLES;
+      for (int point = 0; point < nPoints; point++) {
+        oLon = tLon;
+        tLon = file.doubles.get(pointsStart + 2 * point);
+        tLat = file.doubles.get(pointsStart + 2 * point + 1);
+        if (debug) {
+          polyMinLon = Math.min(polyMinLon, tLon);
+          polyMaxLon = Math.max(polyMaxLon, tLon);
         }
-
-        // lon test: always check for no overlap of request (min/requestMaxX)
-        //   and this path's original position, and shifted right
-        // |requestHere?| |-720|     |requestHere?|
-        // |requestHere?| |-360|     |requestHere?|
-        // |requestHere?| |original| |requestHere?|
-        // |requestHere?| |+360|     |requestHere?|
-        boolean displayIt = false;
+        // cut lines going from one edge of world to the other
         for (int i = 0; i < 4; i++) {
-          doShift[i] = !(minLon + shift[i] >= requestMaxX || maxLon + shift[i] <= requestMinX);
-          if (doShift[i]) displayIt = true;
-        }
-        if (debug)
-          String2.log(
-              "> doShift -720="
-                  + doShift[0]
-                  + " -360="
-                  + doShift[1]
-                  + " 0="
-                  + doShift[2]
-                  + " 360="
-                  + doShift[3]
-                  + " requestX="
-                  + requestMinX
-                  + " "
-                  + requestMaxX
-                  + " polyLon="
-                  + minLon
-                  + " "
-                  + maxLon);
-        if (!displayIt) {
-          // skip this path
-          nLonSkip++;
-          dis.skipBytes(nPoints * 16);
-          continue;
-        }
-        nKeep++;
-
-        // read the points
-        double oLon = 0; // irrelevant
-        double tLon = 0;
-        double tLat = 0;
-        double polyMinLon = 1e10,
-            polyMaxLon = -1e10; // see if actualy poly lon range is as promised
-        for (int point = 0; point < nPoints; point++) {
-          oLon = tLon;
-          tLon = dis.readDouble();
-          tLat = dis.readDouble();
-          if (debug) {
-            polyMinLon = Math.min(polyMinLon, tLon);
-            polyMaxLon = Math.max(polyMaxLon, tLon);
-          }
-          // cut lines going from one edge of world to the other
-          for (int i = 0; i < 4; i++) {
-            if (doShift[i]) {
-              // does this polyline wrap around 0 <--> 360?
-              if (tempLon[i].size() > 0 && Math.abs(oLon - tLon) > 180.0) {
-                // try to add this subpath
-                if (oLon < tLon) // to make not disjoint,
-                lon.add(tLon + shift[i] - 360); //  shift this pt to left
-                else lon.add(tLon + shift[i] + 360); //  shift this pt to right
-                lat.add(tLat);
-                int tn =
-                    GSHHS.reduce(
-                        tempLat[i].size(),
-                        tempLon[i].array,
-                        tempLat[i].array,
-                        requestMinX,
-                        requestMaxX,
-                        requestMinY,
-                        requestMaxY);
-                tempLat[i].removeRange(tn, tempLat[i].size());
-                tempLon[i].removeRange(tn, tempLon[i].size());
-                if (tn > 0) {
-                  lon.append(tempLon[i]);
-                  lat.append(tempLat[i]);
-                  lon.add(Double.NaN); // break in line
-                  lat.add(Double.NaN);
-                  nObjects++;
-                }
-                tempLon[i].clear();
-                tempLat[i].clear();
+          if (doShift[i]) {
+            // does this polyline wrap around 0 <--> 360?
+            if (tempLon[i].size() > 0 && Math.abs(oLon - tLon) > 180.0) {
+              // try to add this subpath
+              if (oLon < tLon) // to make not disjoint,
+              lon.add(tLon + shift[i] - 360); //  shift this pt to left
+              else lon.add(tLon + shift[i] + 360); //  shift this pt to right
+              lat.add(tLat);
+              int tn =
+                  GSHHS.reduce(
+                      tempLat[i].size(),
+                      tempLon[i].array,
+                      tempLat[i].array,
+                      requestMinX,
+                      requestMaxX,
+                      requestMinY,
+                      requestMaxY);
+              tempLat[i].removeRange(tn, tempLat[i].size());
+              tempLon[i].removeRange(tn, tempLon[i].size());
+              if (tn > 0) {
+                lon.append(tempLon[i]);
+                lat.append(tempLat[i]);
+                lon.add(Double.NaN); // break in line
+                lat.add(Double.NaN);
+                nObjects++;
               }
-              tempLon[i].add(tLon + shift[i]);
-              tempLat[i].add(tLat);
+              tempLon[i].clear();
+              tempLat[i].clear();
             }
+            tempLon[i].add(tLon + shift[i]);
+            tempLat[i].add(tLat);
           }
         }
-        if (debug) {
-          if (polyMinLon < minLon || polyMaxLon > maxLon)
-            String2.pressEnterToContinue(
-                //                    String2.log(
-                "> Trouble: promisedLon="
-                    + minLon
-                    + " "
-                    + maxLon
-                    + " actualLon="
-                    + polyMinLon
-                    + " "
-                    + polyMaxLon);
-        }
+      }
+      if (debug) {
+        if (polyMinLon < minLon || polyMaxLon > maxLon)
+          String2.pressEnterToContinue(
+              //                    String2.log(
+              "> Trouble: promisedLon="
+                  + minLon
+                  + " "
+                  + maxLon
+                  + " actualLon="
+                  + polyMinLon
+                  + " "
+                  + polyMaxLon);
+      }
 
-        // try to add this subpath
-        for (int i = 0; i < 4; i++) {
-          if (tempLat[i].size() > 0) {
-            int tn =
-                GSHHS.reduce(
-                    tempLat[i].size(),
-                    tempLon[i].array,
-                    tempLat[i].array,
-                    requestMinX,
-                    requestMaxX,
-                    requestMinY,
-                    requestMaxY);
-            if (tn > 0) {
-              tempLat[i].removeRange(tn, tempLat[i].size());
-              tempLon[i].removeRange(tn, tempLon[i].size());
-              lon.append(tempLon[i]);
-              lat.append(tempLat[i]);
-              lon.add(Double.NaN); // break in line
-              lat.add(Double.NaN);
-              nObjects++;
-            }
-            tempLon[i].clear();
-            tempLat[i].clear();
+      // try to add this subpath
+      for (int i = 0; i < 4; i++) {
+        if (tempLat[i].size() > 0) {
+          int tn =
+              GSHHS.reduce(
+                  tempLat[i].size(),
+                  tempLon[i].array,
+                  tempLat[i].array,
+                  requestMinX,
+                  requestMaxX,
+                  requestMinY,
+                  requestMaxY);
+          if (tn > 0) {
+            tempLat[i].removeRange(tn, tempLat[i].size());
+            tempLon[i].removeRange(tn, tempLon[i].size());
+            lon.append(tempLon[i]);
+            lat.append(tempLat[i]);
+            lon.add(Double.NaN); // break in line
+            lat.add(Double.NaN);
+            nObjects++;
           }
+          tempLon[i].clear();
+          tempLat[i].clear();
         }
       }
     }
@@ -469,6 +470,89 @@ public class Boundaries {
     return line;
   }
 
+  /**
+   * This gets the memory-mapped, indexed version of a .double file. The index is made the first
+   * time the file is used.
+   *
+   * @param fullFileName the full name of the .double file
+   * @return the BoundaryFile
+   * @throws IOException if trouble
+   */
+  private static BoundaryFile getBoundaryFile(String fullFileName) throws IOException {
+    try {
+      return boundaryFiles.computeIfAbsent(
+          fullFileName,
+          name -> {
+            try {
+              return new BoundaryFile(name);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * A memory-mapped .double file with a TiledPolygonIndex of its paths, so readSgtLineDouble only
+   * reads the paths near the requested area. Each path is a header with HEADER_NDOUBLES doubles
+   * (NaN, nPoints, minLon, minLat, maxLon, maxLat), then nPoints lon,lat pairs. The file ends with
+   * a header with nPoints=0. This is thread-safe.
+   */
+  private static class BoundaryFile {
+    static final int HEADER_NDOUBLES = 6;
+
+    final DoubleBuffer doubles;
+    final int start[]; // the double position of each path's header
+    final TiledPolygonIndex index = new TiledPolygonIndex();
+
+    BoundaryFile(String fullFileName) throws IOException {
+      try (FileChannel channel = FileChannel.open(Path.of(fullFileName), StandardOpenOption.READ)) {
+        if (channel.size() > Integer.MAX_VALUE)
+          throw new IOException("Boundaries file is too big to map: " + fullFileName);
+        doubles =
+            channel
+                .map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                .order(ByteOrder.BIG_ENDIAN)
+                .asDoubleBuffer();
+      }
+
+      IntArray startIA = new IntArray();
+      int nDoubles = doubles.limit();
+      long pos = 0;
+      while (true) {
+        int tPos = (int) pos;
+        if (tPos + 2 > nDoubles)
+          throw new EOFException("Unexpected end of Boundaries file: " + fullFileName);
+
+        // first value, first row should be NaN
+        if (!Double.isNaN(doubles.get(tPos)))
+          throw new RuntimeException(
+              "Unexpected finite value at beginning of path in " + fullFileName);
+
+        // second value, first row is nPoints
+        int nPoints = Math2.roundToInt(doubles.get(tPos + 1));
+        if (nPoints <= 0 || nPoints == Integer.MAX_VALUE) {
+          // end of file
+          break;
+        }
+        pos += HEADER_NDOUBLES + 2L * nPoints;
+        if (pos > nDoubles)
+          throw new EOFException("Unexpected end of Boundaries file: " + fullFileName);
+
+        index.add(
+            startIA.size(),
+            doubles.get(tPos + 2), // minLon
+            doubles.get(tPos + 4), // maxLon
+            doubles.get(tPos + 3), // minLat
+            doubles.get(tPos + 5)); // maxLat
+        startIA.add(tPos);
+      }
+      start = startIA.toArray();
+    }
+  }
+
   /** This returns a stats string for Boundaries. */
   public String statsString() {
     return id
@@ -21,6 +21,7 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -74,6 +75,12 @@ public class CompoundColorMap extends ColorMap {
   protected int halfI;
   protected double halfStart;
   protected Color color[]; // used only if !continuous
+  protected boolean sortedPieces; // true if the pieces are in order and don't overlap
+  // [piece][val1024] the ARGB values for getRGB() (if continuous and not too many pieces)
+  protected int rgb1024[][];
+
+  /** rgb1024 is only made if there are this many pieces or fewer. */
+  public static final int MAX_RGB1024_PIECES = 256;
 
   /**
    * The cumulative variables are used to collect statistics. See resetStats() and getStats(). It
@@ -111,6 +118,8 @@ public class CompoundColorMap extends ColorMap {
     ccm.halfStart = halfStart;
     ccm.continuous = continuous;
     ccm.color = color;
+    ccm.sortedPieces = sortedPieces;
+    ccm.rgb1024 = rgb1024;
     return ccm;
   }
 
@@ -519,6 +528,31 @@ public class CompoundColorMap extends ColorMap {
     }
     halfI = n / 2;
     halfStart = rangeLow[halfI];
+
+    // if the pieces are in order, findPiece can use a binary search
+    sortedPieces = true;
+    for (int i = 0; i < n; i++) {
+      if (!(rangeLow[i] <= rangeHigh[i]) || (i > 0 && !(rangeHigh[i - 1] <= rangeLow[i]))) {
+        sortedPieces = false;
+        break;
+      }
+    }
+
+    // precompute the colors that getRGB() may return
+    rgb1024 = null;
+    if (continuous && n <= MAX_RGB1024_PIECES) {
+      rgb1024 = new int[n][1025];
+      for (int i = 0; i < n; i++) {
+        for (int val1024 = 0; val1024 <= 1024; val1024++) {
+          // same as getColor()'s new Color(r, g, b).getRGB()
+          rgb1024[i][val1024] =
+              0xFF000000
+                  | (rLow[i] + ((val1024 * rRange[i]) >> 10)) << 16
+                  | (gLow[i] + ((val1024 * gRange[i]) >> 10)) << 8
+                  | (bLow[i] + ((val1024 * bRange[i]) >> 10));
+        }
+      }
+    }
   }
 
   /** This crudely implements equals. returns false */
@@ -569,38 +603,11 @@ public class CompoundColorMap extends ColorMap {
     // find the appropriate transform by testing what Range2D it's in
     // TESTING ON/OFF: don't delete cumulative system, since I sometimes uncomment for test()
     // long time = System.currentTimeMillis();
-    int n = rangeLow.length;
-    int lastPiece = n - 1;
-    int foundPiece = -1;
-    for (int i = (inVal >= halfStart ? halfI : 0); i < lastPiece; i++) {
-      if (inVal >= rangeLow[i] && inVal < rangeHigh[i]) { // note < for all except last range
-        foundPiece = i;
-        break;
-      }
-    }
-    // check last range with <= (different than above) at high end
-    if (foundPiece == -1) {
-      if (inVal >= rangeLow[lastPiece] && inVal <= rangeHigh[lastPiece]) {
-        foundPiece = lastPiece;
-      } else return NaNColor;
-    }
+    int foundPiece = findPiece(inVal);
+    if (foundPiece < 0) return NaNColor;
     // TESTING ON/OFF: don't delete cumulative system, since I sometimes uncomment for test()
     // cumulativeLookupTime += System.currentTimeMillis() - time;
 
-    /*
-    //I tried binary search, but not faster
-    int foundPiece = Arrays.binarySearch(rangeLow, inVal);
-    if (foundPiece < 0) {
-        foundPiece = -foundPiece - 2;
-        //if it isn't in that range, return NaNColor
-        if (inVal < rangeLow[foundPiece] || inVal > rangeHigh[foundPiece]) {
-            Test.error("foundPiece not right");
-            return NaNColor;
-        }
-
-    } //>=0 means exact match, no need to check rangeLow and High
-    */
-
     if (continuous) {
       // the value is in range #piece
       // convert the value to be 0 - 1024/1024 of the range
@@ -627,6 +634,64 @@ public class CompoundColorMap extends ColorMap {
     }
   }
 
+  /**
+   * This returns the piece which has inVal: the first piece where rangeLow &lt;= inVal &lt;
+   * rangeHigh (or &lt;= rangeHigh for the last piece).
+   *
+   * @param inVal a finite value
+   * @return the piece number, or -1 if inVal isn't in any piece
+   */
+  protected int findPiece(double inVal) {
+    int n = rangeLow.length;
+    int lastPiece = n - 1;
+    if (sortedPieces) {
+      // the last piece where rangeLow <= inVal
+      int piece = Arrays.binarySearch(rangeLow, inVal);
+      if (piece < 0) {
+        piece = -piece - 2;
+        if (piece < 0) return -1;
+      } else {
+        // find the last of equal rangeLow's (earlier ones have rangeLow=rangeHigh)
+        while (piece < lastPiece && rangeLow[piece + 1] == inVal) piece++;
+      }
+      return inVal < rangeHigh[piece] || (piece == lastPiece && inVal <= rangeHigh[piece])
+          ? piece
+          : -1;
+    }
+
+    for (int i = (inVal >= halfStart ? halfI : 0); i < lastPiece; i++) {
+      if (inVal >= rangeLow[i] && inVal < rangeHigh[i]) { // note < for all except last range
+        return i;
+      }
+    }
+    // check last range with <= (different than above) at high end
+    if (inVal >= rangeLow[lastPiece] && inVal <= rangeHigh[lastPiece]) return lastPiece;
+    return -1;
+  }
+
+  /**
+   * This is like getColor(inVal).getRGB(), but faster (e.g., for filling an image raster) because
+   * it doesn't make a Color object. This is thread-safe.
+   *
+   * @param inVal the incoming value
+   * @return the ARGB value of the appropriate color
+   */
+  @Override
+  public int getRGB(double inVal) {
+    if (Double.isNaN(inVal)) return NaNColor.getRGB();
+    if (inVal < rangeMin) return backgroundColor.getRGB();
+    if (inVal > rangeMax) return foregroundColor.getRGB();
+
+    int foundPiece = findPiece(inVal);
+    if (foundPiece < 0) return NaNColor.getRGB();
+    if (!continuous) return color[foundPiece].getRGB();
+    if (rgb1024 != null) {
+      int val1024 = (int) Math.round((inVal - rangeLow[foundPiece]) / range1024[foundPiece]);
+      if (val1024 >= 0 && val1024 <= 1024) return rgb1024[foundPiece][val1024];
+    }
+    return getColor(inVal).getRGB();
+  }
+
   /**
    * This specifies the color that will be returned by getColor(aValueLessThanAnyRange).
    *
@@ -12,8 +12,15 @@ import gov.noaa.pfel.erddap.util.BoundaryCounter;
 import gov.noaa.pfel.erddap.util.Metrics;
 import java.awt.geom.GeneralPath;
 import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
@@ -63,12 +70,19 @@ public class GSHHS {
    * caching the GeneralPaths in memory. <br>
    * Suggested CACHE_SIZE is nPredefinedRegions + 5 (remember that 0-360 regions are different from
    * +/-180 regions). <br>
-   * Remember that land and lakes are requested/cached separately.
+   * Remember that land and lakes are requested/cached separately. <br>
+   * Requests which aren't in the cache (e.g., WMS tiles) are still fairly fast, because
+   * getPathInfo only looks at the polygons in the nearby tiles of a TiledPolygonIndex.
    */
   public static final int CACHE_SIZE = 100;
 
   private static final Map<String, GeneralPath> cache =
       Collections.synchronizedMap(new LRUCache<>(CACHE_SIZE));
+
+  /** The memory-mapped, indexed gshhs_?.b files (by full file name). */
+  private static final ConcurrentHashMap<String, GshhsFile> gshhsFiles =
+      new ConcurrentHashMap<>();
+
   public static final BoundaryCounter requestStatus =
       new BoundaryCounter("gshhs_request_total", "Requests to the GSHHS");
 
@@ -325,199 +339,167 @@ public class GSHHS {
     int yArray[] = new int[1];
     int xArray2[] = new int[1];
     int yArray2[] = new int[1];
+    int xyArray[] = new int[1];
+
+    // get the polygons which might be in the desired area
+    GshhsFile file = getGshhsFile(gshhsDir + "gshhs_" + resolution + ".b");
+    TiledPolygonIndex index = file.levelIndex(desiredLevel);
+    BitSet candidates =
+        index == null ? new BitSet() : index.candidates(westDeg, eastDeg, southDeg, northDeg);
+    for (int polygon = candidates.nextSetBit(0);
+        polygon >= 0;
+        polygon = candidates.nextSetBit(polygon + 1)) {
+      int start = file.start[polygon]; // the int position of the polygon's header
+      int n = file.ints.get(start + 1); // Number of points in this polygon
+      // = level + version << 8 + greenwich << 16 + source << 24 + river << 25
+      int flag = file.ints.get(start + 2);
+      // flag contains 5 items, as follows:
+      // low byte:    level = flag & 255: Values: 1 land, 2 lake, 3 island_in_lake, 4
+      // pond_in_island_in_lake
+      // 2nd byte:    version = (flag >> 8) & 255: Values: Should be 7 for GSHHS release 7 (i.e.,
+      // version 2.0)
+      // 3rd byte:    greenwich = (flag >> 16) & 1: Values: Greenwich is 1 if Greenwich is crossed
+      // 4th byte:    source = (flag >> 24) & 1: Values: 0 = CIA WDBII, 1 = WVS
+      // 4th byte:    river = (flag >> 25) & 1: Values: 0 = not set, 1 = river-lake and level = 2
+      //
+      int west = file.ints.get(start + 3); // min/max extent in micro-degrees    0 - 360 deg
+      int east = file.ints.get(start + 4);
+      int south = file.ints.get(start + 5);
+      int north = file.ints.get(start + 6);
+
+      int level = flag & 255;
+      int greenwich = (flag >> 16) & 1; // Values: Greenwich is 1 if Greenwich is crossed
+
+      // if (debug && west > east) String2.pressEnterToContinue("  west=" + west + "east=" + east
+      // + " greenwich=" + greenwich);
+
+      // if (greenwich == 1)
+      // String2.log("id=" + id + " level=" + level + " gwch=" + greenwich + " ver=" + ((flag >>
+      // 8) & 255) +
+      //  " n=" + n + " wesn=" + west + "/" + east + "/" + south + "/" + north);
+
+      // tests show greenwich objects have a negative west bound (e.g., -1deg)
+      // even though <0 lon values are stored +360
+      // if (!gMsgDisplayed && greenwich == 1) {
+      //    String2.log("greenwich n=" + n + " west=" + west + " east=" + east + " south=" + south
+      // + " north=" + north);
+      //    gMsgDisplayed = true;
+      // }
+
+      // tests show antarctic object has
+      // bounds (degrees) are west=0 east=360 south=-90 north=-63
+      // if (!aMsgDisplayed && south < -60000000) {
+      //    String2.log("antartic n=" + n + " west=" + west + " east=" + east + " south=" + south
+      // + " north=" + north);
+      //    aMsgDisplayed = true;
+      // }
+
+      // Do the tests for the 4 possible independent uses of this data.
+      boolean levelAndLatOK =
+          level == desiredLevel
+              && // was <=
+              south < desiredNorth
+              && north > desiredSouth;
+      boolean doSomething = false;
+      for (int i = 0; i < 4; i++) {
+        doShift[i] =
+            levelAndLatOK && west + shift[i] < desiredEast && east + shift[i] > desiredWest;
+        if (doShift[i]) doSomething = true;
+      }
 
-    // open the file
-    // String2.log(File2.hexDump(dir + "gshhs_" + resolution + ".b", 10000));
-    try (DataInputStream dis =
-        new DataInputStream(
-            File2.getDecompressedBufferedInputStream(gshhsDir + "gshhs_" + resolution + ".b"))) {
-      while (dis.available() > 0) {
-        // read the header
-        /* old GSHHS v 1.x
-        int id        = dis.readInt();
-        int n         = dis.readInt();
-        int level     = dis.readInt();
-        int west      = dis.readInt();
-        int east      = dis.readInt();
-        int south     = dis.readInt();
-        int north     = dis.readInt();
-        int area      = dis.readInt();
-        int greenwich = dis.readShort(); //1 == it crosses greenwich
-        int source    = dis.readShort();
-        */
-
-        // GSHHS v2.1.1  2011-03-14
-        // GPL License http://www.soest.hawaii.edu/pwessel/gshhs/README.TXT
-        // int id        = DataStream.readInt(true, dis, buffer); // Unique polygon id number,
-        // starting at 0
-        @SuppressWarnings("unused")
-        int unusedId = dis.readInt(); // Unique polygon id number, starting at 0
-        int n = dis.readInt(); // Number of points in this polygon
-        int flag =
-            dis.readInt(); // = level + version << 8 + greenwich << 16 + source << 24 + river << 25
-        // flag contains 5 items, as follows:
-        // low byte:    level = flag & 255: Values: 1 land, 2 lake, 3 island_in_lake, 4
-        // pond_in_island_in_lake
-        // 2nd byte:    version = (flag >> 8) & 255: Values: Should be 7 for GSHHS release 7 (i.e.,
-        // version 2.0)
-        // 3rd byte:    greenwich = (flag >> 16) & 1: Values: Greenwich is 1 if Greenwich is crossed
-        // 4th byte:    source = (flag >> 24) & 1: Values: 0 = CIA WDBII, 1 = WVS
-        // 4th byte:    river = (flag >> 25) & 1: Values: 0 = not set, 1 = river-lake and level = 2
-        //
-        int west = dis.readInt(); // min/max extent in micro-degrees    0 - 360 deg
-        int east = dis.readInt();
-        int south = dis.readInt();
-        int north = dis.readInt();
-        @SuppressWarnings("unused")
-        int unusedArea = dis.readInt(); // Area of polygon in 1/10 km^2
-        @SuppressWarnings("unused")
-        int unusedArea_full =
-            dis.readInt(); // Area of original full-resolution polygon in 1/10 km^2
-        @SuppressWarnings("unused")
-        int unusedContainer =
-            dis.readInt(); // Id of container polygon that encloses this polygon (-1 if none)
-        @SuppressWarnings("unused")
-        int unusedAncestor =
-            dis.readInt(); // Id of ancestor polygon in the full resolution set that was the source
-        // of this polygon (-1 if none)
-
-        int level = flag & 255;
-        int greenwich = (flag >> 16) & 1; // Values: Greenwich is 1 if Greenwich is crossed
-
-        // if (debug && west > east) String2.pressEnterToContinue("  west=" + west + "east=" + east
-        // + " greenwich=" + greenwich);
-
-        // if (greenwich == 1)
-        // String2.log("id=" + id + " level=" + level + " gwch=" + greenwich + " ver=" + ((flag >>
-        // 8) & 255) +
-        //  " n=" + n + " wesn=" + west + "/" + east + "/" + south + "/" + north);
-
-        // tests show greenwich objects have a negative west bound (e.g., -1deg)
-        // even though <0 lon values are stored +360
-        // if (!gMsgDisplayed && greenwich == 1) {
-        //    String2.log("greenwich n=" + n + " west=" + west + " east=" + east + " south=" + south
-        // + " north=" + north);
-        //    gMsgDisplayed = true;
-        // }
-
-        // tests show antarctic object has
-        // bounds (degrees) are west=0 east=360 south=-90 north=-63
-        // if (!aMsgDisplayed && south < -60000000) {
-        //    String2.log("antartic n=" + n + " west=" + west + " east=" + east + " south=" + south
-        // + " north=" + north);
-        //    aMsgDisplayed = true;
-        // }
-
-        // Do the tests for the 4 possible independent uses of this data.
-        boolean levelAndLatOK =
-            level == desiredLevel
-                && // was <=
-                south < desiredNorth
-                && north > desiredSouth;
-        boolean doSomething = false;
-        for (int i = 0; i < 4; i++) {
-          doShift[i] =
-              levelAndLatOK && west + shift[i] < desiredEast && east + shift[i] > desiredWest;
-          if (doShift[i]) doSomething = true;
-        }
+      // skip small lakes
+      // @param resolution 0='f'ull, 1='h'igh, 2='i'ntermediate, 3='l'ow, 4='c'rude.
+      boolean skip =
+          desiredLevel >= 2
+              && // lakes
+              ((resolution == 'c' && n < lakeMinN) || (resolution == 'l' && n < lakeMinN / 2));
 
-        // skip small lakes
-        // @param resolution 0='f'ull, 1='h'igh, 2='i'ntermediate, 3='l'ow, 4='c'rude.
-        boolean skip =
-            desiredLevel >= 2
-                && // lakes
-                ((resolution == 'c' && n < lakeMinN) || (resolution == 'l' && n < lakeMinN / 2));
+      // can I use the object?
+      if (doSomething && !skip) {
 
-        // can I use the object?
-        if (doSomething && !skip) {
+        // read the data
+        if (n + 4 > xArray.length) {
+          xArray = new int[n + 4]; // +4 for addAntarticCorners
+          yArray = new int[n + 4];
+        }
+        if (2 * n > xyArray.length) xyArray = new int[2 * n];
+        file.ints.get(start + GshhsFile.HEADER_NINTS, xyArray, 0, 2 * n); // x0, y0, x1, y1, ...
+        for (int i = 0; i < n; i++) {
+          xArray[i] = xyArray[2 * i];
+          yArray[i] = xyArray[2 * i + 1];
+          // String2.log("xarray=" +String2.toCSSVString(xArray));
+          // String2.log("yarray=" +String2.toCSSVString(yArray));
+        }
 
-          // read the data
-          if (n + 4 > xArray.length) {
-            xArray = new int[n + 4]; // +4 for addAntarticCorners
-            yArray = new int[n + 4];
-          }
-          for (int i = 0; i < n; i++) {
-            xArray[i] = dis.readInt();
-            yArray[i] = dis.readInt();
-            // String2.log("xarray=" +String2.toCSSVString(xArray));
-            // String2.log("yarray=" +String2.toCSSVString(yArray));
+        // for addAntarcticCorners, insert points at corners of map.
+        // antarctic object bounds (degrees) are west=0 east=360 south=-90 north=-63
+        // search for lon=0
+        if (south == -90000000) { // catches antarctic polygon
+          // this shows first x=360 (exact), x decreases to 0 (exact)
+          //  and y's are the perimeter (not to south pole)
+          // String2.log("antarctic n=" + n + " x[0]=" + xArray[0] +
+          //    " x[1]=" + xArray[1] + " x[n-2]=" + xArray[n-2] +
+          //    " x[n-1]=" + xArray[n-1] + "\n" +
+          //    "    y[0]=" + yArray[0] +
+          //    " y[1]=" + yArray[1] + " y[n-2]=" + yArray[n-2] +
+          //    " y[n-1]=" + yArray[n-1]);
+          if (addAntarcticCorners) {
+            // add the 3 antarctic corner points to make a polygon (1st pt = last)
+            // this leaves seam at x=0 ... x=360
+            xArray[n] = 0;
+            yArray[n] = -90000000;
+            xArray[n + 1] = 360000000;
+            yArray[n + 1] = -90000000;
+            xArray[n + 2] = 360000000;
+            yArray[n + 2] = yArray[0];
+            n += 3;
           }
+        }
 
-          // for addAntarcticCorners, insert points at corners of map.
-          // antarctic object bounds (degrees) are west=0 east=360 south=-90 north=-63
-          // search for lon=0
-          if (south == -90000000) { // catches antarctic polygon
-            // this shows first x=360 (exact), x decreases to 0 (exact)
-            //  and y's are the perimeter (not to south pole)
-            // String2.log("antarctic n=" + n + " x[0]=" + xArray[0] +
-            //    " x[1]=" + xArray[1] + " x[n-2]=" + xArray[n-2] +
-            //    " x[n-1]=" + xArray[n-1] + "\n" +
-            //    "    y[0]=" + yArray[0] +
-            //    " y[1]=" + yArray[1] + " y[n-2]=" + yArray[n-2] +
-            //    " y[n-1]=" + yArray[n-1]);
-            if (addAntarcticCorners) {
-              // add the 3 antarctic corner points to make a polygon (1st pt = last)
-              // this leaves seam at x=0 ... x=360
-              xArray[n] = 0;
-              yArray[n] = -90000000;
-              xArray[n + 1] = 360000000;
-              yArray[n + 1] = -90000000;
-              xArray[n + 2] = 360000000;
-              yArray[n + 2] = yArray[0];
-              n += 3;
+        // if polygon crosses greenwich, x's < 0 are stored +360 degrees
+        // see https://www.ngdc.noaa.gov/mgg/shorelines/gshhs.html  where is new gshhs.c?
+        // so shift left so points are continguous and match west/east of the polygon
+        if (greenwich == 1) {
+          for (int i = 0; i < n; i++)
+            if (xArray[i] > east) {
+              xArray[i] -= intShift;
+              // String2.log("greenwich left");
             }
-          }
-
-          // if polygon crosses greenwich, x's < 0 are stored +360 degrees
-          // see https://www.ngdc.noaa.gov/mgg/shorelines/gshhs.html  where is new gshhs.c?
-          // so shift left so points are continguous and match west/east of the polygon
-          if (greenwich == 1) {
-            for (int i = 0; i < n; i++)
-              if (xArray[i] > east) {
-                xArray[i] -= intShift;
-                // String2.log("greenwich left");
-              }
-          }
+        }
 
-          // test/do each doShift
-          for (int ds = 0; ds < 4; ds++) {
-            if (doShift[ds]) {
-              int tShift = shift[ds];
+        // test/do each doShift
+        for (int ds = 0; ds < 4; ds++) {
+          if (doShift[ds]) {
+            int tShift = shift[ds];
 
-              // copy the data into x/yArray2's
-              // so source data is undisturbed for other doShift
-              if (n > xArray2.length) {
-                xArray2 = new int[n];
-                yArray2 = new int[n];
-              }
-              System.arraycopy(xArray, 0, xArray2, 0, n);
-              System.arraycopy(yArray, 0, yArray2, 0, n);
-
-              // reduce and draw
-              int tn =
-                  reduce(
-                      n,
-                      xArray2,
-                      yArray2,
-                      desiredWest - tShift,
-                      desiredEast - tShift, // faster to shift desired the opposite way
-                      desiredSouth,
-                      desiredNorth); //  than to shift xArray2 the correct way
-              if (tn > 0) {
-                lon.add(Integer.MAX_VALUE); // indicates moveTo next point
-                lat.add(Integer.MAX_VALUE);
-                for (int i = 0; i < tn; i++) {
-                  lon.add(xArray2[i] + tShift); // then shift xArray2
-                  lat.add(yArray2[i]);
-                }
+            // copy the data into x/yArray2's
+            // so source data is undisturbed for other doShift
+            if (n > xArray2.length) {
+              xArray2 = new int[n];
+              yArray2 = new int[n];
+            }
+            System.arraycopy(xArray, 0, xArray2, 0, n);
+            System.arraycopy(yArray, 0, yArray2, 0, n);
+
+            // reduce and draw
+            int tn =
+                reduce(
+                    n,
+                    xArray2,
+                    yArray2,
+                    desiredWest - tShift,
+                    desiredEast - tShift, // faster to shift desired the opposite way
+                    desiredSouth,
+                    desiredNorth); //  than to shift xArray2 the correct way
+            if (tn > 0) {
+              lon.add(Integer.MAX_VALUE); // indicates moveTo next point
+              lat.add(Integer.MAX_VALUE);
+              for (int i = 0; i < tn; i++) {
+                lon.add(xArray2[i] + tShift); // then shift xArray2
+                lat.add(yArray2[i]);
               }
             }
           }
-
-        } else {
-          // skip over the data
-          long remain = 8L * n; // 2 (x,y) * 4 (bytes/int)
-          while (remain > 0) remain -= dis.skip(remain);
         }
       }
     }
@@ -532,6 +514,96 @@ public class GSHHS {
               + "ms");
   }
 
+  /**
+   * This gets the memory-mapped, indexed version of a gshhs_?.b file. The index is made the first
+   * time the file is used.
+   *
+   * @param fullFileName the full name of the gshhs_?.b file
+   * @return the GshhsFile
+   * @throws IOException if trouble
+   */
+  private static GshhsFile getGshhsFile(String fullFileName) throws IOException {
+    try {
+      return gshhsFiles.computeIfAbsent(
+          fullFileName,
+          name -> {
+            try {
+              return new GshhsFile(name);
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * A memory-mapped gshhs_?.b file with a TiledPolygonIndex of the polygons for each level, so
+   * getPathInfo only reads the polygons near the desired area. In the GSHHS v2.1.1 format (GPL
+   * License http://www.soest.hawaii.edu/pwessel/gshhs/README.TXT), each polygon is a header with
+   * HEADER_NINTS ints (id, n, flag, west, east, south, north, area, area_full, container,
+   * ancestor), then n x,y pairs of ints. The level is in the low byte of the flag (see the
+   * comments in getPathInfo). This is thread-safe.
+   */
+  private static class GshhsFile {
+    static final int HEADER_NINTS = 11;
+
+    final IntBuffer ints;
+    final int start[]; // the int position of each polygon's header
+    private final TiledPolygonIndex levelIndexes[] = new TiledPolygonIndex[256];
+
+    GshhsFile(String fullFileName) throws IOException {
+      long time = System.currentTimeMillis();
+      try (FileChannel channel = FileChannel.open(Path.of(fullFileName), StandardOpenOption.READ)) {
+        if (channel.size() > Integer.MAX_VALUE)
+          throw new IOException("GSHHS file is too big to map: " + fullFileName);
+        ints =
+            channel
+                .map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                .order(ByteOrder.BIG_ENDIAN)
+                .asIntBuffer();
+      }
+
+      IntArray startIA = new IntArray();
+      int nInts = ints.limit();
+      long pos = 0;
+      while (pos < nInts) {
+        int tPos = (int) pos;
+        if (tPos + HEADER_NINTS > nInts)
+          throw new IOException("Unexpected end of GSHHS file: " + fullFileName);
+        int n = ints.get(tPos + 1);
+        int level = ints.get(tPos + 2) & 255;
+        if (levelIndexes[level] == null) levelIndexes[level] = new TiledPolygonIndex();
+        levelIndexes[level].add(
+            startIA.size(),
+            ints.get(tPos + 3) / 1e6, // west   (micro-degrees)
+            ints.get(tPos + 4) / 1e6, // east
+            ints.get(tPos + 5) / 1e6, // south
+            ints.get(tPos + 6) / 1e6); // north
+        startIA.add(tPos);
+        pos += HEADER_NINTS + 2L * n;
+        if (n < 0 || pos > nInts)
+          throw new IOException("Unexpected end of GSHHS file: " + fullFileName);
+      }
+      start = startIA.toArray();
+      if (verbose)
+        String2.log(
+            "  GSHHS indexed "
+                + fullFileName
+                + " nPolygons="
+                + start.length
+                + " time="
+                + (System.currentTimeMillis() - time)
+                + "ms");
+    }
+
+    /** This returns the index for the polygons at a level (or null if there are none). */
+    TiledPolygonIndex levelIndex(int level) {
+      return level >= 0 && level < levelIndexes.length ? levelIndexes[level] : null;
+    }
+  }
+
   /**
    * This reduces the points outside of the desired bounds. This is simpler than clipping but serves
    * my purpose well -- far fewer points to store and draw.
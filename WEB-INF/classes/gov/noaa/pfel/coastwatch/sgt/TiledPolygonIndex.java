@@ -0,0 +1,113 @@
+/*
+ * TiledPolygonIndex Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.coastwatch.sgt;
+
+import com.cohort.array.IntArray;
+import java.util.BitSet;
+
+/**
+ * This is a spatial index of the polygons (or polylines) in a GSHHS or Boundaries file. The world
+ * is divided into a fixed grid of TILE_DEGREES x TILE_DEGREES tiles. Each tile has the numbers of
+ * the polygons whose bounding box overlaps the tile, so a request for any bounding box only needs
+ * to look at the polygons in a handful of tiles, instead of all of the polygons in the file.
+ *
+ * <p>Longitudes are treated modulo 360, so a polygon in 0..360 is found by requests in +/-180 or
+ * -720..720. The index is conservative: it may return polygons which don't actually overlap the
+ * request, so the caller must still do its usual tests.
+ *
+ * <p>Add all of the polygons (in order) before calling candidates(). After that, this is
+ * thread-safe.
+ */
+class TiledPolygonIndex {
+
+  /** The size of each tile, in degrees. */
+  public static final int TILE_DEGREES = 10;
+
+  public static final int N_COLUMNS = 360 / TILE_DEGREES;
+  public static final int N_ROWS = 180 / TILE_DEGREES;
+
+  // the polygon numbers (in ascending order) for each tile (row * N_COLUMNS + column)
+  private final IntArray tiles[] = new IntArray[N_ROWS * N_COLUMNS];
+  private int nPolygons = 0;
+
+  /**
+   * This adds a polygon to the index. Polygons must be added in ascending order of their numbers.
+   *
+   * @param polygon the polygon's number, e.g., its position in the file
+   * @param west the polygon's min lon (degrees, any range)
+   * @param east the polygon's max lon (degrees, any range)
+   * @param south the polygon's min lat (degrees)
+   * @param north the polygon's max lat (degrees)
+   */
+  public void add(int polygon, double west, double east, double south, double north) {
+    boolean unusual = !(west <= east && south <= north); // e.g., NaN: put it in every tile
+    int row0 = unusual ? 0 : row(south);
+    int row1 = unusual ? N_ROWS - 1 : row(north);
+    int col0 = unusual ? 0 : column(west);
+    int nCols = unusual ? N_COLUMNS : nColumns(west, east);
+    for (int row = row0; row <= row1; row++) {
+      for (int c = 0; c < nCols; c++) {
+        int tile = row * N_COLUMNS + (col0 + c) % N_COLUMNS;
+        if (tiles[tile] == null) tiles[tile] = new IntArray(8, false);
+        tiles[tile].add(polygon);
+      }
+    }
+    nPolygons = Math.max(nPolygons, polygon + 1);
+  }
+
+  /**
+   * This returns the numbers of the polygons which might overlap the request.
+   *
+   * @param west the request's min lon (degrees, any range)
+   * @param east the request's max lon (degrees, any range)
+   * @param south the request's min lat (degrees)
+   * @param north the request's max lat (degrees)
+   * @return a BitSet with the candidate polygon numbers (so they can be visited in order)
+   */
+  public BitSet candidates(double west, double east, double south, double north) {
+    BitSet bitSet = new BitSet(nPolygons);
+    if (!(west <= east && south <= north)) {
+      // unusual request (e.g., NaN): let the caller decide about every polygon
+      bitSet.set(0, nPolygons);
+      return bitSet;
+    }
+    int row0 = row(south);
+    int row1 = row(north);
+    int col0 = column(west);
+    int nCols = nColumns(west, east);
+    for (int row = row0; row <= row1; row++) {
+      for (int c = 0; c < nCols; c++) {
+        IntArray tile = tiles[row * N_COLUMNS + (col0 + c) % N_COLUMNS];
+        if (tile == null) continue;
+        int n = tile.size();
+        int ar[] = tile.array;
+        for (int i = 0; i < n; i++) bitSet.set(ar[i]);
+      }
+    }
+    return bitSet;
+  }
+
+  /** The number of polygons in the index. */
+  public int nPolygons() {
+    return nPolygons;
+  }
+
+  private static int row(double lat) {
+    if (!(lat > -90)) return 0; // catches NaN
+    return Math.min(N_ROWS - 1, (int) Math.floor((lat + 90) / TILE_DEGREES));
+  }
+
+  private static int column(double lon) {
+    if (!Double.isFinite(lon)) return 0;
+    return Math.floorMod((long) Math.floor(lon / TILE_DEGREES), N_COLUMNS);
+  }
+
+  /** This returns the number of columns (starting at column(west)) in the lon range. */
+  private static int nColumns(double west, double east) {
+    if (!Double.isFinite(west) || !Double.isFinite(east) || east - west >= 360) return N_COLUMNS;
+    long nCols = (long) Math.floor(east / TILE_DEGREES) - (long) Math.floor(west / TILE_DEGREES);
+    return (int) Math.min(N_COLUMNS, nCols + 1);
+  }
+}
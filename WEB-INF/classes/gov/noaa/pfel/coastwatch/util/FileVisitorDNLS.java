@@ -6,6 +6,7 @@ package gov.noaa.pfel.coastwatch.util;
 
 import com.cohort.array.Attributes;
 import com.cohort.array.DoubleArray;
+import com.cohort.array.IntArray;
 import com.cohort.array.LongArray;
 import com.cohort.array.PrimitiveArray;
 import com.cohort.array.StringArray;
@@ -23,22 +24,36 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemLoopException;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
@@ -143,6 +158,16 @@ public class FileVisitorDNLS extends SimpleFileVisitor<Path> {
   /** Max allowed is 1000. Only use smaller number for testing. */
   public static int S3_MAX_KEYS = 1000;
 
+  /**
+   * The maximum number of threads used to crawl the subdirectories of a local directory or the
+   * subdirectories (prefixes) of an S3 bucket at once. 1 means don't use other threads. ERDDAP
+   * sets this from setup.xml's &lt;fileVisitorNThreads&gt;. The pool is made the first time it is
+   * needed, so changes after that have no effect.
+   */
+  public static volatile int nCrawlThreads = 1;
+
+  private static ForkJoinPool crawlPool;
+
   /** Don't change this here. Only use a smaller number for testing. */
   public static int S3_CHUNK_TO_FILE = 10000;
 
@@ -165,6 +190,10 @@ public class FileVisitorDNLS extends SimpleFileVisitor<Path> {
   public LongArray lastModifiedPA;
   public LongArray sizePA;
 
+  // for crawl(): the FileVisitorDNLS that started the crawl (maybe this) and its stop signal
+  private FileVisitorDNLS crawlOrigin = this;
+  private volatile boolean stopCrawling = false;
+
   /**
    * The constructor. Usage: see useIt().
    *
@@ -201,6 +230,29 @@ public class FileVisitorDNLS extends SimpleFileVisitor<Path> {
     sizePA = (LongArray) table.getColumn(SIZE);
   }
 
+  /**
+   * This makes a FileVisitorDNLS with the same settings as other (for the same crawl), but with a
+   * new, empty table.
+   */
+  private FileVisitorDNLS(FileVisitorDNLS other) {
+    super();
+    dir = other.dir;
+    toSlash = other.toSlash;
+    fromSlash = other.fromSlash;
+    fileNameRegex = other.fileNameRegex;
+    fileNamePattern = other.fileNamePattern;
+    recursive = other.recursive;
+    pathRegex = other.pathRegex;
+    pathPattern = other.pathPattern;
+    directoriesToo = other.directoriesToo;
+    crawlOrigin = other.crawlOrigin;
+    table = makeEmptyTable();
+    directoryPA = (StringArray) table.getColumn(DIRECTORY);
+    namePA = (StringArray) table.getColumn(NAME);
+    lastModifiedPA = (LongArray) table.getColumn(LASTMODIFIED);
+    sizePA = (LongArray) table.getColumn(SIZE);
+  }
+
   /** Invoked before entering a directory. */
   @Override
   public FileVisitResult preVisitDirectory(Path tDir, BasicFileAttributes attrs)
@@ -319,6 +371,178 @@ public class FileVisitorDNLS extends SimpleFileVisitor<Path> {
     return FileVisitResult.CONTINUE;
   }
 
+  /** This returns the pool used to crawl directories in parallel (making it if needed). */
+  private static synchronized ForkJoinPool crawlPool() {
+    if (crawlPool == null) crawlPool = new ForkJoinPool(Math.max(1, nCrawlThreads));
+    return crawlPool;
+  }
+
+  /**
+   * This is like Files.walkFileTree(startDir, FOLLOW_LINKS, Integer.MAX_VALUE, this), but the
+   * subdirectories of each directory are visited in parallel (with at most nCrawlThreads threads).
+   * This is much faster when listing a directory takes a long time (e.g., on NFS). The rows are in
+   * the same order that walkFileTree would have made.
+   *
+   * @param startDir the starting directory
+   * @return the table with the results (maybe not this.table)
+   * @throws IOException if trouble (notably, "Too many open files")
+   */
+  private Table crawl(Path startDir) throws IOException {
+    BasicFileAttributes attrs;
+    try {
+      attrs = readCrawlAttributes(startDir);
+    } catch (IOException e) {
+      visitFileFailed(startDir, e);
+      return table;
+    }
+    if (!attrs.isDirectory()) {
+      visitFile(startDir, attrs);
+      return table;
+    }
+
+    ForkJoinTask<Table> task = crawlPool().submit(new CrawlTask(this, startDir, attrs, List.of()));
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      stopCrawling = true;
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("FileVisitorDNLS.crawl(" + startDir + ") was interrupted.");
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException uioe) throw uioe.getCause();
+      if (cause instanceof RuntimeException re) throw re;
+      if (cause instanceof Error er) throw er;
+      throw new IOException(cause);
+    }
+  }
+
+  /**
+   * This reads a file's attributes the way walkFileTree does with FOLLOW_LINKS: if the target of a
+   * symbolic link doesn't exist, this gets the link's attributes.
+   */
+  private static BasicFileAttributes readCrawlAttributes(Path path) throws IOException {
+    try {
+      return Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (IOException e) {
+      return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+  }
+
+  /** A directory above the one being crawled (to detect loops caused by symbolic links). */
+  private record CrawlAncestor(Path dir, Object fileKey) {}
+
+  /** This visits one directory (and, in parallel, its subdirectories) for crawl(). */
+  private static class CrawlTask extends RecursiveTask<Table> {
+    private final FileVisitorDNLS settings;
+    private final Path tDir;
+    private final BasicFileAttributes attrs;
+    private final List<CrawlAncestor> ancestors;
+
+    CrawlTask(
+        FileVisitorDNLS tSettings,
+        Path dir,
+        BasicFileAttributes tAttrs,
+        List<CrawlAncestor> tAncestors) {
+      settings = tSettings;
+      tDir = dir;
+      attrs = tAttrs;
+      ancestors = tAncestors;
+    }
+
+    @Override
+    protected Table compute() {
+      try {
+        return visit();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private Table visit() throws IOException {
+      if (settings.crawlOrigin.stopCrawling)
+        throw new CancellationException("FileVisitorDNLS.crawl was stopped.");
+      FileVisitorDNLS fv = new FileVisitorDNLS(settings);
+
+      // like walkFileTree: if the directory can't be opened, it isn't visited
+      DirectoryStream<Path> stream;
+      try {
+        stream = Files.newDirectoryStream(tDir);
+      } catch (IOException e) {
+        fv.visitFileFailed(tDir, e);
+        return fv.table;
+      }
+
+      List<CrawlTask> subtasks = new ArrayList<>();
+      IntArray subtaskRows = new IntArray(); // where each subtask's rows go in fv.table
+      try (stream) {
+        if (fv.preVisitDirectory(tDir, attrs) != FileVisitResult.CONTINUE) return fv.table;
+
+        List<CrawlAncestor> subAncestors = null;
+        for (Path entry : stream) {
+          BasicFileAttributes entryAttrs;
+          try {
+            entryAttrs = readCrawlAttributes(entry);
+          } catch (IOException e) {
+            fv.visitFileFailed(entry, e);
+            continue;
+          }
+          if (!entryAttrs.isDirectory()) {
+            fv.visitFile(entry, entryAttrs);
+            continue;
+          }
+
+          if (subAncestors == null) {
+            subAncestors = new ArrayList<>(ancestors);
+            subAncestors.add(new CrawlAncestor(tDir, attrs.fileKey()));
+          }
+          if (isLoop(entry, entryAttrs.fileKey(), subAncestors)) {
+            fv.visitFileFailed(entry, new FileSystemLoopException(entry.toString()));
+            continue;
+          }
+          CrawlTask subtask = new CrawlTask(settings, entry, entryAttrs, subAncestors);
+          subtask.fork();
+          subtasks.add(subtask);
+          subtaskRows.add(fv.table.nRows());
+        }
+      } catch (DirectoryIteratorException e) {
+        throw e.getCause();
+      }
+      if (subtasks.isEmpty()) return fv.table;
+
+      // splice the subdirectories' rows into this directory's rows
+      Table result = makeEmptyTable();
+      int nCols = result.nColumns();
+      int fromRow = 0;
+      for (int i = 0; i < subtasks.size(); i++) {
+        int toRow = subtaskRows.get(i);
+        for (int col = 0; col < nCols; col++)
+          result.getColumn(col).addFromPA(fv.table.getColumn(col), fromRow, toRow - fromRow);
+        fromRow = toRow;
+        result.append(subtasks.get(i).join());
+      }
+      int toRow = fv.table.nRows();
+      for (int col = 0; col < nCols; col++)
+        result.getColumn(col).addFromPA(fv.table.getColumn(col), fromRow, toRow - fromRow);
+      return result;
+    }
+
+    /** Like walkFileTree, this detects if dir is the same as one of its ancestors. */
+    private static boolean isLoop(Path dir, Object fileKey, List<CrawlAncestor> ancestors) {
+      for (CrawlAncestor ancestor : ancestors) {
+        if (fileKey != null && ancestor.fileKey() != null) {
+          if (fileKey.equals(ancestor.fileKey())) return true;
+        } else {
+          try {
+            if (Files.isSameFile(dir, ancestor.dir())) return true;
+          } catch (IOException | SecurityException e) {
+            // ignore, like walkFileTree
+          }
+        }
+      }
+      return false;
+    }
+  }
+
   /**
    * This returns an empty table with Dir,Name,LastMod,Size columns suitable for the instance table
    * or oneStep.
@@ -366,6 +590,249 @@ public class FileVisitorDNLS extends SimpleFileVisitor<Path> {
     return sourceTable;
   }
 
+  /**
+   * This collects the results of listing the objects in an AWS S3 bucket for oneStep(). The pages
+   * of the listing may come from several threads.
+   */
+  private static class S3Listing {
+    private final String tDir, baseURL;
+    private final Pattern fileNameRegexPattern, pathRegexPattern;
+    private final boolean recursive, directoriesToo;
+
+    // I wanted to generate lastMod for dir based on lastMod of files
+    // but it would be inconsistent for different requests (recursive, fileNameRegex).
+    // so just a set of dir names.
+    private final HashSet<String> dirHashSet = new HashSet<>();
+    private final Table table = makeEmptyTable();
+    private final StringArray directoryPA = (StringArray) table.getColumn(DIRECTORY);
+    private final StringArray namePA = (StringArray) table.getColumn(NAME);
+    private final LongArray lastModifiedPA = (LongArray) table.getColumn(LASTMODIFIED);
+    private final LongArray sizePA = (LongArray) table.getColumn(SIZE);
+
+    // results may be slow (>12 hours) and huge (>10GB).
+    // So, if >10000 files, accumulate results to a temporary jsonlCSV file
+    // (not in memory) and read when done.
+    private final String dnlsFileName;
+    private boolean writtenToFile = false;
+    private volatile boolean stop = false;
+
+    S3Listing(
+        String tDir,
+        String baseURL,
+        String tFileNameRegex,
+        boolean tRecursive,
+        String tPathRegex,
+        boolean tDirectoriesToo) {
+      this.tDir = tDir;
+      this.baseURL = baseURL;
+      fileNameRegexPattern = Pattern.compile(tFileNameRegex);
+      pathRegexPattern = Pattern.compile(tPathRegex);
+      recursive = tRecursive;
+      directoriesToo = tDirectoriesToo;
+      dnlsFileName =
+          FILE_VISITOR_DIRECTORY
+              + String2.modifyToBeFileNameSafe(tDir)
+              + Calendar2.getCompactCurrentISODateTimeStringLocal()
+              + "_"
+              + Math2.random(1000000)
+              + ".jsonlCsv";
+    }
+
+    /**
+     * This lists the objects which start with prefix and adds them to the results.
+     *
+     * @param delimiter null (for a recursive listing) or "/"
+     */
+    void list(S3Client s3client, String bucketName, String prefix, String delimiter)
+        throws Exception {
+      ListObjectsV2Request request =
+          ListObjectsV2Request.builder()
+              .bucket(bucketName)
+              .prefix(prefix)
+              .delimiter(delimiter)
+              // maxKeys is only useful for setting the max to <1000, so I only set it lower for
+              // testing.
+              .maxKeys(S3_MAX_KEYS)
+              .build();
+
+      // complete example (start at line 98):
+      // https://github.com/awsdocs/aws-doc-sdk-examples/blob/main/javav2/example_code/s3/src/main/java/com/example/s3/S3ObjectOperations.java
+      // but example is stupid: sets maxKeys to 1 so it makes a separate request for each
+      // item!
+      int nParts = 0;
+      ListObjectsV2Iterable pagination = s3client.listObjectsV2Paginator(request);
+      for (ListObjectsV2Response response : pagination) {
+        if (debugMode) String2.log(">> maxKeys=" + S3_MAX_KEYS + " part #" + nParts++);
+        add(response);
+      }
+    }
+
+    /**
+     * For a recursive listing, this lists the objects in the prefix's "directory", then lists
+     * each of its "subdirectories" (which might match pathRegex) in parallel (with at most
+     * nCrawlThreads threads). S3 can only list one page at a time for each request, so this is much
+     * faster for buckets with lots of objects in several subdirectories.
+     */
+    void listInParallel(S3Client s3client, String bucketName, String prefix) throws Exception {
+      ListObjectsV2Request request =
+          ListObjectsV2Request.builder()
+              .bucket(bucketName)
+              .prefix(prefix)
+              .delimiter("/")
+              .maxKeys(S3_MAX_KEYS)
+              .build();
+      List<Callable<Object>> tasks = new ArrayList<>();
+      for (ListObjectsV2Response response : s3client.listObjectsV2Paginator(request)) {
+        add(response); // the objects in this dir
+        for (CommonPrefix commonPrefix : response.commonPrefixes()) {
+          String subPrefix = commonPrefix.prefix(); // e.g., BCSD/
+          Matcher matcher = pathRegexPattern.matcher(baseURL + subPrefix);
+          if (!matcher.matches() && !matcher.hitEnd()) {
+            if (debugMode) String2.log(">> skip prefix=" + subPrefix);
+            continue;
+          }
+          tasks.add(
+              () -> {
+                try {
+                  list(s3client, bucketName, subPrefix, null);
+                } catch (Exception e) {
+                  stop = true; // the other tasks stop soon
+                  throw e;
+                }
+                return null;
+              });
+        }
+      }
+
+      // throw the first real error (not a CancellationException caused by stop)
+      Exception cancelled = null;
+      for (Future<Object> future : crawlPool().invokeAll(tasks)) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          Exception cause = e.getCause() instanceof Exception ec ? ec : e;
+          if (!(cause instanceof CancellationException)) throw cause;
+          cancelled = cause;
+        }
+      }
+      if (cancelled != null) throw cancelled;
+    }
+
+    /** This adds the information from one page of the listing. */
+    private synchronized void add(ListObjectsV2Response response) throws IOException {
+      if (stop) throw new CancellationException("FileVisitorDNLS S3 listing was stopped.");
+
+      // get common prefixes (only when not recursive: then the objects are just in tDir)
+      if (directoriesToo && !recursive) {
+        List<CommonPrefix> list = response.commonPrefixes();
+        for (CommonPrefix commonPrefix : list) {
+          String td2 = baseURL + commonPrefix.prefix(); // list.get(i)= e.g., BCSD/
+          dirHashSet.add(td2);
+          // String2.log(">> add dir=" + td2);
+        }
+      }
+
+      List<S3Object> objects = response.contents();
+      for (S3Object s3Object : objects) {
+        String keyFullName = s3Object.key();
+        String keyDir = File2.getDirectory(baseURL + keyFullName);
+        String keyName = File2.getNameAndExtension(keyFullName);
+        boolean matchesPath =
+            keyDir.startsWith(tDir)
+                && // it should
+                (keyDir.length() == tDir.length()
+                    || (recursive && pathRegexPattern.matcher(keyDir).matches()));
+        if (debugMode) String2.log(">> key=" + keyFullName);
+        // + "\n>> matchesPathRegex=" + matchesPath);
+        if (matchesPath) {
+
+          // store this dir
+          if (directoriesToo) {
+            // S3 only returns object keys. I must infer/collect directories.
+            // Store this dir and parents back to tDir.
+            String choppedKeyDir = keyDir;
+            while (choppedKeyDir.length() >= tDir.length()) {
+              // String2.log(">> choppedKeyDir=" + choppedKeyDir);
+              if (!dirHashSet.add(choppedKeyDir))
+                break; // hash set already had this, so it will already have parents
+
+              // chop off last subdirectory
+              choppedKeyDir =
+                  File2.getDirectory(
+                      choppedKeyDir.substring(
+                          0, choppedKeyDir.length() - 1)); // remove trailing /
+            }
+          }
+
+          // store this file's information
+          // Sometimes directories appear as files named "" with size=0.
+          // I don't store those as files.
+          boolean matches =
+              keyName.length() > 0 && fileNameRegexPattern.matcher(keyName).matches();
+          if (matches) {
+            directoryPA.add(keyDir);
+            namePA.add(keyName);
+            lastModifiedPA.add(s3Object.lastModified().toEpochMilli());
+            sizePA.add(s3Object.size()); // long
+          }
+        }
+      }
+
+      // write a chunk to file?
+      if (table.nRows() > S3_CHUNK_TO_FILE) writeChunk();
+    }
+
+    private void writeChunk() throws IOException {
+      if (!writtenToFile)
+        File2.makeDirectory(File2.getDirectory(dnlsFileName)); // ensure dir exists
+      table.writeJsonlCSV(dnlsFileName, writtenToFile); // append
+      table.removeAllRows();
+      writtenToFile = true;
+    }
+
+    /** This returns the sorted results. Call this after the listing is done. */
+    synchronized Table finish() throws Exception {
+      Table result = table;
+      if (writtenToFile) {
+        writeChunk(); // write final chunk
+
+        // read the file
+        result = new Table();
+        result.readJsonlCSV(
+            dnlsFileName,
+            new StringArray(new String[] {DIRECTORY, NAME, LASTMODIFIED, SIZE}),
+            new String[] {"String", "String", "long", "long"},
+            false); // simplify
+        int col = result.findColumnNumber(LASTMODIFIED);
+        result.setColumn(col, new LongArray(result.getColumn(col)).setMaxIsMV(true));
+        col = result.findColumnNumber(SIZE);
+        result.setColumn(col, new LongArray(result.getColumn(col)).setMaxIsMV(true));
+        // if no error:
+        File2.delete(dnlsFileName);
+      } // else use table as is
+
+      // add directories to the table
+      if (directoriesToo) {
+        // if writtenToFile, this is a new table. Find new pa's
+        StringArray tDirectoryPA = (StringArray) result.getColumn(DIRECTORY);
+        StringArray tNamePA = (StringArray) result.getColumn(NAME);
+        LongArray tLastModifiedPA = (LongArray) result.getColumn(LASTMODIFIED);
+        LongArray tSizePA = (LongArray) result.getColumn(SIZE);
+
+        for (String s : dirHashSet) {
+          // String2.log(">> add dir=" + s);
+          tDirectoryPA.add(s);
+          tNamePA.add("");
+          tLastModifiedPA.add(Long.MAX_VALUE);
+          tSizePA.add(Long.MAX_VALUE);
+        }
+      }
+
+      result.leftToRightSortIgnoreCase(2);
+      return result;
+    }
+  }
+
   /**
    * This is a convenience method for using this class.
    *
@@ -414,26 +881,6 @@ public class FileVisitorDNLS extends SimpleFileVisitor<Path> {
           // http://nasa-nex.s3.us-west-2.amazonaws.com/NEX-DCP30/BCSD/rcp26/mon/atmos/tasmin/r1i1p1/v1.0/CONUS/tasmin_amon_BCSD_rcp26_r1i1p1_CONUS_NorESM1-M_209601-209912.nc
           //  They are just object keys with internal slashes.
           // So specify prefix in request.
-          Pattern fileNameRegexPattern = Pattern.compile(tFileNameRegex);
-          Pattern pathRegexPattern = Pattern.compile(tPathRegex);
-          Table table = makeEmptyTable();
-          StringArray directoryPA = (StringArray) table.getColumn(DIRECTORY);
-          StringArray namePA = (StringArray) table.getColumn(NAME);
-          LongArray lastModifiedPA = (LongArray) table.getColumn(LASTMODIFIED);
-          LongArray sizePA = (LongArray) table.getColumn(SIZE);
-
-          // results may be slow (>12 hours) and huge (>10GB).
-          // So, if >10000 files, accumulate results to a temporary jsonlCSV file
-          // (not in memory) and read when done.
-          String dnlsFileName =
-              FILE_VISITOR_DIRECTORY
-                  + String2.modifyToBeFileNameSafe(tDir)
-                  + Calendar2.getCompactCurrentISODateTimeStringLocal()
-                  + "_"
-                  + Math2.random(1000000)
-                  + ".jsonlCsv";
-          boolean writtenToFile = false;
-
           String bucketName = bro[0];
           String region = bro[1];
           String prefix = bro[2];
@@ -442,147 +889,23 @@ public class FileVisitorDNLS extends SimpleFileVisitor<Path> {
             String2.log("FileVisitorDNLS.oneStep getting info from AWS S3 at" + "\nURL=" + tDir);
           // + " baseUrl=" + baseURL +
           // "\nbucket=" + bucketName + " prefix=" + prefix);
+          S3Listing listing =
+              new S3Listing(
+                  tDir, baseURL, tFileNameRegex, tRecursive, tPathRegex, tDirectoriesToo);
 
-          // I wanted to generate lastMod for dir based on lastMod of files
-          // but it would be inconsistent for different requests (recursive, fileNameRegex).
-          // so just a set of dir names.
           // https://docs.aws.amazon.com/AmazonS3/latest/API/API_ListObjectsV2.html says v2 is the
           // recommended approach.
           // https://docs.aws.amazon.com/AWSJavaSDK/latest/javadoc/index.html?com/amazonaws/services/s3/model/ListObjectsV2Request.html
-          HashSet<String> dirHashSet = new HashSet<>();
-          ListObjectsV2Request.Builder reqBuilder =
-              ListObjectsV2Request.builder()
-                  .bucket(bucketName)
-                  .prefix(prefix)
-                  .maxKeys(
-                      S3_MAX_KEYS); // maxKeys is only useful for setting the max to <1000, so I
-          // only set lower for testing.
-
-          if (!tRecursive)
-            reqBuilder =
-                reqBuilder.delimiter("/"); // Using it just gets files in this dir (not subdir)
-
-          ListObjectsV2Request request = reqBuilder.build();
           try (S3Client s3client = File2.getS3Client(region)) {
-
-            // complete example (start at line 98):
-            // https://github.com/awsdocs/aws-doc-sdk-examples/blob/main/javav2/example_code/s3/src/main/java/com/example/s3/S3ObjectOperations.java
-            // but example is stupid: sets maxKeys to 1 so it makes a separate request for each
-            // item!
-            int nParts = 0;
-            ListObjectsV2Iterable pagination = s3client.listObjectsV2Paginator(request);
-            for (ListObjectsV2Response response : pagination) {
-
-              if (debugMode) String2.log(">> maxKeys=" + S3_MAX_KEYS + " part #" + nParts++);
-
-              // get common prefixes
-              if (tDirectoriesToo) {
-                List<CommonPrefix> list = response.commonPrefixes();
-                for (CommonPrefix commonPrefix : list) {
-                  String td2 = baseURL + commonPrefix.prefix(); // list.get(i)= e.g., BCSD/
-                  dirHashSet.add(td2);
-                  // String2.log(">> add dir=" + td2);
-                }
-              }
-
-              List<S3Object> objects = response.contents();
-              for (S3Object s3Object : objects) {
-                String keyFullName = s3Object.key();
-                String keyDir = File2.getDirectory(baseURL + keyFullName);
-                String keyName = File2.getNameAndExtension(keyFullName);
-                boolean matchesPath =
-                    keyDir.startsWith(tDir)
-                        && // it should
-                        (keyDir.length() == tDir.length()
-                            || (tRecursive && pathRegexPattern.matcher(keyDir).matches()));
-                if (debugMode) String2.log(">> key=" + keyFullName);
-                // + "\n>> matchesPathRegex=" + matchesPath);
-                if (matchesPath) {
-
-                  // store this dir
-                  if (tDirectoriesToo) {
-                    // S3 only returns object keys. I must infer/collect directories.
-                    // Store this dir and parents back to tDir.
-                    String choppedKeyDir = keyDir;
-                    while (choppedKeyDir.length() >= tDir.length()) {
-                      // String2.log(">> choppedKeyDir=" + choppedKeyDir);
-                      if (!dirHashSet.add(choppedKeyDir))
-                        break; // hash set already had this, so it will already have parents
-
-                      // chop off last subdirectory
-                      choppedKeyDir =
-                          File2.getDirectory(
-                              choppedKeyDir.substring(
-                                  0, choppedKeyDir.length() - 1)); // remove trailing /
-                    }
-                  }
-
-                  // store this file's information
-                  // Sometimes directories appear as files named "" with size=0.
-                  // I don't store those as files.
-                  boolean matches =
-                      keyName.length() > 0 && fileNameRegexPattern.matcher(keyName).matches();
-                  // if (debugMode) String2.log(">> matchesFileNameRegex=(" + tFileNameRegex +
-                  // ")="
-                  // +
-                  // matches);
-                  if (matches) {
-                    directoryPA.add(keyDir);
-                    namePA.add(keyName);
-                    lastModifiedPA.add(s3Object.lastModified().toEpochMilli());
-                    sizePA.add(s3Object.size()); // long
-                  }
-                }
-
-                // write a chunk to file?
-                if ((response.isTruncated() && table.nRows() > S3_CHUNK_TO_FILE)
-                    || // write a chunk
-                    (!response.isTruncated() && writtenToFile)) { // write final chunk
-                  if (!writtenToFile)
-                    File2.makeDirectory(File2.getDirectory(dnlsFileName)); // ensure dir exists
-                  table.writeJsonlCSV(dnlsFileName, writtenToFile); // append
-                  table.removeAllRows();
-                  writtenToFile = true;
-                }
-              }
-            }
-          }
-
-          // read the file
-          if (writtenToFile) {
-            table = new Table();
-            table.readJsonlCSV(
-                dnlsFileName,
-                new StringArray(new String[] {DIRECTORY, NAME, LASTMODIFIED, SIZE}),
-                new String[] {"String", "String", "long", "long"},
-                false); // simplify
-            int col = table.findColumnNumber(LASTMODIFIED);
-            table.setColumn(col, new LongArray(table.getColumn(col)).setMaxIsMV(true));
-            col = table.findColumnNumber(SIZE);
-            table.setColumn(col, new LongArray(table.getColumn(col)).setMaxIsMV(true));
-            // if no error:
-            File2.delete(dnlsFileName);
-          } // else use table as is
-
-          // add directories to the table
-          if (tDirectoriesToo) {
-            // if writtenToFile, this is a new table. Find new pa's
-            directoryPA = (StringArray) table.getColumn(DIRECTORY);
-            namePA = (StringArray) table.getColumn(NAME);
-            lastModifiedPA = (LongArray) table.getColumn(LASTMODIFIED);
-            sizePA = (LongArray) table.getColumn(SIZE);
-
-            for (String s : dirHashSet) {
-              // String2.log(">> add dir=" + s);
-              directoryPA.add(s);
-              namePA.add("");
-              lastModifiedPA.add(Long.MAX_VALUE);
-              sizePA.add(Long.MAX_VALUE);
+            if (tRecursive && nCrawlThreads > 1) {
+              listing.listInParallel(s3client, bucketName, prefix);
+            } else {
+              // Without a delimiter, the listing is recursive.
+              // Using the delimiter just gets files in this dir (not subdir).
+              listing.list(s3client, bucketName, prefix, tRecursive ? null : "/");
             }
           }
-
-          table.leftToRightSortIgnoreCase(2);
-          return table;
+          return listing.finish();
 
         } catch (Exception e) {
           throw new IOException(e);
@@ -704,26 +1027,33 @@ public class FileVisitorDNLS extends SimpleFileVisitor<Path> {
     //  http://bugs.java.com/bugdatabase/view_bug.do?bug_id=4237760
     FileVisitorDNLS fv =
         new FileVisitorDNLS(tDir, tFileNameRegex, tRecursive, tPathRegex, tDirectoriesToo);
-    EnumSet<FileVisitOption> opts = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
-    // 2021-02-16 I revised so it throws IOException if "Too many open files"
-    Files.walkFileTree(
-        FileSystems.getDefault().getPath(tDir),
-        opts, // follow symbolic links
-        Integer.MAX_VALUE, // maxDepth
-        fv);
-    fv.table.leftToRightSortIgnoreCase(2);
+    Table table;
+    if (tRecursive && nCrawlThreads > 1) {
+      // crawl the subdirectories in parallel
+      table = fv.crawl(FileSystems.getDefault().getPath(tDir));
+    } else {
+      EnumSet<FileVisitOption> opts = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+      // 2021-02-16 I revised so it throws IOException if "Too many open files"
+      Files.walkFileTree(
+          FileSystems.getDefault().getPath(tDir),
+          opts, // follow symbolic links
+          Integer.MAX_VALUE, // maxDepth
+          fv);
+      table = fv.table;
+    }
+    table.leftToRightSortIgnoreCase(2);
     if (verbose)
       String2.log(
           "FileVisitorDNLS.oneStep("
               + tDir
               + ") finished successfully. n="
-              + fv.directoryPA.size()
+              + table.nRows()
               + " time="
               + (System.currentTimeMillis() - time)
               + "ms"
           // + (debugMode? "\n" + MustBe.stackTrace() : "")
           );
-    return fv.table;
+    return table;
   }
 
   /**
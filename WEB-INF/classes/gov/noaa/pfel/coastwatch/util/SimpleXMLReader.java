@@ -36,6 +36,7 @@ public class SimpleXMLReader {
   private String endWhiteSpace = "";
   private final StringBuilder tagBuffer = new StringBuilder();
   private long lineNumber = 1, tagNumber = 0;
+  private StringBuilder recording = null; // null if not recording
 
   /**
    * This constructor ensures that the first tag starts with "&lt;?xml " and ends with "?&gt;", and
@@ -133,6 +134,42 @@ public class SimpleXMLReader {
     return lineNumber;
   }
 
+  /**
+   * This sets the current line number, e.g., if the xml being read is an excerpt from a longer file
+   * (see startRecording()), so that error messages refer to line numbers in the longer file.
+   *
+   * @param tLineNumber the line number in the source xml file
+   */
+  public void setLineNumber(long tLineNumber) {
+    lineNumber = tLineNumber;
+  }
+
+  /**
+   * This starts recording the raw xml which is read after the current tag, e.g., so that the xml
+   * for one dataset can be parsed later (by another SimpleXMLReader).
+   */
+  public void startRecording() {
+    recording = new StringBuilder();
+  }
+
+  /**
+   * This stops recording.
+   *
+   * @return the raw xml which was read since startRecording() (through the end of the current tag)
+   */
+  public String stopRecording() {
+    String s = recording == null ? "" : recording.toString();
+    recording = null;
+    return s;
+  }
+
+  /** This reads one char from the reader (and records it, if recording). */
+  private int read() throws Exception {
+    int iCh = reader.read();
+    if (recording != null && iCh >= 0) recording.append((char) iCh);
+    return iCh;
+  }
+
   /**
    * This returns the requested item from the stack of tags. Call this right after nextTag().
    *
@@ -296,13 +333,13 @@ public class SimpleXMLReader {
         tagBuffer.setLength(0); // must be inside the do loop
 
         // read 'content' to start of tag "<"
-        int iCh = reader.read();
+        int iCh = read();
         if (iCh < 0) throw new Exception("end of file");
         else if (iCh == 10) lineNumber++;
         char ch = (char) iCh;
         while (ch != '<') {
           if (ch != '\r') contentBuffer.append(ch);
-          iCh = reader.read();
+          iCh = read();
           if (iCh < 0) throw new Exception("end of file");
           else if (iCh == 10) lineNumber++;
           ch = (char) iCh;
@@ -311,13 +348,13 @@ public class SimpleXMLReader {
         // read to end of tag ">", or end of comment tag "-->", or end of cdata <![CDATA[  ]]>
         boolean done = false;
         while (!done) {
-          iCh = reader.read();
+          iCh = read();
           if (iCh < 0) throw new Exception("end of file");
           else if (iCh == 10) lineNumber++;
           ch = (char) iCh;
           while (ch != '>') {
             if (ch != '\r') tagBuffer.append(ch);
-            iCh = reader.read();
+            iCh = read();
             if (iCh < 0) throw new Exception("end of file");
             else if (iCh == 10) lineNumber++;
             ch = (char) iCh;
@@ -64,6 +64,7 @@ import gov.noaa.pfel.erddap.util.CfToFromGcmd;
 import gov.noaa.pfel.erddap.util.EDConfig;
 import gov.noaa.pfel.erddap.util.EDMessages.Message;
 import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.RequestAdmission;
 import gov.noaa.pfel.erddap.util.Subscriptions;
 import gov.noaa.pfel.erddap.util.TaskThread;
 import gov.noaa.pfel.erddap.util.TranslateMessages;
@@ -510,6 +511,16 @@ public class Erddap extends HttpServlet {
     return "/" + EDStatic.config.warName + "/" + requestUrl.substring(protocolStart);
   }
 
+  /**
+   * Small static content (e.g., erddap.css) is exempt from the limits on the number of active
+   * requests.
+   */
+  private boolean isStaticContent(HttpServletRequest request) {
+    String urlWithoutLang = getUrlWithoutLang(request);
+    return urlWithoutLang.startsWith("/" + EDStatic.config.warName + "/download/")
+        || urlWithoutLang.startsWith("/" + EDStatic.config.warName + "/images/");
+  }
+
   /**
    * This responds to a "get" request from the user by extending HttpServlet's doGet. Mostly, this
    * just identifies the protocol (e.g., "tabledap") in the requestUrl (right after the warName) and
@@ -528,6 +539,7 @@ public class Erddap extends HttpServlet {
     int requestNumber = totalNRequests.incrementAndGet();
     int language = 0; // use English until known
     String ipAddress = EDStatic.ipAddressNotSetYet; // won't be null
+    boolean hasGlobalSlot = false; // from RequestAdmission.acquireGlobalSlot
 
     try {
 
@@ -551,11 +563,8 @@ public class Erddap extends HttpServlet {
       if (queryString == null) queryString = "";
 
       // too many simultaneous requests from this user?
-      // FUTURE? If desired, you could also add a system to monitor total number
-      //  of active requests (for all users) and limit it to MaxNRequests
-      //  and block a request from processing until the number dips below MaxNRequests.
-      //  Such a system would need good assurance that the list was valid
-      //  (not old requests filling up the system but actually processed).
+      // (The total number of active requests (for all users) is limited below,
+      //  if config.maxRequestsActive > 0.)
       ipAddress = EDStatic.getIPAddress(request);
 
       // always log request as soon as all info known (even if request will soon be rejected)
@@ -616,8 +625,7 @@ public class Erddap extends HttpServlet {
         }
 
         // if (debugMode) String2.log(">> requestUrl=" + requestUrl);
-        if (getUrlWithoutLang(request).startsWith("/" + EDStatic.config.warName + "/download/")
-            || getUrlWithoutLang(request).startsWith("/" + EDStatic.config.warName + "/images/")) {
+        if (isStaticContent(request)) {
           // small static content (e.g., erddap.css) is exempt from request limits
           //   (but still counts toward ipAddressMaxRequests above)
           // so don't wait
@@ -628,40 +636,48 @@ public class Erddap extends HttpServlet {
           // This automatically deals with users making multiple simultaneous requests (no blacklist
           // needed).
           // This is a really good approach because it disperses the burden on ERDDAP.
-          long start = System.currentTimeMillis();
-          boolean printMsg = reallyVerbose; // just print msg first time, if reallyVerbose
-          TOP_N:
-          while (true) {
-            synchronized (iaq) { // this takes very little time (~ 31 nanoseconds) (see
-              // IntArray.testSynchSpeed())
-              for (int which = Math.min(iaq.size() - 1, EDStatic.ipAddressMaxRequestsActive - 1);
-                  which >= 0;
-                  which--)
-                if (iaq.get(which) == requestNumber)
-                  break TOP_N; // fall through and respond to this request
-            }
-            // getting here (multiple simultaneous requests) should be rare
-            // but there are legit reasons, e.g., WMS client, web pages like BloomWatch
-            // FUTURE? Do tally of these IP addresses?
-            if (printMsg) {
-              String2.log(
-                  ipAddress
-                      + " has exceeded ipAddressMaxRequestsActive="
-                      + EDStatic.ipAddressMaxRequestsActive);
-              printMsg = false;
-            }
-            // this number determines how ~max requests/second/user.
-            // 1000ms/200ms *2maxRequestsActive = 10/second = 9000/15minutes which is a lot for 1
-            // user
-            Thread.sleep(
-                200); // millis. Not Math2.sleep() because we want to allow InterruptedException
-            if (System.currentTimeMillis() - start > 120000) // 120s * 1000 millis/s
-            throw new TimeoutException(
-                  EDStatic.messages.get(Message.TIMEOUT_OTHER_REQUESTS, language)
-                      + " "
-                      + EDStatic.messages.get(Message.ONE_REQUEST_AT_A_TIME, language));
-          }
+          // The wait ends as soon as another request from this user finishes (see
+          // RequestAdmission.remove), so there is no polling delay.
+          // getting here (multiple simultaneous requests) should be rare
+          // but there are legit reasons, e.g., WMS client, web pages like BloomWatch
+          // FUTURE? Do tally of these IP addresses?
+          if (reallyVerbose && iaq.size() > EDStatic.ipAddressMaxRequestsActive)
+            String2.log(
+                ipAddress
+                    + " has exceeded ipAddressMaxRequestsActive="
+                    + EDStatic.ipAddressMaxRequestsActive);
+          if (!RequestAdmission.awaitTurn(
+              iaq, requestNumber, EDStatic.ipAddressMaxRequestsActive, 120000)) // 120s
+          throw new TimeoutException(
+                EDStatic.messages.get(Message.TIMEOUT_OTHER_REQUESTS, language)
+                    + " "
+                    + EDStatic.messages.get(Message.ONE_REQUEST_AT_A_TIME, language));
+        }
+      }
+
+      // Optionally, limit the number of requests (from all users) being processed at once.
+      // Small static content is exempt.
+      if (!isStaticContent(request)) {
+        if (!RequestAdmission.acquireGlobalSlot()) {
+          String2.log(
+              "shedThisRequest #"
+                  + EDStatic.requestsShed.getAndIncrement()
+                  + // since last Major LoadDatasets
+                  ", request #"
+                  + requestNumber
+                  + ", no slot available in maxRequestsActiveWaitSeconds="
+                  + EDStatic.config.maxRequestsActiveWaitSeconds
+                  + ", maxRequestsActive="
+                  + EDStatic.config.maxRequestsActive);
+          EDStatic.lowSendError( // it sleeps for slowDownTroubleMillis
+              requestNumber,
+              response,
+              503, // Service Unavailable
+              EDStatic.messages.get(Message.WAIT_THEN_TRY_AGAIN, language));
+          if (EDStatic.metrics != null) EDStatic.metrics.shedRequests.inc();
+          return;
         }
+        hasGlobalSlot = true;
       }
 
       // add to EDStatic.activeRequests
@@ -1050,15 +1066,13 @@ public class Erddap extends HttpServlet {
         // remove requestNumber from activeRequests
         EDStatic.activeRequests.remove(requestNumber + ""); // shouldn't ever fail
 
+        if (hasGlobalSlot) RequestAdmission.releaseGlobalSlot();
+
         // remove requestNumber from ipAddressQueue for this ipAddress
         if (!EDStatic.ipAddressUnlimited.contains(ipAddress)) {
           IntArray iaq = EDStatic.ipAddressQueue.get(ipAddress);
           if (iaq != null) { // will be null if just added to ipAddressUnlimited
-            synchronized (iaq) {
-              int which = iaq.indexOf(requestNumber);
-              if (which >= 0) // it should be
-              iaq.remove(which);
-            }
+            RequestAdmission.remove(iaq, requestNumber); // and wake this user's waiting requests
           }
         }
       } catch (Throwable t2) {
@@ -21732,7 +21746,9 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
       };
 
   /**
-   * Process erddap/convert/interpolate.html and interpolate.plainFileTypes.
+   * Process erddap/convert/interpolate.html and interpolate.plainFileTypes. A POST request may have
+   * the TimeLatLonTable in the body (as a form parameter or as the whole body) and may have up to
+   * EDStatic.config.interpolatePostMaxRows rows.
    *
    * @param language the index of the selected language
    * @param requestNumber The requestNumber assigned to this request by doGet().
@@ -21773,6 +21789,28 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
     Map<String, String> queryMap = EDD.userQueryHashMap(queryString, false); // true=lowercase keys
     String tTLLTable = queryMap.get("TimeLatLonTable");
     String tRequestCSV = queryMap.get("requestCSV");
+    int maxRows = 100;
+
+    // A POST request (for many points) may have the TimeLatLonTable in the body:
+    //  either as a form parameter or as the whole body (CSV text).
+    if ("POST".equalsIgnoreCase(request.getMethod())) {
+      maxRows = EDStatic.config.interpolatePostMaxRows;
+      String contentType = request.getContentType();
+      if (contentType != null
+          && contentType.toLowerCase().startsWith("application/x-www-form-urlencoded")) {
+        if (tTLLTable == null) tTLLTable = request.getParameter("TimeLatLonTable");
+        if (tRequestCSV == null) tRequestCSV = request.getParameter("requestCSV");
+      } else if (tTLLTable == null) {
+        int maxChars = maxRows * 200; // generous
+        tTLLTable = SSR.readerToString("POST body", request.getReader(), maxChars);
+        if (tTLLTable.length() > maxChars)
+          throw new SimpleException(
+              EDStatic.simpleBilingual(language, Message.QUERY_ERROR)
+                  + "The TLLTable must not have more than "
+                  + maxRows
+                  + " rows.");
+      }
+    }
     String tFileType = pft >= 0 ? plainFileTypes.get(pft) : ""; // default pft
     if (tTLLTable == null) tTLLTable = "";
     if (tRequestCSV == null) tRequestCSV = "";
@@ -21791,7 +21829,11 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
 
       Table resultsTable =
           interpolate(
-              language, gridDatasetHashMap, tTLLTable, tRequestCSV); // throws exception if trouble
+              language,
+              gridDatasetHashMap,
+              tTLLTable,
+              tRequestCSV,
+              maxRows); // throws exception if trouble
 
       // respond to a valid request
       sendPlainTable(
@@ -22034,7 +22076,7 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
    *
    * @param language the index of the selected language
    * @param tGridDatasetHashMap
-   * @param TLLTable ASCII text with table with latitude,longitude,time columns
+   * @param TLLTable ASCII text with table with latitude,longitude,time columns (at most 100 rows)
    * @param requestCSV the CSV list of desired datasetID/variable/algorithm/nearby settings
    * @return a table with latitude,longitude,time and requested datasetID/variable columns
    * @throws Throwable if trouble
@@ -22045,6 +22087,30 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
       String TLLTable,
       String requestCSV)
       throws Throwable {
+    return interpolate(language, tGridDatasetHashMap, TLLTable, requestCSV, 100);
+  }
+
+  /**
+   * This does the work for the Nearest Data converter. All of the groups of nearby points (for all
+   * of the datasetID/variables) are planned first, so each box of data that several groups need is
+   * just requested once (see InterpolatePlan). Then the boxes' data is requested (several at once)
+   * and each box's points are interpolated as soon as its data is available.
+   *
+   * @param language the index of the selected language
+   * @param tGridDatasetHashMap
+   * @param TLLTable ASCII text with table with latitude,longitude,time columns
+   * @param requestCSV the CSV list of desired datasetID/variable/algorithm/nearby settings
+   * @param maxRows the max number of rows allowed in TLLTable
+   * @return a table with latitude,longitude,time and requested datasetID/variable columns
+   * @throws Throwable if trouble
+   */
+  public static Table interpolate(
+      int language,
+      ConcurrentHashMap<String, EDDGrid> tGridDatasetHashMap,
+      String TLLTable,
+      String requestCSV,
+      int maxRows)
+      throws Throwable {
 
     if (debugMode) String2.log("\n*** interpolate");
     if (!String2.isSomething(TLLTable))
@@ -22236,10 +22302,12 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
                   + MessageFormat.format(
                       EDStatic.messages.get(Message.QUERY_ERROR_INVALID, language),
                       "TimeLatLonTable (nRows=0)")));
-    if (nRows > 100) // I don't object to more, but there is more danger of a timeout.
+    if (nRows > maxRows) // I don't object to more, but there is more danger of a timeout.
     throw new SimpleException(
           EDStatic.simpleBilingual(language, Message.QUERY_ERROR)
-              + "The TLLTable must not have more than 100 rows.");
+              + "The TLLTable must not have more than "
+              + maxRows
+              + " rows.");
 
     // manual simplify
     for (int col = 0; col < sourceTable.nColumns(); col++) {
@@ -22292,19 +22360,17 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
         .columnAttributes(sourceTable.findColumnNumber("longitude"))
         .set("units", EDV.LON_UNITS);
 
-    // make indexTable with time,lat,lon double indices for each datasetID/Variable
-    DoubleArray timeDIndexPA = new DoubleArray(nRows, false);
-    DoubleArray latDIndexPA = new DoubleArray(nRows, false);
-    DoubleArray lonDIndexPA =
-        new DoubleArray(nRows, false); // values can be low/high because of +/-180, 0-360
-    IntArray isValidPA = new IntArray(nRows, false); // 0=no 1=yes
-    Table indexTable = new Table();
-    indexTable.addColumn("timeIndex", timeDIndexPA);
-    indexTable.addColumn("latIndex", latDIndexPA);
-    indexTable.addColumn("lonIndex", lonDIndexPA);
-    indexTable.addColumn("isValid", isValidPA);
-
-    Attributes emptyAttributes = new Attributes();
+    // For each datasetID/variable, make time,lat,lon double indices and plan the groups.
+    //  All of the groups are planned before any data is requested,
+    //  so boxes of data that are needed by several groups are just requested once.
+    DoubleArray timeDIndexPAs[] = new DoubleArray[ndv];
+    DoubleArray latDIndexPAs[] = new DoubleArray[ndv];
+    DoubleArray lonDIndexPAs[] = new DoubleArray[ndv];
+    IntArray isValidPAs[] = new IntArray[ndv];
+    int ranks[][] = new int[ndv][];
+    PrimitiveArray resultsPAs[] = new PrimitiveArray[ndv];
+    InterpolatePlan plan = new InterpolatePlan();
+    long planTime = System.currentTimeMillis();
 
     for (int dv = 0; dv < ndv; dv++) {
       // find edvga's
@@ -22329,12 +22395,28 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
               algorithm[dv] == NEAREST ? edv[dv].destinationDataPAType() : PAType.DOUBLE,
               nRows,
               ""); // fill with NaN's
+      resultsPAs[dv] = resultsPA;
       sourceTable.addColumn(String2.replaceAll(requestParts[dv], "/", "_"), resultsPA);
       if (edv[dv].units() != null)
         sourceTable.columnAttributes(sourceTable.nColumns() - 1).set("units", edv[dv].units());
 
+      // make indexTable with time,lat,lon double indices for this datasetID/Variable
+      DoubleArray timeDIndexPA = new DoubleArray(nRows, false);
+      DoubleArray latDIndexPA = new DoubleArray(nRows, false);
+      DoubleArray lonDIndexPA =
+          new DoubleArray(nRows, false); // values can be low/high because of +/-180, 0-360
+      IntArray isValidPA = new IntArray(nRows, false); // 0=no 1=yes
+      timeDIndexPAs[dv] = timeDIndexPA;
+      latDIndexPAs[dv] = latDIndexPA;
+      lonDIndexPAs[dv] = lonDIndexPA;
+      isValidPAs[dv] = isValidPA;
+      Table indexTable = new Table();
+      indexTable.addColumn("timeIndex", timeDIndexPA);
+      indexTable.addColumn("latIndex", latDIndexPA);
+      indexTable.addColumn("lonIndex", lonDIndexPA);
+      indexTable.addColumn("isValid", isValidPA);
+
       // make TLL index columns (double values, as if index space was continuous)
-      indexTable.removeRows(0, indexTable.nRows());
       for (int row = 0; row < nRows; row++) {
         double tTime = timePA.get(row);
         double tLat = latPA.get(row);
@@ -22373,6 +22455,7 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
           indexTable.rank(
               new int[] {3, 0, 1, 2},
               new boolean[] {true, true, true, true}); // colNumbers, ascending
+      ranks[dv] = rank;
 
       // skip all isValid=0 rows
       int startOfGroup = 0; // rank index
@@ -22380,8 +22463,7 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
       if (startOfGroup == nRows) // no point is valid/within this dataset's range
       continue;
 
-      // repeatedly find a group of points close together, get chunk of data from source, do
-      // calculations
+      // repeatedly find a group of points close together and add it to the plan
       //  (very arbitrary -- there are too many scenarios to optimize)
       StringBuilder howGrouped = null;
       if (debugMode) {
@@ -22503,15 +22585,14 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
                   lonAxis.sourceValues().size() - 1, ceilMaxLon + nearestOffset + radius[dv]); // "
         }
 
-        // make queryString
-        StringBuilder tQueryString = new StringBuilder(variable[dv]);
+        // make the group's box of indices
         int tTimeAVIndex = eddGrid[dv].timeIndex();
         int tLatAVIndex = eddGrid[dv].latIndex();
         int tLonAVIndex = eddGrid[dv].lonIndex();
         EDVGridAxis axisVariables[] = eddGrid[dv].axisVariables();
         int nav = axisVariables.length;
-        int iMinIndex[] =
-            new int[nav]; // this is needed below when requesting data from the GridDataAccessor
+        int iMinIndex[] = new int[nav];
+        int iMaxIndex[] = new int[nav];
         for (int av = 0; av < nav; av++) {
           EDVGridAxis edvga = axisVariables[av];
           iMinIndex[av] =
@@ -22525,303 +22606,23 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
                           // otherwise get index closest to destValue=0.0 (even if only 1 value and
                           // it isn't 0.0)
                           edvga.destinationToClosestIndex(0.0);
-          tQueryString.append(
-              "["
-                  + (av == tTimeAVIndex
-                      ? iMinTimeIndex + ":" + iMaxTimeIndex
-                      : av == tLatAVIndex
-                          ? iMinLatIndex + ":" + iMaxLatIndex
-                          : av == tLonAVIndex
-                              ? iMinLonIndex + ":" + iMaxLonIndex
-                              : "" + iMinIndex[av])
-                  + "]");
+          iMaxIndex[av] =
+              av == tTimeAVIndex
+                  ? iMaxTimeIndex
+                  : av == tLatAVIndex
+                      ? iMaxLatIndex
+                      : av == tLonAVIndex ? iMaxLonIndex : iMinIndex[av];
         }
-        // stated another way, i0Max...Indexes are the max allowed indices (inclusive)
-        //  when the indices are shifted to iMinIndex=0.
-        int i0MaxTimeIndex = iMaxTimeIndex - iMinTimeIndex;
-        int i0MaxLatIndex = iMaxLatIndex - iMinLatIndex;
-        int i0MaxLonIndex = iMaxLonIndex - iMinLonIndex;
-
-        // get the chunk of data this group
-        GridDataRandomAccessorInMemory gdraim =
-            new GridDataRandomAccessorInMemory(
-                new GridDataAccessor(
-                    language,
-                    eddGrid[dv],
-                    "", // tRequestUrl just used for history metadata
-                    tQueryString.toString(),
-                    true,
-                    true)); // tRowMajor, tConvertToNaN
-
-        // for each point in this group, make the new interpolated value
-        // ResultsPA is currently all NaNs, so I can set values randomly.
-        int current[] = new int[nav]; // filled with 0's (essential for non-time/lat/lon)
-        PAOne paOne = new PAOne(edv[dv].destinationDataPAType());
-        Table nearbyTable = new Table();
-        IntArray nearbyTimePA = new IntArray(); // these hold the index #'s
-        IntArray nearbyLatPA = new IntArray();
-        IntArray nearbyLonPA = new IntArray();
-        DoubleArray nearbyDistancePA = new DoubleArray();
-        DoubleArray nearbyLatDistancePA = new DoubleArray();
-        PrimitiveArray nearbyDataPA = PrimitiveArray.factory(edv[dv].destinationDataPAType());
-        nearbyTable.addColumn("timeIndex", nearbyTimePA);
-        nearbyTable.addColumn("latIndex", nearbyLatPA);
-        nearbyTable.addColumn("lonIndex", nearbyLonPA);
-        nearbyTable.addColumn("distance", nearbyDistancePA); // in index space
-        nearbyTable.addColumn("latDistance", nearbyLatDistancePA); // in index space
-        nearbyTable.addColumn("data", nearbyDataPA);
-
-        // sort by distance, then latDistance (gives precedent to other value at same lat)
-        int nearbyTableSortby[] = new int[] {3, 4};
-        boolean nearbyTableAscending[] = new boolean[] {true, true};
-
-        int startTimeOffset = is3D[dv] && radius[dv] > 0 ? -(radius[dv] - 1) : 0;
-        int stopTimeOffset = is3D[dv] ? radius[dv] : 0;
-        int startLatOffset = radius[dv] > 0 ? -(radius[dv] - 1) : 0;
-        int stopLatOffset = radius[dv];
-        int startLonOffset = radius[dv] > 0 ? -(radius[dv] - 1) : 0;
-        int stopLonOffset = radius[dv];
-        for (int po = startOfGroup; po < endOfGroup; po++) {
-
-          // if some aspect of source point is invalid, result is NaN
-          if (isValidPA.get(rank[po]) == 0) {
-            resultsPA.setDouble(rank[po], Double.NaN);
-            continue;
-          }
-
-          double dBaseTime = timeDIndexPA.get(rank[po]);
-          double dBaseLat = latDIndexPA.get(rank[po]);
-          double dBaseLon = lonDIndexPA.get(rank[po]);
-
-          int baseTime = is3D[dv] ? Math2.truncToInt(dBaseTime) : Math2.roundToInt(dBaseTime);
-          int baseLat = Math2.truncToInt(dBaseLat);
-          int baseLon = Math2.truncToInt(dBaseLon);
-
-          // handle special case of NEAREST 1 point
-          if (algorithm[dv] == NEAREST && radius[dv] == 0) {
-            current[tTimeAVIndex] = Math2.roundToInt(dBaseTime) - iMinIndex[tTimeAVIndex];
-            current[tLatAVIndex] = Math2.roundToInt(dBaseLat) - iMinIndex[tLatAVIndex];
-            current[tLonAVIndex] = Math2.roundToInt(dBaseLon) - iMinIndex[tLonAVIndex];
-
-            // Shouldn't be necessary (but maybe with rounding):
-            // ensure the nearest point is an available point
-            current[tTimeAVIndex] = Math2.minMax(0, i0MaxTimeIndex, current[tTimeAVIndex]);
-            current[tLatAVIndex] = Math2.minMax(0, i0MaxLatIndex, current[tLatAVIndex]);
-            current[tLonAVIndex] = Math2.minMax(0, i0MaxLonIndex, current[tLonAVIndex]);
-
-            resultsPA.setPAOne(
-                rank[po],
-                gdraim.getDataValueAsPAOne(current, 0, paOne)); // dv always 0.  throws Throwable
-            continue;
-          }
-
-          // put the nearby points in a mini table
-          nearbyTable.removeAllRows();
-          int whichIsDistance0 = -1;
-          boolean isBilinear = algorithm[dv] == BILINEAR;
-          for (int tTime = baseTime + startTimeOffset;
-              tTime <= baseTime + stopTimeOffset;
-              tTime++) {
-            for (int tLat = baseLat + startLatOffset; tLat <= baseLat + stopLatOffset; tLat++) {
-              for (int tLon = baseLon + startLonOffset; tLon <= baseLon + stopLonOffset; tLon++) {
-                // the dataset point I want is...
-                current[tTimeAVIndex] = tTime - iMinIndex[tTimeAVIndex];
-                current[tLatAVIndex] = tLat - iMinIndex[tLatAVIndex];
-                current[tLonAVIndex] = tLon - iMinIndex[tLonAVIndex];
-                if (debugMode) String2.log(">> a current=" + String2.toCSSVString(current));
-
-                // DEBATABLE: but sometimes that isn't available at the margins of the dataset
-                //  so get the nearest available actual dataset point.
-                // Alternatives would be to say this datum is NaN
-                //  or to write a lot of code to get data from the other lon end of the dataset.
-                current[tTimeAVIndex] = Math2.minMax(0, i0MaxTimeIndex, current[tTimeAVIndex]);
-                current[tLatAVIndex] = Math2.minMax(0, i0MaxLatIndex, current[tLatAVIndex]);
-                current[tLonAVIndex] = Math2.minMax(0, i0MaxLonIndex, current[tLonAVIndex]);
-
-                // get the dataset value
-                gdraim.getDataValueAsPAOne(current, 0, paOne);
-                if (debugMode)
-                  String2.log(
-                      ">> b current=" + String2.toCSSVString(current) + " datasetValue=" + paOne);
-                if (!isBilinear && Double.isNaN(paOne.getDouble())) continue;
-
-                // calculate distance
-                double tDistance =
-                    Math.sqrt(
-                        (is3D[dv] ? Math2.sqr(tTime - dBaseTime) : 0)
-                            + Math2.sqr(tLat - dBaseLat)
-                            + Math2.sqr(tLon - dBaseLon));
-
-                // add the dataset point to the nearbyTable
-                nearbyTimePA.add(tTime);
-                nearbyLatPA.add(tLat);
-                nearbyLonPA.add(tLon);
-                nearbyDistancePA.add(tDistance);
-                nearbyLatDistancePA.add(Math.abs(tLat - dBaseLat));
-                nearbyDataPA.addPAOne(paOne); // dv always 0.  throws Throwable
-
-                if (tDistance == 0) // only gets here if !NaN  (or BILINEAR)
-                whichIsDistance0 = nearbyDistancePA.size() - 1;
-              }
-            }
-          }
-          int nearbyTableNRows = nearbyTable.nRows();
-          if (nearbyTableNRows == 0) {
-            resultsPA.setDouble(rank[po], Double.NaN);
-            continue;
-          }
-
-          // process them (algorithm, is3D, and radius)
-          if (whichIsDistance0 >= 0 && String2.indexOf(CATCH_DISTANCE0, algorithm[dv]) >= 0) {
-            resultsPA.setPAOne(rank[po], nearbyDataPA.getPAOne(whichIsDistance0, paOne));
-
-          } else if (algorithm[dv] == NEAREST) {
-            // return the nearest non-NaN dataset value
-            // (note latDistance used as tie breaker since lons closer together on globe)
-            int tNearbyRank[] = nearbyTable.rank(nearbyTableSortby, nearbyTableAscending);
-            resultsPA.setPAOne(rank[po], nearbyDataPA.getPAOne(tNearbyRank[0], paOne));
-
-          } else if (algorithm[dv] == BILINEAR) {
-            // nearbyTable always has all 4 points
-            // (even if NaN, even if there is a distance0 point)
-            double x1y1 = nearbyDataPA.getDouble(0);
-            double x2y1 = nearbyDataPA.getDouble(1);
-            double x1y2 = nearbyDataPA.getDouble(2);
-            double x2y2 = nearbyDataPA.getDouble(3);
-
-            double xFrac = Math2.frac(dBaseLon);
-            double yFrac = Math2.frac(dBaseLat);
-
-            // calculate weighted averages y1 and y2
-            // do in this order because on globe, lon deg distance is less (better to avg them
-            // first)
-            double y1;
-            if (Double.isNaN(x1y1)) {
-              y1 = Double.isNaN(x2y1) ? Double.NaN : x2y1;
-            } else {
-              y1 = Double.isNaN(x2y1) ? x1y1 : (1 - xFrac) * x1y1 + xFrac * x2y1;
-            }
+        plan.add(
+            new InterpolatePlan.Group(dv, startOfGroup, endOfGroup),
+            datasetIDs[dv],
+            eddGrid[dv],
+            variable[dv],
+            tTimeAVIndex,
+            edv[dv].destinationBytesPerElement(),
+            iMinIndex,
+            iMaxIndex);
 
-            double y2;
-            if (Double.isNaN(x1y2)) {
-              y2 = Double.isNaN(x2y2) ? Double.NaN : x2y2;
-            } else {
-              y2 = Double.isNaN(x2y2) ? x1y2 : (1 - xFrac) * x1y2 + xFrac * x2y2;
-            }
-
-            // calculate weighted average of y1 and y2
-            double td;
-            if (Double.isNaN(y1)) {
-              td = Double.isNaN(y2) ? Double.NaN : y2;
-            } else {
-              td = Double.isNaN(y1) ? y2 : (1 - yFrac) * y1 + yFrac * y2;
-            }
-            if (debugMode)
-              String2.log(
-                  ">> bilinear xFrac="
-                      + (float) xFrac
-                      + " y1="
-                      + (float) y1
-                      + " y2="
-                      + (float) y2
-                      + " yFrac="
-                      + (float) yFrac);
-            resultsPA.setDouble(rank[po], td);
-
-          } else if (algorithm[dv] == MEAN) {
-            double stats2[] = nearbyDataPA.calculateStats2(emptyAttributes);
-            resultsPA.setDouble(rank[po], stats2[PrimitiveArray.STATS_MEAN]);
-
-          } else if (algorithm[dv] == SD) {
-            double stats2[] = nearbyDataPA.calculateStats2(emptyAttributes);
-            resultsPA.setDouble(rank[po], stats2[PrimitiveArray.STATS_SD]);
-
-          } else if (algorithm[dv] == MEDIAN) {
-            resultsPA.setDouble(
-                rank[po], nearbyDataPA.calculateMedian(null)); // mv fv are already NaN
-
-          } else if (algorithm[dv] == SCALED) {
-            // find the minDistance and maxDistance of nearby points
-            int[] nMinMax = nearbyDistancePA.getNMinMaxIndex();
-            double minDistance = nearbyDistancePA.get(nMinMax[1]);
-            double maxDistance = nearbyDistancePA.get(nMinMax[2]);
-            boolean allSameDistance = minDistance == maxDistance;
-
-            double wt;
-            double sum = 0;
-            double sumWt = 0;
-            for (int row = 0; row < nearbyTableNRows; row++) {
-              // Davis eq 5.68, pg 371
-              double dist = nearbyDistancePA.get(row);
-              if (allSameDistance) {
-                wt = 1;
-              } else if (Math2.almost0(dist)) {
-                // just use this datum
-                sum = nearbyDataPA.getDouble(row);
-                sumWt = 1;
-                break;
-              } else if (dist >= maxDistance) {
-                wt = 0;
-              } else {
-                wt = dist / maxDistance;
-                wt = Math2.sqr(1 - wt) / wt;
-              }
-              sum += nearbyDataPA.getDouble(row) * wt;
-              sumWt += wt;
-            }
-            resultsPA.setDouble(rank[po], sumWt > 0 ? sum / sumWt : Double.NaN);
-
-          } else if (algorithm[dv] == INVERSEDISTANCE
-              || algorithm[dv] == INVERSEDISTANCE2
-              || algorithm[dv] == INVERSEDISTANCE4
-              || algorithm[dv] == INVERSEDISTANCE6) {
-            boolean isID = algorithm[dv] == INVERSEDISTANCE;
-            boolean isID2 = algorithm[dv] == INVERSEDISTANCE2;
-            boolean isID4 = algorithm[dv] == INVERSEDISTANCE4;
-            double wt = 0;
-            double sum = 0;
-            double sumWt = 0;
-            // Davis eq 5.67, pg 367
-            for (int row = 0; row < nearbyTableNRows; row++) {
-              double dist = nearbyDistancePA.get(row);
-              if (Math2.almost0(dist)) {
-                // just use this datum
-                sum = nearbyDataPA.getDouble(row);
-                sumWt = 1;
-                break;
-              } else if (isID) {
-                wt = 1 / dist;
-              } else if (isID2) {
-                wt = 1 / Math2.sqr(dist);
-              } else if (isID4) {
-                wt = 1 / Math2.sqr(Math2.sqr(dist));
-              } else {
-                wt = 1 / Math.pow(dist, 6); // isID6
-              }
-              sum += nearbyDataPA.getDouble(row) * wt;
-              sumWt += wt;
-            }
-            resultsPA.setDouble(rank[po], sumWt > 0 ? sum / sumWt : Double.NaN);
-
-          } else {
-            throw new SimpleException(
-                EDStatic.messages.get(Message.ERROR_INTERNAL, 0)
-                    + "Unexpected algorithm="
-                    + INTERPOLATE_ALGORITHMS[algorithm[dv]]);
-          }
-          if (debugMode)
-            String2.log(
-                ">> dv="
-                    + dv
-                    + "="
-                    + requestParts[dv]
-                    + " requestRow="
-                    + rank[po]
-                    + " estValue="
-                    + resultsPA.getNiceDouble(rank[po])
-                    + "\n"
-                    + nearbyTable.dataToString());
-        }
         // prepare for next group
         startOfGroup = endOfGroup;
       }
@@ -22835,6 +22636,331 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
                 + howGrouped);
       }
     }
+    planTime = System.currentTimeMillis() - planTime;
+
+    // get the boxes of data (several at once) and, as each box's data becomes available,
+    //  make the new interpolated values for the points in the box's groups.
+    //  ResultsPAs are currently all NaNs, so I can set values randomly.
+    long processTime = System.currentTimeMillis();
+    Attributes emptyAttributes = new Attributes();
+    plan.processBoxes(
+        language,
+        EDStatic.config.interpolateNThreads,
+        EDStatic.config.partialRequestMaxBytes,
+        (box, gdraim) -> {
+          // stated another way, i0Max...Indexes are the max allowed indices (inclusive)
+          //  when the indices are shifted to iMinIndex=0.
+          int iMinIndex[] = box.min;
+          int nav = iMinIndex.length;
+          int tTimeAVIndex = box.eddGrid.timeIndex();
+          int tLatAVIndex = box.eddGrid.latIndex();
+          int tLonAVIndex = box.eddGrid.lonIndex();
+          int i0MaxTimeIndex = box.max[tTimeAVIndex] - iMinIndex[tTimeAVIndex];
+          int i0MaxLatIndex = box.max[tLatAVIndex] - iMinIndex[tLatAVIndex];
+          int i0MaxLonIndex = box.max[tLonAVIndex] - iMinIndex[tLonAVIndex];
+
+          for (InterpolatePlan.Group group : box.groups) {
+            int dv = group.dv();
+            int rank[] = ranks[dv];
+            PrimitiveArray resultsPA = resultsPAs[dv];
+            DoubleArray timeDIndexPA = timeDIndexPAs[dv];
+            DoubleArray latDIndexPA = latDIndexPAs[dv];
+            DoubleArray lonDIndexPA = lonDIndexPAs[dv];
+            IntArray isValidPA = isValidPAs[dv];
+
+            // for each point in this group, make the new interpolated value
+            int current[] = new int[nav]; // filled with 0's (essential for non-time/lat/lon)
+            PAOne paOne = new PAOne(edv[dv].destinationDataPAType());
+            Table nearbyTable = new Table();
+            IntArray nearbyTimePA = new IntArray(); // these hold the index #'s
+            IntArray nearbyLatPA = new IntArray();
+            IntArray nearbyLonPA = new IntArray();
+            DoubleArray nearbyDistancePA = new DoubleArray();
+            DoubleArray nearbyLatDistancePA = new DoubleArray();
+            PrimitiveArray nearbyDataPA = PrimitiveArray.factory(edv[dv].destinationDataPAType());
+            nearbyTable.addColumn("timeIndex", nearbyTimePA);
+            nearbyTable.addColumn("latIndex", nearbyLatPA);
+            nearbyTable.addColumn("lonIndex", nearbyLonPA);
+            nearbyTable.addColumn("distance", nearbyDistancePA); // in index space
+            nearbyTable.addColumn("latDistance", nearbyLatDistancePA); // in index space
+            nearbyTable.addColumn("data", nearbyDataPA);
+
+            // sort by distance, then latDistance (gives precedent to other value at same lat)
+            int nearbyTableSortby[] = new int[] {3, 4};
+            boolean nearbyTableAscending[] = new boolean[] {true, true};
+
+            int startTimeOffset = is3D[dv] && radius[dv] > 0 ? -(radius[dv] - 1) : 0;
+            int stopTimeOffset = is3D[dv] ? radius[dv] : 0;
+            int startLatOffset = radius[dv] > 0 ? -(radius[dv] - 1) : 0;
+            int stopLatOffset = radius[dv];
+            int startLonOffset = radius[dv] > 0 ? -(radius[dv] - 1) : 0;
+            int stopLonOffset = radius[dv];
+            for (int po = group.startOfGroup(); po < group.endOfGroup(); po++) {
+
+              // if some aspect of source point is invalid, result is NaN
+              if (isValidPA.get(rank[po]) == 0) {
+                resultsPA.setDouble(rank[po], Double.NaN);
+                continue;
+              }
+
+              double dBaseTime = timeDIndexPA.get(rank[po]);
+              double dBaseLat = latDIndexPA.get(rank[po]);
+              double dBaseLon = lonDIndexPA.get(rank[po]);
+
+              int baseTime = is3D[dv] ? Math2.truncToInt(dBaseTime) : Math2.roundToInt(dBaseTime);
+              int baseLat = Math2.truncToInt(dBaseLat);
+              int baseLon = Math2.truncToInt(dBaseLon);
+
+              // handle special case of NEAREST 1 point
+              if (algorithm[dv] == NEAREST && radius[dv] == 0) {
+                current[tTimeAVIndex] = Math2.roundToInt(dBaseTime) - iMinIndex[tTimeAVIndex];
+                current[tLatAVIndex] = Math2.roundToInt(dBaseLat) - iMinIndex[tLatAVIndex];
+                current[tLonAVIndex] = Math2.roundToInt(dBaseLon) - iMinIndex[tLonAVIndex];
+
+                // Shouldn't be necessary (but maybe with rounding):
+                // ensure the nearest point is an available point
+                current[tTimeAVIndex] = Math2.minMax(0, i0MaxTimeIndex, current[tTimeAVIndex]);
+                current[tLatAVIndex] = Math2.minMax(0, i0MaxLatIndex, current[tLatAVIndex]);
+                current[tLonAVIndex] = Math2.minMax(0, i0MaxLonIndex, current[tLonAVIndex]);
+
+                resultsPA.setPAOne(
+                    rank[po],
+                    gdraim.getDataValueAsPAOne(current, 0, paOne)); // dv always 0. throws Throwable
+                continue;
+              }
+
+              // put the nearby points in a mini table
+              nearbyTable.removeAllRows();
+              int whichIsDistance0 = -1;
+              boolean isBilinear = algorithm[dv] == BILINEAR;
+              for (int tTime = baseTime + startTimeOffset;
+                  tTime <= baseTime + stopTimeOffset;
+                  tTime++) {
+                for (int tLat = baseLat + startLatOffset; tLat <= baseLat + stopLatOffset; tLat++) {
+                  for (int tLon = baseLon + startLonOffset;
+                      tLon <= baseLon + stopLonOffset;
+                      tLon++) {
+                    // the dataset point I want is...
+                    current[tTimeAVIndex] = tTime - iMinIndex[tTimeAVIndex];
+                    current[tLatAVIndex] = tLat - iMinIndex[tLatAVIndex];
+                    current[tLonAVIndex] = tLon - iMinIndex[tLonAVIndex];
+                    if (debugMode) String2.log(">> a current=" + String2.toCSSVString(current));
+
+                    // DEBATABLE: but sometimes that isn't available at the margins of the dataset
+                    //  so get the nearest available actual dataset point.
+                    // Alternatives would be to say this datum is NaN
+                    //  or to write a lot of code to get data from the other lon end of the
+                    //  dataset.
+                    current[tTimeAVIndex] =
+                        Math2.minMax(0, i0MaxTimeIndex, current[tTimeAVIndex]);
+                    current[tLatAVIndex] = Math2.minMax(0, i0MaxLatIndex, current[tLatAVIndex]);
+                    current[tLonAVIndex] = Math2.minMax(0, i0MaxLonIndex, current[tLonAVIndex]);
+
+                    // get the dataset value
+                    gdraim.getDataValueAsPAOne(current, 0, paOne);
+                    if (debugMode)
+                      String2.log(
+                          ">> b current="
+                              + String2.toCSSVString(current)
+                              + " datasetValue="
+                              + paOne);
+                    if (!isBilinear && Double.isNaN(paOne.getDouble())) continue;
+
+                    // calculate distance
+                    double tDistance =
+                        Math.sqrt(
+                            (is3D[dv] ? Math2.sqr(tTime - dBaseTime) : 0)
+                                + Math2.sqr(tLat - dBaseLat)
+                                + Math2.sqr(tLon - dBaseLon));
+
+                    // add the dataset point to the nearbyTable
+                    nearbyTimePA.add(tTime);
+                    nearbyLatPA.add(tLat);
+                    nearbyLonPA.add(tLon);
+                    nearbyDistancePA.add(tDistance);
+                    nearbyLatDistancePA.add(Math.abs(tLat - dBaseLat));
+                    nearbyDataPA.addPAOne(paOne); // dv always 0.  throws Throwable
+
+                    if (tDistance == 0) // only gets here if !NaN  (or BILINEAR)
+                    whichIsDistance0 = nearbyDistancePA.size() - 1;
+                  }
+                }
+              }
+              int nearbyTableNRows = nearbyTable.nRows();
+              if (nearbyTableNRows == 0) {
+                resultsPA.setDouble(rank[po], Double.NaN);
+                continue;
+              }
+
+              // process them (algorithm, is3D, and radius)
+              if (whichIsDistance0 >= 0 && String2.indexOf(CATCH_DISTANCE0, algorithm[dv]) >= 0) {
+                resultsPA.setPAOne(rank[po], nearbyDataPA.getPAOne(whichIsDistance0, paOne));
+
+              } else if (algorithm[dv] == NEAREST) {
+                // return the nearest non-NaN dataset value
+                // (note latDistance used as tie breaker since lons closer together on globe)
+                int tNearbyRank[] = nearbyTable.rank(nearbyTableSortby, nearbyTableAscending);
+                resultsPA.setPAOne(rank[po], nearbyDataPA.getPAOne(tNearbyRank[0], paOne));
+
+              } else if (algorithm[dv] == BILINEAR) {
+                // nearbyTable always has all 4 points
+                // (even if NaN, even if there is a distance0 point)
+                double x1y1 = nearbyDataPA.getDouble(0);
+                double x2y1 = nearbyDataPA.getDouble(1);
+                double x1y2 = nearbyDataPA.getDouble(2);
+                double x2y2 = nearbyDataPA.getDouble(3);
+
+                double xFrac = Math2.frac(dBaseLon);
+                double yFrac = Math2.frac(dBaseLat);
+
+                // calculate weighted averages y1 and y2
+                // do in this order because on globe, lon deg distance is less (better to avg them
+                // first)
+                double y1;
+                if (Double.isNaN(x1y1)) {
+                  y1 = Double.isNaN(x2y1) ? Double.NaN : x2y1;
+                } else {
+                  y1 = Double.isNaN(x2y1) ? x1y1 : (1 - xFrac) * x1y1 + xFrac * x2y1;
+                }
+
+                double y2;
+                if (Double.isNaN(x1y2)) {
+                  y2 = Double.isNaN(x2y2) ? Double.NaN : x2y2;
+                } else {
+                  y2 = Double.isNaN(x2y2) ? x1y2 : (1 - xFrac) * x1y2 + xFrac * x2y2;
+                }
+
+                // calculate weighted average of y1 and y2
+                double td;
+                if (Double.isNaN(y1)) {
+                  td = Double.isNaN(y2) ? Double.NaN : y2;
+                } else {
+                  td = Double.isNaN(y1) ? y2 : (1 - yFrac) * y1 + yFrac * y2;
+                }
+                if (debugMode)
+                  String2.log(
+                      ">> bilinear xFrac="
+                          + (float) xFrac
+                          + " y1="
+                          + (float) y1
+                          + " y2="
+                          + (float) y2
+                          + " yFrac="
+                          + (float) yFrac);
+                resultsPA.setDouble(rank[po], td);
+
+              } else if (algorithm[dv] == MEAN) {
+                double stats2[] = nearbyDataPA.calculateStats2(emptyAttributes);
+                resultsPA.setDouble(rank[po], stats2[PrimitiveArray.STATS_MEAN]);
+
+              } else if (algorithm[dv] == SD) {
+                double stats2[] = nearbyDataPA.calculateStats2(emptyAttributes);
+                resultsPA.setDouble(rank[po], stats2[PrimitiveArray.STATS_SD]);
+
+              } else if (algorithm[dv] == MEDIAN) {
+                resultsPA.setDouble(
+                    rank[po], nearbyDataPA.calculateMedian(null)); // mv fv are already NaN
+
+              } else if (algorithm[dv] == SCALED) {
+                // find the minDistance and maxDistance of nearby points
+                int[] nMinMax = nearbyDistancePA.getNMinMaxIndex();
+                double minDistance = nearbyDistancePA.get(nMinMax[1]);
+                double maxDistance = nearbyDistancePA.get(nMinMax[2]);
+                boolean allSameDistance = minDistance == maxDistance;
+
+                double wt;
+                double sum = 0;
+                double sumWt = 0;
+                for (int row = 0; row < nearbyTableNRows; row++) {
+                  // Davis eq 5.68, pg 371
+                  double dist = nearbyDistancePA.get(row);
+                  if (allSameDistance) {
+                    wt = 1;
+                  } else if (Math2.almost0(dist)) {
+                    // just use this datum
+                    sum = nearbyDataPA.getDouble(row);
+                    sumWt = 1;
+                    break;
+                  } else if (dist >= maxDistance) {
+                    wt = 0;
+                  } else {
+                    wt = dist / maxDistance;
+                    wt = Math2.sqr(1 - wt) / wt;
+                  }
+                  sum += nearbyDataPA.getDouble(row) * wt;
+                  sumWt += wt;
+                }
+                resultsPA.setDouble(rank[po], sumWt > 0 ? sum / sumWt : Double.NaN);
+
+              } else if (algorithm[dv] == INVERSEDISTANCE
+                  || algorithm[dv] == INVERSEDISTANCE2
+                  || algorithm[dv] == INVERSEDISTANCE4
+                  || algorithm[dv] == INVERSEDISTANCE6) {
+                boolean isID = algorithm[dv] == INVERSEDISTANCE;
+                boolean isID2 = algorithm[dv] == INVERSEDISTANCE2;
+                boolean isID4 = algorithm[dv] == INVERSEDISTANCE4;
+                double wt = 0;
+                double sum = 0;
+                double sumWt = 0;
+                // Davis eq 5.67, pg 367
+                for (int row = 0; row < nearbyTableNRows; row++) {
+                  double dist = nearbyDistancePA.get(row);
+                  if (Math2.almost0(dist)) {
+                    // just use this datum
+                    sum = nearbyDataPA.getDouble(row);
+                    sumWt = 1;
+                    break;
+                  } else if (isID) {
+                    wt = 1 / dist;
+                  } else if (isID2) {
+                    wt = 1 / Math2.sqr(dist);
+                  } else if (isID4) {
+                    wt = 1 / Math2.sqr(Math2.sqr(dist));
+                  } else {
+                    wt = 1 / Math.pow(dist, 6); // isID6
+                  }
+                  sum += nearbyDataPA.getDouble(row) * wt;
+                  sumWt += wt;
+                }
+                resultsPA.setDouble(rank[po], sumWt > 0 ? sum / sumWt : Double.NaN);
+
+              } else {
+                throw new SimpleException(
+                    EDStatic.messages.get(Message.ERROR_INTERNAL, 0)
+                        + "Unexpected algorithm="
+                        + INTERPOLATE_ALGORITHMS[algorithm[dv]]);
+              }
+              if (debugMode)
+                String2.log(
+                    ">> dv="
+                        + dv
+                        + "="
+                        + requestParts[dv]
+                        + " requestRow="
+                        + rank[po]
+                        + " estValue="
+                        + resultsPA.getNiceDouble(rank[po])
+                        + "\n"
+                        + nearbyTable.dataToString());
+            }
+          }
+        });
+    processTime = System.currentTimeMillis() - processTime;
+    if (verbose)
+      String2.log(
+          "interpolate nRows="
+              + nRows
+              + " ndv="
+              + ndv
+              + " nGroups="
+              + plan.nGroups()
+              + " nBoxes="
+              + plan.boxes.size()
+              + " planTime="
+              + planTime
+              + "ms processTime="
+              + processTime
+              + "ms");
 
     return sourceTable;
   }
@@ -25281,9 +25407,8 @@ widgets.select("frequencyOption", "", 1, frequencyOptions, frequencyOption, "")
     }
 
     if (verbose) String2.log("change=" + change);
-    EDStatic.cldNTry = context.getNTryAndDatasets()[0];
-    EDStatic.cldStartMillis = 0;
-    EDStatic.cldDatasetID = null;
+    EDStatic.cldLoading.remove(dataset.datasetID());
+    context.setCldDatasetID(null);
 
     // whether succeeded (new or swapped in) or failed (removed), it was changed
     context.getChangedDatasetIDs().add(dataset.datasetID());
@@ -0,0 +1,275 @@
+/*
+ * InterpolatePlan Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap;
+
+import gov.noaa.pfel.erddap.dataset.EDD;
+import gov.noaa.pfel.erddap.dataset.EDDGrid;
+import gov.noaa.pfel.erddap.dataset.GridDataAccessor;
+import gov.noaa.pfel.erddap.dataset.GridDataRandomAccessorInMemory;
+import gov.noaa.pfel.erddap.util.SharedWorkExecutor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * This plans and gets the data that Erddap.interpolate needs. Each group of nearby points (for one
+ * requested datasetID/variable) needs a box of the dataset's indices. All of the groups are added
+ * before any data is requested, so that a box which is contained by (or overlaps) another box for
+ * the same datasetID/variable (e.g., for another algorithm) isn't requested separately. Then
+ * processBoxes gets the boxes' data, several at once, and processes each box as soon as its data is
+ * available.
+ *
+ * <p>Since a point's interpolated value just depends on the dataset values near the point (which
+ * are in any box that contains the group's box), using a bigger box doesn't change the results.
+ */
+class InterpolatePlan {
+
+  /** Boxes won't be merged if the merged box would have more than this number of values. */
+  static final long MAX_MERGED_N_VALUES = 40000;
+
+  /** A group of nearby points: the rows rank[startOfGroup] to rank[endOfGroup - 1] of dv. */
+  record Group(int dv, int startOfGroup, int endOfGroup) {}
+
+  /** This processes the data for one box (i.e., for its groups). */
+  @FunctionalInterface
+  interface BoxProcessor {
+    void process(Box box, GridDataRandomAccessorInMemory data) throws Throwable;
+  }
+
+  /**
+   * A box of indices (on all of the axes) of one datasetID/variable, and the groups which are
+   * interpolated from its data.
+   */
+  static class Box {
+    final EDDGrid eddGrid;
+    final String variable;
+    final int timeAxis;
+    final int bytesPerElement;
+    final int min[]; // inclusive
+    final int max[]; // inclusive
+    final ArrayList<Group> groups = new ArrayList<>();
+
+    Box(EDDGrid eddGrid, String variable, int timeAxis, int bytesPerElement, int min[], int max[]) {
+      this.eddGrid = eddGrid;
+      this.variable = variable;
+      this.timeAxis = timeAxis;
+      this.bytesPerElement = bytesPerElement;
+      this.min = min.clone();
+      this.max = max.clone();
+    }
+
+    long nValues() {
+      return InterpolatePlan.nValues(min, max);
+    }
+
+    long nBytes() {
+      return nValues() * bytesPerElement;
+    }
+
+    boolean contains(int tMin[], int tMax[]) {
+      for (int av = 0; av < min.length; av++) {
+        if (tMin[av] < min[av] || tMax[av] > max[av]) return false;
+      }
+      return true;
+    }
+
+    /** This returns the number of values in the smallest box that contains this and tMin/tMax. */
+    long nValuesOfUnion(int tMin[], int tMax[]) {
+      long n = 1;
+      for (int av = 0; av < min.length; av++)
+        n *= Math.max(max[av], tMax[av]) - Math.min(min[av], tMin[av]) + 1;
+      return n;
+    }
+
+    /** This returns the griddap query for this box, e.g., sst[3:5][0:0][10:20][30:40]. */
+    String query() {
+      StringBuilder sb = new StringBuilder(variable);
+      for (int av = 0; av < min.length; av++) sb.append("[" + min[av] + ":" + max[av] + "]");
+      return sb.toString();
+    }
+
+    /**
+     * This gets the data for this box from the dataset (via the dataset's usual getSourceData).
+     *
+     * @param language the index of the selected language
+     * @return the data
+     * @throws Throwable if trouble
+     */
+    GridDataRandomAccessorInMemory getData(int language) throws Throwable {
+      return new GridDataRandomAccessorInMemory(
+          new GridDataAccessor(
+              language,
+              eddGrid,
+              "", // tRequestUrl just used for history metadata
+              query(),
+              true,
+              true)); // tRowMajor, tConvertToNaN
+    }
+  }
+
+  /** The boxes, in the order they were made (which is the order they'll be processed). */
+  final ArrayList<Box> boxes = new ArrayList<>();
+
+  // datasetID/variable -> the boxes, by their min time index
+  private final HashMap<String, TreeMap<Integer, ArrayList<Box>>> boxesByTime = new HashMap<>();
+  private int maxTimeExtent = 0; // the largest max-min time index of any box
+  private int nGroups = 0;
+
+  /** This returns the number of values in a box. */
+  static long nValues(int min[], int max[]) {
+    long n = 1;
+    for (int av = 0; av < min.length; av++) n *= max[av] - min[av] + 1;
+    return n;
+  }
+
+  /**
+   * This adds a group of points to the plan. The group uses an existing box for the same
+   * datasetID/variable which contains the group's box, or one which can be enlarged to contain it
+   * without requesting more values than the two boxes would separately (and without exceeding
+   * MAX_MERGED_N_VALUES). Otherwise, this makes a new box.
+   *
+   * @param group the group
+   * @param datasetID the group's datasetID
+   * @param eddGrid the dataset
+   * @param variable the data variable's destinationName
+   * @param timeAxis the index of the time axis
+   * @param bytesPerElement the number of bytes per value of the data variable
+   * @param min the min index (inclusive) on each axis that the group needs
+   * @param max the max index (inclusive) on each axis that the group needs
+   * @return the box the group will use
+   */
+  Box add(
+      Group group,
+      String datasetID,
+      EDDGrid eddGrid,
+      String variable,
+      int timeAxis,
+      int bytesPerElement,
+      int min[],
+      int max[]) {
+    nGroups++;
+    TreeMap<Integer, ArrayList<Box>> byTime =
+        boxesByTime.computeIfAbsent(datasetID + "/" + variable, k -> new TreeMap<>());
+    long nValues = nValues(min, max);
+
+    // find the best box: one which contains the group's box, else the smallest mergeable box.
+    // Boxes with a lower min time index than this can't overlap the group's box.
+    Box best = null;
+    long bestNValues = Long.MAX_VALUE;
+    search:
+    for (ArrayList<Box> list :
+        byTime.subMap(min[timeAxis] - maxTimeExtent, true, max[timeAxis], true).values()) {
+      for (Box box : list) {
+        if (box.contains(min, max)) {
+          best = box;
+          break search;
+        }
+        long unionNValues = box.nValuesOfUnion(min, max);
+        if (unionNValues <= box.nValues() + nValues
+            && unionNValues <= MAX_MERGED_N_VALUES
+            && unionNValues < bestNValues) {
+          best = box;
+          bestNValues = unionNValues;
+        }
+      }
+    }
+
+    if (best == null) {
+      best = new Box(eddGrid, variable, timeAxis, bytesPerElement, min, max);
+      boxes.add(best);
+      byTime.computeIfAbsent(min[timeAxis], k -> new ArrayList<>()).add(best);
+    } else if (!best.contains(min, max)) {
+      // enlarge it (and reindex it if its min time index changes)
+      if (min[timeAxis] < best.min[timeAxis]) {
+        ArrayList<Box> list = byTime.get(best.min[timeAxis]);
+        list.remove(best);
+        if (list.isEmpty()) byTime.remove(best.min[timeAxis]);
+        byTime.computeIfAbsent(min[timeAxis], k -> new ArrayList<>()).add(best);
+      }
+      for (int av = 0; av < min.length; av++) {
+        best.min[av] = Math.min(best.min[av], min[av]);
+        best.max[av] = Math.max(best.max[av], max[av]);
+      }
+    }
+    maxTimeExtent = Math.max(maxTimeExtent, best.max[timeAxis] - best.min[timeAxis]);
+    best.groups.add(group);
+    return best;
+  }
+
+  /** This returns the number of groups which have been added. */
+  int nGroups() {
+    return nGroups;
+  }
+
+  /**
+   * This gets the data for each box and processes it, one box at a time, in the order the boxes
+   * were made. If nThreads &gt; 1, the next boxes' data is requested (each in its own task) while
+   * the current box is processed, as long as the requested but not yet processed data fits in
+   * maxBytes. If this is already running in a SharedWorkExecutor thread, the tasks are run by that
+   * executor's nested executor, and if this is running in a nested executor's thread, this gets the
+   * data in this thread (see SharedWorkExecutor.forCurrentThread). Each box's data can be garbage
+   * collected as soon as it has been processed.
+   *
+   * @param language the index of the selected language
+   * @param nThreads the max number of boxes to get at once
+   * @param maxBytes the max number of bytes of data requested but not yet processed (but the next
+   *     box is always requested)
+   * @param processor the processor, which is always called in this thread
+   * @throws Throwable if trouble
+   */
+  void processBoxes(int language, int nThreads, long maxBytes, BoxProcessor processor)
+      throws Throwable {
+    int nBoxes = boxes.size();
+    nThreads = Math.min(nThreads, nBoxes);
+    // in a nested SharedWorkExecutor thread, executor is null, so the boxes are done serially
+    SharedWorkExecutor executor = nThreads > 1 ? SharedWorkExecutor.forCurrentThread() : null;
+    if (executor == null) {
+      for (Box box : boxes) processor.process(box, box.getData(language));
+      return;
+    }
+
+    nThreads = EDD.adjustNThreads(nThreads); // based on memory in use
+    SharedWorkExecutor.Group workGroup = executor.newGroup(nThreads);
+    ArrayDeque<Future<GridDataRandomAccessorInMemory>> futures = new ArrayDeque<>();
+    int nRequested = 0;
+    long nBytesRequested = 0; // requested but not yet processed
+    try {
+      for (int b = 0; b < nBoxes; b++) {
+        while (nRequested < nBoxes
+            && nRequested - b < 2 * nThreads
+            && (nRequested == b || nBytesRequested + boxes.get(nRequested).nBytes() <= maxBytes)) {
+          Box box = boxes.get(nRequested++);
+          nBytesRequested += box.nBytes();
+          futures.add(
+              workGroup.submit(
+                  () -> {
+                    try {
+                      return box.getData(language);
+                    } catch (Throwable t) {
+                      throw t instanceof Exception e ? e : new ExecutionException(t);
+                    }
+                  }));
+        }
+        GridDataRandomAccessorInMemory data;
+        try {
+          data = futures.remove().get();
+        } catch (ExecutionException e) {
+          Throwable t = e;
+          while (t instanceof ExecutionException && t.getCause() != null) // may be doubly wrapped
+          t = t.getCause();
+          throw t;
+        }
+        Box box = boxes.get(b);
+        nBytesRequested -= box.nBytes();
+        processor.process(box, data);
+      }
+    } finally {
+      workGroup.cancel(); // if trouble, don't get the rest
+    }
+  }
+}
@@ -10,6 +10,7 @@ import com.cohort.util.File2;
 import com.cohort.util.Math2;
 import com.cohort.util.MustBe;
 import com.cohort.util.String2;
+import com.cohort.util.XML;
 import com.sun.management.UnixOperatingSystemMXBean;
 import gov.noaa.pfel.coastwatch.sgt.SgtMap;
 import gov.noaa.pfel.coastwatch.util.FileVisitorDNLS;
@@ -19,8 +20,11 @@ import gov.noaa.pfel.erddap.dataset.EDD;
 import gov.noaa.pfel.erddap.dataset.EDDGrid;
 import gov.noaa.pfel.erddap.dataset.EDDTable;
 import gov.noaa.pfel.erddap.dataset.EDDTableFromAllDatasets;
+import gov.noaa.pfel.erddap.dataset.EDDTableFromHttpGet;
+import gov.noaa.pfel.erddap.dataset.EDDTableFromMqtt;
 import gov.noaa.pfel.erddap.dataset.metadata.LocalizedAttributes;
 import gov.noaa.pfel.erddap.handlers.SaxHandler;
+import gov.noaa.pfel.erddap.util.DatasetLoadScheduler;
 import gov.noaa.pfel.erddap.util.EDConfig;
 import gov.noaa.pfel.erddap.util.EDMessages;
 import gov.noaa.pfel.erddap.util.EDMessages.Message;
@@ -31,6 +35,7 @@ import gov.noaa.pfel.erddap.variable.EDV;
 import io.prometheus.metrics.model.snapshots.Unit;
 import java.awt.Color;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.management.ManagementFactory;
@@ -93,6 +98,14 @@ public class LoadDatasets extends Thread {
 
   private static final boolean ADD = true;
   private static final boolean REMOVE = false;
+  private static final String START_ERROR = "datasets.xml error on line #";
+  private static final long MAX_MILLIS_BEFORE_LUCENE_UPDATE = 5 * Calendar2.MILLIS_PER_MINUTE;
+
+  /**
+   * When datasets are loaded in parallel (see EDStatic.config.loadDatasetsNThreads), changes to
+   * erddap's datasets (and to the other things that record the results) are synchronized on this.
+   */
+  private final Object publishLock = new Object();
 
   /* This is set by run if there is an unexpected error. */
   public String unexpectedError = "";
@@ -177,7 +190,7 @@ public class LoadDatasets extends Thread {
         orphanIDSet.remove(EDDTableFromAllDatasets.DATASET_ID);
       }
       EDStatic.cldMajor = majorLoad;
-      EDStatic.cldNTry = 0; // that alone says none is currently active
+      EDStatic.cldLoading.clear(); // none is currently active
       Map<String, Object[]> tUserHashMap =
           new HashMap<>(); // no need for thread-safe, all puts are here (1 thread); future gets are
       // thread safe
@@ -527,9 +540,14 @@ public class LoadDatasets extends Thread {
       Map<String, Object[]> tUserHashMap) {
     SimpleXMLReader xmlReader = null;
     int nTry = 0, nDatasets = 0;
+    // if null, datasets are loaded one at a time by this thread
+    DatasetLoadScheduler scheduler =
+        EDStatic.config.loadDatasetsNThreads > 1
+            ? new DatasetLoadScheduler(EDStatic.config.loadDatasetsNThreads)
+            : null;
     try {
       xmlReader = new SimpleXMLReader(inputStream, "erddapDatasets");
-      String startError = "datasets.xml error on line #";
+      String startError = START_ERROR;
       label:
       while (true) {
         // check for interruption
@@ -537,7 +555,9 @@ public class LoadDatasets extends Thread {
           String2.log(
               "*** The LoadDatasets thread was interrupted at "
                   + Calendar2.getCurrentISODateTimeStringLocalTZ());
-          erddap.updateLucene(changedDatasetIDs);
+          synchronized (publishLock) {
+            erddap.updateLucene(changedDatasetIDs);
+          }
           return;
         }
 
@@ -581,7 +601,6 @@ public class LoadDatasets extends Thread {
             }
 
             // Test third: look at flag/age  or active=false
-            long MAX_MILLIS_BEFORE_LUCENE_UPDATE = 5 * Calendar2.MILLIS_PER_MINUTE;
             if (!skip) {
               // always check both flag locations
               boolean isFlagged = File2.delete(EDStatic.config.fullResetFlagDirectory + tId);
@@ -624,7 +643,9 @@ public class LoadDatasets extends Thread {
                         EDD.decompressedDirectory(cid), 2, 0.5); // remove as many files as possible
                   }
                 }
-                tryToUnload(erddap, tId, new StringArray(), true); // needToUpdateLucene
+                synchronized (publishLock) {
+                  tryToUnload(erddap, tId, new StringArray(), true); // needToUpdateLucene
+                }
 
                 EDD.deleteCachedDatasetInfo(tId); // the important difference
 
@@ -661,13 +682,16 @@ public class LoadDatasets extends Thread {
               boolean tActive = tActiveString == null || !tActiveString.equals("false");
               if (!tActive) {
                 // marked not active now; was it active?
-                boolean needToUpdateLucene =
-                    System.currentTimeMillis() - lastLuceneUpdate > MAX_MILLIS_BEFORE_LUCENE_UPDATE;
-                if (tryToUnload(erddap, tId, changedDatasetIDs, needToUpdateLucene)) {
-                  // yes, it was unloaded
-                  String2.log("*** unloaded datasetID=" + tId + " because active=\"false\".");
-                  if (needToUpdateLucene)
-                    lastLuceneUpdate = System.currentTimeMillis(); // because Lucene was updated
+                synchronized (publishLock) {
+                  boolean needToUpdateLucene =
+                      System.currentTimeMillis() - lastLuceneUpdate
+                          > MAX_MILLIS_BEFORE_LUCENE_UPDATE;
+                  if (tryToUnload(erddap, tId, changedDatasetIDs, needToUpdateLucene)) {
+                    // yes, it was unloaded
+                    String2.log("*** unloaded datasetID=" + tId + " because active=\"false\".");
+                    if (needToUpdateLucene)
+                      lastLuceneUpdate = System.currentTimeMillis(); // because Lucene was updated
+                  }
                 }
 
                 skip = true;
@@ -688,147 +712,24 @@ public class LoadDatasets extends Thread {
             } else {
               // try to load this dataset
               nTry++;
-              String change = "";
-              EDD dataset = null, oldDataset = null;
-              boolean oldCatInfoRemoved = false;
-              long timeToLoadThisDataset = System.currentTimeMillis();
-              EDStatic.cldNTry = nTry;
-              EDStatic.cldStartMillis = timeToLoadThisDataset;
-              EDStatic.cldDatasetID = tId;
-              try {
-                dataset = EDD.fromXml(erddap, xmlReader.attributeValue("type"), xmlReader);
-
-                // check for interruption right before making changes to Erddap
-                if (isInterrupted()) { // this is a likely place to catch interruption
-                  String2.log(
-                      "*** The LoadDatasets thread was interrupted at "
-                          + Calendar2.getCurrentISODateTimeStringLocalTZ());
-                  erddap.updateLucene(changedDatasetIDs);
-                  lastLuceneUpdate = System.currentTimeMillis();
-                  return;
-                }
-
-                // do several things in quick succession...
-                // (??? synchronize on (?) if really need avoid inconsistency)
-
-                // was there a dataset with the same datasetID?
-                oldDataset = erddap.gridDatasetHashMap.get(tId);
-                if (oldDataset == null) oldDataset = erddap.tableDatasetHashMap.get(tId);
-
-                // if oldDataset existed, remove its info from categoryInfo
-                // (check now, before put dataset in place, in case EDDGrid <--> EDDTable)
-                if (oldDataset != null) {
-                  erddap.addRemoveDatasetInfo(REMOVE, erddap.categoryInfo, oldDataset);
-                  oldCatInfoRemoved = true;
-                }
-
-                // put dataset in place
-                // (hashMap.put atomically replaces old version with new)
-                if ((oldDataset == null || oldDataset instanceof EDDGrid)
-                    && dataset instanceof EDDGrid eddGrid) {
-                  erddap.gridDatasetHashMap.put(tId, eddGrid); // was/is grid
-
-                } else if ((oldDataset == null || oldDataset instanceof EDDTable)
-                    && dataset instanceof EDDTable eddTable) {
-                  erddap.tableDatasetHashMap.put(tId, eddTable); // was/is table
-
-                } else if (dataset instanceof EDDGrid eddGrid) {
-                  if (oldDataset != null) erddap.tableDatasetHashMap.remove(tId); // was table
-                  erddap.gridDatasetHashMap.put(tId, eddGrid); // now grid
-
-                } else if (dataset instanceof EDDTable eddTable) {
-                  if (oldDataset != null) erddap.gridDatasetHashMap.remove(tId); // was grid
-                  erddap.tableDatasetHashMap.put(tId, eddTable); // now table
-                }
-
-                // add new info to categoryInfo
-                erddap.addRemoveDatasetInfo(ADD, erddap.categoryInfo, dataset);
-
-                // clear the dataset's cache
-                // since axis values may have changed and "last" may have changed
-                File2.deleteAllFiles(dataset.cacheDirectory());
-
-                change = dataset.changed(oldDataset);
-                if (change.isEmpty() && dataset instanceof EDDTable)
-                  change = "The dataset was reloaded.";
-
-              } catch (Throwable t) {
-                dataset = null;
-                timeToLoadThisDataset = System.currentTimeMillis() - timeToLoadThisDataset;
-
-                // check for interruption right before making changes to Erddap
-                if (isInterrupted()) { // this is a likely place to catch interruption
-                  String tError2 =
-                      "*** The LoadDatasets thread was interrupted at "
-                          + Calendar2.getCurrentISODateTimeStringLocalTZ();
-                  String2.log(tError2);
-                  warningsFromLoadDatasets.append(tError2 + "\n\n");
-                  erddap.updateLucene(changedDatasetIDs);
-                  lastLuceneUpdate = System.currentTimeMillis();
-                  return;
-                }
-
-                // actually remove old dataset (if any existed)
-                EDD tDataset =
-                    erddap.gridDatasetHashMap.remove(tId); // always ensure it was removed
-                if (tDataset == null) tDataset = erddap.tableDatasetHashMap.remove(tId);
-                if (oldDataset == null) oldDataset = tDataset;
-
-                // if oldDataset existed, remove it from categoryInfo
-                if (oldDataset != null && !oldCatInfoRemoved)
-                  erddap.addRemoveDatasetInfo(REMOVE, erddap.categoryInfo, oldDataset);
-
-                String tError =
-                    startError
-                        + xmlReader.lineNumber()
-                        + "\n"
-                        + "While trying to load datasetID="
-                        + tId
-                        + " (after "
-                        + timeToLoadThisDataset
-                        + " ms)\n"
-                        + MustBe.throwableToString(t);
-                String2.log(tError);
-                warningsFromLoadDatasets.append(tError + "\n\n");
-                datasetsThatFailedToLoadSB.append(tId + ", ");
-                failedDatasetsWithErrorsSB.append(tId).append(": ").append(tError).append("\n");
-
-                // stop???
-                if (!xmlReader.isOpen()) { // error was really serious
-                  throw new RuntimeException(startError + xmlReader.lineNumber() + ": " + t, t);
-                }
-
-                // skip over the remaining tags for this dataset
-                try {
-                  while (!xmlReader.allTags().equals("<erddapDatasets></dataset>"))
-                    xmlReader.nextTag();
-                } catch (Throwable t2) {
-                  throw new RuntimeException(startError + xmlReader.lineNumber() + ": " + t2, t2);
-                }
-
-                // change      (if oldDataset=null and new one failed to load, no change)
-                if (oldDataset != null) change = tError;
-              }
-              if (verbose) String2.log("change=" + change);
-              EDStatic.cldNTry = nTry;
-              EDStatic.cldStartMillis = 0;
-              EDStatic.cldDatasetID = null;
-
-              // whether succeeded (new or swapped in) or failed (removed), it was changed
-              changedDatasetIDs.add(tId);
-              if (System.currentTimeMillis() - lastLuceneUpdate > MAX_MILLIS_BEFORE_LUCENE_UPDATE) {
-                erddap.updateLucene(changedDatasetIDs);
-                lastLuceneUpdate = System.currentTimeMillis();
+              if (scheduler == null) {
+                if (!loadOneDataset(
+                    tId,
+                    xmlReader,
+                    nTry,
+                    changedDatasetIDs,
+                    datasetsThatFailedToLoadSB,
+                    failedDatasetsWithErrorsSB)) return;
+              } else {
+                scheduleDataset(
+                    scheduler,
+                    tId,
+                    xmlReader,
+                    nTry,
+                    changedDatasetIDs,
+                    datasetsThatFailedToLoadSB,
+                    failedDatasetsWithErrorsSB);
               }
-
-              // trigger subscription and dataset.onChange actions (after new dataset is in place)
-              EDD cooDataset = dataset == null ? oldDataset : dataset; // currentOrOld, may be null
-
-              Erddap.tryToDoActions(
-                  tId,
-                  cooDataset,
-                  startError + xmlReader.lineNumber() + " with Subscriptions",
-                  change);
             }
 
             break;
@@ -1427,6 +1328,22 @@ public class LoadDatasets extends Thread {
       nTryAndDatasets[1] = nDatasets;
       xmlReader.close();
       xmlReader = null;
+
+      // wait for the datasets which are still being loaded
+      if (scheduler != null) {
+        try {
+          scheduler.awaitAll();
+        } catch (InterruptedException e) {
+          String2.log(
+              "*** The LoadDatasets thread was interrupted at "
+                  + Calendar2.getCurrentISODateTimeStringLocalTZ());
+          scheduler.shutdownNow();
+          synchronized (publishLock) {
+            erddap.updateLucene(changedDatasetIDs);
+          }
+          interrupt(); // so run() knows
+        }
+      }
     } catch (Throwable t) {
       if (!isInterrupted()) {
         String subject =
@@ -1447,7 +1364,280 @@ public class LoadDatasets extends Thread {
           xmlReader.close();
         } catch (Exception e) {
         }
+      if (scheduler != null) scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * This reads the rest of the xml for one dataset and submits it to the scheduler, so that the
+   * dataset will be loaded (by loadOneDataset) in another thread as soon as the datasets that it
+   * depends on have been loaded. A dataset depends on the datasets in this ERDDAP that its
+   * sourceUrls (including those of child datasets) refer to, e.g., an EDDGridFromErddap which is
+   * the child of an EDDTableFromEDDGrid.
+   *
+   * @param xmlReader which has just read the dataset's &lt;dataset&gt; tag. When this returns, it
+   *     will have read the &lt;/dataset&gt; tag.
+   * @throws Exception if trouble (e.g., the xml is invalid)
+   */
+  private void scheduleDataset(
+      DatasetLoadScheduler scheduler,
+      String tId,
+      SimpleXMLReader xmlReader,
+      int nTry,
+      StringArray changedDatasetIDs,
+      StringBuilder datasetsThatFailedToLoadSB,
+      StringBuilder failedDatasetsWithErrorsSB)
+      throws Exception {
+
+    long startLine = xmlReader.lineNumber();
+    StringBuilder xml =
+        new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><erddapDatasets><dataset");
+    for (String name : xmlReader.attributeNames())
+      xml.append(' ' + name + "=\"" + XML.encodeAsXML(xmlReader.attributeValue(name)) + "\"");
+    xml.append('>');
+
+    // record the raw xml through </dataset>
+    HashSet<String> dependsOn = new HashSet<>();
+    xmlReader.startRecording();
+    do {
+      xmlReader.nextTag();
+      if (xmlReader.topTag().equals("/sourceUrl")) {
+        String tUrl = xmlReader.content();
+        if (EDStatic.urlIsThisComputer(tUrl)) dependsOn.add(File2.getNameNoExtension(tUrl));
+      }
+    } while (!xmlReader.allTags().equals("<erddapDatasets></dataset>"));
+    String body = xmlReader.stopRecording();
+    xml.append(body.isEmpty() ? "</dataset>" : body); // empty if <dataset ... />
+    xml.append("</erddapDatasets>\n");
+    dependsOn.remove(tId);
+    if (reallyVerbose && !dependsOn.isEmpty())
+      String2.log("datasetID=" + tId + " depends on " + String2.toCSSVString(dependsOn));
+
+    byte[] bytes = String2.stringToUtf8Bytes(xml.toString());
+    scheduler.submit(
+        tId,
+        dependsOn,
+        () -> {
+          SimpleXMLReader datasetReader = null;
+          try {
+            datasetReader =
+                new SimpleXMLReader(new ByteArrayInputStream(bytes), "erddapDatasets");
+            datasetReader.setLineNumber(startLine); // so error messages refer to datasets.xml
+            datasetReader.nextTag(); // <dataset>
+            loadOneDataset(
+                tId,
+                datasetReader,
+                nTry,
+                changedDatasetIDs,
+                datasetsThatFailedToLoadSB,
+                failedDatasetsWithErrorsSB);
+          } catch (Throwable t) {
+            String tError =
+                START_ERROR
+                    + startLine
+                    + "\n"
+                    + "While trying to load datasetID="
+                    + tId
+                    + "\n"
+                    + MustBe.throwableToString(t);
+            String2.log(tError);
+            synchronized (publishLock) {
+              warningsFromLoadDatasets.append(tError + "\n\n");
+            }
+          } finally {
+            if (datasetReader != null) datasetReader.close();
+          }
+        });
+  }
+
+  /**
+   * This makes one dataset from its xml. Tests override this to see when each dataset is made.
+   *
+   * @param type the dataset's type, e.g., EDDGridFromDap
+   * @param xmlReader which has just read the dataset's &lt;dataset&gt; tag
+   * @return the dataset
+   * @throws Throwable if trouble
+   */
+  EDD makeDataset(String type, SimpleXMLReader xmlReader) throws Throwable {
+    return EDD.fromXml(erddap, type, xmlReader);
+  }
+
+  /**
+   * This makes one dataset from its xml and puts it in place (or, if trouble, removes the old
+   * version of the dataset). If datasets are being loaded in parallel, this is called by several
+   * threads at once, so everything after the dataset is made is synchronized on publishLock.
+   *
+   * @param xmlReader which has just read the dataset's &lt;dataset&gt; tag. When this returns, it
+   *     will have read the &lt;/dataset&gt; tag.
+   * @return false if the LoadDatasets thread was interrupted (so it should stop)
+   * @throws RuntimeException if the error was so serious that LoadDatasets should stop
+   */
+  private boolean loadOneDataset(
+      String tId,
+      SimpleXMLReader xmlReader,
+      int nTry,
+      StringArray changedDatasetIDs,
+      StringBuilder datasetsThatFailedToLoadSB,
+      StringBuilder failedDatasetsWithErrorsSB) {
+    String startError = START_ERROR;
+    String type = xmlReader.attributeValue("type");
+    String change = "";
+    EDD dataset = null, oldDataset = null;
+    boolean oldCatInfoRemoved = false;
+    long timeToLoadThisDataset = System.currentTimeMillis();
+    EDStatic.cldLoading.put(tId, new EDStatic.CldInfo(nTry, timeToLoadThisDataset));
+    Throwable trouble = null;
+    try {
+      dataset = makeDataset(type, xmlReader);
+    } catch (Throwable t) {
+      trouble = t;
+    }
+    EDStatic.metrics
+        .datasetLoadDuration
+        .labelValues(
+            type != null && type.startsWith("EDDGrid")
+                ? Metrics.DatasetCategory.grid.name()
+                : Metrics.DatasetCategory.table.name(),
+            trouble == null
+                ? Metrics.ThreadStatus.success.name()
+                : Metrics.ThreadStatus.fail.name())
+        .observe(Unit.millisToSeconds(System.currentTimeMillis() - timeToLoadThisDataset));
+
+    synchronized (publishLock) {
+      try {
+        if (trouble != null) throw trouble;
+
+        // check for interruption right before making changes to Erddap
+        if (isInterrupted()) { // this is a likely place to catch interruption
+          String2.log(
+              "*** The LoadDatasets thread was interrupted at "
+                  + Calendar2.getCurrentISODateTimeStringLocalTZ());
+          erddap.updateLucene(changedDatasetIDs);
+          lastLuceneUpdate = System.currentTimeMillis();
+          return false;
+        }
+
+        // do several things in quick succession...
+        // (??? synchronize on (?) if really need avoid inconsistency)
+
+        // was there a dataset with the same datasetID?
+        oldDataset = erddap.gridDatasetHashMap.get(tId);
+        if (oldDataset == null) oldDataset = erddap.tableDatasetHashMap.get(tId);
+
+        // if oldDataset existed, remove its info from categoryInfo
+        // (check now, before put dataset in place, in case EDDGrid <--> EDDTable)
+        if (oldDataset != null) {
+          erddap.addRemoveDatasetInfo(REMOVE, erddap.categoryInfo, oldDataset);
+          oldCatInfoRemoved = true;
+        }
+
+        // put dataset in place
+        // (hashMap.put atomically replaces old version with new)
+        if ((oldDataset == null || oldDataset instanceof EDDGrid)
+            && dataset instanceof EDDGrid eddGrid) {
+          erddap.gridDatasetHashMap.put(tId, eddGrid); // was/is grid
+
+        } else if ((oldDataset == null || oldDataset instanceof EDDTable)
+            && dataset instanceof EDDTable eddTable) {
+          erddap.tableDatasetHashMap.put(tId, eddTable); // was/is table
+
+        } else if (dataset instanceof EDDGrid eddGrid) {
+          if (oldDataset != null) erddap.tableDatasetHashMap.remove(tId); // was table
+          erddap.gridDatasetHashMap.put(tId, eddGrid); // now grid
+
+        } else if (dataset instanceof EDDTable eddTable) {
+          if (oldDataset != null) erddap.gridDatasetHashMap.remove(tId); // was grid
+          erddap.tableDatasetHashMap.put(tId, eddTable); // now table
+        }
+
+        // add new info to categoryInfo
+        erddap.addRemoveDatasetInfo(ADD, erddap.categoryInfo, dataset);
+
+        // clear the dataset's cache
+        // since axis values may have changed and "last" may have changed
+        File2.deleteAllFiles(dataset.cacheDirectory());
+
+        change = dataset.changed(oldDataset);
+        if (change.isEmpty() && dataset instanceof EDDTable)
+          change = "The dataset was reloaded.";
+
+      } catch (Throwable t) {
+        dataset = null;
+        timeToLoadThisDataset = System.currentTimeMillis() - timeToLoadThisDataset;
+
+        // check for interruption right before making changes to Erddap
+        if (isInterrupted()) { // this is a likely place to catch interruption
+          String tError2 =
+              "*** The LoadDatasets thread was interrupted at "
+                  + Calendar2.getCurrentISODateTimeStringLocalTZ();
+          String2.log(tError2);
+          warningsFromLoadDatasets.append(tError2 + "\n\n");
+          erddap.updateLucene(changedDatasetIDs);
+          lastLuceneUpdate = System.currentTimeMillis();
+          return false;
+        }
+
+        // actually remove old dataset (if any existed)
+        EDD tDataset =
+            erddap.gridDatasetHashMap.remove(tId); // always ensure it was removed
+        if (tDataset == null) tDataset = erddap.tableDatasetHashMap.remove(tId);
+        if (oldDataset == null) oldDataset = tDataset;
+
+        // if oldDataset existed, remove it from categoryInfo
+        if (oldDataset != null && !oldCatInfoRemoved)
+          erddap.addRemoveDatasetInfo(REMOVE, erddap.categoryInfo, oldDataset);
+
+        String tError =
+            startError
+                + xmlReader.lineNumber()
+                + "\n"
+                + "While trying to load datasetID="
+                + tId
+                + " (after "
+                + timeToLoadThisDataset
+                + " ms)\n"
+                + MustBe.throwableToString(t);
+        String2.log(tError);
+        warningsFromLoadDatasets.append(tError + "\n\n");
+        datasetsThatFailedToLoadSB.append(tId + ", ");
+        failedDatasetsWithErrorsSB.append(tId).append(": ").append(tError).append("\n");
+
+        // stop???
+        if (!xmlReader.isOpen()) { // error was really serious
+          throw new RuntimeException(startError + xmlReader.lineNumber() + ": " + t, t);
+        }
+
+        // skip over the remaining tags for this dataset
+        try {
+          while (!xmlReader.allTags().equals("<erddapDatasets></dataset>"))
+            xmlReader.nextTag();
+        } catch (Throwable t2) {
+          throw new RuntimeException(startError + xmlReader.lineNumber() + ": " + t2, t2);
+        }
+
+        // change      (if oldDataset=null and new one failed to load, no change)
+        if (oldDataset != null) change = tError;
+      }
+      if (verbose) String2.log("change=" + change);
+      EDStatic.cldLoading.remove(tId);
+
+      // whether succeeded (new or swapped in) or failed (removed), it was changed
+      changedDatasetIDs.add(tId);
+      if (System.currentTimeMillis() - lastLuceneUpdate > MAX_MILLIS_BEFORE_LUCENE_UPDATE) {
+        erddap.updateLucene(changedDatasetIDs);
+        lastLuceneUpdate = System.currentTimeMillis();
+      }
+
+      // trigger subscription and dataset.onChange actions (after new dataset is in place)
+      EDD cooDataset = dataset == null ? oldDataset : dataset; // currentOrOld, may be null
+
+      Erddap.tryToDoActions(
+          tId,
+          cooDataset,
+          startError + xmlReader.lineNumber() + " with Subscriptions",
+          change);
     }
+    return true;
   }
 
   private void emailOrphanDatasetsRemoved(
@@ -1747,6 +1937,8 @@ public class LoadDatasets extends Thread {
     // it was active; finish removing it
     // do in quick succession...   (???synchronized on ?)
     String2.log("*** unloading datasetID=" + tId);
+    if (oldEdd instanceof EDDTableFromMqtt mqttEdd) mqttEdd.unload(); // flush buffered rows
+    if (oldEdd instanceof EDDTableFromHttpGet httpGetEdd) httpGetEdd.unload(); // stop compacting
     erddap.addRemoveDatasetInfo(REMOVE, erddap.categoryInfo, oldEdd);
     File2.deleteAllFiles(EDD.cacheDirectory(tId));
     changedDatasetIDs.add(tId);
@@ -0,0 +1,511 @@
+/*
+ * DapBlockCache Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.IntArray;
+import com.cohort.array.PAType;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.util.File2;
+import com.cohort.util.Math2;
+import com.cohort.util.MustBe;
+import com.cohort.util.String2;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.Metrics;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DapBlockCache is an optional, size-bounded cache of the data that EDDGridFromDap gets from a
+ * remote OPeNDAP server, so that popular remote datasets aren't downloaded again for every WMS
+ * tile, .png, or small .csv request.
+ *
+ * <p>Requests are aligned to fixed blocks of indices along each axis. For a request with a stride,
+ * the blocks are in the lattice of indices that the request gets (start % stride, plus multiples of
+ * stride), so requests with the same stride and phase share blocks. Blocks are stored on disk (in
+ * the dataset's cache directory, limited to EDStatic.config.dapBlockCacheMB per dataset) and the
+ * most recently used blocks (of all datasets) are also kept in memory (see maxMemoryBytes).
+ * Concurrent requests for a block which isn't cached are coalesced, so the block is only
+ * downloaded once.
+ *
+ * <p>Each instance of a dataset gets a new, empty cache, so the cache is invalidated whenever the
+ * dataset is reloaded (every reloadEveryNMinutes). Blocks are identified by their size, too, so
+ * when the leftmost axis grows (see EDDGridFromDap.lowUpdate), the blocks at the end of that axis
+ * (which had fewer values than a full block) are never used again. leftmostAxisGrew() discards
+ * them.
+ */
+public class DapBlockCache {
+
+  /**
+   * Set this to true (by calling verbose=true in your program, not by changing the code here) if
+   * you want lots of diagnostic messages sent to String2.log.
+   */
+  public static boolean verbose = false;
+
+  /** The target number of values in a block. */
+  public static final int TARGET_BLOCK_VALUES = 1 << 17;
+
+  /**
+   * Requests which would need blocks with more than MAX_OVERFETCH times the number of requested
+   * values (e.g., a time series at one lat,lon point) don't use the cache.
+   */
+  public static final int MAX_OVERFETCH = 8;
+
+  /**
+   * The maximum number of bytes of blocks (of all datasets) that are kept in memory. EDConfig sets
+   * this from setup.xml's &lt;dapBlockCacheMemoryMB&gt;.
+   */
+  public static volatile long maxMemoryBytes = 32L * Math2.BytesPerMB;
+
+  /** The blocks in memory (of all datasets). This is accessed in order of use (so it is LRU). */
+  private static final LinkedHashMap<String, MemoryBlock> memory =
+      new LinkedHashMap<>(16, 0.75f, true); // true means 'eldest' based on when last accessed
+
+  private static long memoryBytes = 0;
+  private static final AtomicLong nInstances = new AtomicLong();
+
+  private record MemoryBlock(PrimitiveArray pa, long nBytes, boolean partial) {}
+
+  private record DiskBlock(String fileName, long nBytes, boolean partial) {}
+
+  /** This reads a block of a variable's data from the source. */
+  @FunctionalInterface
+  public interface BlockReader {
+    /**
+     * This reads a block of a variable's data from the source.
+     *
+     * @param sourceName the variable's sourceName
+     * @param constraints the block's constraints: av*3+0=startIndex, av*3+1=stride,
+     *     av*3+2=stopIndex
+     * @return the block's values (in the standard order). The cache keeps the PrimitiveArray, so
+     *     don't change it after returning it.
+     * @throws Throwable if trouble
+     */
+    PrimitiveArray read(String sourceName, IntArray constraints) throws Throwable;
+  }
+
+  // unique among this JVM's instances, it is the prefix of this instance's keys
+  private final String id;
+  private final String dir;
+  private final long maxDiskBytes;
+  private final int blockSize[]; // in the request's lattice, for each axis
+  private final LinkedHashMap<String, DiskBlock> disk = new LinkedHashMap<>(16, 0.75f, true);
+  private long diskBytes = 0;
+  private final AtomicLong nFiles = new AtomicLong();
+  private final ConcurrentHashMap<String, CompletableFuture<PrimitiveArray>> inFlight =
+      new ConcurrentHashMap<>();
+
+  /**
+   * This makes a DapBlockCache for a new instance of a dataset and deletes the blocks of the
+   * previous instance.
+   *
+   * @param datasetID the dataset's datasetID
+   * @param axisSizes the current size of each axis
+   * @return a DapBlockCache, or null if EDStatic.config.dapBlockCacheMB is 0
+   */
+  public static DapBlockCache create(String datasetID, int axisSizes[]) {
+    if (EDStatic.config == null || EDStatic.config.dapBlockCacheMB <= 0) return null;
+    String tDir = EDD.cacheDirectory(datasetID) + "dapBlocks/";
+    File2.deleteAllFiles(tDir, true, true); // the previous instance's blocks
+    return new DapBlockCache(
+        datasetID, tDir, EDStatic.config.dapBlockCacheMB * (long) Math2.BytesPerMB, axisSizes);
+  }
+
+  /**
+   * The constructor.
+   *
+   * @param datasetID the dataset's datasetID
+   * @param tDir the directory (with slash at end) in which this makes a subdirectory for its
+   *     blocks
+   * @param tMaxDiskBytes the maximum number of bytes of blocks on disk
+   * @param axisSizes the current size of each axis
+   */
+  DapBlockCache(String datasetID, String tDir, long tMaxDiskBytes, int axisSizes[]) {
+    id = datasetID + "_" + nInstances.incrementAndGet();
+    dir = tDir + id + "/";
+    File2.makeDirectory(dir);
+    maxDiskBytes = tMaxDiskBytes;
+    blockSize = blockSize(axisSizes);
+  }
+
+  /**
+   * This decides the size of the blocks (in the request's lattice) for each axis: the block sizes
+   * of the axes (right to left, taking turns) are doubled until the blocks have about
+   * TARGET_BLOCK_VALUES values. The leftmost axis (usually time, which grows) is done last.
+   *
+   * @param axisSizes the size of each axis
+   * @return the block size for each axis
+   */
+  static int[] blockSize(int axisSizes[]) {
+    int nAv = axisSizes.length;
+    int bs[] = new int[nAv];
+    Arrays.fill(bs, 1);
+    long nValues = 1;
+    int firstAv = nAv == 1 ? 0 : 1;
+    boolean grew = true;
+    while (grew) {
+      grew = false;
+      for (int av = nAv - 1; av >= firstAv; av--) {
+        if (bs[av] < axisSizes[av] && nValues * 2 <= TARGET_BLOCK_VALUES) {
+          bs[av] *= 2;
+          nValues *= 2;
+          grew = true;
+        }
+      }
+    }
+    while (bs[0] < axisSizes[0] && nValues * 2 <= TARGET_BLOCK_VALUES) {
+      bs[0] *= 2;
+      nValues *= 2;
+    }
+    return bs;
+  }
+
+  /**
+   * This indicates if a request should use the cache. It shouldn't if the blocks it needs have
+   * lots more values than the request (see MAX_OVERFETCH).
+   *
+   * @param constraints the request's constraints: av*3+0=startIndex, av*3+1=stride,
+   *     av*3+2=stopIndex
+   * @param axisSizes the current size of each axis
+   * @return true if the request should use the cache
+   */
+  public boolean isWorthwhile(IntArray constraints, int axisSizes[]) {
+    double nRequested = 1;
+    double nBlockValues = 1;
+    for (int av = 0; av < axisSizes.length; av++) {
+      int start = constraints.get(av * 3);
+      int stride = constraints.get(av * 3 + 1);
+      int stop = constraints.get(av * 3 + 2);
+      int phase = start % stride;
+      int k0 = start / stride;
+      int k1 = (stop - phase) / stride;
+      int kMax = (axisSizes[av] - 1 - phase) / stride;
+      int bs = blockSize[av];
+      nRequested *= k1 - k0 + 1;
+      nBlockValues *= Math.min((k1 / bs + 1) * (long) bs, kMax + 1L) - (k0 / bs) * (long) bs;
+    }
+    return nBlockValues <= MAX_OVERFETCH * nRequested;
+  }
+
+  /**
+   * This gets a variable's data for a request, from the cached blocks if possible. Blocks which
+   * aren't cached are read with the reader and cached.
+   *
+   * @param sourceName the variable's sourceName
+   * @param constraints the request's constraints: av*3+0=startIndex, av*3+1=stride,
+   *     av*3+2=stopIndex
+   * @param axisSizes the current size of each axis
+   * @param reader reads blocks from the source
+   * @return the requested values (in the standard order)
+   * @throws Throwable if trouble
+   */
+  public PrimitiveArray getData(
+      String sourceName, IntArray constraints, int axisSizes[], BlockReader reader)
+      throws Throwable {
+
+    // find the requested part of each axis's lattice and the blocks it needs
+    int nAv = axisSizes.length;
+    int stride[] = new int[nAv];
+    int phase[] = new int[nAv];
+    int k0[] = new int[nAv];
+    int k1[] = new int[nAv];
+    int kMax[] = new int[nAv];
+    int b0[] = new int[nAv];
+    int nb[] = new int[nAv];
+    long nValues = 1;
+    int nBlocks = 1;
+    for (int av = 0; av < nAv; av++) {
+      int start = constraints.get(av * 3);
+      stride[av] = constraints.get(av * 3 + 1);
+      phase[av] = start % stride[av];
+      k0[av] = start / stride[av];
+      k1[av] = (constraints.get(av * 3 + 2) - phase[av]) / stride[av];
+      kMax[av] = (axisSizes[av] - 1 - phase[av]) / stride[av];
+      b0[av] = k0[av] / blockSize[av];
+      nb[av] = k1[av] / blockSize[av] - b0[av] + 1;
+      nValues *= k1[av] - k0[av] + 1;
+      nBlocks = Math.multiplyExact(nBlocks, nb[av]);
+    }
+    Math2.ensureArraySizeOkay(nValues, "DapBlockCache.getData");
+
+    // get the blocks (in standard order)
+    PrimitiveArray blocks[] = new PrimitiveArray[nBlocks];
+    int b[] = b0.clone();
+    for (int i = 0; i < nBlocks; i++) {
+      blocks[i] = getBlock(sourceName, stride, phase, b, kMax, reader);
+      for (int av = nAv - 1; av >= 0; av--) {
+        if (++b[av] < b0[av] + nb[av]) break;
+        b[av] = b0[av];
+      }
+    }
+
+    // copy the requested values, one run (along the rightmost axis) at a time
+    int last = nAv - 1;
+    PrimitiveArray results =
+        PrimitiveArray.factory(blocks[0].elementType(), (int) nValues, false);
+    int k[] = k0.clone(); // for all but the last axis
+    while (true) {
+      int blockBase = 0;
+      for (int av = 0; av < last; av++)
+        blockBase = blockBase * nb[av] + k[av] / blockSize[av] - b0[av];
+      blockBase *= nb[last];
+      for (int bl = b0[last]; bl < b0[last] + nb[last]; bl++) {
+        int blStart = bl * blockSize[last];
+        int kStart = Math.max(k0[last], blStart);
+        int kEnd = Math.min(k1[last], blStart + blockSize[last] - 1);
+        int offset = 0;
+        for (int av = 0; av < last; av++) {
+          int bav = k[av] / blockSize[av];
+          offset = offset * extent(av, bav, kMax) + k[av] - bav * blockSize[av];
+        }
+        offset = offset * extent(last, bl, kMax) + kStart - blStart;
+        results.addFromPA(blocks[blockBase + bl - b0[last]], offset, kEnd - kStart + 1);
+      }
+
+      // next run
+      int av = last - 1;
+      while (av >= 0) {
+        if (++k[av] <= k1[av]) break;
+        k[av] = k0[av];
+        av--;
+      }
+      if (av < 0) break;
+    }
+    return results;
+  }
+
+  /** The number of lattice points in block b of axis av. */
+  private int extent(int av, int b, int kMax[]) {
+    return Math.min(blockSize[av], kMax[av] + 1 - b * blockSize[av]);
+  }
+
+  /** This gets a block from memory, disk, or (if it isn't cached) the reader. */
+  private PrimitiveArray getBlock(
+      String sourceName, int stride[], int phase[], int b[], int kMax[], BlockReader reader)
+      throws Throwable {
+
+    // the key includes each axis's block size, so blocks at the end of a growing axis change keys
+    int nAv = b.length;
+    StringBuilder sb = new StringBuilder(id).append('|').append(sourceName);
+    IntArray blockConstraints = new IntArray(nAv * 3, false);
+    int nValues = 1;
+    boolean partial = false;
+    for (int av = 0; av < nAv; av++) {
+      int ext = extent(av, b[av], kMax);
+      int kStart = b[av] * blockSize[av];
+      sb.append('|').append(stride[av]).append(',').append(phase[av]);
+      sb.append(',').append(b[av]).append(',').append(ext);
+      blockConstraints.add(phase[av] + kStart * stride[av]);
+      blockConstraints.add(stride[av]);
+      blockConstraints.add(phase[av] + (kStart + ext - 1) * stride[av]);
+      nValues *= ext;
+      if (av == 0) partial = ext < blockSize[0];
+    }
+    String key = sb.toString();
+
+    PrimitiveArray pa = getFromMemory(key);
+    if (pa != null) {
+      incrementRequests(true);
+      return pa;
+    }
+
+    CompletableFuture<PrimitiveArray> future = new CompletableFuture<>();
+    CompletableFuture<PrimitiveArray> other = inFlight.putIfAbsent(key, future);
+    if (other != null) {
+      // another thread is getting this block
+      try {
+        PrimitiveArray otherPa = other.get();
+        incrementRequests(true);
+        return otherPa;
+      } catch (ExecutionException e) {
+        // it failed (perhaps because its request was cancelled), so try again in this thread
+        incrementRequests(false);
+        return ensureSize(reader.read(sourceName, blockConstraints), nValues, key);
+      }
+    }
+    try {
+      pa = getFromMemory(key); // it may have been added since the check above
+      if (pa == null) pa = readFromDisk(key);
+      if (pa == null) {
+        incrementRequests(false);
+        pa = ensureSize(reader.read(sourceName, blockConstraints), nValues, key);
+        writeToDisk(key, pa, partial);
+      } else {
+        incrementRequests(true);
+      }
+      putInMemory(key, pa, partial);
+      future.complete(pa);
+      return pa;
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+      throw t;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  private static PrimitiveArray ensureSize(PrimitiveArray pa, int nValues, String key) {
+    if (pa.size() != nValues)
+      throw new RuntimeException(
+          String2.ERROR
+              + " in DapBlockCache: the source returned "
+              + pa.size()
+              + " values for block "
+              + key
+              + ", but "
+              + nValues
+              + " were expected.");
+    return pa;
+  }
+
+  private static PrimitiveArray getFromMemory(String key) {
+    synchronized (memory) {
+      MemoryBlock block = memory.get(key);
+      return block == null ? null : block.pa();
+    }
+  }
+
+  private static void putInMemory(String key, PrimitiveArray pa, boolean partial) {
+    long nBytes = (long) pa.size() * pa.elementSize();
+    long tMaxMemoryBytes = maxMemoryBytes;
+    if (nBytes > tMaxMemoryBytes) return;
+    synchronized (memory) {
+      MemoryBlock old = memory.put(key, new MemoryBlock(pa, nBytes, partial));
+      if (old != null) memoryBytes -= old.nBytes();
+      memoryBytes += nBytes;
+
+      // remove the least recently used blocks
+      Iterator<MemoryBlock> it = memory.values().iterator();
+      while (memoryBytes > tMaxMemoryBytes && it.hasNext()) {
+        memoryBytes -= it.next().nBytes();
+        it.remove();
+      }
+    }
+  }
+
+  private PrimitiveArray readFromDisk(String key) {
+    DiskBlock block;
+    synchronized (disk) {
+      block = disk.get(key);
+    }
+    if (block == null) return null;
+    try (DataInputStream dis =
+        new DataInputStream(
+            new BufferedInputStream(new FileInputStream(dir + block.fileName())))) {
+      PAType paType = PAType.fromCohortString(dis.readUTF());
+      int n = dis.readInt();
+      PrimitiveArray pa = PrimitiveArray.factory(paType, n, false);
+      pa.readDis(dis, n);
+      return pa;
+    } catch (Exception e) {
+      // e.g., the file was deleted by the cache cleaner
+      if (verbose)
+        String2.log(MustBe.throwable("DapBlockCache.readFromDisk(" + block.fileName() + ")", e));
+      synchronized (disk) {
+        if (disk.remove(key, block)) diskBytes -= block.nBytes();
+      }
+      File2.delete(dir + block.fileName());
+      return null;
+    }
+  }
+
+  private void writeToDisk(String key, PrimitiveArray pa, boolean partial) {
+    String fileName = nFiles.incrementAndGet() + ".blk";
+    try {
+      File2.makeDirectory(dir); // in case the cache cleaner deleted it
+      try (DataOutputStream dos =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(dir + fileName)))) {
+        dos.writeUTF(PAType.toCohortString(pa.elementType()));
+        dos.writeInt(pa.size());
+        pa.writeDos(dos);
+      }
+    } catch (Exception e) {
+      String2.log(MustBe.throwable("DapBlockCache.writeToDisk(" + dir + fileName + ")", e));
+      File2.delete(dir + fileName);
+      return;
+    }
+
+    long nBytes = File2.length(dir + fileName);
+    List<String> evicted = new ArrayList<>();
+    synchronized (disk) {
+      DiskBlock old = disk.put(key, new DiskBlock(fileName, nBytes, partial));
+      if (old != null) {
+        diskBytes -= old.nBytes();
+        evicted.add(old.fileName());
+      }
+      diskBytes += nBytes;
+
+      // remove the least recently used blocks
+      Iterator<DiskBlock> it = disk.values().iterator();
+      while (diskBytes > maxDiskBytes && it.hasNext()) {
+        DiskBlock eldest = it.next();
+        diskBytes -= eldest.nBytes();
+        evicted.add(eldest.fileName());
+        it.remove();
+      }
+    }
+    for (String name : evicted) File2.delete(dir + name);
+  }
+
+  /**
+   * This discards the blocks at the end of the leftmost axis which had fewer values than a full
+   * block. Call this when the leftmost axis has grown.
+   */
+  public void leftmostAxisGrew() {
+    String prefix = id + "|";
+    synchronized (memory) {
+      Iterator<Map.Entry<String, MemoryBlock>> it = memory.entrySet().iterator();
+      while (it.hasNext()) {
+        Map.Entry<String, MemoryBlock> entry = it.next();
+        if (entry.getValue().partial() && entry.getKey().startsWith(prefix)) {
+          memoryBytes -= entry.getValue().nBytes();
+          it.remove();
+        }
+      }
+    }
+    List<String> evicted = new ArrayList<>();
+    synchronized (disk) {
+      Iterator<DiskBlock> it = disk.values().iterator();
+      while (it.hasNext()) {
+        DiskBlock block = it.next();
+        if (block.partial()) {
+          diskBytes -= block.nBytes();
+          evicted.add(block.fileName());
+          it.remove();
+        }
+      }
+    }
+    for (String name : evicted) File2.delete(dir + name);
+    if (verbose) String2.log("DapBlockCache.leftmostAxisGrew " + id + " removed " + evicted.size());
+  }
+
+  /** The number of blocks (of this dataset) on disk. */
+  public int getNDiskBlocks() {
+    synchronized (disk) {
+      return disk.size();
+    }
+  }
+
+  private static void incrementRequests(boolean cached) {
+    if (EDStatic.metrics != null)
+      EDStatic.metrics
+          .dapBlockCacheRequest
+          .labelValues(cached ? Metrics.Cache.cached.name() : Metrics.Cache.not_cached.name())
+          .inc();
+  }
+}
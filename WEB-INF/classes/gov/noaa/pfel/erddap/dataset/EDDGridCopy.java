@@ -283,18 +283,15 @@ public class EDDGridCopy extends EDDGrid {
 
         // check if taskThread has finished previously assigned tasks for this dataset
         EDStatic.ensureTaskThreadIsRunningIfNeeded(); // ensure info is up-to-date
-        Integer lastAssignedTask = EDStatic.lastAssignedTask.get(datasetID);
-        boolean pendingTasks =
-            lastAssignedTask != null && EDStatic.lastFinishedTask.get() < lastAssignedTask;
+        int nUnfinishedTasks = EDStatic.nUnfinishedTasks(datasetID);
+        boolean pendingTasks = nUnfinishedTasks > 0;
         if (verbose)
           String2.log(
-              "  lastFinishedTask="
-                  + EDStatic.lastFinishedTask.get()
-                  + " < lastAssignedTask("
+              "  nUnfinishedTasks("
                   + tDatasetID
                   + ")="
-                  + lastAssignedTask
-                  + "? pendingTasks="
+                  + nUnfinishedTasks
+                  + " pendingTasks="
                   + pendingTasks);
         if (!pendingTasks) {
 
@@ -355,7 +352,7 @@ public class EDDGridCopy extends EDDGrid {
             taskOA[3] = copyDatasetDir;
             taskOA[4] = fileName;
             taskOA[5] = ".nc";
-            int tTaskNumber = EDStatic.addTask(taskOA);
+            int tTaskNumber = EDStatic.addTask(datasetID, nThreads, taskOA);
             if (tTaskNumber >= 0) {
               taskNumber = tTaskNumber;
               if (reallyVerbose)
@@ -386,7 +383,8 @@ public class EDDGridCopy extends EDDGrid {
             Object taskOA[] = new Object[2];
             taskOA[0] = TaskThread.TASK_SET_FLAG;
             taskOA[1] = datasetID;
-            taskNumber = EDStatic.addTask(taskOA); // TASK_SET_FLAG will always be added
+            // TASK_SET_FLAG will always be added
+            taskNumber = EDStatic.addTask(datasetID, nThreads, taskOA);
             if (reallyVerbose) String2.log("  task#" + taskNumber + " TASK_SET_FLAG " + datasetID);
           }
         }
@@ -398,13 +396,12 @@ public class EDDGridCopy extends EDDGrid {
                 + MustBe.throwableToString(t));
       }
       if (taskNumber >= 0) {
-        EDStatic.lastAssignedTask.put(datasetID, taskNumber);
         EDStatic
             .ensureTaskThreadIsRunningIfNeeded(); // clients (like this class) are responsible for
         // checking on it
 
         if (EDStatic.config.forceSynchronousLoading) {
-          while (EDStatic.lastFinishedTask.get() < taskNumber) {
+          while (EDStatic.nUnfinishedTasks(datasetID) > 0) {
             Thread.sleep(2000);
           }
         }
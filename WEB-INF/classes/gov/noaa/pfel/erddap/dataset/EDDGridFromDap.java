@@ -71,6 +71,9 @@ public class EDDGridFromDap extends EDDGrid {
    */
   public static final boolean acceptDeflate = true;
 
+  /** The cache of blocks of data from the source, or null if not caching. See DapBlockCache. */
+  protected DapBlockCache blockCache = null;
+
   /**
    * This constructs an EDDGridFromDap based on the information in an .xml file.
    *
@@ -571,10 +574,20 @@ public class EDDGridFromDap extends EDDGrid {
               + (cTime >= 600000 ? "  (>10m!)" : cTime >= 10000 ? "  (>10s!)" : "")
               + "\n");
 
+    blockCache = DapBlockCache.create(datasetID, axisSizes());
+
     // very last thing: saveDimensionValuesInFile
     if (!dimensionValuesInMemory) saveDimensionValuesInFile();
   }
 
+  /** The current size of each axis. */
+  private int[] axisSizes() {
+    int sizes[] = new int[axisVariables.length];
+    for (int av = 0; av < axisVariables.length; av++)
+      sizes[av] = axisVariables[av].sourceValues().size();
+    return sizes;
+  }
+
   /**
    * This does the actual incremental update of this dataset (i.e., for real time datasets).
    * EDDGridFromDap's version deals with the leftmost axis growing.
@@ -817,6 +830,7 @@ public class EDDGridFromDap extends EDDGrid {
               newMax.getDouble(),
               ""));
     edvga.clearSliderCsvValues(); // do last, to force recreation next time needed
+    if (blockCache != null) blockCache.leftmostAxisGrew();
 
     updateCount++;
     long thisTime = System.currentTimeMillis() - startUpdateMillis;
@@ -969,6 +983,11 @@ public class EDDGridFromDap extends EDDGrid {
     String constraint = buildDapArrayQuery(tConstraints);
 
     DConnect dConnect = new DConnect(localSourceUrl, acceptDeflate, 1, 1);
+    int tAxisSizes[] = blockCache == null ? null : axisSizes();
+    if (blockCache != null && blockCache.isWorthwhile(tConstraints, tAxisSizes))
+      return getSourceDataViaBlockCache(
+          language, dConnect, tDataVariables, tConstraints, tAxisSizes);
+
     PrimitiveArray results[] = new PrimitiveArray[axisVariables.length + tDataVariables.length];
     for (int dv = 0; dv < tDataVariables.length; dv++) {
       // ???why not get all the dataVariables at once?
@@ -976,33 +995,8 @@ public class EDDGridFromDap extends EDDGrid {
       // so breaking into parts avoids the problem.
 
       // get the data
-      PrimitiveArray pa[] = null;
-      try {
-        pa =
-            OpendapHelper.getPrimitiveArrays(
-                dConnect, "?" + tDataVariables[dv].sourceName() + constraint);
-      } catch (Throwable t) {
-        EDStatic.rethrowClientAbortException(t); // first thing in catch{}
-
-        // if OutOfMemoryError or too much data, rethrow t
-        String tToString = t.toString();
-        if (Thread.currentThread().isInterrupted()
-            || t instanceof InterruptedException
-            || t instanceof OutOfMemoryError
-            || tToString.indexOf(Math2.memoryTooMuchData) >= 0
-            || tToString.indexOf(Math2.TooManyOpenFiles) >= 0) throw t;
-
-        String2.log(MustBe.throwableToString(t));
-        throw t instanceof WaitThenTryAgainException
-            ? t
-            : new WaitThenTryAgainException(
-                EDStatic.simpleBilingual(language, Message.WAIT_THEN_TRY_AGAIN)
-                    + "\n("
-                    + EDMessages.errorFromDataSource
-                    + t
-                    + ")",
-                t);
-      }
+      PrimitiveArray pa[] =
+          getPrimitiveArrays(language, dConnect, tDataVariables[dv].sourceName() + constraint);
 
       if (pa.length == 1) {
         // it's a DArray
@@ -1059,6 +1053,113 @@ public class EDDGridFromDap extends EDDGrid {
     return results;
   }
 
+  /**
+   * This gets the PrimitiveArrays for a DAP query (e.g., "sst[0:10][2:3:100][5:200]") from the
+   * source.
+   *
+   * @param language the index of the selected language
+   * @param dConnect the connection to the source
+   * @param query the DAP query, without the leading "?"
+   * @return the PrimitiveArrays: just the data for a DArray, or the data and then the axis values
+   *     for a DGrid
+   * @throws Throwable if trouble (notably, WaitThenTryAgainException)
+   */
+  private PrimitiveArray[] getPrimitiveArrays(int language, DConnect dConnect, String query)
+      throws Throwable {
+    try {
+      return OpendapHelper.getPrimitiveArrays(dConnect, "?" + query);
+    } catch (Throwable t) {
+      EDStatic.rethrowClientAbortException(t); // first thing in catch{}
+
+      // if OutOfMemoryError or too much data, rethrow t
+      String tToString = t.toString();
+      if (Thread.currentThread().isInterrupted()
+          || t instanceof InterruptedException
+          || t instanceof OutOfMemoryError
+          || tToString.indexOf(Math2.memoryTooMuchData) >= 0
+          || tToString.indexOf(Math2.TooManyOpenFiles) >= 0) throw t;
+
+      String2.log(MustBe.throwableToString(t));
+      throw t instanceof WaitThenTryAgainException
+          ? t
+          : new WaitThenTryAgainException(
+              EDStatic.simpleBilingual(language, Message.WAIT_THEN_TRY_AGAIN)
+                  + "\n("
+                  + EDMessages.errorFromDataSource
+                  + t
+                  + ")",
+              t);
+    }
+  }
+
+  /**
+   * This is getSourceData's alternative for when the dataset has a blockCache. The data comes from
+   * the cached blocks, which are read from the source (and checked) as needed.
+   */
+  private PrimitiveArray[] getSourceDataViaBlockCache(
+      int language,
+      DConnect dConnect,
+      EDV tDataVariables[],
+      IntArray tConstraints,
+      int tAxisSizes[])
+      throws Throwable {
+
+    int nAv = axisVariables.length;
+    PrimitiveArray results[] = new PrimitiveArray[nAv + tDataVariables.length];
+    for (int av = 0; av < nAv; av++)
+      results[av] =
+          axisVariables[av]
+              .sourceValues()
+              .subset(
+                  tConstraints.get(av * 3),
+                  tConstraints.get(av * 3 + 1),
+                  tConstraints.get(av * 3 + 2));
+
+    DapBlockCache.BlockReader reader =
+        (sourceName, blockConstraints) -> {
+          PrimitiveArray pa[] =
+              getPrimitiveArrays(
+                  language, dConnect, sourceName + buildDapArrayQuery(blockConstraints));
+          if (pa.length == nAv + 1) {
+            // it's a DGrid. Since the cached blocks will be used without GridDataAccessor seeing
+            // the source's axis values, compare them to the expected axis values here.
+            for (int av = 0; av < nAv; av++) {
+              String tError =
+                  axisVariables[av]
+                      .sourceValues()
+                      .subset(
+                          blockConstraints.get(av * 3),
+                          blockConstraints.get(av * 3 + 1),
+                          blockConstraints.get(av * 3 + 2))
+                      .almostEqual(pa[av + 1]);
+              if (tError.length() > 0)
+                throw new WaitThenTryAgainException(
+                    EDStatic.simpleBilingual(language, Message.WAIT_THEN_TRY_AGAIN)
+                        + "\nDetails: The source's axis values for "
+                        + sourceName
+                        + ", axis="
+                        + av
+                        + " don't equal the expected axis values.\n"
+                        + tError);
+            }
+          } else if (pa.length != 1) {
+            throw new WaitThenTryAgainException(
+                EDStatic.simpleBilingual(language, Message.WAIT_THEN_TRY_AGAIN)
+                    + "\nDetails: An unexpected data structure was returned from the source (size observed="
+                    + pa.length
+                    + ", expected="
+                    + (nAv + 1)
+                    + ").");
+          }
+          return pa[0];
+        };
+
+    for (int dv = 0; dv < tDataVariables.length; dv++)
+      results[nAv + dv] =
+          blockCache.getData(tDataVariables[dv].sourceName(), tConstraints, tAxisSizes, reader);
+    return results;
+  }
+
   /**
    * This does its best to generate a clean, ready-to-use datasets.xml entry for an EDDGridFromDap.
    * The XML can then be edited by hand and added to the datasets.xml file.
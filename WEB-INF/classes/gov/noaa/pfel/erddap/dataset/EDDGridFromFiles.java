@@ -953,6 +953,7 @@ public abstract class EDDGridFromFiles extends EDDGrid implements WatchUpdateHan
             className,
             EDStatic.DefaultMaxMakeCopyFileTasks,
             datasetID,
+            nThreads,
             cacheFromUrl,
             fileNameRegex,
             recursive,
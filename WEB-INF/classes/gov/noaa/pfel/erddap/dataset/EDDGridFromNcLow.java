@@ -19,6 +19,7 @@ import com.cohort.util.String2;
 import com.cohort.util.Units2;
 import com.cohort.util.XML;
 import com.google.common.collect.ImmutableList;
+import gov.noaa.pfel.coastwatch.griddata.NcFileCache;
 import gov.noaa.pfel.coastwatch.griddata.NcHelper;
 import gov.noaa.pfel.coastwatch.griddata.OpendapHelper;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
@@ -160,7 +161,8 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
     String getWhat = "globalAttributes";
     String group = "";
     int groupSlashCount = 0;
-    try (NetcdfFile ncFile = NcHelper.openFile(tFullName)) {
+    try (NcFileCache.Handle ncHandle = NcFileCache.acquire(tFullName)) {
+      NetcdfFile ncFile = ncHandle.file();
 
       // This is cognizant of special axis0
       for (int avi = 0; avi < sourceAxisNames.size(); avi++) {
@@ -226,6 +228,7 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
 
       // get group atts and all higher groups (up to root)
       NcHelper.getGroupAttributes(ncFile.findGroup(group), sourceGlobalAttributes);
+      ncHandle.finished();
 
     } catch (Throwable t) {
       throw new RuntimeException(
@@ -261,7 +264,8 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
       String tFullName, StringArray sourceAxisNames, StringArray sourceDataNames) throws Throwable {
 
     String getWhat = "?";
-    try (NetcdfFile ncFile = NcHelper.openFile(tFullName)) {
+    try (NcFileCache.Handle ncHandle = NcFileCache.acquire(tFullName)) {
+      NetcdfFile ncFile = ncHandle.file();
       PrimitiveArray[] avPa = new PrimitiveArray[sourceAxisNames.size()];
 
       // try to find 1 dataVariable in case needed below
@@ -297,6 +301,7 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
         }
       }
 
+      ncHandle.finished();
       return avPa;
 
     } catch (Throwable t) {
@@ -386,7 +391,8 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
     PrimitiveArray[] paa = new PrimitiveArray[ndv];
     int nValues = -1; // not yet calculated
     EDV edv = null;
-    try (NetcdfFile ncFile = NcHelper.openFile(tFullName)) {
+    try (NcFileCache.Handle ncHandle = NcFileCache.acquire(tFullName)) {
+      NetcdfFile ncFile = ncHandle.file();
       List<Variable> vars = ncFile.getVariables();
       for (int dvi = 0; dvi < ndv; dvi++) {
         edv = tDataVariables.get(dvi);
@@ -478,6 +484,7 @@ public abstract class EDDGridFromNcLow extends EDDGridFromFiles {
       }
 
       // I care about this exception
+      ncHandle.finished();
       return paa;
 
     } catch (Throwable t) {
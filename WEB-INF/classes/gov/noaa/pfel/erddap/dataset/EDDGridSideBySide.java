@@ -20,12 +20,14 @@ import gov.noaa.pfel.erddap.handlers.EDDGridSideBySideHandler;
 import gov.noaa.pfel.erddap.handlers.SaxHandlerClass;
 import gov.noaa.pfel.erddap.util.EDMessages.Message;
 import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.ThreadedWorkManager;
 import gov.noaa.pfel.erddap.variable.*;
 import jakarta.servlet.http.HttpServletRequest;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * This class represents a grid dataset created by aggregating two or more datasets side by side. So
@@ -538,7 +540,10 @@ public class EDDGridSideBySide extends EDDGrid {
       throws Throwable {
 
     // simple approach (not most efficient for tiny request, but fine for big requests):
-    //  get results for each tDataVariable, one-by-one
+    //  get results for each tDataVariable, one-by-one (concurrently if nThreads > 1,
+    //  so the latency is that of the slowest child, not the sum of all of them).
+    //  When this is called by GridDataAccessor's read ahead tasks, the children are requested
+    //  by the nested SharedWorkExecutor; one level deeper, they are requested serially.
     // FUTURE: more efficient to gang together all dataVariables from a given child
     int nAv = axisVariables.length;
     int tnDv = tDataVariables.length;
@@ -557,87 +562,137 @@ public class EDDGridSideBySide extends EDDGrid {
       nValues *= cumResults[av].size();
       if (av > 0) nValues1 *= cumResults[av].size();
     }
+    int fNValues = nValues, fNValues1 = nValues1;
 
     // get the data results
-    for (int tdv = 0; tdv < tnDv; tdv++) {
-
-      // make a PrimitiveArray to hold the results for this dv
-      PrimitiveArray dvResults =
-          PrimitiveArray.factory(tDataVariables[tdv].sourceDataPAType(), nValues, false);
-      cumResults[nAv + tdv] = dvResults;
-      double tdvSourceMissingValue = tDataVariables[tdv].sourceMissingValue();
-
-      // what is its dataVariable number in this aggregate dataset?
-      // FUTURE: faster search with hash, but this is fast unless huge number of dataVars
-      int dvn = 0;
-      while (tDataVariables[tdv] != dataVariables[dvn]) dvn++;
-
-      // which childDataset is that in?
-      int cn = 0;
-      while (dvn > childStopsAt[cn]) cn++;
-      IntArray atIA = indexOfAxis0Value[cn];
-
-      // step through constraints for combined axis0,
-      //  finding sections in child of constant step size
-      // !!!this is tricky code; think about it!!!
-      IntArray ttConstraints = (IntArray) tConstraints.clone();
-      int start = tConstraints.get(0);
-      int stride = tConstraints.get(1);
-      int stop = tConstraints.get(2);
-      // String2.log("\n***sequence start=" + start + " stride=" + stride + " stop=" + stop);
-      while (start <= stop) {
-        // find first non-NaN
-        while (start <= stop && atIA.array[start] == Integer.MAX_VALUE) {
-          dvResults.addNDoubles(nValues1, tdvSourceMissingValue);
-          start += stride;
+    int tnThreads =
+        nThreads >= 1 && nThreads < Integer.MAX_VALUE ? nThreads : EDStatic.nGridThreads;
+    // reduce tnThreads based on memory available
+    tnThreads = adjustNThreads(Math.min(tnThreads, tnDv));
+    int nProcessed[] = {0};
+    ThreadedWorkManager<PrimitiveArray> workManager =
+        new ThreadedWorkManager<>(
+            tnThreads, dvResults -> cumResults[nAv + nProcessed[0]++] = dvResults);
+    try {
+      for (int tdv = 0; tdv < tnDv; tdv++) {
+        EDV tDataVariable = tDataVariables[tdv];
+        workManager.addTask(
+            () -> {
+              try {
+                return getDataVariableSourceData(
+                    language, tDataVariable, tConstraints, fNValues, fNValues1);
+              } catch (Throwable t) {
+                throw t instanceof Exception e ? e : new ExecutionException(t);
+              }
+            });
+      }
+      workManager.finishedEnqueing();
+      workManager.processResults();
+    } catch (ExecutionException e) {
+      // throw the child's exception (e.g., WaitThenTryAgainException), as if it was done here
+      workManager.forceShutdown();
+      Throwable t = e;
+      while (t instanceof ExecutionException && t.getCause() != null) // may be doubly wrapped
+      t = t.getCause();
+      throw t;
+    } catch (Throwable t) {
+      workManager.forceShutdown();
+      throw t;
+    }
+
+    return cumResults;
+  }
+
+  /**
+   * This gets the source data for one of this dataset's data variables from its child dataset (in
+   * one or more requests to the child).
+   *
+   * @param language the index of the selected language
+   * @param tDataVariable the data variable
+   * @param tConstraints the constraints (as for getSourceData)
+   * @param nValues the total number of values requested
+   * @param nValues1 the number of values requested for each axis0 value
+   * @return the data values
+   * @throws Throwable if trouble
+   */
+  private PrimitiveArray getDataVariableSourceData(
+      int language, EDV tDataVariable, IntArray tConstraints, int nValues, int nValues1)
+      throws Throwable {
+    int nAv = axisVariables.length;
+    // make a PrimitiveArray to hold the results for this dv
+    PrimitiveArray dvResults =
+        PrimitiveArray.factory(tDataVariable.sourceDataPAType(), nValues, false);
+    double tdvSourceMissingValue = tDataVariable.sourceMissingValue();
+
+    // what is its dataVariable number in this aggregate dataset?
+    // FUTURE: faster search with hash, but this is fast unless huge number of dataVars
+    int dvn = 0;
+    while (tDataVariable != dataVariables[dvn]) dvn++;
+
+    // which childDataset is that in?
+    int cn = 0;
+    while (dvn > childStopsAt[cn]) cn++;
+    IntArray atIA = indexOfAxis0Value[cn];
+
+    // step through constraints for combined axis0,
+    //  finding sections in child of constant step size
+    // !!!this is tricky code; think about it!!!
+    IntArray ttConstraints = (IntArray) tConstraints.clone();
+    int start = tConstraints.get(0);
+    int stride = tConstraints.get(1);
+    int stop = tConstraints.get(2);
+    // String2.log("\n***sequence start=" + start + " stride=" + stride + " stop=" + stop);
+    while (start <= stop) {
+      // find first non-NaN
+      while (start <= stop && atIA.array[start] == Integer.MAX_VALUE) {
+        dvResults.addNDoubles(nValues1, tdvSourceMissingValue);
+        start += stride;
+      }
+      if (start > stop) break;
+
+      // start value is valid
+      // find as many more valid values as possible with constant stride for the child
+      int cStart = atIA.array[start];
+      int cStride = -1;
+      int po = start + stride;
+      while (po <= stop) { // go until value at po is trouble
+        int at = atIA.array[po];
+        if (at == Integer.MAX_VALUE) {
+          // String2.log("***sequence stopped because no corresponding av0 value for this child");
+          break;
         }
-        if (start > stop) break;
-
-        // start value is valid
-        // find as many more valid values as possible with constant stride for the child
-        int cStart = atIA.array[start];
-        int cStride = -1;
-        int po = start + stride;
-        while (po <= stop) { // go until value at po is trouble
-          int at = atIA.array[po];
-          if (at == Integer.MAX_VALUE) {
-            // String2.log("***sequence stopped because no corresponding av0 value for this child");
-            break;
-          }
-          if (cStride == -1) {
-            cStride = at - atIA.array[po - stride];
-          } else if (at - atIA.array[po - stride] != cStride) {
-            // String2.log("***sequence stopped because stride changed");
-            break;
-          }
-          po += stride;
+        if (cStride == -1) {
+          cStride = at - atIA.array[po - stride];
+        } else if (at - atIA.array[po - stride] != cStride) {
+          // String2.log("***sequence stopped because stride changed");
+          break;
         }
-
-        // get the data
-        if (cStride == -1) cStride = 1;
-        int cStop = atIA.array[po - stride]; // last valid value
-        // String2.log("***sequence subsequence: cStart=" + cStart + " cStride=" + cStride + "
-        // cStop=" + cStop);
-        ttConstraints.set(0, cStart);
-        ttConstraints.set(1, cStride);
-        ttConstraints.set(2, cStop);
-        PrimitiveArray[] tResults =
-            childDatasets[cn].getSourceData(
-                language, null, null, new EDV[] {tDataVariables[tdv]}, ttConstraints);
-        dvResults.append(tResults[nAv]); // append the first (and only) data variable's results
-
-        // increment start
-        start = po;
+        po += stride;
       }
 
-      // dvResults should be properly filled
-      Test.ensureEqual(
-          dvResults.size(),
-          nValues,
-          "Data source error in EDDGridSideBySide.getSourceData: " + "dvResults.size != nValues .");
+      // get the data
+      if (cStride == -1) cStride = 1;
+      int cStop = atIA.array[po - stride]; // last valid value
+      // String2.log("***sequence subsequence: cStart=" + cStart + " cStride=" + cStride + "
+      // cStop=" + cStop);
+      ttConstraints.set(0, cStart);
+      ttConstraints.set(1, cStride);
+      ttConstraints.set(2, cStop);
+      PrimitiveArray[] tResults =
+          childDatasets[cn].getSourceData(
+              language, null, null, new EDV[] {tDataVariable}, ttConstraints);
+      dvResults.append(tResults[nAv]); // append the first (and only) data variable's results
+
+      // increment start
+      start = po;
     }
 
-    return cumResults;
+    // dvResults should be properly filled
+    Test.ensureEqual(
+        dvResults.size(),
+        nValues,
+        "Data source error in EDDGridSideBySide.getSourceData: " + "dvResults.size != nValues .");
+    return dvResults;
   }
 
   @Override
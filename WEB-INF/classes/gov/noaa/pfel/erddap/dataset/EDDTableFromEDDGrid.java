@@ -31,6 +31,7 @@ import gov.noaa.pfel.erddap.variable.*;
 import jakarta.servlet.http.HttpServletRequest;
 import java.io.BufferedReader;
 import java.text.MessageFormat;
+import java.util.BitSet;
 
 /**
  * This class creates an EDDTable from an EDDGrid.
@@ -644,34 +645,79 @@ public class EDDTableFromEDDGrid extends EDDTable {
           sourceTableVars[childDatasetNAV + dv] =
               findDataVariableByDestinationName(queryDV[dv].destinationName());
 
+        // find the constraints on the data variables. They are tested on each chunk of the
+        // gda's results (the same way standardizeResultsTable tests them), so only the rows
+        // which pass are added to the table. (Axis variable constraints were used above.)
+        IntArray conNumber = new IntArray(); // the constraint's index in constraintVariables
+        IntArray conDV = new IntArray(); // the constraint variable's dv in the query
+        for (int c = 0; c < constraintVariables.size(); c++) {
+          for (int dv = 0; dv < nQueryDV; dv++) {
+            if (queryDV[dv].destinationName().equals(constraintVariables.get(c))) {
+              conNumber.add(c);
+              conDV.add(dv);
+              break;
+            }
+          }
+        }
+
         // make a table to hold a chunk of the results
         int chunkNRows = EDStatic.config.partialRequestMaxCells / (childDatasetNAV + nQueryDV);
         Table tTable =
             makeEmptySourceTable(
                 sourceTableVars,
                 chunkNRows); // source table, but source here is tChildDataset's destination
-        PrimitiveArray paAr[] = new PrimitiveArray[tTable.nColumns()];
-        PAOne paOne[] = new PAOne[tTable.nColumns()];
-        for (int col = 0; col < tTable.nColumns(); col++) {
-          paAr[col] = tTable.getColumn(col);
-          paOne[col] = new PAOne(paAr[col]);
-        }
 
-        // walk through it, periodically saving to tableWriter
+        // walk through it, one gda chunk at a time, periodically saving to tableWriter
+        NDimensionalIndex partialIndex = gda.partialIndex();
+        int partialShape[] = partialIndex.shape();
+        long partialFactors[] = partialIndex.factors();
+        int nGdaRows = Math2.narrowToInt(partialIndex.size()); // in each gda chunk
+        BitSet keep = new BitSet(nGdaRows);
         int cumNRows = 0;
-        while (gda.increment()) {
+        while (gda.incrementChunk()) {
+          if (Thread.currentThread().isInterrupted())
+            throw new SimpleException(
+                "EDDTableFromEDDGrid.getDataForDapQuery"
+                    + EDStatic.messages.get(Message.CAUGHT_INTERRUPTED, 0));
+          int chunkStart[] = gda.totalIndex().getCurrent(); // the indices of the chunk's 1st row
+          PrimitiveArray chunkValues[] = gda.getPartialDataValues();
+
+          // test the constraints on the data variables
+          keep.set(0, nGdaRows);
+          int nKeep = nGdaRows;
+          for (int c = 0; c < conNumber.size() && nKeep > 0; c++) {
+            int cn = conNumber.get(c);
+            EDV edv = sourceTableVars[childDatasetNAV + conDV.get(c)];
+            PrimitiveArray pa = (PrimitiveArray) chunkValues[conDV.get(c)].clone();
+            if (pa.size() < nGdaRows) pa.addNPAOnes(nGdaRows - pa.size(), pa.missingValue());
+            pa = edv.toDestination(pa);
+            pa.convertToStandardMissingValues(
+                "" + edv.destinationFillValue(), "" + edv.destinationMissingValue());
+            nKeep =
+                pa.applyConstraint(
+                    edv instanceof EDVTimeStamp,
+                    keep,
+                    constraintOps.get(cn),
+                    constraintValues.get(cn));
+          }
+          if (nKeep == 0) continue; // e.g., all of the chunk's values are missing values
+
+          // add the rows which passed to the table
           for (int av = 0; av < childDatasetNAV; av++)
-            gda.getAxisValueAsPAOne(av, paOne[av]).addTo(paAr[av]);
+            addAxisValues(
+                tTable.getColumn(av),
+                gda.axisValues(av),
+                chunkStart[av],
+                partialShape[av],
+                Math2.narrowToInt(partialFactors[av]),
+                nGdaRows,
+                nKeep == nGdaRows ? null : keep);
           for (int dv = 0; dv < nQueryDV; dv++)
-            gda.getDataValueAsPAOne(dv, paOne[childDatasetNAV + dv])
-                .addTo(paAr[childDatasetNAV + dv]);
-          if (++cumNRows >= chunkNRows) {
-            if (debugMode) String2.log(tTable.dataToString(5));
-            if (Thread.currentThread().isInterrupted())
-              throw new SimpleException(
-                  "EDDTableFromEDDGrid.getDataForDapQuery"
-                      + EDStatic.messages.get(Message.CAUGHT_INTERRUPTED, 0));
+            addDataValues(tTable.getColumn(childDatasetNAV + dv), chunkValues[dv], nGdaRows, keep);
+          cumNRows += nKeep;
 
+          if (cumNRows >= chunkNRows) {
+            if (debugMode) String2.log(tTable.dataToString(5));
             standardizeResultsTable(
                 language,
                 requestUrl, // applies all constraints
@@ -679,7 +725,6 @@ public class EDDTableFromEDDGrid extends EDDTable {
                 tTable);
             tableWriter.writeSome(tTable);
             tTable = makeEmptySourceTable(sourceTableVars, chunkNRows);
-            for (int col = 0; col < tTable.nColumns(); col++) paAr[col] = tTable.getColumn(col);
             cumNRows = 0;
             if (tableWriter.noMoreDataPlease) {
               tableWriter.logCaughtNoMoreDataPlease(datasetID);
@@ -810,6 +855,65 @@ public class EDDTableFromEDDGrid extends EDDTable {
     }
   }
 
+  /**
+   * This adds an axis variable's values for the rows of a (row major) GridDataAccessor chunk to a
+   * column of the results table.
+   *
+   * @param column the results table's column
+   * @param axisValues the axis variable's values for the whole request (gda.axisValues(av))
+   * @param start the index (in axisValues) of the axis variable's value for the chunk's first row
+   * @param size the number of values of the axis variable in a chunk (partialIndex.shape()[av])
+   * @param factor the number of consecutive rows with the same value of the axis variable
+   *     (partialIndex.factors()[av])
+   * @param nRows the number of rows in a chunk
+   * @param keep the rows to be added (or null if all of the rows are to be added)
+   */
+  private static void addAxisValues(
+      PrimitiveArray column,
+      PrimitiveArray axisValues,
+      int start,
+      int size,
+      int factor,
+      int nRows,
+      BitSet keep) {
+    if (keep != null) {
+      for (int row = keep.nextSetBit(0); row >= 0; row = keep.nextSetBit(row + 1))
+        column.addFromPA(axisValues, start + (row / factor) % size, 1);
+    } else if (factor == 1) {
+      // e.g., the last axis: the same run of values, again and again
+      for (int row = 0; row < nRows; row += size) column.addFromPA(axisValues, start, size);
+    } else {
+      PAOne paOne = new PAOne(axisValues);
+      for (int row = 0; row < nRows; row += factor) {
+        paOne.readFrom(axisValues, start + (row / factor) % size);
+        column.addNPAOnes(factor, paOne);
+      }
+    }
+  }
+
+  /**
+   * This adds a data variable's values for the keep rows of a GridDataAccessor chunk to a column
+   * of the results table, a run of rows at a time. The chunk's values aren't changed.
+   *
+   * @param column the results table's column
+   * @param values the data variable's values for the chunk. If there are fewer than nRows values,
+   *     the rest are treated as missing values.
+   * @param nRows the number of rows in a chunk
+   * @param keep the rows to be added
+   */
+  private static void addDataValues(
+      PrimitiveArray column, PrimitiveArray values, int nRows, BitSet keep) {
+    int nValues = Math.min(nRows, values.size());
+    int row = keep.nextSetBit(0);
+    while (row >= 0 && row < nRows) {
+      int end = Math.min(nRows, keep.nextClearBit(row)); // exclusive
+      int endValues = Math.max(row, Math.min(end, nValues));
+      if (endValues > row) column.addFromPA(values, row, endValues - row);
+      if (end > endValues) column.addNPAOnes(end - endValues, values.missingValue());
+      row = keep.nextSetBit(end);
+    }
+  }
+
   @Override
   public Table getFilesUrlList(HttpServletRequest request, String loggedInAs, int language)
       throws Throwable {
@@ -593,26 +593,47 @@ public class EDDTableFromErddap extends EDDTable implements FromErddap {
     // in order to bypass removal of numeric regex.
     // ERDDAP can handle anything (by definition).
 
-    // Read all data, then write to tableWriter.
-    Table table = new Table();
     String udq = String2.isSomething(userDapQuery) ? "?" + userDapQuery : "";
 
     if (useNccsv) {
-      // FUTURE: could repeatedly: read part/ write part
-      table.readNccsv(localSourceUrl + ".nccsv" + udq, true); // readData?
-
-    } else {
-      // Very unfortunate: JDAP reads all rows when it deserializes
-      // (see java docs for DSequence)
-      // (that's why it can return getRowCount)
-      // so there is no real way to read an opendapSequence in chunks (or row by row).
-      // I can't split into subsets because I don't know which variable
-      //  to constrain or how to constrain it (it would change with different
-      //  userDapQuery's).
-      // I could write my own procedure to read DSequence (eek!).
-      table.readOpendapSequence(localSourceUrl + udq, false);
+      // Read part, write part, so the whole response needn't be in memory.
+      // The reader is only read as fast as tableWriter can write,
+      // so TCP flow control slows the remote ERDDAP if the client is slow.
+      // If the client doesn't want more data, closing the reader closes the connection.
+      String url = localSourceUrl + ".nccsv" + udq;
+      int chunkNRows = EDStatic.config.partialRequestMaxCells / Math.max(1, dataVariables.length);
+      try (BufferedReader reader = SSR.getBufferedUrlReader(url)) {
+        Table table = new Table();
+        table.readNccsvChunks(
+            url,
+            reader,
+            chunkNRows,
+            chunk -> {
+              standardizeResultsTable(language, requestUrl, userDapQuery, chunk);
+              tableWriter.writeSome(chunk);
+              if (tableWriter.noMoreDataPlease) {
+                tableWriter.logCaughtNoMoreDataPlease(datasetID);
+                return false;
+              }
+              return true;
+            });
+      }
+      tableWriter.finish();
+      return;
     }
 
+    // Very unfortunate: JDAP reads all rows when it deserializes
+    // (see java docs for DSequence)
+    // (that's why it can return getRowCount)
+    // so there is no real way to read an opendapSequence in chunks (or row by row).
+    // I can't split into subsets because I don't know which variable
+    //  to constrain or how to constrain it (it would change with different
+    //  userDapQuery's).
+    // I could write my own procedure to read DSequence (eek!).
+    // So read all data, then write to tableWriter.
+    Table table = new Table();
+    table.readOpendapSequence(localSourceUrl + udq, false);
+
     // String2.log(table.toString());
     standardizeResultsTable(language, requestUrl, userDapQuery, table); // not necessary?
     tableWriter.writeAllAndFinish(table);
@@ -65,6 +65,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -161,6 +162,11 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
   // then 3 cols for each dataVariable: sourceName + _min_|_max_|_hasNaN starting
   // at dv0
   protected static final int dv0 = 5;
+
+  // then 2 cols (min, max as epochSeconds) for each String timeStamp variable
+  // with yyyy... times: sourceName + _minEpoch_|_maxEpoch_
+  protected static final String MIN_EPOCH_SUFFIX = "_minEpoch_";
+  protected static final String MAX_EPOCH_SUFFIX = "_maxEpoch_";
   int fileTableSortColumns[]; // null if not active
   boolean fileTableSortAscending[]; // size matches fileTableSortcolumns, all true
 
@@ -178,6 +184,11 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
   protected boolean fileTableInMemory = false;
   protected Table dirTable; // one column with dir names
   protected Table fileTable;
+  // index of the fileTable's min/max columns. It is replaced when the fileTable changes.
+  private volatile FileTableIndex fileTableIndex;
+  // incremented (after the change) whenever the fileTable's rows or stats change: in place (see
+  // fileTableChangedInPlace) or when it is saved (see saveDirTableFileTableBadFiles)
+  private final AtomicLong fileTableModCount = new AtomicLong();
 
   // things just for EDDTableFromHttpGet
   public static final String HTTP_GET_REQUIRED_VARIABLES = "httpGetRequiredVariables";
@@ -1599,6 +1610,16 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
         desiredOrder.add(safeSourceDataNames.get(dv) + MAX_SUFFIX);
         desiredOrder.add(safeSourceDataNames.get(dv) + "_hasNaN_");
       }
+      // set aside the epochSeconds columns (checked after the dataVariables have been made)
+      Table epochTable = new Table();
+      for (int col = fileTable.nColumns() - 1; col >= 0; col--) {
+        String colName = fileTable.getColumnName(col);
+        if (colName.endsWith(MIN_EPOCH_SUFFIX) || colName.endsWith(MAX_EPOCH_SUFFIX)) {
+          epochTable.addColumn(0, colName, fileTable.getColumn(col));
+          fileTable.removeColumn(col);
+        }
+      }
+
       // reorder and ensure all are present
       boolean ok =
           fileTable.reorderColumns(desiredOrder, true) == desiredOrder.size(); // discardOthers
@@ -1622,7 +1643,10 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
             break;
           }
         }
-      if (!ok) {
+      if (ok) {
+        for (int col = 0; col < epochTable.nColumns(); col++)
+          fileTable.addColumn(epochTable.getColumnName(col), epochTable.getColumn(col));
+      } else {
         try { // added 2016-05-20
           String2.log(
               "Old fileTable discarded because of incorrect column names and/or data types (first 2 rows):");
@@ -1748,6 +1772,7 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
             className,
             EDStatic.DefaultMaxMakeCopyFileTasks,
             datasetID,
+            nThreads,
             cacheFromUrl,
             fileNameRegex,
             recursive,
@@ -2388,6 +2413,11 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
     // Calendar2.getCurrentISODateTimeStringLocalTZ() + " finished making
     // variables");
 
+    // add or update the fileTable's epochSeconds columns (this migrates old fileTables)
+    if (ensureFileTableEpochColumns(fileTable))
+      saveDirTableFileTableBadFiles(
+          standardizeWhat, dirTable, fileTable, badFileMap); // throws Throwable
+
     // more class-specific things (after variables have been created)
     if (className.equals("EDDTableFromHttpGet")) {
       setHttpGetRequiredVariableTypes();
@@ -2977,6 +3007,10 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
 
     // get min,max for dataVariables
     int ndv = sourceDataTypes.length;
+
+    // the epochSeconds columns (if any) need to be recalculated
+    for (int col = dv0 + ndv * 3; col < fileTable.nColumns(); col++)
+      fileTable.setDoubleData(col, fileListPo, Double.NaN);
     for (int dv = 0; dv < ndv; dv++) {
       fileTable.setStringData(dv0 + dv * 3 + 0, fileListPo, ""); // numeric will be NaN
       fileTable.setStringData(dv0 + dv * 3 + 1, fileListPo, "");
@@ -3258,6 +3292,9 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
           }
           fileTable.getColumn(baseFTC + 2).addInt(columnHasNaN[col] ? 1 : 0);
         }
+        // the epochSeconds columns (if any) will be calculated later
+        for (int col = dv0 + nColumns * 3; col < fileTable.nColumns(); col++)
+          fileTable.getColumn(col).addDouble(Double.NaN);
 
       } else {
         // adjust current row:
@@ -3286,17 +3323,22 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
             long tt = columnMinLong[col];
             if (tt != Long.MAX_VALUE) { // has data
               if (tt < minColPA.getLong(fileTableRow)) minColPA.setLong(fileTableRow, tt);
+              tt = columnMaxLong[col];
               if (tt > maxColPA.getLong(fileTableRow)) maxColPA.setLong(fileTableRow, tt);
             }
           } else {
             double tt = columnMinDouble[col];
             if (!Double.isNaN(tt)) { // has data
               if (tt < minColPA.getDouble(fileTableRow)) minColPA.setDouble(fileTableRow, tt);
+              tt = columnMaxDouble[col];
               if (tt > maxColPA.getDouble(fileTableRow)) maxColPA.setDouble(fileTableRow, tt);
             }
           }
           if (columnHasNaN[col]) fileTable.getColumn(baseFTC + 2).setInt(fileTableRow, 1);
         }
+        // the epochSeconds columns (if any) need to be recalculated
+        for (int col = dv0 + nColumns * 3; col < fileTable.nColumns(); col++)
+          fileTable.getColumn(col).setDouble(fileTableRow, Double.NaN);
       }
 
       // update file's lastMod and size
@@ -3568,6 +3610,7 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
       }
       // make the new minMaxTable
       Table tMinMaxTable = makeMinMaxTable(dirList, tFileTable);
+      ensureFileTableEpochColumns(tFileTable);
 
       // then, change secondary parts of instance variables
       // e.g., update all variable destinationMinMax
@@ -4478,6 +4521,8 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
                   conValues.toArray()));
 
     // get a local reference to dirTable and fileTable
+    // (get fileTableModCount first, so it identifies (or precedes) the loaded version)
+    long tFileTableModCount = fileTableModCount.get();
     Table tDirTable = getDirTable();
     Table tFileTable = getFileTable();
     StringArray dirList = (StringArray) tDirTable.getColumn(0);
@@ -4791,9 +4836,33 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
               }
             });
 
+    // get the fileTable's epochSeconds columns (if any) for String time constraints
+    DoubleArray conMinEpoch[] = new DoubleArray[nCon];
+    DoubleArray conMaxEpoch[] = new DoubleArray[nCon];
+    for (int con = 0; con < nCon; con++) {
+      conMinEpoch[con] = getFileTableEpochColumn(tFileTable, cdvi[con], false);
+      conMaxEpoch[con] = getFileTableEpochColumn(tFileTable, cdvi[con], true);
+    }
+
+    // use the fileTableIndex to find the files which may match the numeric and time constraints
+    BitSet candidateFiles =
+        getCandidateFiles(tFileTable, tFileTableModCount, cdvi, conOps, conValuesD);
+    if (candidateFiles != null) {
+      nNotRead += nFiles - candidateFiles.cardinality();
+      if (reallyVerbose)
+        String2.log(
+            "fileTableIndex found "
+                + candidateFiles.cardinality()
+                + " candidate files (of "
+                + nFiles
+                + ")");
+    }
+
     try {
       FILE_LOOP:
-      for (int f = 0; f < nFiles; f++) {
+      for (int f = candidateFiles == null ? 0 : candidateFiles.nextSetBit(0);
+          f >= 0 && f < nFiles;
+          f = candidateFiles == null ? f + 1 : candidateFiles.nextSetBit(f + 1)) {
         if (Thread.interrupted()) {
           if (workManager != null) workManager.forceShutdown();
           throw new InterruptedException(); // consume the interrupted status
@@ -4848,10 +4917,13 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
 
             } else {
               // numeric timestamp, or yyyy... String timestamp
-              double fMin =
-                  tdv.sourceTimeToEpochSeconds(tFileTable.getStringData(dv0 + dv * 3 + 0, f));
-              double fMax =
-                  tdv.sourceTimeToEpochSeconds(tFileTable.getStringData(dv0 + dv * 3 + 1, f));
+              // (String timestamps usually have pre-calculated epochSeconds columns)
+              double fMin = conMinEpoch[con] == null ? Double.NaN : conMinEpoch[con].get(f);
+              double fMax = conMaxEpoch[con] == null ? Double.NaN : conMaxEpoch[con].get(f);
+              if (Double.isNaN(fMin))
+                fMin = tdv.sourceTimeToEpochSeconds(tFileTable.getStringData(dv0 + dv * 3 + 0, f));
+              if (Double.isNaN(fMax))
+                fMax = tdv.sourceTimeToEpochSeconds(tFileTable.getStringData(dv0 + dv * 3 + 1, f));
               int fNaN = tFileTable.getIntData(dv0 + dv * 3 + 2, f);
               // if min/max String times are invalid, act as if far in past/future
               if (Double.isNaN(fMin)) fMin = -1e100;
@@ -5184,6 +5256,248 @@ public abstract class EDDTableFromFiles extends EDDTable implements WatchUpdateH
     }
   }
 
+  /**
+   * Subclasses which change the in-memory fileTable in place (instead of swapping in a new
+   * fileTable) must call this after making the changes, so that the epochSeconds columns are
+   * updated and the fileTableIndex is remade. This holds the fileTable's lock (the one
+   * updateFileTableWithStats uses) while it does that.
+   *
+   * @param tFileTable the fileTable which was changed
+   * @throws InterruptedException if interrupted while waiting for the lock
+   * @throws TimeoutException if the lock isn't available
+   */
+  protected void fileTableChangedInPlace(Table tFileTable)
+      throws InterruptedException, TimeoutException {
+    ReentrantLock lock = String2.canonicalLock(tFileTable);
+    if (!lock.tryLock(String2.longTimeoutSeconds, TimeUnit.SECONDS))
+      throw new TimeoutException(
+          "Timeout waiting for lock on fileTable for datasetID=" + datasetID);
+    try {
+      fillFileTableEpochColumns(tFileTable);
+      fileTableModCount.incrementAndGet();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * This saves the dirTable, fileTable and badFileMap (see EDD), then increments fileTableModCount
+   * so the fileTableIndex (which may be for the previous version) is remade.
+   */
+  @Override
+  public void saveDirTableFileTableBadFiles(
+      int tStandardizeWhat,
+      Table dirTable,
+      Table fileTable,
+      ConcurrentHashMap<String, Object[]> badFileMap)
+      throws Throwable {
+    try {
+      super.saveDirTableFileTableBadFiles(tStandardizeWhat, dirTable, fileTable, badFileMap);
+    } finally {
+      fileTableModCount.incrementAndGet();
+    }
+  }
+
+  /**
+   * This returns true if the fileTable has epochSeconds columns for this dataVariable, i.e., it is
+   * a String timeStamp variable with yyyy... times (so String min and max are the true min and
+   * max).
+   *
+   * @param dv the dataVariable index
+   */
+  protected boolean hasFileTableEpochColumns(int dv) {
+    return dataVariables[dv] instanceof EDVTimeStamp tdv
+        && tdv.sourceDataPAType() == PAType.STRING
+        && tdv.sourceTimeFormat().toLowerCase().startsWith("yyyy");
+  }
+
+  /**
+   * This makes sure that tFileTable has the epochSeconds columns (after the min, max, hasNaN
+   * columns for all dataVariables) for each String timeStamp variable with yyyy... times, so that
+   * getDataForDapQuery can reject files based on time without parsing the String times. Missing
+   * columns are added (so old fileTables are migrated), unneeded columns are removed, and values
+   * which haven't been calculated yet are calculated. This changes the structure of tFileTable, so
+   * it must not be used on a fileTable which is in use.
+   *
+   * @param tFileTable a fileTable
+   * @return true if tFileTable was changed
+   */
+  protected boolean ensureFileTableEpochColumns(Table tFileTable) {
+    int ndv = dataVariables.length;
+    int nRows = tFileTable.nRows();
+    boolean changed = false;
+
+    // remove the current epochSeconds columns
+    Table oldTable = new Table();
+    while (tFileTable.nColumns() > dv0 + ndv * 3) {
+      int col = tFileTable.nColumns() - 1;
+      oldTable.addColumn(tFileTable.getColumnName(col), tFileTable.getColumn(col));
+      tFileTable.removeColumn(col);
+    }
+
+    // add the needed epochSeconds columns (reusing valid old ones)
+    for (int dv = 0; dv < ndv; dv++) {
+      if (!hasFileTableEpochColumns(dv)) continue;
+      for (String suffix : new String[] {MIN_EPOCH_SUFFIX, MAX_EPOCH_SUFFIX}) {
+        String colName = safeSourceDataNames.get(dv) + suffix;
+        int oldCol = oldTable.findColumnNumber(colName);
+        PrimitiveArray pa = oldCol < 0 ? null : oldTable.getColumn(oldCol);
+        if (pa instanceof DoubleArray && pa.size() == nRows) {
+          oldTable.removeColumn(oldCol);
+        } else {
+          pa = new DoubleArray(nRows, false);
+          pa.addNDoubles(nRows, Double.NaN); // calculated below
+          changed = true;
+        }
+        tFileTable.addColumn(colName, pa);
+      }
+    }
+    if (oldTable.nColumns() > 0) changed = true;
+
+    return fillFileTableEpochColumns(tFileTable) || changed;
+  }
+
+  /**
+   * This calculates the values of tFileTable's epochSeconds columns which haven't been calculated
+   * yet (they are NaN). Each value is the min (or max) String time converted to epochSeconds, or
+   * -1e100 (or 1e100) if the String time is invalid (as if far in the past (or future)). This just
+   * changes values, not the structure of tFileTable.
+   *
+   * @param tFileTable a fileTable
+   * @return true if any values were changed
+   */
+  protected boolean fillFileTableEpochColumns(Table tFileTable) {
+    boolean changed = false;
+    int ndv = dataVariables.length;
+    for (int dv = 0; dv < ndv; dv++) {
+      DoubleArray minEpoch = getFileTableEpochColumn(tFileTable, dv, false);
+      DoubleArray maxEpoch = getFileTableEpochColumn(tFileTable, dv, true);
+      if (minEpoch == null || maxEpoch == null) continue;
+      EDVTimeStamp tdv = (EDVTimeStamp) dataVariables[dv];
+      int nRows = tFileTable.nRows();
+      for (int f = 0; f < nRows; f++) {
+        if (Double.isNaN(minEpoch.get(f))) {
+          double d = tdv.sourceTimeToEpochSeconds(tFileTable.getStringData(dv0 + dv * 3 + 0, f));
+          minEpoch.set(f, Double.isNaN(d) ? -1e100 : d);
+          changed = true;
+        }
+        if (Double.isNaN(maxEpoch.get(f))) {
+          double d = tdv.sourceTimeToEpochSeconds(tFileTable.getStringData(dv0 + dv * 3 + 1, f));
+          maxEpoch.set(f, Double.isNaN(d) ? 1e100 : d);
+          changed = true;
+        }
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * This gets one of the epochSeconds columns for a String timeStamp variable from tFileTable.
+   *
+   * @param tFileTable a fileTable
+   * @param dv the dataVariable index
+   * @param max true for the max column, false for the min column
+   * @return the column, or null if tFileTable doesn't have it
+   */
+  protected DoubleArray getFileTableEpochColumn(Table tFileTable, int dv, boolean max) {
+    if (!hasFileTableEpochColumns(dv)) return null;
+    int col =
+        tFileTable.findColumnNumber(
+            safeSourceDataNames.get(dv) + (max ? MAX_EPOCH_SUFFIX : MIN_EPOCH_SUFFIX));
+    return col >= 0
+            && tFileTable.getColumn(col) instanceof DoubleArray da
+            && da.size() == tFileTable.nRows()
+        ? da
+        : null;
+  }
+
+  /**
+   * This uses the fileTableIndex (making it if needed) to find the rows of tFileTable which may
+   * have data matching the numeric and time constraints. The result is a superset of the files
+   * which pass isOK(), so each candidate file still needs to be tested.
+   *
+   * @param tFileTable the fileTable being used by this request
+   * @param tFileTableModCount fileTableModCount, read before tFileTable was gotten
+   * @param cdvi the dataVariable index for each constraint
+   * @param conOps the op for each constraint
+   * @param conValuesD the value for each constraint (time values are epochSeconds)
+   * @return the candidate rows, or null if no constraint could use the index (so all rows are
+   *     candidates)
+   */
+  protected BitSet getCandidateFiles(
+      Table tFileTable,
+      long tFileTableModCount,
+      int cdvi[],
+      StringArray conOps,
+      double conValuesD[]) {
+    FileTableIndex index = fileTableIndex;
+    if (index == null || !index.isFor(tFileTable, fileTableInMemory, tFileTableModCount)) {
+      index = new FileTableIndex(tFileTable, fileTableInMemory, tFileTableModCount);
+      fileTableIndex = index;
+    }
+
+    int nRows = tFileTable.nRows();
+    BitSet candidates = null;
+    for (int con = 0; con < cdvi.length; con++) {
+      String op = conOps.get(con);
+      if (op.equals(PrimitiveArray.REGEX_OP) || Double.isNaN(conValuesD[con])) continue;
+      int dv = cdvi[con];
+      EDV edv = dataVariables[dv];
+      PAType conEdvSourcePAType = edv.sourceDataPAType();
+      FileTableIndex.Intervals intervals;
+      PAType isOKPAType;
+      if (edv instanceof EDVTimeStamp tdv) {
+        // same tests as FILE_LOOP: strings like MM/dd/yyyy sort incorrectly
+        if (conEdvSourcePAType == PAType.STRING
+            && !tdv.sourceTimeFormat().toLowerCase().startsWith("yyyy")) continue;
+        intervals =
+            index.intervals(
+                dv,
+                tDv -> {
+                  DoubleArray minEpoch = getFileTableEpochColumn(tFileTable, dv, false);
+                  DoubleArray maxEpoch = getFileTableEpochColumn(tFileTable, dv, true);
+                  double min[] = new double[nRows];
+                  double max[] = new double[nRows];
+                  for (int f = 0; f < nRows; f++) {
+                    min[f] = minEpoch == null ? Double.NaN : minEpoch.get(f);
+                    max[f] = maxEpoch == null ? Double.NaN : maxEpoch.get(f);
+                    if (Double.isNaN(min[f]))
+                      min[f] =
+                          tdv.sourceTimeToEpochSeconds(
+                              tFileTable.getStringData(dv0 + dv * 3 + 0, f));
+                    if (Double.isNaN(max[f]))
+                      max[f] =
+                          tdv.sourceTimeToEpochSeconds(
+                              tFileTable.getStringData(dv0 + dv * 3 + 1, f));
+                    // if min/max String times are invalid, act as if far in past/future
+                    if (Double.isNaN(min[f])) min[f] = -1e100;
+                    if (Double.isNaN(max[f])) max[f] = 1e100;
+                  }
+                  return new FileTableIndex.Intervals(min, max);
+                });
+        isOKPAType = PAType.STRING; // test all times with full precision
+      } else if (conEdvSourcePAType == PAType.CHAR || conEdvSourcePAType == PAType.STRING) {
+        continue;
+      } else {
+        intervals =
+            index.intervals(
+                dv,
+                tDv ->
+                    new FileTableIndex.Intervals(
+                        FileTableIndex.toDoubles(tFileTable.getColumn(dv0 + dv * 3 + 0)),
+                        FileTableIndex.toDoubles(tFileTable.getColumn(dv0 + dv * 3 + 1))));
+        isOKPAType = conEdvSourcePAType;
+      }
+
+      BitSet tCandidates = new BitSet(nRows);
+      if (intervals.candidates(isOKPAType, op, conValuesD[con], tCandidates)) {
+        if (candidates == null) candidates = tCandidates;
+        else candidates.and(tCandidates);
+      }
+    }
+    return candidates;
+  }
+
   /**
    * getDataForDapQuery always calls this right before standardizeResultsTable.
    * EDDTableFromPostNcFiles uses this to remove data not accessible to this user.
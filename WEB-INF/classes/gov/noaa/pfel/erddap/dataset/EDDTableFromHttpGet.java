@@ -11,6 +11,7 @@ import com.cohort.array.IntArray;
 import com.cohort.array.PAOne;
 import com.cohort.array.PAType;
 import com.cohort.array.PrimitiveArray;
+import com.cohort.array.ShortArray;
 import com.cohort.array.StringArray;
 import com.cohort.util.Calendar2;
 import com.cohort.util.File2;
@@ -36,11 +37,16 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoField;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Calendar;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
@@ -74,6 +80,20 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
       "numericTimestamp\":(\\d\\.\\d{2,12}E9),?\\n";
   public static final Pattern NUMERIC_TIMESTAMP_PATTERN = Pattern.compile(NUMERIC_TIMESTAMP_REGEX);
 
+  // compactFile makes these files next to each data file (e.g., a.jsonl.nc and a.jsonl.history)
+  public static final String COMPACTED_SUFFIX = ".nc";
+  public static final String HISTORY_SUFFIX = ".history";
+  // the compacted file's global attribute with the latest timestamp of the compacted changes
+  public static final String COMPACTED_THROUGH = "compactedThroughTimestamp";
+
+  // Each dataset's compactFiles is run by this (shared) thread every httpGetCompactEveryNSeconds.
+  private static ScheduledExecutorService compactionScheduler;
+
+  // The compaction task for each datasetID. When a dataset is replaced or unloaded, the old
+  // instance's task is cancelled, so only the live instance compacts the files.
+  private static final ConcurrentHashMap<String, ScheduledFuture<?>> compactionTasks =
+      new ConcurrentHashMap<>();
+
   protected String columnNames[]; // all, not just NEC
   protected String columnUnits[];
   protected PAType columnPATypes[];
@@ -344,6 +364,8 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
       }
     }
 
+    if (EDStatic.config.httpGetCompactKB > 0) scheduleCompaction();
+
     if (verbose)
       String2.log(
           "*** EDDTableFromHttpGet constructor for datasetID="
@@ -535,7 +557,9 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
    * @param maxTimestampSeconds This is the maximum timestampSeconds to be kept (regardless of
    *     process setting). Use Double.MAX_VALUE or Double.NaN to keep all rows.
    * @return the processed or unprocessed data table from one file. Char vars are stored as shorts
-   *     in the file, but returned as chars here.
+   *     in the file, but returned as chars here. If the file has been compacted (see compactFile),
+   *     the rows from the compacted file (if process=true and they suffice) or else from the
+   *     history file are included.
    */
   public static Table readFile(
       String fullFileName,
@@ -595,7 +619,29 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
       throw new TimeoutException(
           "Timeout waiting for lock on fullFileName in EDDTableFromHttpGet.");
     try {
-      table.readJsonlCSV(fullFileName, sourceDataNames, sourceDataTypes, false);
+      Table log = new Table();
+      log.readJsonlCSV(fullFileName, sourceDataNames, sourceDataTypes, false);
+
+      // If the file has been compacted (see compactFile), the log just has the recent changes,
+      // so add the compacted changes (if they suffice) or else read the history before the log.
+      String compactedName = fullFileName + COMPACTED_SUFFIX;
+      String historyName = fullFileName + HISTORY_SUFFIX;
+      Table compacted = null;
+      if (process && File2.isFile(compactedName)) {
+        compacted = readCompactedFile(compactedName, log.getColumnNames());
+        // if some of the compacted changes are later than maxTimestampSeconds, use the history
+        if (maxTimestampSeconds < compacted.globalAttributes().getDouble(COMPACTED_THROUGH))
+          compacted = null;
+      }
+      if (compacted != null) {
+        table = log;
+        appendByName(compacted, table);
+      } else if (File2.isFile(historyName)) {
+        table.readJsonlCSV(historyName, sourceDataNames, sourceDataTypes, false);
+        appendByName(log, table);
+      } else {
+        table = log;
+      }
     } finally {
       lock.unlock();
     }
@@ -603,7 +649,6 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
     // table.saveAsDDS(System.out, "s");
 
     // gather info about the table
-    int nCols = table.nColumns();
     int nRows = table.nRows();
     int timestampColi = table.findColumnNumber(TIMESTAMP); // may be -1 if not needed so not present
 
@@ -642,8 +687,6 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
     // sort based on requiredVariableNames+timestamp  (e.g., stationID, time, timestamp)
     // Except for revisions, the data should already be in this order or very close to it.
     int commandColi = table.findColumnNumber(COMMAND);
-    PrimitiveArray pas[] = new PrimitiveArray[nCols];
-    for (int col = 0; col < nCols; col++) pas[col] = table.getColumn(col);
     int sortBy[] = new int[nRCN + 1];
     for (int i = 0; i < nRCN; i++) {
       sortBy[i] = table.findColumnNumber(tRequiredVariableNames[i]);
@@ -666,10 +709,29 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
     // If that is incorrect, then a solution is:
     //  multiply time and timestamp by 1000 and round to integer before sorting
     //  then divide by 1000 after justKeep() below.
+    keepLatestChanges(table, sortBy, commandColi);
+
+    return table;
+  }
+
+  /**
+   * This sorts the table by sortBy and just keeps the last row (the latest change) of each group of
+   * rows where the HttpGetRequiredVariables are the same.
+   *
+   * @param table the table
+   * @param sortBy the column numbers of the HttpGetRequiredVariables, then of timestamp
+   * @param commandColi the column number of command. If &gt;= 0, a group whose last row is a DELETE
+   *     is removed, too. If -1, DELETE rows are kept (e.g., for compactFile).
+   */
+  private static void keepLatestChanges(Table table, int sortBy[], int commandColi) {
+    int nRCN = sortBy.length - 1;
+    int nRows = table.nRows();
+    PrimitiveArray pas[] = new PrimitiveArray[table.nColumns()];
+    for (int col = 0; col < pas.length; col++) pas[col] = table.getColumn(col);
     table.ascendingSort(sortBy);
 
     // Just keep last row of each group of rows where HttpGetRequiredVariables are same.
-    // But if that row is DELETE, then don't keep it either.
+    // But if that row is DELETE (and commandColi >= 0), then don't keep it either.
     BitSet justKeep = new BitSet(nRows); // all false
     for (int row = 0; row < nRows; row++) { // look at row and row+1
       if (row < nRows - 1) {
@@ -686,16 +748,293 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
 
       // this row is last of a group
       // if last command is DELETE, then delete this row
-      if (pas[commandColi].getInt(row) == DELETE_COMMAND) continue; // don't keep this row
+      if (commandColi >= 0 && pas[commandColi].getInt(row) == DELETE_COMMAND)
+        continue; // don't keep this row
 
       // else keep this row
       justKeep.set(row);
     }
     table.justKeep(justKeep);
+  }
 
+  /**
+   * This appends the rows of one table to another, matching the columns by name. Columns of table
+   * which aren't in rows get missing values.
+   */
+  private static void appendByName(Table rows, Table table) {
+    int nRows = rows.nRows();
+    for (int col = 0; col < table.nColumns(); col++) {
+      int rowsCol = rows.findColumnNumber(table.getColumnName(col));
+      PrimitiveArray pa = table.getColumn(col);
+      if (rowsCol < 0) pa.addNStrings(nRows, "");
+      else pa.append(rows.getColumn(rowsCol));
+    }
+  }
+
+  /** This reads some of the columns (or null for all) of a compacted file. */
+  private static Table readCompactedFile(String compactedName, String loadColumns[])
+      throws Exception {
+    Table table = new Table();
+    int version = table.readEnhancedFlatNc(compactedName, loadColumns);
+    if (version != Table.ENHANCED_VERSION)
+      throw new SimpleException(
+          String2.ERROR
+              + ": unexpected enhanced version="
+              + version
+              + " of compacted file="
+              + compactedName);
     return table;
   }
 
+  /**
+   * This compacts a data file (a log of changes). The log's changes are folded into the file's
+   * compacted file (fullFileName + COMPACTED_SUFFIX, an enhanced flat .nc file with just the latest
+   * change, perhaps a DELETE, for each combination of requiredVariableNames values) and appended to
+   * the file's history file (fullFileName + HISTORY_SUFFIX, a jsonlCSV file with all of the
+   * compacted changes). Then the data file is truncated to just its column names line, so that it
+   * just has the changes since then. readFile returns the same results as before. If this fails
+   * part way through, compacting the file again is harmless (but some changes may be in the history
+   * file twice).
+   *
+   * @param fullFileName the data file's full name
+   * @param columnNames the names of ALL of the dataset's source variables (see insertOrDelete)
+   * @param columnPATypes the types of the columnNames
+   * @param tRequiredVariableNames are the dataset's requiredVariableNames, e.g., stationID, time
+   * @return the number of changes which were compacted (0 if none)
+   * @throws Throwable if trouble
+   */
+  public static int compactFile(
+      String fullFileName,
+      String columnNames[],
+      PAType columnPATypes[],
+      String[] tRequiredVariableNames)
+      throws Throwable {
+
+    StringArray names = new StringArray();
+    StringArray types = new StringArray();
+    for (int col = 0; col < columnNames.length; col++) {
+      if (columnNames[col].charAt(0) == '=') continue; // fixed values aren't in the files
+      names.add(columnNames[col]);
+      types.add(PAType.toCohortString(columnPATypes[col]));
+    }
+    String compactedName = fullFileName + COMPACTED_SUFFIX;
+    String historyName = fullFileName + HISTORY_SUFFIX;
+
+    // Everything is done while holding the lock, so readFile and insertOrDelete see the
+    // files before or after, never in between.
+    fullFileName = String2.canonical(fullFileName);
+    ReentrantLock lock = String2.canonicalLock(fullFileName);
+    if (!lock.tryLock(String2.longTimeoutSeconds, TimeUnit.SECONDS))
+      throw new TimeoutException(
+          "Timeout waiting for lock on fullFileName in EDDTableFromHttpGet.");
+    try {
+      byte bytes[] = Files.readAllBytes(Paths.get(fullFileName));
+      int headerLength = 0; // the column names line, including '\n'
+      while (headerLength < bytes.length && bytes[headerLength] != '\n') headerLength++;
+      if (headerLength++ >= bytes.length - 1) return 0; // no changes since last compaction
+
+      Table table = new Table();
+      table.readJsonlCSV(fullFileName, names, types.toArray(), false);
+      int nChanges = table.nRows();
+      if (nChanges == 0) return 0;
+      if (File2.isFile(compactedName))
+        appendByName(readCompactedFile(compactedName, table.getColumnNames()), table);
+
+      // keep the latest change for each row (even a DELETE, in case an earlier change is
+      // added later, e.g., from another thread)
+      int timestampColi = table.findColumnNumber(TIMESTAMP);
+      int nRCN = tRequiredVariableNames.length;
+      int sortBy[] = new int[nRCN + 1];
+      for (int i = 0; i < nRCN; i++) {
+        sortBy[i] = table.findColumnNumber(tRequiredVariableNames[i]);
+        if (sortBy[i] < 0)
+          throw new SimpleException(
+              String2.ERROR
+                  + " while compacting "
+                  + fullFileName
+                  + ": columnName="
+                  + tRequiredVariableNames[i]
+                  + " not found in "
+                  + table.getColumnNamesCSVString()
+                  + ".");
+      }
+      sortBy[nRCN] = timestampColi;
+      PrimitiveArray timestampPA = table.getColumn(timestampColi);
+      double compactedThrough = -Double.MAX_VALUE;
+      for (int row = 0; row < timestampPA.size(); row++)
+        compactedThrough = Math.max(compactedThrough, timestampPA.getDouble(row));
+      keepLatestChanges(table, sortBy, -1);
+      table.globalAttributes().set(COMPACTED_THROUGH, compactedThrough);
+
+      // history first, then compacted file, then truncate the log
+      boolean historyIsNew = !File2.isFile(historyName);
+      try (OutputStream os =
+          Files.newOutputStream(
+              Paths.get(historyName), StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+        if (historyIsNew) os.write(bytes);
+        else os.write(bytes, headerLength, bytes.length - headerLength);
+      }
+      table.saveAsEnhancedFlatNc(compactedName); // writes to a temp file, then renames it
+      Files.write(Paths.get(fullFileName), Arrays.copyOf(bytes, headerLength));
+      return nChanges;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * This compacts (see compactFile) each of this dataset's data files which is at least
+   * httpGetCompactKB, then updates those files' lastMod and size in the fileTable (their min and
+   * max stats still include all of the file's values) and saves the dirTable and fileTable.
+   *
+   * @return the number of files which were compacted
+   * @throws Throwable if trouble
+   */
+  public int compactFiles() throws Throwable {
+    long minBytes = EDStatic.config.httpGetCompactKB * 1024L;
+    Table tDirTable = dirTable; // succeeds if fileTableInMemory (which it should always be)
+    Table tFileTable = fileTable;
+    if (minBytes <= 0 || tDirTable == null || tFileTable == null) return 0;
+
+    // find the big files
+    StringArray fullNames = new StringArray();
+    ReentrantLock lock = String2.canonicalLock(tFileTable);
+    if (!lock.tryLock(String2.longTimeoutSeconds, TimeUnit.SECONDS))
+      throw new TimeoutException("Timeout waiting for lock on fileTable in EDDTableFromHttpGet.");
+    try {
+      StringArray dirs = (StringArray) tDirTable.getColumn(0);
+      ShortArray dirIndexPA = (ShortArray) tFileTable.getColumn(FT_DIR_INDEX_COL);
+      StringArray namePA = (StringArray) tFileTable.getColumn(FT_FILE_LIST_COL);
+      PrimitiveArray sizePA = tFileTable.getColumn(FT_SIZE_COL);
+      for (int row = 0; row < namePA.size(); row++) {
+        if (sizePA.getLong(row) >= minBytes)
+          fullNames.add(dirs.get(dirIndexPA.get(row)) + namePA.get(row));
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (fullNames.size() == 0) return 0;
+
+    int nColumns = columnNames.length;
+    boolean columnIsFixed[] = new boolean[nColumns];
+    PrimitiveArray noValues[] = new PrimitiveArray[nColumns];
+    for (int col = 0; col < nColumns; col++) {
+      columnIsFixed[col] = columnNames[col].charAt(0) == '=';
+      noValues[col] = PrimitiveArray.factory(columnPATypes[col], 0, false);
+    }
+    long time = System.currentTimeMillis();
+    int nFiles = 0;
+    int nChanges = 0;
+    for (int i = 0; i < fullNames.size(); i++) {
+      String fullName = fullNames.get(i);
+      try {
+        int tNChanges =
+            compactFile(fullName, columnNames, columnPATypes, httpGetRequiredVariableNames);
+        if (tNChanges == 0) continue;
+        nFiles++;
+        nChanges += tNChanges;
+        // just updates the file's lastMod and size
+        EDDTableFromFiles.updateFileTableWithStats(
+            tFileTable,
+            fullName,
+            tDirTable,
+            nColumns,
+            columnIsFixed,
+            columnNames,
+            columnPATypes,
+            columnMvFv,
+            noValues,
+            0,
+            0);
+      } catch (Throwable t) {
+        String2.log(
+            String2.ERROR
+                + " in EDDTableFromHttpGet.compactFiles while compacting "
+                + fullName
+                + ":\n"
+                + MustBe.throwableToString(t));
+      }
+    }
+
+    if (nFiles > 0) {
+      fileTableChangedInPlace(tFileTable);
+      saveDirTableFileTableBadFiles(standardizeWhat, tDirTable, tFileTable, null);
+      lastSaveDirTableFileTableBadFiles = System.currentTimeMillis();
+    }
+    if (verbose)
+      String2.log(
+          "EDDTableFromHttpGet.compactFiles datasetID="
+              + datasetID
+              + " compacted nChanges="
+              + nChanges
+              + " in nFiles="
+              + nFiles
+              + " TIME="
+              + (System.currentTimeMillis() - time)
+              + "ms");
+    return nFiles;
+  }
+
+  /**
+   * This schedules this dataset's periodic compactFiles (every httpGetCompactEveryNSeconds) and
+   * cancels the task of the previous instance (which this replaces) with this datasetID.
+   */
+  private void scheduleCompaction() {
+    synchronized (EDDTableFromHttpGet.class) {
+      if (compactionScheduler == null)
+        compactionScheduler =
+            Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                  Thread thread = new Thread(runnable, "EDDTableFromHttpGet compaction");
+                  thread.setDaemon(true);
+                  return thread;
+                });
+    }
+    int seconds = EDStatic.config.httpGetCompactEveryNSeconds;
+    ScheduledFuture<?> task =
+        compactionScheduler.scheduleWithFixedDelay(
+            () -> {
+              try {
+                compactFiles();
+              } catch (Throwable t) {
+                String2.log(
+                    String2.ERROR
+                        + " compacting files for datasetID="
+                        + datasetID
+                        + "\n"
+                        + MustBe.throwableToString(t));
+              }
+            },
+            seconds,
+            seconds,
+            TimeUnit.SECONDS);
+    ScheduledFuture<?> previous = compactionTasks.put(datasetID, task);
+    if (previous != null) previous.cancel(false);
+  }
+
+  /** This is called when this dataset is unloaded. It cancels the periodic compactFiles. */
+  public void unload() {
+    ScheduledFuture<?> task = compactionTasks.remove(datasetID);
+    if (task != null) task.cancel(false);
+  }
+
+  /**
+   * This is called when ERDDAP is shutting down. It cancels all of the datasets' compaction tasks
+   * and stops the compaction thread.
+   */
+  public static void shutdown() {
+    for (String tDatasetID : compactionTasks.keySet()) {
+      ScheduledFuture<?> task = compactionTasks.remove(tDatasetID);
+      if (task != null) task.cancel(false);
+    }
+    synchronized (EDDTableFromHttpGet.class) {
+      if (compactionScheduler != null) {
+        compactionScheduler.shutdownNow();
+        compactionScheduler = null;
+      }
+    }
+  }
+
   /**
    * This parses the httpGetDirectoryStructure specification.
    *
@@ -904,6 +1243,7 @@ public class EDDTableFromHttpGet extends EDDTableFromFiles {
             userDapQuery,
             tDirTable,
             tFileTable);
+    fileTableChangedInPlace(tFileTable);
 
     // do more with badFileMap?
 
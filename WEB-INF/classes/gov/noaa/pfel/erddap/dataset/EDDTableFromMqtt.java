@@ -20,6 +20,7 @@ import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.coastwatch.util.RegexFilenameFilter;
 import gov.noaa.pfel.erddap.dataset.metadata.LocalizedAttributes;
 import gov.noaa.pfel.erddap.util.EDMessages;
+import gov.noaa.pfel.erddap.util.EDStatic;
 import gov.noaa.pfel.erddap.variable.DataVariableInfo;
 import gov.noaa.pfel.erddap.variable.EDV;
 import java.io.BufferedOutputStream;
@@ -30,9 +31,15 @@ import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.ReentrantLock;
@@ -51,6 +58,26 @@ public class EDDTableFromMqtt extends EDDTableFromFiles {
   protected boolean[] columnIsFixed;
   protected PrimitiveArray[] columnMvFv;
 
+  // Each dataset's flushes are run by this (shared) thread every mqttFlushMillis.
+  private static ScheduledExecutorService flushScheduler;
+
+  // The live instance for each datasetID. When an instance is replaced or unloaded, its flushes
+  // are cancelled, its client is disconnected, and its buffered rows are flushed (see stop()).
+  private static final ConcurrentHashMap<String, EDDTableFromMqtt> liveDatasets =
+      new ConcurrentHashMap<>();
+
+  private Mqtt5AsyncClient asyncClient;
+  private ScheduledFuture<?> flushTask;
+
+  // MQTT messages are buffered (as rows, for each file) and appended to the files in batches.
+  // Queries see the buffered rows, too (see lowGetSourceDataFromFile).
+  // The locks are always acquired in this order: flushLock, a file's canonicalLock, bufferLock.
+  private final ReentrantLock flushLock = new ReentrantLock();
+  private final Object bufferLock = new Object();
+  private HashMap<String, Table> bufferedRows = new HashMap<>(); // fullFileName -> rows
+  private final HashMap<String, Table> flushingRows = new HashMap<>(); // rows being appended now
+  private int nBufferedRows = 0;
+
   public EDDTableFromMqtt(
       String tClassName,
       String tDatasetID,
@@ -107,7 +134,7 @@ public class EDDTableFromMqtt extends EDDTableFromFiles {
       throws Throwable {
     super(
         "EDDTableFromMqtt",
-        tDatasetID,
+        stopPrevious(tDatasetID), // before super loads the dirTable and fileTable
         tAccessibleTo,
         tGraphsAccessibleTo,
         tOnChange,
@@ -195,8 +222,9 @@ public class EDDTableFromMqtt extends EDDTableFromFiles {
             sessionExpiryInterval,
             connectionTimeout,
             automaticReconnect);
-    Mqtt5AsyncClient asyncClient = response.join();
+    asyncClient = response.join();
 
+    scheduleFlushes();
     subscribeToDatasetTopics(asyncClient, topics, MqttQos.AT_LEAST_ONCE);
   }
 
@@ -333,7 +361,10 @@ public class EDDTableFromMqtt extends EDDTableFromFiles {
   }
 
   /**
-   * Processes a received MQTT message, parses its JSON payload, and appends it to a .jsonl file.
+   * Processes a received MQTT message, parses its JSON payload, and buffers it as a row for the
+   * topic's .jsonl file. The row is visible to queries right away. The buffered rows are appended
+   * to the files by flush(), which is called when mqttFlushMaxRows rows are buffered (in this
+   * thread) and every mqttFlushMillis.
    *
    * @param publish the received MQTT message.
    */
@@ -367,8 +398,162 @@ public class EDDTableFromMqtt extends EDDTableFromFiles {
         table.addColumn(colName, pa);
       }
 
-      // Append the data to the corresponding .jsonl file
-      appendTableToJsonlFile(table, fullFileName);
+      // Buffer the row
+      int tNBufferedRows;
+      synchronized (bufferLock) {
+        Table rows = bufferedRows.get(fullFileName);
+        if (rows == null) bufferedRows.put(fullFileName, table);
+        else rows.append(table);
+        tNBufferedRows = ++nBufferedRows;
+      }
+      if (EDStatic.metrics != null) EDStatic.metrics.mqttIngestRows.labelValues(datasetID).inc();
+
+      // Widen the in-memory fileTable's stats so queries select the file (and see the row).
+      // The fileTable is saved to disk by flush().
+      Table tDirTable = dirTable; // succeeds if fileTableInMemory (which it should always be)
+      Table tFileTable = fileTable;
+      if (tDirTable != null && tFileTable != null) {
+        EDDTableFromFiles.updateFileTableWithStats(
+            tFileTable,
+            fullFileName,
+            tDirTable,
+            columnNames.length,
+            columnIsFixed,
+            columnNames,
+            columnPATypes,
+            columnMvFv,
+            table.getColumns(),
+            0,
+            table.nRows());
+        fileTableChangedInPlace(tFileTable);
+      }
+
+      if (tNBufferedRows >= EDStatic.config.mqttFlushMaxRows) flush();
+
+    } catch (IOException | InterruptedException | TimeoutException | JSONException e) {
+      throw new RuntimeException("Error processing MQTT message from topic=" + topic, e);
+    } catch (Throwable e) {
+      String2.log("Error saving file table: " + e.getMessage());
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * This is called (via the constructor's call to super) before a new instance loads its dirTable
+   * and fileTable. It stops the live instance for the datasetID (if any), so that instance's last
+   * buffered rows are appended to the files, and its saved fileTable is the one the new instance
+   * loads. Otherwise, the old instance's final save would be overwritten by the new instance's next
+   * save, and those files' rows would be missing from the fileTable until a full rescan.
+   *
+   * @param tDatasetID the datasetID of the new instance
+   * @return tDatasetID, for convenience
+   */
+  private static String stopPrevious(String tDatasetID) {
+    EDDTableFromMqtt previous = tDatasetID == null ? null : liveDatasets.remove(tDatasetID);
+    if (previous != null) previous.stop();
+    return tDatasetID;
+  }
+
+  /**
+   * This schedules this dataset's periodic flushes (every mqttFlushMillis) and makes this the live
+   * instance for the datasetID. The previous instance (which this replaces) was normally already
+   * stopped by stopPrevious, but if another instance became live in the meantime, it is stopped now.
+   */
+  private void scheduleFlushes() {
+    synchronized (EDDTableFromMqtt.class) {
+      if (flushScheduler == null)
+        flushScheduler =
+            Executors.newSingleThreadScheduledExecutor(
+                runnable -> {
+                  Thread thread = new Thread(runnable, "EDDTableFromMqtt flush");
+                  thread.setDaemon(true);
+                  return thread;
+                });
+    }
+    int millis = EDStatic.config.mqttFlushMillis;
+    flushTask =
+        flushScheduler.scheduleWithFixedDelay(
+            this::tryToFlush, millis, millis, TimeUnit.MILLISECONDS);
+
+    EDDTableFromMqtt previous = liveDatasets.put(datasetID, this);
+    if (previous != null && previous != this) previous.stop();
+  }
+
+  /**
+   * This is called when this dataset is unloaded. It stops the periodic flushes, disconnects the
+   * MQTT client, and flushes the buffered rows.
+   */
+  public void unload() {
+    liveDatasets.remove(datasetID, this);
+    stop();
+  }
+
+  /**
+   * This is called when ERDDAP is shutting down. It stops all of the datasets (so their buffered
+   * rows are flushed) and the flush thread.
+   */
+  public static void shutdown() {
+    for (EDDTableFromMqtt edd : liveDatasets.values()) {
+      liveDatasets.remove(edd.datasetID, edd);
+      edd.stop();
+    }
+    synchronized (EDDTableFromMqtt.class) {
+      if (flushScheduler != null) {
+        flushScheduler.shutdownNow();
+        flushScheduler = null;
+      }
+    }
+  }
+
+  /**
+   * This cancels this instance's periodic flushes, disconnects its MQTT client (so no more rows are
+   * buffered), then flushes the rows which are already buffered.
+   */
+  @SuppressWarnings("FutureReturnValueIgnored")
+  private void stop() {
+    ScheduledFuture<?> tFlushTask = flushTask;
+    if (tFlushTask != null) tFlushTask.cancel(false);
+    Mqtt5AsyncClient tAsyncClient = asyncClient;
+    if (tAsyncClient != null) tAsyncClient.disconnect();
+    tryToFlush();
+  }
+
+  /** This calls flush() and logs (but doesn't throw) any exception. */
+  private void tryToFlush() {
+    try {
+      flush();
+    } catch (Throwable t) {
+      String2.log(
+          String2.ERROR
+              + " flushing MQTT data for datasetID="
+              + datasetID
+              + "\n"
+              + MustBe.throwableToString(t));
+    }
+  }
+
+  /**
+   * This appends the buffered rows to their .jsonl files (one append per file), then updates the
+   * fileTable and saves the dirTable and fileTable (once). Until a file's rows have been appended,
+   * they are still visible to queries.
+   *
+   * @throws Throwable if trouble (e.g., the dirTable and fileTable can't be loaded)
+   */
+  public void flush() throws Throwable {
+    if (!flushLock.tryLock(String2.longTimeoutSeconds, TimeUnit.SECONDS))
+      throw new TimeoutException("Timeout waiting for flushLock for datasetID=" + datasetID);
+    try {
+      HashMap<String, Table> toFlush;
+      int nRows;
+      synchronized (bufferLock) {
+        if (nBufferedRows == 0) return;
+        toFlush = bufferedRows;
+        flushingRows.putAll(toFlush);
+        nRows = nBufferedRows;
+        bufferedRows = new HashMap<>();
+        nBufferedRows = 0;
+      }
+      long startNanos = System.nanoTime();
 
       Table tDirTable = dirTable; // succeeds if fileTableInMemory (which it should always be)
       Table tFileTable = fileTable;
@@ -376,31 +561,100 @@ public class EDDTableFromMqtt extends EDDTableFromFiles {
         tDirTable = tryToLoadDirFileTable(datasetDir() + DIR_TABLE_FILENAME); // may be null
       if (tFileTable == null)
         tFileTable = tryToLoadDirFileTable(datasetDir() + FILE_TABLE_FILENAME); // may be null
+
+      Throwable firstError = null;
+      for (Map.Entry<String, Table> entry : toFlush.entrySet()) {
+        String fullFileName = String2.canonical(entry.getKey());
+        Table rows = entry.getValue();
+        ReentrantLock lock = String2.canonicalLock(fullFileName);
+        boolean locked = false;
+        try {
+          if (!lock.tryLock(String2.longTimeoutSeconds, TimeUnit.SECONDS))
+            throw new TimeoutException("Timeout waiting for lock on file: " + fullFileName);
+          locked = true;
+          // After this, the rows are read from the file (not from flushingRows).
+          // If trouble, they are dropped (as a failed message always was).
+          appendTableToJsonlFile(rows, fullFileName);
+        } catch (Throwable t) {
+          if (firstError == null) firstError = t;
+          continue;
+        } finally {
+          synchronized (bufferLock) {
+            flushingRows.remove(entry.getKey());
+          }
+          if (locked) lock.unlock();
+        }
+
+        // the stats were already widened, but this also updates the file's lastMod and size
+        EDDTableFromFiles.updateFileTableWithStats(
+            tFileTable,
+            fullFileName,
+            tDirTable,
+            columnNames.length,
+            columnIsFixed,
+            columnNames,
+            columnPATypes,
+            columnMvFv,
+            rows.getColumns(),
+            0,
+            rows.nRows());
+      }
+
       if (tDirTable == null || tFileTable == null) {
         requestReloadASAP();
         throw new SimpleException("dirTable and/or fileTable are null!");
       }
+      fileTableChangedInPlace(tFileTable);
+      saveDirTableFileTableBadFiles(standardizeWhat, tDirTable, tFileTable, null);
 
-      EDDTableFromFiles.updateFileTableWithStats(
-          tFileTable,
-          fullFileName,
-          tDirTable,
-          columnNames.length,
-          columnIsFixed,
-          columnNames,
-          columnPATypes,
-          columnMvFv,
-          table.getColumns(),
-          0,
-          table.nRows());
+      if (EDStatic.metrics != null) {
+        EDStatic.metrics.mqttFlushRows.labelValues(datasetID).observe(nRows);
+        EDStatic.metrics
+            .mqttFlushDuration
+            .labelValues(datasetID)
+            .observe((System.nanoTime() - startNanos) / 1e9);
+      }
+      if (verbose)
+        String2.log(
+            "EDDTableFromMqtt.flush datasetID="
+                + datasetID
+                + " appended nRows="
+                + nRows
+                + " to nFiles="
+                + toFlush.size()
+                + " in time="
+                + (System.nanoTime() - startNanos) / 1000000
+                + "ms");
+      if (firstError != null) throw firstError;
+    } finally {
+      flushLock.unlock();
+    }
+  }
 
-      saveDirTableFileTableBadFiles(standardizeWhat, tDirTable, tFileTable, null);
+  /**
+   * This appends a copy of the buffered rows (those being flushed, then the others) for a file to
+   * a table (e.g., from the file), matching the columns by name. The caller must have the file's
+   * canonicalLock.
+   *
+   * @param fullFileName the canonical fullFileName
+   * @param table the table to which the rows are appended
+   */
+  private void appendBufferedRows(String fullFileName, Table table) {
+    synchronized (bufferLock) {
+      appendRows(flushingRows.get(fullFileName), table);
+      appendRows(bufferedRows.get(fullFileName), table);
+    }
+  }
 
-    } catch (IOException | InterruptedException | TimeoutException | JSONException e) {
-      throw new RuntimeException("Error processing MQTT message from topic=" + topic, e);
-    } catch (Throwable e) {
-      String2.log("Error saving file table: " + e.getMessage());
-      e.printStackTrace();
+  /** This appends a copy of rows (may be null) to table, matching the columns by name. */
+  private static void appendRows(Table rows, Table table) {
+    if (rows == null) return;
+    int nRows = rows.nRows();
+    for (int col = 0; col < table.nColumns(); col++) {
+      int rowsCol = rows.findColumnNumber(table.getColumnName(col));
+      PrimitiveArray pa = table.getColumn(col);
+      if (rowsCol < 0) pa.addNStrings(nRows, "");
+      else pa.append(rows.getColumn(rowsCol));
     }
   }
 
@@ -529,7 +783,11 @@ public class EDDTableFromMqtt extends EDDTableFromFiles {
           "Timeout waiting for lock on file in EDDTableFromMqtt.lowGetSourceDataFromFile: "
               + fullFileName);
     try {
-      table.readJsonlCSV(fullFileName, sourceDataNames, sourceDataTypes, false);
+      // the file doesn't exist until its first rows are flushed
+      if (File2.isFile(fullFileName))
+        table.readJsonlCSV(fullFileName, sourceDataNames, sourceDataTypes, false);
+      else table = Table.makeEmptyTable(sourceDataNames.toArray(), sourceDataTypes);
+      appendBufferedRows(fullFileName, table);
     } finally {
       lock.unlock();
     }
@@ -5,6 +5,7 @@
 package gov.noaa.pfel.erddap.dataset;
 
 import com.cohort.array.Attributes;
+import com.cohort.array.DoubleArray;
 import com.cohort.array.PAType;
 import com.cohort.array.PrimitiveArray;
 import com.cohort.array.StringArray;
@@ -17,7 +18,15 @@ import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.coastwatch.util.FileVisitorDNLS;
 import gov.noaa.pfel.erddap.dataset.metadata.LocalizedAttributes;
 import gov.noaa.pfel.erddap.variable.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
+import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
 
 /**
  * This class represents a table of data from parquet files.
@@ -161,9 +170,15 @@ public class EDDTableFromParquetFiles extends EDDTableFromFiles {
       // Just return a table with columns but no rows. There is never any metadata.
       return Table.makeEmptyTable(sourceDataNames.toArray(), sourceDataTypes);
 
-    // read the file
+    // read the file (skipping row groups which can't have matching data)
     Table table = new Table();
-    table.readParquet(tFileDir + tFileName, sourceDataNames, sourceDataTypes, true); // simplify
+    table.readParquet(
+        tFileDir + tFileName,
+        sourceDataNames,
+        sourceDataTypes,
+        true, // simplify
+        rowGroupTest(
+            sourceDataNames, sourceDataTypes, sourceConVars, sourceConOps, sourceConValues));
 
     // unpack
     table.standardize(standardizeWhat);
@@ -171,6 +186,93 @@ public class EDDTableFromParquetFiles extends EDDTableFromFiles {
     return table;
   }
 
+  /**
+   * This makes a test for Table.readParquet which uses a parquet row group's column statistics
+   * (min and max) to see if the row group may have rows which match the numeric source
+   * constraints. See EDDTableFromFiles.isOK. This is conservative: constraints which it can't test
+   * reliably (e.g., !=, regex, NaN, String or unsigned columns) are ignored.
+   *
+   * @param sourceDataNames the names of the source columns which will be read
+   * @param sourceDataTypes the data types of the source columns (e.g., "float")
+   * @param sourceConVars the source constraint variables (may be null)
+   * @param sourceConOps the source constraint operators
+   * @param sourceConValues the source constraint values
+   * @return the test, or null if none of the constraints can be tested with the statistics
+   */
+  public static Predicate<BlockMetaData> rowGroupTest(
+      StringArray sourceDataNames,
+      String sourceDataTypes[],
+      StringArray sourceConVars,
+      StringArray sourceConOps,
+      StringArray sourceConValues) {
+
+    if (sourceConVars == null) return null;
+    List<String> conNames = new ArrayList<>();
+    List<PAType> conPATypes = new ArrayList<>();
+    List<String> conOps = new ArrayList<>();
+    DoubleArray conValues = new DoubleArray();
+    for (int con = 0; con < sourceConVars.size(); con++) {
+      // "!=" isn't tested since the statistics include values which may be missing values
+      String op = sourceConOps.get(con);
+      if (op.equals("!=") || op.equals(PrimitiveArray.REGEX_OP)) continue;
+      int which = sourceDataNames.indexOf(sourceConVars.get(con));
+      if (which < 0) continue;
+      PAType paType = PAType.fromCohortString(sourceDataTypes[which]);
+      if (paType == PAType.STRING || paType == PAType.CHAR) continue;
+      double value = String2.parseDouble(sourceConValues.get(con));
+      if (Double.isNaN(value)) continue;
+      conNames.add(sourceConVars.get(con));
+      conPATypes.add(paType);
+      conOps.add(op);
+      conValues.add(value);
+    }
+    if (conNames.isEmpty()) return null;
+
+    return rowGroup -> {
+      for (ColumnChunkMetaData column : rowGroup.getColumns()) {
+        if (column.getPath().size() != 1) continue; // nested
+        String name = column.getPath().toDotString();
+        PrimitiveType type = column.getPrimitiveType();
+        PrimitiveTypeName typeName = type.getPrimitiveTypeName();
+        if ((typeName != PrimitiveTypeName.INT32
+                && typeName != PrimitiveTypeName.INT64
+                && typeName != PrimitiveTypeName.FLOAT
+                && typeName != PrimitiveTypeName.DOUBLE)
+            || (type.getLogicalTypeAnnotation()
+                    instanceof LogicalTypeAnnotation.IntLogicalTypeAnnotation intType
+                && !intType.isSigned())) continue;
+        Statistics<?> stats = column.getStatistics();
+        if (stats == null || stats.isEmpty() || !stats.isNumNullsSet()) continue;
+
+        double min, max;
+        if (stats.hasNonNullValue()) {
+          min = ((Number) stats.genericGetMin()).doubleValue();
+          max = ((Number) stats.genericGetMax()).doubleValue();
+          if (Double.isNaN(min) || Double.isNaN(max)) continue;
+        } else if (stats.getNumNulls() == rowGroup.getRowCount()) {
+          min = Double.NaN; // all missing values
+          max = Double.NaN;
+        } else {
+          continue;
+        }
+        // float and double columns may have NaNs, which aren't counted as nulls
+        int hasNaN =
+            stats.getNumNulls() > 0
+                    || typeName == PrimitiveTypeName.FLOAT
+                    || typeName == PrimitiveTypeName.DOUBLE
+                ? 1
+                : 0;
+
+        for (int con = 0; con < conNames.size(); con++) {
+          if (conNames.get(con).equals(name)
+              && !isOK(conPATypes.get(con), min, max, hasNaN, conOps.get(con), conValues.get(con)))
+            return false;
+        }
+      }
+      return true;
+    };
+  }
+
   /**
    * This generates a ready-to-use datasets.xml entry for an EDDTableFromParquetFiles. The XML can
    * then be edited by hand and added to the datasets.xml file.
@@ -201,18 +201,15 @@ public class EDDTableFromThreddsFiles extends EDDTableFromFiles {
     try {
       // if previous tasks are still running, return
       EDStatic.ensureTaskThreadIsRunningIfNeeded(); // ensure info is up-to-date
-      Integer lastAssignedTask = EDStatic.lastAssignedTask.get(tDatasetID);
-      boolean pendingTasks =
-          lastAssignedTask != null && EDStatic.lastFinishedTask.get() < lastAssignedTask;
+      int nUnfinishedTasks = EDStatic.nUnfinishedTasks(tDatasetID);
+      boolean pendingTasks = nUnfinishedTasks > 0;
       if (verbose)
         String2.log(
-            "  lastFinishedTask="
-                + EDStatic.lastFinishedTask.get()
-                + " < lastAssignedTask("
+            "  nUnfinishedTasks("
                 + tDatasetID
                 + ")="
-                + lastAssignedTask
-                + "? pendingTasks="
+                + nUnfinishedTasks
+                + " pendingTasks="
                 + pendingTasks);
       if (pendingTasks) return;
 
@@ -420,7 +417,7 @@ public class EDDTableFromThreddsFiles extends EDDTableFromFiles {
         taskOA[1] = sourceDir + sourceName;
         taskOA[2] = localFile;
         taskOA[3] = sourceFileLastMod.get(f);
-        int tTaskNumber = EDStatic.addTask(taskOA);
+        int tTaskNumber = EDStatic.addTask(tDatasetID, 1, taskOA);
         if (tTaskNumber >= 0) {
           nTasksCreated++;
           taskNumber = tTaskNumber;
@@ -443,7 +440,7 @@ public class EDDTableFromThreddsFiles extends EDDTableFromFiles {
         Object taskOA[] = new Object[2];
         taskOA[0] = TaskThread.TASK_SET_FLAG;
         taskOA[1] = tDatasetID;
-        taskNumber = EDStatic.addTask(taskOA); // TASK_SET_FLAG will always be added
+        taskNumber = EDStatic.addTask(tDatasetID, 1, taskOA); // TASK_SET_FLAG will always be added
         nTasksCreated++;
         if (reallyVerbose) String2.log("  task#" + taskNumber + " TASK_SET_FLAG " + tDatasetID);
       }
@@ -468,12 +465,11 @@ public class EDDTableFromThreddsFiles extends EDDTableFromFiles {
                 + MustBe.throwableToString(t));
     }
     if (taskNumber > -1) {
-      EDStatic.lastAssignedTask.put(tDatasetID, taskNumber);
       EDStatic.ensureTaskThreadIsRunningIfNeeded(); // ensure info is up-to-date
 
       if (EDStatic.config.forceSynchronousLoading) {
         boolean interrupted = false;
-        while (!interrupted && EDStatic.lastFinishedTask.get() < taskNumber) {
+        while (!interrupted && EDStatic.nUnfinishedTasks(tDatasetID) > 0) {
           try {
             Thread.sleep(2000);
           } catch (InterruptedException e) {
@@ -0,0 +1,299 @@
+/*
+ * ExternalTableSort Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.Attributes;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.util.String2;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import java.io.DataInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * ExternalTableSort sorts the data in a finished TableWriterAll without having all of the data in
+ * memory at once. It reads chunks of at most maxRowsInMemory rows, sorts each chunk and writes it
+ * to a temporary TableWriterAll (a sorted "run") in the same cache directory, then does a k-way
+ * merge of the runs, passing the sorted rows to a ChunkConsumer a chunk at a time.
+ *
+ * <p>This sort is stable: equal elements will not be reordered as a result of the sort.
+ *
+ * <p>Like Table.sort, this compares the raw values. It doesn't convert missing values to NaN.
+ */
+public class ExternalTableSort {
+
+  /** This receives the sorted data, one chunk (Table) at a time. */
+  @FunctionalInterface
+  public interface ChunkConsumer {
+    void accept(Table chunk) throws Throwable;
+  }
+
+  /**
+   * This returns the maximum number of rows that the orderBy TableWriters should sort in memory.
+   * It is based on partialRequestMaxCells, which is the preferred maximum size of a partial table
+   * request.
+   *
+   * @param nColumns the number of columns in the table
+   * @return the maximum number of rows to sort in memory
+   */
+  public static int maxRowsInMemory(int nColumns) {
+    return Math.max(1000, EDStatic.config.partialRequestMaxCells / Math.max(1, nColumns));
+  }
+
+  /**
+   * If twa has more than maxRowsInMemory rows, this sorts them (all ascending or all descending) by
+   * the orderBy columns and passes them to consumer, a chunk at a time. This is used by the
+   * orderBy TableWriters' finish() methods, after super.finish().
+   *
+   * @param twa a TableWriterAll which has finished
+   * @param orderBy the orderBy column names. Names with rounding (e.g., time/1day) are sorted by
+   *     the unrounded values.
+   * @param ascending true if the rows should be sorted ascending, false if descending
+   * @param nGroupVars the number of leading orderBy columns which define the groups which the
+   *     consumer needs to see entirely within one chunk (e.g., orderBy.length-1 for orderByMax), or
+   *     0 if the consumer doesn't care where the chunks end.
+   * @param consumer receives the sorted rows
+   * @return true if the data was sorted and passed to consumer. false if there are few enough rows
+   *     to sort in memory, or if the groups can't be kept in chunks (e.g., the first orderBy
+   *     column has rounding or has missing_value or _FillValue attributes, which the Table
+   *     orderBy methods treat like NaN), so the caller should do the in-memory sort.
+   * @throws Throwable if trouble
+   */
+  public static boolean sortIfTooBig(
+      TableWriterAll twa,
+      String[] orderBy,
+      boolean ascending,
+      int nGroupVars,
+      ChunkConsumer consumer)
+      throws Throwable {
+
+    int maxRows = maxRowsInMemory(twa.nColumns());
+    if (twa.nRows() <= maxRows) return false;
+
+    // find the key columns
+    String columnNames[] = twa.columnNames();
+    int keys[] = new int[orderBy.length];
+    boolean ascendings[] = new boolean[orderBy.length];
+    for (int ob = 0; ob < orderBy.length; ob++) {
+      keys[ob] =
+          String2.indexOf(columnNames, Table.deriveActualColumnName(orderBy[ob].trim()));
+      if (keys[ob] < 0) return false; // let the in-memory sort throw the error
+      ascendings[ob] = ascending;
+    }
+
+    // the chunks may end where one of the leading group columns (without rounding or mv's) changes
+    int nGroupKeys = 0;
+    while (nGroupKeys < nGroupVars) {
+      String name = orderBy[nGroupKeys].trim();
+      Attributes atts = twa.columnAttributes(keys[nGroupKeys]);
+      if (!Table.deriveActualColumnName(name).equals(name)
+          || atts.get("missing_value") != null
+          || atts.get("_FillValue") != null) break;
+      nGroupKeys++;
+    }
+    if (nGroupVars > 0 && nGroupKeys == 0) return false;
+
+    sort(twa, keys, ascendings, nGroupKeys, maxRows, consumer);
+    return true;
+  }
+
+  /**
+   * This sorts the data in twa (comparing Strings in a case-sensitive way) and passes the sorted
+   * rows to consumer, a chunk at a time. See the other sort() for details.
+   */
+  public static void sort(
+      TableWriterAll twa,
+      int[] keys,
+      boolean[] ascending,
+      int nGroupKeys,
+      int maxRows,
+      ChunkConsumer consumer)
+      throws Throwable {
+    sort(twa, keys, ascending, nGroupKeys, maxRows, false, consumer);
+  }
+
+  /**
+   * This sorts the data in twa and passes the sorted rows to consumer, a chunk at a time.
+   *
+   * @param twa a TableWriterAll which has finished (so its column files are complete). This
+   *     doesn't change twa or delete its files.
+   * @param keys the numbers of the key columns (first is most important)
+   * @param ascending true if a given key column should be sorted ascending
+   * @param nGroupKeys if &gt; 0, the chunks passed to consumer will only end where one of the
+   *     first nGroupKeys keys changes value, so each group of rows (with the same values for those
+   *     keys) is entirely in one chunk. If 0, chunks may end anywhere.
+   * @param maxRows the maximum number of rows in a sorted run (and, except for big groups, in a
+   *     chunk passed to consumer)
+   * @param ignoreCase if true, Strings and chars are compared in a case-insensitive way, as in
+   *     Table.sortIgnoreCase
+   * @param consumer receives the sorted rows
+   * @throws Throwable if trouble
+   */
+  public static void sort(
+      TableWriterAll twa,
+      int[] keys,
+      boolean[] ascending,
+      int nGroupKeys,
+      int maxRows,
+      boolean ignoreCase,
+      ChunkConsumer consumer)
+      throws Throwable {
+
+    long time = System.currentTimeMillis();
+    int nColumns = twa.nColumns();
+    List<TableWriterAll> runs = new ArrayList<>();
+    Run cursors[] = null;
+    try {
+      // make the sorted runs
+      DataInputStream diss[] = new DataInputStream[nColumns];
+      try {
+        for (int col = 0; col < nColumns; col++) diss[col] = twa.dataInputStream(col);
+        long remaining = twa.nRows();
+        while (remaining > 0) {
+          int n = (int) Math.min(maxRows, remaining);
+          Table chunk = twa.makeEmptyTable();
+          for (int col = 0; col < nColumns; col++) chunk.getColumn(col).readDis(diss[col], n);
+          remaining -= n;
+          if (ignoreCase) chunk.sortIgnoreCase(keys, ascending);
+          else chunk.sort(keys, ascending);
+          TableWriterAll run =
+              new TableWriterAll(
+                  twa.language,
+                  twa.edd,
+                  twa.newHistory,
+                  twa.dir,
+                  twa.fileNameNoExt + "." + twa.randomInt + ".run" + runs.size());
+          runs.add(run);
+          run.writeSome(chunk);
+          run.finish();
+        }
+      } finally {
+        for (DataInputStream dis : diss) if (dis != null) dis.close();
+      }
+      if (TableWriter.verbose)
+        String2.log(
+            "ExternalTableSort made "
+                + runs.size()
+                + " sorted runs of at most "
+                + maxRows
+                + " rows. TIME="
+                + (System.currentTimeMillis() - time)
+                + "ms");
+
+      // merge the runs
+      int nRuns = runs.size();
+      int bufferRows = Math.max(16, maxRows / Math.max(1, nRuns));
+      cursors = new Run[nRuns];
+      PriorityQueue<Run> queue =
+          new PriorityQueue<>(
+              Math.max(1, nRuns),
+              (run1, run2) -> {
+                for (int k = 0; k < keys.length; k++) {
+                  PrimitiveArray pa1 = run1.pas[keys[k]];
+                  int result =
+                      ignoreCase
+                          ? pa1.compareIgnoreCase(run1.row, run2.pas[keys[k]], run2.row)
+                          : pa1.compare(run1.row, run2.pas[keys[k]], run2.row);
+                  if (result != 0) return ascending[k] ? result : -result;
+                }
+                return Integer.compare(run1.runIndex, run2.runIndex); // so stable
+              });
+      for (int r = 0; r < nRuns; r++) {
+        cursors[r] = new Run(runs.get(r), r, bufferRows);
+        if (cursors[r].next()) queue.add(cursors[r]);
+      }
+
+      Table chunk = twa.makeEmptyTable();
+      PrimitiveArray chunkPAs[] = columns(chunk);
+      while (!queue.isEmpty()) {
+        Run run = queue.poll();
+        PrimitiveArray runPAs[] = run.pas;
+
+        // pass the chunk to consumer?
+        int chunkNRows = chunk.nRows();
+        if (chunkNRows >= maxRows) {
+          boolean groupChanged = nGroupKeys == 0;
+          for (int k = 0; k < nGroupKeys && !groupChanged; k++)
+            groupChanged = chunkPAs[keys[k]].compare(chunkNRows - 1, runPAs[keys[k]], run.row) != 0;
+          if (groupChanged) {
+            consumer.accept(chunk);
+            chunk = twa.makeEmptyTable();
+            chunkPAs = columns(chunk);
+          }
+        }
+
+        for (int col = 0; col < nColumns; col++) chunkPAs[col].addFromPA(runPAs[col], run.row);
+        if (run.next()) queue.add(run);
+      }
+      if (chunk.nRows() > 0) consumer.accept(chunk);
+
+      if (TableWriter.verbose)
+        String2.log(
+            "ExternalTableSort done. nRows="
+                + twa.nRows()
+                + " nRuns="
+                + nRuns
+                + " TIME="
+                + (System.currentTimeMillis() - time)
+                + "ms");
+
+    } finally {
+      if (cursors != null) for (Run cursor : cursors) if (cursor != null) cursor.close();
+      for (TableWriterAll run : runs) run.releaseResources();
+    }
+  }
+
+  private static PrimitiveArray[] columns(Table table) {
+    int nColumns = table.nColumns();
+    PrimitiveArray pas[] = new PrimitiveArray[nColumns];
+    for (int col = 0; col < nColumns; col++) pas[col] = table.getColumn(col);
+    return pas;
+  }
+
+  /** This reads one sorted run, a buffer full of rows at a time. */
+  private static class Run {
+    final TableWriterAll twa;
+    final int runIndex;
+    final int bufferRows;
+    final DataInputStream diss[];
+    long remaining;
+    PrimitiveArray pas[]; // the columns of the current buffer full of rows
+    int row = -1; // the current row in pas
+
+    Run(TableWriterAll twa, int runIndex, int bufferRows) throws Throwable {
+      this.twa = twa;
+      this.runIndex = runIndex;
+      this.bufferRows = bufferRows;
+      int nColumns = twa.nColumns();
+      diss = new DataInputStream[nColumns];
+      for (int col = 0; col < nColumns; col++) diss[col] = twa.dataInputStream(col);
+      remaining = twa.nRows();
+    }
+
+    /** This moves to the next row, reading the next buffer full if needed. */
+    boolean next() throws Throwable {
+      row++;
+      if (pas != null && row < pas[0].size()) return true;
+      if (remaining == 0) return false;
+      int n = (int) Math.min(bufferRows, remaining);
+      pas = columns(twa.makeEmptyTable());
+      for (int col = 0; col < diss.length; col++) pas[col].readDis(diss[col], n);
+      remaining -= n;
+      row = 0;
+      return true;
+    }
+
+    void close() {
+      for (DataInputStream dis : diss) {
+        try {
+          if (dis != null) dis.close();
+        } catch (Exception e) {
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * FileTableIndex Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.PAType;
+import com.cohort.array.PrimitiveArray;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * This is an index of the per-file min and max columns of an EDDTableFromFiles fileTable. It lets
+ * getDataForDapQuery find the files which may have data matching a numeric (or time) constraint
+ * without testing every row of the fileTable.
+ *
+ * <p>An index is tied to one version of the fileTable, identified by the dataset's
+ * fileTableModCount, which is incremented whenever the fileTable's rows or stats change: when it is
+ * changed in place (by EDDTableFromHttpGet or EDDTableFromMqtt, while holding the fileTable's lock)
+ * and whenever it is saved (so also when it is replaced by the constructor or by an incremental
+ * update). The next request sees that the index doesn't match and a new one is made. The interval
+ * index for each variable is made lazily, the first time a request constrains that variable.
+ *
+ * <p>The candidates are a superset of the files which pass EDDTableFromFiles.isOK(), so callers
+ * must still call isOK() for each candidate.
+ */
+public class FileTableIndex {
+
+  private final Table fileTable; // only set if the fileTable is kept in memory
+  private final long fileTableModCount;
+  private final int nRows;
+  private final ConcurrentHashMap<Integer, Intervals> intervals = new ConcurrentHashMap<>();
+
+  /**
+   * The constructor.
+   *
+   * @param tFileTable the fileTable this index is for
+   * @param tFileTableInMemory true if the dataset keeps its fileTable in memory (so the table's
+   *     identity also identifies the version of the fileTable)
+   * @param tFileTableModCount the dataset's fileTableModCount, read before tFileTable was gotten
+   *     (so a change after that makes the index be remade, even if the change is already in the
+   *     values this index sees)
+   */
+  public FileTableIndex(Table tFileTable, boolean tFileTableInMemory, long tFileTableModCount) {
+    fileTable = tFileTableInMemory ? tFileTable : null;
+    fileTableModCount = tFileTableModCount;
+    nRows = tFileTable.nRows();
+  }
+
+  /**
+   * This returns true if this index was made for the specified version of the fileTable.
+   *
+   * @param tFileTable the fileTable the caller is using
+   * @param tFileTableInMemory true if the dataset keeps its fileTable in memory
+   * @param tFileTableModCount the dataset's fileTableModCount, read before tFileTable was gotten
+   */
+  public boolean isFor(Table tFileTable, boolean tFileTableInMemory, long tFileTableModCount) {
+    return fileTableModCount == tFileTableModCount
+        && (tFileTableInMemory ? fileTable == tFileTable : fileTable == null)
+        && nRows == tFileTable.nRows();
+  }
+
+  /**
+   * This gets the Intervals for a variable, making them if needed.
+   *
+   * @param dv the dataVariable index
+   * @param maker makes the Intervals for dv (only called if they don't exist yet)
+   */
+  public Intervals intervals(int dv, IntFunction<Intervals> maker) {
+    return intervals.computeIfAbsent(dv, maker::apply);
+  }
+
+  /**
+   * This is a static interval index for one variable: the files' intervals sorted by min, plus a
+   * max-augmented tree (in the same order) so that the files which overlap a range can be found in
+   * O(log(nFiles) + nFound) time.
+   */
+  public static class Intervals {
+    private final int[] order; // row numbers sorted by min
+    private final double[] sortedMin;
+    private final double[] maxTree; // max of each subtree, leaves start at treeSize
+    private final int treeSize;
+    private final int[] alwaysRows; // rows with a single NaN bound (always candidates)
+
+    /**
+     * The constructor. Rows where min and max are both NaN (the file has no valid values) are
+     * never candidates for the indexed ops (see isOK). Rows with just one NaN bound are always
+     * candidates.
+     *
+     * @param min the min value for each row of the fileTable
+     * @param max the max value for each row of the fileTable
+     */
+    public Intervals(double[] min, double[] max) {
+      int n = min.length;
+      Integer[] tOrder = new Integer[n];
+      int nValid = 0;
+      int nAlways = 0;
+      int[] always = new int[n];
+      for (int row = 0; row < n; row++) {
+        boolean minNaN = Double.isNaN(min[row]);
+        boolean maxNaN = Double.isNaN(max[row]);
+        if (minNaN && maxNaN) continue;
+        if (minNaN || maxNaN) always[nAlways++] = row;
+        else tOrder[nValid++] = row;
+      }
+      Arrays.sort(tOrder, 0, nValid, (a, b) -> Double.compare(min[a], min[b]));
+
+      order = new int[nValid];
+      sortedMin = new double[nValid];
+      int size = 1;
+      while (size < nValid) size <<= 1;
+      treeSize = size;
+      maxTree = new double[2 * size];
+      Arrays.fill(maxTree, Double.NEGATIVE_INFINITY);
+      for (int i = 0; i < nValid; i++) {
+        order[i] = tOrder[i];
+        sortedMin[i] = min[order[i]];
+        maxTree[size + i] = max[order[i]];
+      }
+      for (int i = size - 1; i >= 1; i--) maxTree[i] = Math.max(maxTree[2 * i], maxTree[2 * i + 1]);
+      alwaysRows = Arrays.copyOf(always, nAlways);
+    }
+
+    /**
+     * This sets the bits in result for the rows whose interval overlaps [lo, hi], i.e., min &lt;=
+     * hi and max &gt;= lo.
+     *
+     * @param lo the low end of the range (use -Double.MAX_VALUE for no limit)
+     * @param hi the high end of the range (use Double.MAX_VALUE for no limit)
+     * @param result receives the row numbers
+     */
+    public void overlapping(double lo, double hi, BitSet result) {
+      for (int row : alwaysRows) result.set(row);
+
+      // the rows with min <= hi are a prefix of order
+      int nPrefix = Arrays.binarySearch(sortedMin, hi);
+      if (nPrefix < 0) nPrefix = -nPrefix - 1;
+      else while (nPrefix < sortedMin.length && sortedMin[nPrefix] <= hi) nPrefix++;
+      if (nPrefix > 0) collect(1, 0, treeSize, nPrefix, lo, result);
+    }
+
+    /** This walks the subtree for node (which covers [nodeLo, nodeHi)). */
+    private void collect(int node, int nodeLo, int nodeHi, int nPrefix, double lo, BitSet result) {
+      if (nodeLo >= nPrefix || maxTree[node] < lo) return;
+      if (node >= treeSize) {
+        result.set(order[nodeLo]);
+        return;
+      }
+      int mid = (nodeLo + nodeHi) >>> 1;
+      collect(2 * node, nodeLo, mid, nPrefix, lo, result);
+      collect(2 * node + 1, mid, nodeHi, nPrefix, lo, result);
+    }
+
+    /**
+     * This sets the bits in result for the rows which may pass
+     * EDDTableFromFiles.isOK(tPAType, min, max, hasNaN, conOp, conValue). The range is widened a
+     * little to allow for isOK's almostEqual tests and for its rounding of LONG min and max.
+     *
+     * @param tPAType the PAType which is passed to isOK
+     * @param conOp the constraint op
+     * @param conValue the constraint value
+     * @param result receives the row numbers
+     * @return false if this op/value can't be indexed (e.g., "!=", regex, or conValue=NaN), in
+     *     which case result is unchanged and all rows are candidates.
+     */
+    public boolean candidates(PAType tPAType, String conOp, double conValue, BitSet result) {
+      if (Double.isNaN(conValue)) return false;
+      double slack = Math.abs(conValue) * 1e-4 + 1e-4 + (tPAType == PAType.LONG ? 1 : 0);
+      switch (conOp) {
+        case "<", "<=" -> overlapping(-Double.MAX_VALUE, conValue + slack, result);
+        case ">", ">=" -> overlapping(conValue - slack, Double.MAX_VALUE, result);
+        case "=" -> overlapping(conValue - slack, conValue + slack, result);
+        default -> {
+          return false; // "!=" and PrimitiveArray.REGEX_OP
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * A convenience method to get the double values of a fileTable column.
+   *
+   * @param pa a min or max column from the fileTable
+   * @return the values as doubles
+   */
+  public static double[] toDoubles(PrimitiveArray pa) {
+    int n = pa.size();
+    double[] values = new double[n];
+    for (int i = 0; i < n; i++) values[i] = pa.getDouble(i);
+    return values;
+  }
+}
@@ -23,12 +23,15 @@ import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.erddap.util.EDMessages;
 import gov.noaa.pfel.erddap.util.EDMessages.Message;
 import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.util.SharedWorkExecutor;
 import gov.noaa.pfel.erddap.variable.EDV;
 import gov.noaa.pfel.erddap.variable.EDVGridAxis;
 import java.io.RandomAccessFile;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * This class provides sequential access to the grid data requested by a grid data query to an
@@ -44,6 +47,10 @@ import java.util.concurrent.ExecutionException;
  * <p>The constructor does not get any data from the source. The first call to increment() causes
  * the first partial response to be obtained from the source.
  *
+ * <p>If the dataset's nThreads (or nGridThreads) is greater than 1, the next few partial responses
+ * are requested from the source (in other threads) while the current one is being used. They are
+ * still made available in the proper sequence.
+ *
  * @author Bob Simons (was bob.simons@noaa.gov, now BobSimons2.00@gmail.com) 2007-07-06
  */
 public class GridDataAccessor implements AutoCloseable {
@@ -90,6 +97,13 @@ public class GridDataAccessor implements AutoCloseable {
   protected long totalNBytes;
   protected int chunk = 0; // the next chunk to be gotten by getChunk
 
+  // read ahead (only used if readAheadDepth > 1)
+  protected int readAheadDepth = 1; // the max number of chunks requested but not yet used
+  protected NDimensionalIndex readAheadIndex; // the driverIndex of the last requested chunk
+  protected long nChunksRequested = 0;
+  protected SharedWorkExecutor.Group readAheadGroup;
+  protected final ArrayDeque<Future<PrimitiveArray[]>> readAheadFutures = new ArrayDeque<>();
+
   protected Table tDirTable, tFileTable; // null, unless eddGrid is EDDGridFromFiles
 
   /** GridDataAccessor with default tAddToHistory=true. See full constructor for details. */
@@ -386,6 +400,22 @@ public class GridDataAccessor implements AutoCloseable {
     Math2.ensureArraySizeOkay(
         partialIndex.size(), "GridDataAccessor"); // ensure each chunk size() is ok
     totalNBytes = driverIndex.size() * nBytesPerPartialRequest; // driverIndex.size() is a long
+
+    // read ahead? Each chunk requested ahead holds nBytesPerPartialRequest,
+    // so all of the chunks requested ahead must fit in partialRequestMaxBytes.
+    long tReadAheadDepth =
+        eddGrid.nThreads >= 1 && eddGrid.nThreads < Integer.MAX_VALUE
+            ? eddGrid.nThreads
+            : EDStatic.nGridThreads;
+    tReadAheadDepth = Math.min(tReadAheadDepth, driverIndex.size());
+    tReadAheadDepth =
+        Math.min(
+            tReadAheadDepth,
+            Math.max(1, tPartialRequestMaxBytes / Math.max(1, nBytesPerPartialRequest)));
+    if (tReadAheadDepth > 1) {
+      readAheadDepth = EDD.adjustNThreads((int) tReadAheadDepth); // based on memory in use
+      readAheadIndex = (NDimensionalIndex) driverIndex.clone();
+    }
     if (reallyVerbose)
       String2.log(
           "      getAllOfNAxes="
@@ -401,7 +431,9 @@ public class GridDataAccessor implements AutoCloseable {
               + "\n      nBytesPerPartialRequest="
               + nBytesPerPartialRequest
               + " totalNBytes="
-              + totalNBytes);
+              + totalNBytes
+              + " readAheadDepth="
+              + readAheadDepth);
   }
 
   /**
@@ -534,7 +566,10 @@ public class GridDataAccessor implements AutoCloseable {
 
     // increment totalIndex
     boolean tb = rowMajor ? totalIndex.increment() : totalIndex.incrementCM();
-    if (!tb) return false;
+    if (!tb) {
+      cancelReadAhead();
+      return false;
+    }
 
     // increment the partial index
     tb = rowMajor ? partialIndex.increment() : partialIndex.incrementCM();
@@ -566,6 +601,7 @@ public class GridDataAccessor implements AutoCloseable {
       // first time
       boolean tb = rowMajor ? totalIndex.increment() : totalIndex.incrementCM();
       if (!tb) {
+        cancelReadAhead();
         return false;
       }
       @SuppressWarnings("unused")
@@ -574,7 +610,10 @@ public class GridDataAccessor implements AutoCloseable {
     } else {
       // subsequent times
       // increment totalIndex by partialIndex.size, for row major or column major
-      if (totalIndex.getIndex() + partialIndex.size() >= totalIndex.size()) return false;
+      if (totalIndex.getIndex() + partialIndex.size() >= totalIndex.size()) {
+        cancelReadAhead();
+        return false;
+      }
       totalIndex.setIndex(totalIndex.getIndex() + partialIndex.size());
     }
 
@@ -610,7 +649,7 @@ public class GridDataAccessor implements AutoCloseable {
 
     try {
       System.arraycopy(
-          getChunk(this, driverIndex.getCurrent()),
+          readAheadDepth > 1 ? getReadAheadChunk() : getChunk(this, driverIndex.getCurrent()),
           0,
           partialDataValues,
           0,
@@ -619,6 +658,7 @@ public class GridDataAccessor implements AutoCloseable {
     } catch (Throwable t) {
       // throwable while getting a chunk
       // shut everything down
+      cancelReadAhead();
 
       while (t instanceof ExecutionException) // may be doubly wrapped
       t = t.getCause();
@@ -653,6 +693,54 @@ public class GridDataAccessor implements AutoCloseable {
     // String2.pressEnterToContinue("chunk=" + chunk + " task=" + task + " at end of getChunk.");
   }
 
+  /**
+   * This is used by getChunk (if readAheadDepth &gt; 1) to get the next chunk. It first makes sure
+   * that the next readAheadDepth chunks have been requested (each in its own task), then waits for
+   * the next chunk's task to finish. If this is running in a SharedWorkExecutor thread (e.g.,
+   * interpolate's box tasks), the chunks are read by that executor's nested executor. If this is
+   * running in a nested executor's thread, this doesn't read ahead (see
+   * SharedWorkExecutor.forCurrentThread).
+   *
+   * @return the partialDataValues for the next chunk
+   * @throws Throwable if trouble
+   */
+  private PrimitiveArray[] getReadAheadChunk() throws Throwable {
+    if (readAheadGroup == null) {
+      SharedWorkExecutor executor = SharedWorkExecutor.forCurrentThread();
+      if (executor == null) {
+        readAheadDepth = 1;
+        return getChunk(this, driverIndex.getCurrent());
+      }
+      readAheadGroup = executor.newGroup(readAheadDepth);
+    }
+    long nChunks = driverIndex.size();
+    while (nChunksRequested < nChunks && nChunksRequested - chunk < readAheadDepth) {
+      @SuppressWarnings("unused")
+      boolean unused = rowMajor ? readAheadIndex.increment() : readAheadIndex.incrementCM();
+      int[] driverCurrent = readAheadIndex.getCurrent().clone();
+      readAheadFutures.add(readAheadGroup.submit(() -> getChunk(this, driverCurrent)));
+      nChunksRequested++;
+    }
+    PrimitiveArray[] pas = readAheadFutures.remove().get();
+    if (nChunksRequested == nChunks && readAheadFutures.isEmpty())
+      cancelReadAhead(); // that was the last chunk, so release the group now
+    return pas;
+  }
+
+  /**
+   * This cancels any read ahead tasks that are still queued or running and releases their partial
+   * results. This is called when the last chunk has been used, when getting a chunk fails, and by
+   * close(), so a caller that stops early (e.g., because of an exception between increments) and
+   * then closes this (in a finally block or try-with-resources) doesn't leave tasks running.
+   */
+  protected void cancelReadAhead() {
+    if (readAheadGroup != null) {
+      readAheadGroup.cancel();
+      readAheadGroup = null;
+    }
+    readAheadFutures.clear();
+  }
+
   private PrimitiveArray[] getChunk(GridDataAccessor gda, int[] driverCurrent) throws Exception {
     try {
       long time = System.currentTimeMillis();
@@ -889,6 +977,7 @@ public class GridDataAccessor implements AutoCloseable {
    */
   @Override
   public void close() {
+    cancelReadAhead(); // in case not all chunks were used
     tDirTable = null;
     tFileTable = null;
   }
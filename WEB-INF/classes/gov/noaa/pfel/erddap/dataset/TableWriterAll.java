@@ -144,7 +144,8 @@ public class TableWriterAll extends TableWriter {
     if (table.nRows() == 0) return;
 
     // ensure the table's structure is the same as before
-    boolean firstTime = columnNames == null;
+    // (a subclass may have already called ensureCompatible, so check columnStreams)
+    boolean firstTime = columnStreams == null && totalNRows == 0;
     ensureCompatible(table);
 
     // do firstTime stuff
@@ -0,0 +1,184 @@
+/*
+ * TableWriterAllReduceOrderBy Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+
+/**
+ * TableWriterAllReduceOrderBy is the superclass of the orderBy TableWriters which reduce each group
+ * of rows to one or a few rows (e.g., TableWriterOrderByMax). Since a reduction of reduced tables
+ * is the same as the reduction of the whole table, this keeps the reduced rows (the best rows so
+ * far for each group) in memory and reduces them again as more data arrives, so memory use is
+ * proportional to the number of groups, not the number of rows. When the input is done, the reduced
+ * rows are written to otherTableWriter.
+ *
+ * <p>If there are too many groups to keep in memory (more than
+ * ExternalTableSort.maxRowsInMemory), the reduced rows are written to the columnStreams (as in
+ * TableWriterAll) and finish() sorts and reduces them on disk.
+ */
+public abstract class TableWriterAllReduceOrderBy extends TableWriterAll {
+
+  // set by subclass constructor
+  protected TableWriter otherTableWriter;
+  public String orderBy[];
+
+  protected Table reducedTable; // the reduced rows which haven't been written to columnStreams
+  protected int reducedNRows = 0; // reducedTable.nRows() after the last reduction
+
+  /**
+   * The constructor.
+   *
+   * @param language the index of the selected language
+   * @param tDir a private cache directory for storing the intermediate files, usually
+   *     cacheDirectory(datasetID)
+   * @param tFileNameNoExt is the fileName without dir or extension (used as basis for temp files).
+   *     A random number will be added to it for safety.
+   * @param tOtherTableWriter the tableWriter that will receive the rows found by this tableWriter.
+   */
+  protected TableWriterAllReduceOrderBy(
+      int tLanguage,
+      EDD tEdd,
+      String tNewHistory,
+      String tDir,
+      String tFileNameNoExt,
+      TableWriter tOtherTableWriter) {
+    super(tLanguage, tEdd, tNewHistory, tDir, tFileNameNoExt);
+    otherTableWriter = tOtherTableWriter;
+  }
+
+  /**
+   * This reduces the table in place (e.g., table.orderByMax(orderBy)). It must handle
+   * missingValues and _FillValues.
+   *
+   * @param table a table with some rows of data
+   * @throws Exception if trouble
+   */
+  protected abstract void reduce(Table table) throws Exception;
+
+  /**
+   * This returns the number of leading orderBy columns which define the groups (e.g.,
+   * orderBy.length-1 for orderByMax).
+   */
+  protected abstract int nGroupVars();
+
+  /**
+   * This reduces the current contents of table (a chunk of data) and merges the results with the
+   * reduced rows from previous chunks. This calls ensureCompatible each time it is called. The
+   * number of columns, the column names, and the types of columns must be the same each time this
+   * is called.
+   *
+   * @param table with destinationValues. The table should have missing values stored as
+   *     destinationMissingValues or destinationFillValues. This implementation converts them to
+   *     NaNs for processing, then back to destinationMV and FV when finished.
+   * @throws Throwable if trouble
+   */
+  @Override
+  public void writeSome(Table table) throws Throwable {
+    if (table.nRows() == 0) return;
+    reduce(table);
+    if (table.nRows() == 0) return;
+    ensureCompatible(table);
+
+    if (reducedTable == null) reducedTable = makeEmptyTable();
+    reducedTable.append(table);
+
+    // reduce again when the unreduced part is as big as the reduced part (so amortized O(n log n))
+    if (reducedTable.nRows() >= Math.max(1000, 2 * reducedNRows)) {
+      reduce(reducedTable);
+      reducedNRows = reducedTable.nRows();
+
+      // too many groups to keep in memory?
+      if (reducedNRows > ExternalTableSort.maxRowsInMemory(nColumns())) {
+        super.writeSome(reducedTable);
+        reducedTable = null;
+        reducedNRows = 0;
+      }
+    }
+  }
+
+  /**
+   * This finishes the reduction and writes the results to otherTableWriter. If ignoreFinish=true,
+   * nothing will be done.
+   *
+   * @throws Throwable if trouble (e.g., MustBe.THERE_IS_NO_DATA if there is no data)
+   */
+  @Override
+  public void finish() throws Throwable {
+    if (ignoreFinish) return;
+
+    // did all the reduced rows fit in memory?
+    if (columnStreams == null && reducedTable != null) {
+      Table table = reducedTable;
+      reducedTable = null;
+      reduce(table);
+      otherTableWriter.writeAllAndFinish(table);
+      otherTableWriter = null;
+      return;
+    }
+
+    if (reducedTable != null) {
+      super.writeSome(reducedTable);
+      reducedTable = null;
+    }
+    super.finish(); // throws THERE_IS_NO_DATA if no data
+
+    // too many rows to sort in memory? sort on disk and pass the reduced chunks along
+    if (nGroupVars() > 0
+        && ExternalTableSort.sortIfTooBig(
+            this,
+            orderBy,
+            true,
+            nGroupVars(),
+            chunk -> {
+              reduce(chunk);
+              otherTableWriter.writeSome(chunk);
+            })) {
+      releaseResources();
+      otherTableWriter.finish();
+      otherTableWriter = null;
+      return;
+    }
+
+    Table cumulativeTable = cumulativeTable();
+    releaseResources();
+    reduce(cumulativeTable);
+    otherTableWriter.writeAllAndFinish(cumulativeTable);
+
+    // clean up
+    otherTableWriter = null;
+  }
+
+  /**
+   * If caller has the entire table, use this instead of repeated writeSome() + finish(). This
+   * overwrites the superclass method.
+   *
+   * @throws Throwable if trouble (e.g., EDStatic.THERE_IS_NO_DATA if there is no data)
+   */
+  @Override
+  public void writeAllAndFinish(Table tCumulativeTable) throws Throwable {
+    if (ignoreFinish) {
+      writeSome(tCumulativeTable);
+      tCumulativeTable.removeAllRows();
+      return;
+    }
+    reduce(tCumulativeTable);
+    otherTableWriter.writeAllAndFinish(tCumulativeTable);
+    otherTableWriter = null;
+  }
+
+  @Override
+  public void releaseResources() {
+    reducedTable = null;
+    super.releaseResources();
+  }
+
+  @Override
+  public void close() throws Exception {
+    super.close();
+    if (otherTableWriter != null) {
+      otherTableWriter.close();
+    }
+  }
+}
@@ -4,9 +4,13 @@
  */
 package gov.noaa.pfel.erddap.dataset;
 
+import com.cohort.array.IntArray;
+import com.cohort.array.PAType;
+import com.cohort.array.PrimitiveArray;
 import com.cohort.util.MustBe;
 import com.cohort.util.SimpleException;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
+import java.util.Arrays;
 
 /**
  * TableWriterDistinct provides a way to gather just the unique rows, sort them, then write to some
@@ -15,6 +19,13 @@ import gov.noaa.pfel.coastwatch.pointdata.Table;
  * <p>This doesn't do anything to missing values and doesn't assume they are stored as NaN or fake
  * missing values.
  *
+ * <p>Duplicate rows are dropped as they arrive (with a hash set of the distinct rows), so only the
+ * distinct rows are kept and sorted. If there are too many distinct rows to keep in memory (more
+ * than ExternalTableSort.maxRowsInMemory), they are spilled to N_PARTITIONS files based on their
+ * hash (so all copies of a row go to the same partition), and finish() removes the duplicates
+ * within each partition (with a hash set, or, if the partition is too big for that, by sorting it
+ * on disk), then sorts the distinct rows (on disk if needed).
+ *
  * <p>Unlike TableWriterAll, this doesn't keep track of min,max for actual_range or update metadata
  * at end. It is assumed that this is like a filter, and that a subsequent TableWriter will handle
  * that if needed.
@@ -23,9 +34,18 @@ import gov.noaa.pfel.coastwatch.pointdata.Table;
  */
 public class TableWriterDistinct extends TableWriterAll {
 
+  /**
+   * The number of hash partitions used if the distinct rows don't fit in memory. The partition is
+   * the top 4 bits of the row's hash.
+   */
+  public static final int N_PARTITIONS = 16;
+
   // set by constructor
   protected TableWriter otherTableWriter;
 
+  protected DistinctRows distinctRows; // the distinct rows which haven't been spilled
+  protected TableWriterAll partitions[]; // null until the first spill
+
   /**
    * The constructor.
    *
@@ -50,11 +70,9 @@ public class TableWriterDistinct extends TableWriterAll {
   }
 
   /**
-   * This adds the current contents of table (a chunk of data) to the OutputStream. This calls
-   * ensureCompatible each time it is called. If this is the first time this is called, this does
-   * first time things (e.g., call OutputStreamSource.outputStream() and write file header). The
-   * number of columns, the column names, and the types of columns must be the same each time this
-   * is called.
+   * This adds the distinct rows from the current contents of table (a chunk of data) to the
+   * distinct rows so far. This calls ensureCompatible each time it is called. The number of
+   * columns, the column names, and the types of columns must be the same each time this is called.
    *
    * @param table with destinationValues. The table should have missing values stored as
    *     destinationMissingValues or destinationFillValues. This implementation doesn't change them.
@@ -64,18 +82,51 @@ public class TableWriterDistinct extends TableWriterAll {
   public void writeSome(Table table) throws Throwable {
     if (table.nRows() == 0) return;
 
-    // to save memory, this just does a feeble job (remove duplicates from this partial table)
-    //  and leaves perfect job to finish()
-    sortAndRemoveDuplicates(table);
-
     // ensure the table's structure is the same as before
-    // and write to dataOutputStreams
-    super.writeSome(table);
+    ensureCompatible(table);
+
+    if (distinctRows == null) distinctRows = new DistinctRows(makeEmptyTable());
+    distinctRows.addAll(table);
+
+    // too many distinct rows to keep in memory?
+    if (distinctRows.nRows() > ExternalTableSort.maxRowsInMemory(nColumns())) spill();
   }
 
   /**
-   * This reconstructs the table, sorts and removes duplicates, and sends table to otherTableWriter.
-   * If ignoreFinish=true, nothing will be done.
+   * This writes the distinct rows in memory to the hash partitions on disk.
+   *
+   * @throws Throwable if trouble
+   */
+  private void spill() throws Throwable {
+    if (partitions == null) {
+      partitions = new TableWriterAll[N_PARTITIONS];
+      for (int p = 0; p < N_PARTITIONS; p++)
+        partitions[p] =
+            new TableWriterAll(
+                language, edd, newHistory, dir, fileNameNoExt + "." + randomInt + ".part" + p);
+    }
+
+    Table table = distinctRows.table();
+    PrimitiveArray pas[] = DistinctRows.columns(table);
+    Table parts[] = new Table[N_PARTITIONS];
+    PrimitiveArray partPAs[][] = new PrimitiveArray[N_PARTITIONS][];
+    for (int p = 0; p < N_PARTITIONS; p++) {
+      parts[p] = makeEmptyTable();
+      partPAs[p] = DistinctRows.columns(parts[p]);
+    }
+    int nRows = table.nRows();
+    for (int row = 0; row < nRows; row++) {
+      // use the top 4 bits, since the hash sets use the low bits
+      PrimitiveArray tPAs[] = partPAs[distinctRows.hash(row) >>> 28];
+      for (int col = 0; col < pas.length; col++) tPAs[col].addFromPA(pas[col], row);
+    }
+    distinctRows = null;
+    for (int p = 0; p < N_PARTITIONS; p++) partitions[p].writeSome(parts[p]);
+  }
+
+  /**
+   * This removes the remaining duplicates, sorts the distinct rows, and sends them to
+   * otherTableWriter. If ignoreFinish=true, nothing will be done.
    *
    * @throws Throwable if trouble (e.g., MustBe.THERE_IS_NO_DATA if there is no data)
    */
@@ -83,8 +134,46 @@ public class TableWriterDistinct extends TableWriterAll {
   public void finish() throws Throwable {
     if (ignoreFinish) return;
 
-    // close the dataOutputStreams
-    super.finish(); // this throws Throwable if no data
+    // did all the distinct rows fit in memory?
+    if (partitions == null) {
+      if (distinctRows == null)
+        throw new SimpleException(MustBe.THERE_IS_NO_DATA + " (nRows = 0)");
+      Table table = distinctRows.table();
+      distinctRows = null;
+      lowFinish(table);
+      return;
+    }
+
+    // remove the duplicates within each partition and write the distinct rows to columnStreams
+    if (distinctRows != null) spill();
+    int maxRows = ExternalTableSort.maxRowsInMemory(nColumns());
+    for (int p = 0; p < N_PARTITIONS; p++) {
+      TableWriterAll partition = partitions[p];
+      if (partition.nRows() > maxRows) {
+        // too big for a hash set in memory, so sort it on disk (which makes duplicates adjacent)
+        partition.finish();
+        sortDistinct(partition, maxRows, super::writeSome);
+        partition.releaseResources();
+      } else if (partition.nRows() > 0) {
+        partition.finish();
+        DistinctRows tDistinctRows = new DistinctRows(makeEmptyTable());
+        tDistinctRows.addAll(partition.cumulativeTable());
+        partition.releaseResources();
+        super.writeSome(tDistinctRows.table());
+      }
+      partitions[p] = null;
+    }
+    partitions = null;
+    super.finish();
+
+    // too many rows to sort in memory? sort on disk and pass the sorted chunks along
+    if (nRows() > maxRows) {
+      sortDistinct(this, maxRows, otherTableWriter::writeSome);
+      releaseResources();
+      otherTableWriter.finish();
+      otherTableWriter = null;
+      return;
+    }
 
     // makeCumulativeTable
     Table table = cumulativeTable();
@@ -94,6 +183,41 @@ public class TableWriterDistinct extends TableWriterAll {
     lowFinish(table);
   }
 
+  /**
+   * This sorts the rows of a finished TableWriterAll on disk (like leftToRightSortIgnoreCase, which
+   * makes identical rows adjacent), removes the duplicate rows, and passes the distinct rows to
+   * consumer, a chunk (of at most maxRows rows) at a time.
+   *
+   * @throws Throwable if trouble
+   */
+  private static void sortDistinct(
+      TableWriterAll twa, int maxRows, ExternalTableSort.ChunkConsumer consumer) throws Throwable {
+    int nColumns = twa.nColumns();
+    boolean ascending[] = new boolean[nColumns];
+    Arrays.fill(ascending, true);
+    PrimitiveArray lastRow[][] = new PrimitiveArray[1][]; // the last row passed to consumer
+    ExternalTableSort.sort(
+        twa,
+        new IntArray(0, nColumns - 1).toArray(),
+        ascending,
+        0,
+        maxRows,
+        true, // like leftToRightSortIgnoreCase
+        chunk -> {
+          chunk.removeDuplicates();
+          // the first row may be a copy of the previous chunk's last row
+          PrimitiveArray pas[] = DistinctRows.columns(chunk);
+          if (lastRow[0] != null && DistinctRows.rowsEqual(lastRow[0], 0, pas, 0))
+            chunk.removeRows(0, 1);
+          int nRows = chunk.nRows();
+          if (nRows == 0) return;
+          lastRow[0] = new PrimitiveArray[nColumns];
+          for (int col = 0; col < nColumns; col++)
+            lastRow[0][col] = pas[col].subset(nRows - 1, 1, nRows - 1);
+          consumer.accept(chunk);
+        });
+  }
+
   /**
    * If caller has the entire table, use this instead of repeated writeSome() + finish().
    *
@@ -135,6 +259,17 @@ public class TableWriterDistinct extends TableWriterAll {
     table.removeDuplicates();
   }
 
+  @Override
+  public void releaseResources() {
+    distinctRows = null;
+    if (partitions != null) {
+      for (TableWriterAll partition : partitions)
+        if (partition != null) partition.releaseResources();
+      partitions = null;
+    }
+    super.releaseResources();
+  }
+
   @Override
   public void close() throws Exception {
     super.close();
@@ -142,4 +277,120 @@ public class TableWriterDistinct extends TableWriterAll {
       otherTableWriter.close();
     }
   }
+
+  /**
+   * DistinctRows is a table of distinct rows with an open addressing hash set of its row numbers,
+   * so rows can be added (if they aren't already in the table) in O(1) time. Like
+   * PrimitiveArray.removeDuplicates, rows are equal if PrimitiveArray.compare says all of their
+   * values are equal.
+   */
+  protected static class DistinctRows {
+    private final Table table;
+    private final PrimitiveArray pas[];
+    private int hashes[] = new int[1024]; // the hash of each row
+    private int slots[] = new int[2048]; // row+1, or 0 if the slot is empty
+    private int nRows = 0;
+
+    /**
+     * The constructor.
+     *
+     * @param emptyTable an empty table with the columns (names, types, attributes) of the rows
+     *     which will be added
+     */
+    protected DistinctRows(Table emptyTable) {
+      table = emptyTable;
+      pas = columns(table);
+    }
+
+    protected static PrimitiveArray[] columns(Table table) {
+      int nColumns = table.nColumns();
+      PrimitiveArray tPAs[] = new PrimitiveArray[nColumns];
+      for (int col = 0; col < nColumns; col++) tPAs[col] = table.getColumn(col);
+      return tPAs;
+    }
+
+    /**
+     * This returns a hash of the values in a row, consistent with PrimitiveArray.compare (so equal
+     * rows have equal hashes).
+     */
+    protected static int hash(PrimitiveArray tPAs[], int row) {
+      int hash = 1;
+      for (PrimitiveArray pa : tPAs) {
+        PAType type = pa.elementType();
+        hash =
+            31 * hash
+                + (type == PAType.STRING || type == PAType.CHAR
+                    ? pa.getString(row).hashCode()
+                    : Double.hashCode(pa.getDouble(row)));
+      }
+      // spread the bits (murmur3's fmix32), so the low and high bits are all useful
+      hash ^= hash >>> 16;
+      hash *= 0x85ebca6b;
+      hash ^= hash >>> 13;
+      hash *= 0xc2b2ae35;
+      return hash ^ (hash >>> 16);
+    }
+
+    /** This returns the table of distinct rows. */
+    protected Table table() {
+      return table;
+    }
+
+    /** This returns the number of distinct rows. */
+    protected int nRows() {
+      return nRows;
+    }
+
+    /** This returns the hash of one of the distinct rows. */
+    protected int hash(int row) {
+      return hashes[row];
+    }
+
+    /**
+     * This adds the rows from tTable which aren't already in this table.
+     *
+     * @param tTable a table with the same columns as this table
+     */
+    protected void addAll(Table tTable) {
+      PrimitiveArray tPAs[] = columns(tTable);
+      int tNRows = tTable.nRows();
+      for (int tRow = 0; tRow < tNRows; tRow++) {
+        int hash = hash(tPAs, tRow);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+          int row = slots[slot] - 1;
+          if (hashes[row] == hash && rowsEqual(pas, row, tPAs, tRow)) break;
+          slot = (slot + 1) & mask;
+        }
+        if (slots[slot] != 0) continue; // a duplicate
+
+        // add the row
+        for (int col = 0; col < pas.length; col++) pas[col].addFromPA(tPAs[col], tRow);
+        if (nRows == hashes.length) hashes = Arrays.copyOf(hashes, 2 * nRows);
+        hashes[nRows++] = hash;
+        slots[slot] = nRows;
+        if (2 * nRows > slots.length) rehash();
+      }
+    }
+
+    /** This returns true if PrimitiveArray.compare says all of the rows' values are equal. */
+    protected static boolean rowsEqual(
+        PrimitiveArray pas1[], int row1, PrimitiveArray pas2[], int row2) {
+      for (int col = 0; col < pas1.length; col++)
+        if (pas1[col].compare(row1, pas2[col], row2) != 0) return false;
+      return true;
+    }
+
+    /** This doubles the size of the hash set. */
+    private void rehash() {
+      slots = new int[2 * slots.length];
+      int mask = slots.length - 1;
+      for (int row = 0; row < nRows; row++) {
+        int slot = hashes[row] & mask;
+        while (slots[slot] != 0) slot = (slot + 1) & mask;
+        slots[slot] = row + 1;
+      }
+    }
+  }
 }
@@ -16,7 +16,6 @@ import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.erddap.util.EDMessages.Message;
 import gov.noaa.pfel.erddap.util.EDStatic;
 import gov.noaa.pfel.erddap.variable.EDV;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.atomic.AtomicLong;
@@ -37,7 +36,8 @@ public class TableWriterJson extends TableWriter {
   // set by firstTime
   protected volatile boolean isTimeStamp[];
   protected volatile DateTimeFormatter[] time_precision;
-  protected volatile BufferedWriter writer;
+  protected volatile TextEncoder writer;
+  protected volatile TextEncoder.TimeEncoder[] timeEncoders;
 
   // other
   protected volatile boolean rowsWritten = false;
@@ -114,7 +114,10 @@ public class TableWriterJson extends TableWriter {
       }
 
       // write the header
-      writer = File2.getBufferedWriterUtf8(outputStreamSource.outputStream(File2.UTF_8));
+      writer = new TextEncoder(outputStreamSource.outputStream(File2.UTF_8), true);
+      timeEncoders = new TextEncoder.TimeEncoder[nColumns];
+      for (int col = 0; col < nColumns; col++)
+        if (isTimeStamp[col]) timeEncoders[col] = writer.timeEncoder(time_precision[col]);
       if (jsonp != null) writer.write(jsonp + "(");
 
       // write the column names
@@ -171,14 +174,15 @@ public class TableWriterJson extends TableWriter {
         if (col > 0) writer.write(", ");
         if (isTimeStamp[col]) {
           double d = pas[col].getDouble(row);
-          writer.write(
-              Double.isNaN(d)
-                  ? "null"
-                  : "\""
-                      + Calendar2.epochSecondsToLimitedIsoStringT(time_precision[col], d, "")
-                      + "\"");
+          if (Double.isNaN(d)) {
+            writer.write("null");
+          } else {
+            writer.write('"');
+            timeEncoders[col].write(d);
+            writer.write('"');
+          }
         } else {
-          writer.write(pas[col].getJsonString(row));
+          writer.writeJson(pas[col], row);
         }
       }
       writer.write(row < nRows - 1 ? "],\n" : "]"); // endRow
@@ -16,7 +16,6 @@ import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.erddap.util.EDMessages.Message;
 import gov.noaa.pfel.erddap.util.EDStatic;
 import gov.noaa.pfel.erddap.variable.EDV;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.atomic.AtomicLong;
@@ -39,7 +38,9 @@ public class TableWriterJsonl extends TableWriter {
   // set by firstTime
   protected volatile boolean isTimeStamp[];
   protected volatile DateTimeFormatter[] time_precision;
-  protected volatile BufferedWriter writer;
+  protected volatile TextEncoder writer;
+  protected volatile TextEncoder.TimeEncoder[] timeEncoders;
+  protected volatile byte[][] kvpNames; // e.g., "time":
 
   // other
   public final AtomicLong totalNRows = new AtomicLong(0);
@@ -118,9 +119,13 @@ public class TableWriterJsonl extends TableWriter {
       }
 
       // write the header
-      writer =
-          File2.getBufferedWriterUtf8(
-              outputStreamSource.outputStream(File2.UTF_8)); // a requirement
+      writer = new TextEncoder(outputStreamSource.outputStream(File2.UTF_8), true); // a requirement
+      timeEncoders = new TextEncoder.TimeEncoder[nColumns];
+      kvpNames = new byte[nColumns][];
+      for (int col = 0; col < nColumns; col++) {
+        if (isTimeStamp[col]) timeEncoders[col] = writer.timeEncoder(time_precision[col]);
+        if (writeKVP) kvpNames[col] = writer.encode(String2.toJson(table.getColumnName(col)) + ":");
+      }
       if (jsonp != null) writer.write(jsonp + "(\n"); // I think this never makes sense for jsonl
 
       // write the column names
@@ -149,20 +154,18 @@ public class TableWriterJsonl extends TableWriter {
       writer.write(writeKVP ? '{' : '['); // beginRow
       for (int col = 0; col < nColumns; col++) {
         if (col > 0) writer.write(", ");
-        if (writeKVP) {
-          writer.write(String2.toJson(table.getColumnName(col)));
-          writer.write(':');
-        }
+        if (writeKVP) writer.write(kvpNames[col]);
         if (isTimeStamp[col]) {
           double d = pas[col].getDouble(row);
-          writer.write(
-              Double.isNaN(d)
-                  ? "null"
-                  : "\""
-                      + Calendar2.epochSecondsToLimitedIsoStringT(time_precision[col], d, "")
-                      + "\"");
+          if (Double.isNaN(d)) {
+            writer.write("null");
+          } else {
+            writer.write('"');
+            timeEncoders[col].write(d);
+            writer.write('"');
+          }
         } else {
-          writer.write(pas[col].getJsonString(row));
+          writer.writeJson(pas[col], row);
         }
       }
       writer.write(writeKVP ? "}\n" : "]\n"); // endRow    //recommended: always just \n
@@ -15,7 +15,6 @@ import com.cohort.util.SimpleException;
 import com.cohort.util.String2;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.erddap.variable.EDV;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.atomic.AtomicLong;
@@ -36,8 +35,10 @@ public class TableWriterNccsv extends TableWriter {
   protected volatile boolean isLong[];
   protected volatile boolean isULong[];
   protected volatile boolean isTimeStamp[];
+  protected volatile boolean isStringOrChar[];
   protected volatile DateTimeFormatter[] time_precision;
-  protected volatile BufferedWriter writer;
+  protected volatile TextEncoder writer;
+  protected volatile TextEncoder.TimeEncoder[] timeEncoders;
 
   public final AtomicLong totalNRows = new AtomicLong(0);
 
@@ -78,7 +79,7 @@ public class TableWriterNccsv extends TableWriter {
     if (firstTime) {
 
       // write the header
-      writer = File2.getBufferedWriterUtf8(outputStreamSource.outputStream(File2.UTF_8));
+      writer = new TextEncoder(outputStreamSource.outputStream(File2.UTF_8), true);
 
       // write the global attributes   (ensureCompatibly added newHistory)
       writer.write(globalAttributes.toNccsvString(String2.NCCSV_GLOBAL));
@@ -86,13 +87,16 @@ public class TableWriterNccsv extends TableWriter {
       // write the column attributes
       isLong = new boolean[nColumns];
       isULong = new boolean[nColumns];
+      isStringOrChar = new boolean[nColumns];
       isTimeStamp = new boolean[nColumns];
       time_precision = new DateTimeFormatter[nColumns];
+      timeEncoders = new TextEncoder.TimeEncoder[nColumns];
       for (int col = 0; col < nColumns; col++) {
 
         String tClass = table.getColumn(col).elementTypeString();
         isLong[col] = tClass.equals("long");
         isULong[col] = tClass.equals("ulong");
+        isStringOrChar[col] = tClass.equals("String") || tClass.equals("char");
         Attributes catts = table.columnAttributes(col);
         String u = catts.getString("units");
         isTimeStamp[col] = u != null && (u.equals(EDV.TIME_UNITS) || u.equals(EDV.TIME_UCUM_UNITS));
@@ -100,6 +104,7 @@ public class TableWriterNccsv extends TableWriter {
           tClass = "String";
           String stringPrecision = catts.getString(EDV.TIME_PRECISION);
           time_precision[col] = Calendar2.timePrecisionToDateTimeFormatter(stringPrecision);
+          timeEncoders[col] = writer.timeEncoder(time_precision[col]);
           catts.set("units", Calendar2.timePrecisionToTimeFormat(stringPrecision));
           PrimitiveArray pa = catts.get("actual_range");
           if (pa instanceof DoubleArray && pa.size() == 2) {
@@ -154,20 +159,14 @@ public class TableWriterNccsv extends TableWriter {
     for (int row = 0; row < nRows; row++) {
       for (int col = 0; col < nColumns; col++) {
         if (isTimeStamp[col]) {
-          writer.write(
-              Calendar2.epochSecondsToLimitedIsoStringT(
-                  time_precision[col], pas[col].getDouble(row), ""));
-        } else {
-          String ts = pas[col].getNccsvDataString(row);
-          // String2.log(">> row=" + row + " col=" + col + " ts=" + ts + " maxIsMV=" +
-          // pas[col].getMaxIsMV());
-          writer.write(ts);
+          timeEncoders[col].write(pas[col].getDouble(row));
+        } else if (isStringOrChar[col]) {
+          writer.write(pas[col].getNccsvDataString(row));
+        } else if (writer.writeNumber(pas[col], row)) { // for numbers, getNccsvDataString=getString
           if (isLong[col]) {
-            if (ts.length() > 0)
-              writer.write('L'); // special case not handled by getNccsvDataString
+            writer.write('L'); // special case not handled by getNccsvDataString
           } else if (isULong[col]) {
-            if (ts.length() > 0)
-              writer.write("uL"); // special case not handled by getNccsvDataString
+            writer.write("uL"); // special case not handled by getNccsvDataString
           }
         }
         writer.write(col == nColumns - 1 ? "\n" : ",");
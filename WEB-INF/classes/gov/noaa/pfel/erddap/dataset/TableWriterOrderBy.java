@@ -81,6 +81,14 @@ public class TableWriterOrderBy extends TableWriterAll {
 
     super.finish();
 
+    // too many rows to sort in memory? sort on disk and pass the sorted chunks along
+    if (ExternalTableSort.sortIfTooBig(this, orderBy, true, 0, otherTableWriter::writeSome)) {
+      releaseResources();
+      otherTableWriter.finish();
+      otherTableWriter = null;
+      return;
+    }
+
     Table cumulativeTable = cumulativeTable();
     releaseResources();
     writeAllAndFinish(cumulativeTable);
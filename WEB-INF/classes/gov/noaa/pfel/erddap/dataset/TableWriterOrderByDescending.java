@@ -82,6 +82,14 @@ public class TableWriterOrderByDescending extends TableWriterAll {
 
     super.finish();
 
+    // too many rows to sort in memory? sort on disk and pass the sorted chunks along
+    if (ExternalTableSort.sortIfTooBig(this, orderBy, false, 0, otherTableWriter::writeSome)) {
+      releaseResources();
+      otherTableWriter.finish();
+      otherTableWriter = null;
+      return;
+    }
+
     Table cumulativeTable = cumulativeTable();
     releaseResources();
     writeAllAndFinish(cumulativeTable);
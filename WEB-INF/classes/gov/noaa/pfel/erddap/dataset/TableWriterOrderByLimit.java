@@ -26,11 +26,9 @@ import gov.noaa.pfel.erddap.util.EDStatic;
  *
  * @author Bob Simons (was bob.simons@noaa.gov, now BobSimons2.00@gmail.com) 2017-02-21
  */
-public class TableWriterOrderByLimit extends TableWriterAll {
+public class TableWriterOrderByLimit extends TableWriterAllReduceOrderBy {
 
   // set by constructor
-  protected TableWriter otherTableWriter;
-  public String orderBy[]; // the orderBy var names. The last one will be a numeric column.
   protected int limitN; // eg 1000 rows
 
   /**
@@ -55,8 +53,7 @@ public class TableWriterOrderByLimit extends TableWriterAll {
       TableWriter tOtherTableWriter,
       String tOrderByCsv) {
 
-    super(tLanguage, tEdd, tNewHistory, tDir, tFileNameNoExt);
-    otherTableWriter = tOtherTableWriter;
+    super(tLanguage, tEdd, tNewHistory, tDir, tFileNameNoExt, tOtherTableWriter);
     if (tOrderByCsv == null || tOrderByCsv.trim().length() == 0)
       throw new SimpleException(
           EDStatic.bilingual(language, Message.QUERY_ERROR, Message.QUERY_ERROR_ORDER_BY_LIMIT)
@@ -84,78 +81,13 @@ public class TableWriterOrderByLimit extends TableWriterAll {
               + " must be a positive integer.");
   }
 
-  /**
-   * This adds the current contents of table (a chunk of data) to the OutputStream. This calls
-   * ensureCompatible each time it is called. If this is the first time this is called, this does
-   * first time things (e.g., call OutputStreamSource.outputStream() and write file header). The
-   * number of columns, the column names, and the types of columns must be the same each time this
-   * is called.
-   *
-   * @param table with destinationValues. The table should have missing values stored as
-   *     destinationMissingValues or destinationFillValues. This implementation converts them to
-   *     NaNs for processing, then back to destinationMV and FV when finished.
-   * @throws Throwable if trouble
-   */
   @Override
-  public void writeSome(Table table) throws Throwable {
-    if (table.nRows() == 0) return;
-
-    // to save time and disk space, this just does a partial job
-    //  (remove the beyond limitN rows from this partial table)
-    //  and leaves perfect job to finish()
+  protected void reduce(Table table) throws Exception {
     table.orderByLimit(orderBy, limitN); // this handles missingValues and _FillValues temporarily
-
-    // ensure the table's structure is the same as before
-    // and write to dataOutputStreams
-    super.writeSome(table);
-  }
-
-  /**
-   * This finishes orderByMax and writes results to otherTableWriter If ignoreFinish=true, nothing
-   * will be done.
-   *
-   * @throws Throwable if trouble (e.g., EDStatic.THERE_IS_NO_DATA if there is no data)
-   */
-  @Override
-  public void finish() throws Throwable {
-    if (ignoreFinish) return;
-
-    super.finish();
-
-    Table cumulativeTable = cumulativeTable();
-    releaseResources();
-    cumulativeTable.orderByLimit(
-        orderBy, limitN); // this handles missingValues and _FillValues temporarily
-    otherTableWriter.writeAllAndFinish(cumulativeTable);
-
-    // clean up
-    otherTableWriter = null;
-  }
-
-  /**
-   * If caller has the entire table, use this instead of repeated writeSome() + finish(). This
-   * overwrites the superclass method.
-   *
-   * @throws Throwable if trouble (e.g., EDStatic.THERE_IS_NO_DATA if there is no data)
-   */
-  @Override
-  public void writeAllAndFinish(Table tCumulativeTable) throws Throwable {
-    if (ignoreFinish) {
-      writeSome(tCumulativeTable);
-      tCumulativeTable.removeAllRows();
-      return;
-    }
-    tCumulativeTable.orderByLimit(
-        orderBy, limitN); // this handles missingValues and _FillValues temporarily
-    otherTableWriter.writeAllAndFinish(tCumulativeTable);
-    otherTableWriter = null;
   }
 
   @Override
-  public void close() throws Exception {
-    super.close();
-    if (otherTableWriter != null) {
-      otherTableWriter.close();
-    }
+  protected int nGroupVars() {
+    return orderBy.length;
   }
 }
@@ -15,7 +15,6 @@ import com.cohort.util.SimpleException;
 import com.cohort.util.String2;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.erddap.variable.EDV;
-import java.io.BufferedWriter;
 import java.io.IOException;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.atomic.AtomicLong;
@@ -40,7 +39,9 @@ public class TableWriterSeparatedValue extends TableWriter {
   protected volatile boolean isStringOrChar[];
   protected volatile boolean isTimeStamp[];
   protected volatile DateTimeFormatter[] time_precision;
-  protected volatile BufferedWriter writer;
+  protected volatile TextEncoder writer;
+  protected volatile TextEncoder.TimeEncoder[] timeEncoders;
+  protected volatile byte[] separatorBytes, newlineBytes, nanBytes;
 
   public final AtomicLong totalNRows = new AtomicLong(0);
 
@@ -123,7 +124,13 @@ public class TableWriterSeparatedValue extends TableWriter {
       }
 
       // write the header
-      writer = File2.getBufferedWriter88591(outputStreamSource.outputStream(File2.ISO_8859_1));
+      writer = new TextEncoder(outputStreamSource.outputStream(File2.ISO_8859_1), false);
+      separatorBytes = writer.encode(separator);
+      newlineBytes = writer.encode("\n");
+      nanBytes = writer.encode(nanString);
+      timeEncoders = new TextEncoder.TimeEncoder[nColumns];
+      for (int col = 0; col < nColumns; col++)
+        if (isTimeStamp[col]) timeEncoders[col] = writer.timeEncoder(time_precision[col]);
 
       // write the column names
       isStringOrChar = new boolean[nColumns];
@@ -177,18 +184,15 @@ public class TableWriterSeparatedValue extends TableWriter {
     for (int row = 0; row < nRows; row++) {
       for (int col = 0; col < nColumns; col++) {
         if (isTimeStamp[col]) {
-          writer.write(
-              Calendar2.epochSecondsToLimitedIsoStringT(
-                  time_precision[col], pas[col].getDouble(row), ""));
+          timeEncoders[col].write(pas[col].getDouble(row));
         } else if (isStringOrChar[col]) {
           String s = pas[col].getSVString(row);
           if (twoQuotes) s = String2.replaceAll(s, "\\\"", "\"\"");
           writer.write(s);
-        } else {
-          String s = pas[col].getString(row);
-          writer.write(s.length() == 0 ? nanString : s);
+        } else if (!writer.writeNumber(pas[col], row)) {
+          writer.write(nanBytes);
         }
-        writer.write(col == nColumns - 1 ? "\n" : separator);
+        writer.write(col == nColumns - 1 ? newlineBytes : separatorBytes);
       }
     }
 
@@ -0,0 +1,340 @@
+/*
+ * TextEncoder Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.ByteArray;
+import com.cohort.array.DoubleArray;
+import com.cohort.array.FloatArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.LongArray;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.ShortArray;
+import com.cohort.util.Calendar2;
+import com.cohort.util.Math2;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * TextEncoder is used by the text TableWriters (.csv, .tsv, .json, .jsonl, .nccsv) instead of a
+ * BufferedWriter. It encodes chars (as ISO-8859-1 or UTF-8) straight into a reusable byte buffer,
+ * and it writes numbers and times without making a String for each value. The bytes are exactly the
+ * same as a BufferedWriter would write for getString(), getJsonString(), and
+ * Calendar2.epochSecondsToLimitedIsoStringT(), including '?' for chars that can't be encoded.
+ *
+ * <p>This isn't thread safe. Each TableWriter has its own TextEncoder.
+ */
+final class TextEncoder {
+
+  private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+
+  // the time_precisions without fractional seconds, which TimeEncoder knows how to speed up
+  private static final String[] WHOLE_PRECISIONS = {
+    "1970", "1970-01", "1970-01-01", "1970-01-01T00", "1970-01-01T00:00", "1970-01-01T00:00:00"
+  };
+  private static final String SECONDS_PRECISION = "1970-01-01T00:00:00";
+
+  private final OutputStream out;
+  private final boolean utf8;
+  private final Charset charset;
+  private final byte[] buffer = new byte[16384];
+  private int count = 0;
+  private char highSurrogate = 0; // the first half of a surrogate pair (or 0 if none)
+
+  // reused for each value
+  private final StringBuilder number = new StringBuilder(32);
+  private final byte[] digits = new byte[20];
+
+  /**
+   * The constructor.
+   *
+   * @param out the outputStream which receives the bytes. It is flushed by flush() and closed by
+   *     close().
+   * @param utf8 if true, chars are encoded as UTF-8. If false, they are encoded as ISO-8859-1.
+   */
+  TextEncoder(OutputStream out, boolean utf8) {
+    this.out = out;
+    this.utf8 = utf8;
+    charset = utf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+  }
+
+  /**
+   * This encodes a String once, e.g., a separator or a column name which will be written for every
+   * row.
+   *
+   * @param s a String
+   * @return the bytes for s, ready to be given to write(byte[])
+   */
+  byte[] encode(String s) {
+    return s.getBytes(charset);
+  }
+
+  /** This writes some bytes from encode(). */
+  void write(byte[] bytes) throws IOException {
+    write(bytes, 0, bytes.length);
+  }
+
+  private void write(byte[] bytes, int offset, int length) throws IOException {
+    if (highSurrogate != 0) endSurrogate();
+    if (count + length > buffer.length) {
+      flushBuffer();
+      if (length > buffer.length) {
+        out.write(bytes, offset, length);
+        return;
+      }
+    }
+    System.arraycopy(bytes, offset, buffer, count, length);
+    count += length;
+  }
+
+  /** This writes a String. */
+  void write(String s) throws IOException {
+    int n = s.length();
+    for (int i = 0; i < n; i++) write(s.charAt(i));
+  }
+
+  /** This writes a char. */
+  void write(char ch) throws IOException {
+    if (count + 4 > buffer.length) flushBuffer();
+    if (highSurrogate != 0) {
+      char high = highSurrogate;
+      highSurrogate = 0;
+      if (Character.isLowSurrogate(ch)) {
+        if (utf8) {
+          int cp = Character.toCodePoint(high, ch);
+          buffer[count++] = (byte) (0xF0 | (cp >> 18));
+          buffer[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+          buffer[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+          buffer[count++] = (byte) (0x80 | (cp & 0x3F));
+        } else {
+          buffer[count++] = '?'; // ISO-8859-1 can't encode it
+        }
+        return;
+      }
+      buffer[count++] = '?'; // an unpaired high surrogate
+    }
+    if (ch < 0x80) {
+      buffer[count++] = (byte) ch;
+    } else if (Character.isHighSurrogate(ch)) {
+      highSurrogate = ch;
+    } else if (!utf8) {
+      buffer[count++] = ch <= 0xFF ? (byte) ch : (byte) '?';
+    } else if (ch < 0x800) {
+      buffer[count++] = (byte) (0xC0 | (ch >> 6));
+      buffer[count++] = (byte) (0x80 | (ch & 0x3F));
+    } else if (Character.isLowSurrogate(ch)) {
+      buffer[count++] = '?'; // an unpaired low surrogate
+    } else {
+      buffer[count++] = (byte) (0xE0 | (ch >> 12));
+      buffer[count++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+      buffer[count++] = (byte) (0x80 | (ch & 0x3F));
+    }
+  }
+
+  /**
+   * This writes a value from a PrimitiveArray, exactly like write(pa.getString(row)) (which is
+   * also what getSVString and getNccsvDataString return for numeric PrimitiveArrays).
+   *
+   * @param pa a PrimitiveArray
+   * @param row the row number
+   * @return false (and nothing is written) if the value is a missing value (i.e., getString would
+   *     return "")
+   */
+  boolean writeNumber(PrimitiveArray pa, int row) throws IOException {
+    return writeNumber(pa, row, false);
+  }
+
+  /**
+   * This writes a value from a PrimitiveArray, exactly like write(pa.getJsonString(row)).
+   *
+   * @param pa a PrimitiveArray
+   * @param row the row number
+   */
+  void writeJson(PrimitiveArray pa, int row) throws IOException {
+    if (!writeNumber(pa, row, true)) write(NULL);
+  }
+
+  private boolean writeNumber(PrimitiveArray pa, int row, boolean json) throws IOException {
+    if (pa instanceof DoubleArray da) {
+      double d = da.get(row);
+      if (!Double.isFinite(d)) return false;
+      number.setLength(0);
+      number.append(d); // the same chars as String.valueOf(d)
+      writeNumber(json);
+    } else if (pa instanceof FloatArray fa) {
+      float f = fa.get(row);
+      if (!Float.isFinite(f)) return false;
+      number.setLength(0);
+      number.append(f);
+      writeNumber(json);
+    } else if (pa instanceof IntArray ia) {
+      int i = ia.get(row);
+      if (ia.getMaxIsMV() && i == Integer.MAX_VALUE) return false;
+      writeLong(i);
+    } else if (pa instanceof LongArray la) {
+      long l = la.get(row);
+      if (la.getMaxIsMV() && l == Long.MAX_VALUE) return false;
+      writeLong(l);
+    } else if (pa instanceof ShortArray sa) {
+      short s = sa.get(row);
+      if (sa.getMaxIsMV() && s == Short.MAX_VALUE) return false;
+      writeLong(s);
+    } else if (pa instanceof ByteArray ba) {
+      byte b = ba.get(row);
+      if (ba.getMaxIsMV() && b == Byte.MAX_VALUE) return false;
+      writeLong(b);
+    } else if (json) {
+      write(pa.getJsonString(row));
+    } else {
+      String s = pa.getString(row);
+      if (s.length() == 0) return false;
+      write(s);
+    }
+    return true;
+  }
+
+  /** This writes number's ASCII chars (without a trailing ".0" for json, like String2.toJson). */
+  private void writeNumber(boolean json) throws IOException {
+    if (highSurrogate != 0) endSurrogate();
+    int n = number.length();
+    if (json && n > 2 && number.charAt(n - 2) == '.' && number.charAt(n - 1) == '0') n -= 2;
+    if (count + n > buffer.length) flushBuffer();
+    for (int i = 0; i < n; i++) buffer[count++] = (byte) number.charAt(i);
+  }
+
+  private void writeLong(long l) throws IOException {
+    boolean negative = l < 0;
+    if (!negative) l = -l; // work with negative values so Long.MIN_VALUE is okay
+    int start = digits.length;
+    do {
+      digits[--start] = (byte) ('0' - (l % 10));
+      l /= 10;
+    } while (l != 0);
+    if (negative) digits[--start] = '-';
+    write(digits, start, digits.length - start);
+  }
+
+  /**
+   * This returns a TimeEncoder which writes times with this TextEncoder.
+   *
+   * @param format the DateTimeFormatter from Calendar2.timePrecisionToDateTimeFormatter (or null
+   *     for the default, FORMAT_SECONDZ)
+   * @return a new TimeEncoder (e.g., for one column)
+   */
+  TimeEncoder timeEncoder(DateTimeFormatter format) {
+    return new TimeEncoder(format);
+  }
+
+  /** This writes a '?' for an unpaired high surrogate (like the CharsetEncoder). */
+  private void endSurrogate() throws IOException {
+    highSurrogate = 0;
+    if (count == buffer.length) flushBuffer();
+    buffer[count++] = '?';
+  }
+
+  /** This writes the buffered bytes to the outputStream. */
+  private void flushBuffer() throws IOException {
+    if (count > 0) {
+      out.write(buffer, 0, count);
+      count = 0;
+    }
+  }
+
+  /** This writes the buffered bytes to the outputStream and flushes the outputStream. */
+  void flush() throws IOException {
+    flushBuffer();
+    out.flush();
+  }
+
+  /** This flushes and closes the outputStream. */
+  void close() throws IOException {
+    if (highSurrogate != 0) endSurrogate();
+    try {
+      flushBuffer();
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * A TimeEncoder writes epochSeconds values exactly like
+   * write(Calendar2.epochSecondsToLimitedIsoStringT(format, seconds, "")). Since a table's times
+   * are often in order and are often repeated (e.g., for each depth), the formatted whole seconds
+   * part is remembered and reused until the second changes. Only the fractional digits (if any)
+   * are written for each value.
+   */
+  final class TimeEncoder {
+
+    private final DateTimeFormatter format;
+    // for whole seconds (and coarser) formats, the formatter for the whole value. For formats with
+    // fractional seconds, the formatter for the whole seconds part. null if the format is unknown.
+    private final DateTimeFormatter prefixFormat;
+    private final int nFractionDigits; // for formats with fractional seconds
+    private final boolean endsWithZ; // for formats with fractional seconds
+
+    private long lastSecond = Long.MIN_VALUE;
+    private byte[] lastPrefix; // null if the second can't be formatted
+
+    private TimeEncoder(DateTimeFormatter tFormat) {
+      format = tFormat == null ? Calendar2.timePrecisionToDateTimeFormatter(null) : tFormat;
+      DateTimeFormatter tPrefixFormat = null;
+      int tNFractionDigits = 0;
+      boolean tEndsWithZ = false;
+      for (int z = 0; z < 2 && tPrefixFormat == null; z++) {
+        String suffix = z == 0 ? "" : "Z";
+        for (String precision : WHOLE_PRECISIONS) {
+          if (format == Calendar2.timePrecisionToDateTimeFormatter(precision + suffix)) {
+            tPrefixFormat = format;
+            break;
+          }
+        }
+        for (int digit = 1; digit <= 9 && tPrefixFormat == null; digit++) {
+          if (format
+              == Calendar2.timePrecisionToDateTimeFormatter(
+                  SECONDS_PRECISION + "." + "0".repeat(digit) + suffix)) {
+            tPrefixFormat = Calendar2.timePrecisionToDateTimeFormatter(SECONDS_PRECISION);
+            tNFractionDigits = digit;
+            tEndsWithZ = z == 1;
+          }
+        }
+      }
+      prefixFormat = tPrefixFormat;
+      nFractionDigits = tNFractionDigits;
+      endsWithZ = tEndsWithZ;
+    }
+
+    /**
+     * This writes a time.
+     *
+     * @param seconds the epochSeconds value. NaN (or an unformattable value) is written as "".
+     */
+    void write(double seconds) throws IOException {
+      long millis = Math2.roundToLong(seconds * 1000);
+      if (millis == Long.MAX_VALUE) return;
+      if (prefixFormat == null) {
+        TextEncoder.this.write(Calendar2.epochSecondsToLimitedIsoStringT(format, seconds, ""));
+        return;
+      }
+      long second = Math.floorDiv(millis, 1000);
+      if (second != lastSecond) {
+        String s = Calendar2.epochSecondsToLimitedIsoStringT(prefixFormat, second, null);
+        lastPrefix = s == null ? null : encode(s);
+        lastSecond = second;
+      }
+      if (lastPrefix == null) return;
+      TextEncoder.this.write(lastPrefix);
+      if (nFractionDigits > 0) {
+        if (count + 11 > buffer.length) flushBuffer();
+        buffer[count++] = '.';
+        int nanos = (int) Math.floorMod(millis, 1000) * 1000000;
+        for (int digit = 0, divisor = 100000000; digit < nFractionDigits; digit++, divisor /= 10)
+          buffer[count++] = (byte) ('0' + nanos / divisor % 10); // truncated, like the formatter
+        if (endsWithZ) buffer[count++] = 'Z';
+      }
+    }
+  }
+}
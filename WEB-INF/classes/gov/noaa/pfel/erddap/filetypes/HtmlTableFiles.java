@@ -142,8 +142,11 @@ public class HtmlTableFiles extends TableWriterFileType {
     if (isAxisDapQuery) {
       eddGrid.saveAsTableWriter(ada, tw);
     } else {
-      eddGrid.saveAsTableWriter(gda, tw);
-      gda.close();
+      try {
+        eddGrid.saveAsTableWriter(gda, tw);
+      } finally {
+        gda.close(); // e.g., cancel read ahead if the client disconnected
+      }
     }
 
     // diagnostic
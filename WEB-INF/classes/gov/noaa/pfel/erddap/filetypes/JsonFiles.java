@@ -97,8 +97,11 @@ public class JsonFiles extends TableWriterFileType {
     if (isAxisDapQuery) {
       grid.saveAsTableWriter(ada, tw);
     } else {
-      grid.saveAsTableWriter(gda, tw);
-      gda.close();
+      try {
+        grid.saveAsTableWriter(gda, tw);
+      } finally {
+        gda.close(); // e.g., cancel read ahead if the client disconnected
+      }
     }
 
     // diagnostic
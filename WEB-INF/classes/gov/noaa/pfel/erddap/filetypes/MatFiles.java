@@ -413,14 +413,18 @@ public class MatFiles extends TableWriterFileType {
             avNDIndex[av]);
 
       // make the data miMatrix
-      for (int dv = 0; dv < ntDv; dv++) {
-        grid.writeNDimensionalMatlabArray(
-            language,
-            stream,
-            "", // name is written above
-            tGda[dv],
-            dvNDIndex[dv]);
-        tGda[dv].close();
+      try {
+        for (int dv = 0; dv < ntDv; dv++) {
+          grid.writeNDimensionalMatlabArray(
+              language,
+              stream,
+              "", // name is written above
+              tGda[dv],
+              dvNDIndex[dv]);
+          tGda[dv].close();
+        }
+      } finally {
+        for (int dv = 0; dv < ntDv; dv++) tGda[dv].close(); // e.g., cancel read ahead
       }
 
       // this doesn't write attributes because .mat files don't store attributes
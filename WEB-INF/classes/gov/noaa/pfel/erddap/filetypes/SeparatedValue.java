@@ -107,8 +107,11 @@ public abstract class SeparatedValue extends TableWriterFileType {
     if (isAxisDapQuery) {
       eddGrid.saveAsTableWriter(ada, tw);
     } else {
-      eddGrid.saveAsTableWriter(gda, tw);
-      gda.close();
+      try {
+        eddGrid.saveAsTableWriter(gda, tw);
+      } finally {
+        gda.close(); // e.g., cancel read ahead if the client disconnected
+      }
     }
 
     // diagnostic
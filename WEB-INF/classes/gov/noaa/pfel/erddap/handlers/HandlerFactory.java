@@ -31,9 +31,14 @@ public class HandlerFactory {
     }
 
     long timeToLoadThisDataset = System.currentTimeMillis();
-    EDStatic.cldNTry = context.getNTryAndDatasets()[0];
-    EDStatic.cldStartMillis = timeToLoadThisDataset;
-    EDStatic.cldDatasetID = datasetID;
+    context.setCldDatasetID(datasetID);
+    if (isTopLevelDataset) {
+      // the SAX parser loads datasets one at a time, so no other dataset is loading now
+      EDStatic.cldLoading.clear();
+      EDStatic.cldLoading.put(
+          datasetID,
+          new EDStatic.CldInfo(context.getNTryAndDatasets()[0], timeToLoadThisDataset));
+    }
 
     if (EDStatic.config.useEddReflection) {
       // use reflection to discover handlers
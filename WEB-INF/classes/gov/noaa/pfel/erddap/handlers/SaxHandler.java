@@ -4,7 +4,6 @@ import com.cohort.array.StringArray;
 import com.cohort.util.String2;
 import gov.noaa.pfel.erddap.Erddap;
 import gov.noaa.pfel.erddap.dataset.EDD;
-import gov.noaa.pfel.erddap.util.EDStatic;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
@@ -37,10 +36,10 @@ public class SaxHandler extends DefaultHandler {
       this.state.startElement(uri, localName, qName, attributes);
     } catch (Throwable e) {
       context.getWarningsFromLoadDatasets().append(e.getMessage());
-      context.getDatasetsThatFailedToLoadSB().append(EDStatic.cldDatasetID).append(" ");
+      context.getDatasetsThatFailedToLoadSB().append(context.getCldDatasetID()).append(" ");
       context
           .getFailedDatasetsWithErrorsSB()
-          .append(EDStatic.cldDatasetID)
+          .append(context.getCldDatasetID())
           .append(": ")
           .append(e.getMessage())
           .append("\n");
@@ -59,10 +58,10 @@ public class SaxHandler extends DefaultHandler {
       this.state.characters(ch, start, length);
     } catch (Throwable e) {
       context.getWarningsFromLoadDatasets().append(e.getMessage());
-      context.getDatasetsThatFailedToLoadSB().append(EDStatic.cldDatasetID).append(" ");
+      context.getDatasetsThatFailedToLoadSB().append(context.getCldDatasetID()).append(" ");
       context
           .getFailedDatasetsWithErrorsSB()
-          .append(EDStatic.cldDatasetID)
+          .append(context.getCldDatasetID())
           .append(": ")
           .append(e.getMessage())
           .append("\n");
@@ -81,10 +80,10 @@ public class SaxHandler extends DefaultHandler {
       this.state.endElement(uri, localName, qName);
     } catch (Throwable e) {
       context.getWarningsFromLoadDatasets().append(e.getMessage());
-      context.getDatasetsThatFailedToLoadSB().append(EDStatic.cldDatasetID).append(", ");
+      context.getDatasetsThatFailedToLoadSB().append(context.getCldDatasetID()).append(", ");
       context
           .getFailedDatasetsWithErrorsSB()
-          .append(EDStatic.cldDatasetID)
+          .append(context.getCldDatasetID())
           .append(": ")
           .append(e.getMessage())
           .append("\n");
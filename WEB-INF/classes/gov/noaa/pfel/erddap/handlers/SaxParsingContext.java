@@ -20,6 +20,7 @@ public class SaxParsingContext {
   private String datasetsRegex;
   private boolean reallyVerbose;
   private StringBuilder failedDatasetsWithErrorsSB;
+  private String cldDatasetID; // the currently loading dataset, null if none
 
   public SaxParsingContext() {}
 
@@ -134,4 +135,12 @@ public class SaxParsingContext {
   public void setFailedDatasetsWithErrorsSB(StringBuilder failedDatasetsWithErrors) {
     this.failedDatasetsWithErrorsSB = failedDatasetsWithErrors;
   }
+
+  public String getCldDatasetID() {
+    return cldDatasetID;
+  }
+
+  public void setCldDatasetID(String cldDatasetID) {
+    this.cldDatasetID = cldDatasetID;
+  }
 }
@@ -0,0 +1,123 @@
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.util.MustBe;
+import com.cohort.util.String2;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * This runs LoadDatasets' dataset loads in a bounded pool of threads. A dataset may depend on
+ * datasets which were submitted earlier (e.g., an EDDTableFromEDDGrid whose child is an
+ * EDDGridFromErddap which refers to a dataset in this ERDDAP). It is only started when those have
+ * finished loading (successfully or not), so it sees the same datasets that it would see if the
+ * datasets were loaded one at a time, in order. Since a dataset can only depend on datasets which
+ * were submitted before it, there can't be cycles.
+ *
+ * <p>The load tasks are responsible for catching and logging their own errors.
+ */
+public class DatasetLoadScheduler {
+
+  private final ExecutorService executor;
+  // the submitted datasets (by datasetID)
+  private final Map<String, Node> nodes = new HashMap<>();
+  private int nUnfinished = 0;
+
+  private static class Node {
+    final Runnable load;
+    final List<Node> dependents = new ArrayList<>();
+    int nWaitingFor = 0;
+    boolean finished = false;
+
+    Node(Runnable tLoad) {
+      load = tLoad;
+    }
+  }
+
+  /**
+   * The constructor.
+   *
+   * @param nThreads the maximum number of datasets which may be loaded at once
+   */
+  public DatasetLoadScheduler(int nThreads) {
+    executor =
+        Executors.newFixedThreadPool(
+            Math.max(1, nThreads), Thread.ofPlatform().name("LoadDatasets-", 0).factory());
+  }
+
+  /**
+   * This adds a dataset to be loaded. It is started as soon as the datasets it depends on have
+   * finished loading and a thread is free.
+   *
+   * @param datasetID the dataset's datasetID
+   * @param dependsOn the datasetIDs of the datasets this dataset depends on. IDs which weren't
+   *     submitted earlier (e.g., they aren't being reloaded now) are ignored.
+   * @param load the work of loading the dataset
+   * @throws RejectedExecutionException if shutdownNow() has been called
+   */
+  public synchronized void submit(String datasetID, Collection<String> dependsOn, Runnable load) {
+    Node node = new Node(load);
+    for (String id : dependsOn) {
+      Node other = nodes.get(id);
+      if (other != null && !other.finished) {
+        other.dependents.add(node);
+        node.nWaitingFor++;
+      }
+    }
+    nodes.put(datasetID, node);
+    nUnfinished++;
+    if (node.nWaitingFor == 0) start(node);
+  }
+
+  private void start(Node node) {
+    executor.execute(
+        () -> {
+          try {
+            node.load.run();
+          } catch (Throwable t) {
+            String2.log(MustBe.throwable("DatasetLoadScheduler", t));
+          } finally {
+            finished(node);
+          }
+        });
+  }
+
+  private synchronized void finished(Node node) {
+    node.finished = true;
+    nUnfinished--;
+    for (Node dependent : node.dependents) {
+      if (--dependent.nWaitingFor == 0) {
+        try {
+          start(dependent);
+        } catch (RejectedExecutionException e) {
+          // shutdownNow() was called
+        }
+      }
+    }
+    notifyAll();
+  }
+
+  /** The number of submitted datasets which haven't finished loading. */
+  public synchronized int getNUnfinished() {
+    return nUnfinished;
+  }
+
+  /**
+   * This waits until all of the submitted datasets have finished loading.
+   *
+   * @throws InterruptedException if the calling thread is interrupted
+   */
+  public synchronized void awaitAll() throws InterruptedException {
+    while (nUnfinished > 0) wait();
+  }
+
+  /** This stops the threads (interrupting the running loads). Waiting loads are never started. */
+  public void shutdownNow() {
+    executor.shutdownNow();
+  }
+}
@@ -13,6 +13,7 @@ import gov.noaa.pfel.coastwatch.sgt.SgtMap;
 import gov.noaa.pfel.coastwatch.util.FileVisitorDNLS;
 import gov.noaa.pfel.coastwatch.util.RegexFilenameFilter;
 import gov.noaa.pfel.coastwatch.util.SSR;
+import gov.noaa.pfel.erddap.dataset.DapBlockCache;
 import gov.noaa.pfel.erddap.http.CorsResponseFilter;
 import gov.noaa.pfel.erddap.util.Metrics.FeatureFlag;
 import java.awt.Color;
@@ -189,6 +190,8 @@ public class EDConfig {
   public static final int DEFAULT_SESSION_EXPIRY = 10;
   public static final int DEFAULT_CONNECTION_TIMEOUT = 10;
   public static final boolean DEFAULT_AUTO_RECONNECT = true;
+  public static final int DEFAULT_MQTT_FLUSH_MAX_ROWS = 1000;
+  public static final int DEFAULT_MQTT_FLUSH_MILLIS = 1000;
 
   public long cacheMillis = DEFAULT_cacheMinutes * Calendar2.MILLIS_PER_MINUTE;
   public long cacheClearMillis = cacheMillis / 4;
@@ -226,6 +229,24 @@ public class EDConfig {
   public String deploymentInfo;
   // Booleans
   public boolean usePrometheusMetrics = true;
+  // the max number of tasks (e.g., reading a file) that SharedWorkExecutor runs at once
+  public int workMaxThreads;
+  @FeatureFlag public boolean useVirtualWorkThreads;
+  public int maxRequestsActive; // 0 = no limit
+  public int maxRequestsActiveWaitSeconds;
+  public int ncFileCacheSize; // 0 = don't cache
+  public int loadDatasetsNThreads; // 1 = load datasets one at a time
+  public int fileVisitorNThreads; // 1 = crawl directories one at a time
+  public int dapBlockCacheMB; // per EDDGridFromDap dataset, 0 = don't cache
+  public int dapBlockCacheMemoryMB; // for all datasets
+  public int interpolateNThreads; // 1 = get the interpolate boxes one at a time
+  public int interpolatePostMaxRows; // for POSTed interpolate requests
+  public int httpGetCompactKB; // EDDTableFromHttpGet data files this big are compacted. 0=never
+  public int httpGetCompactEveryNSeconds;
+  public int taskThreadNThreads; // 1 = do the background tasks one at a time
+  public int touchMaxConcurrent; // the max number of URL touches in progress at once
+  public int touchMaxPerHost; // the max number of URL touches of one host in progress at once
+  public int touchMaxRetries; // 0 = don't retry failed URL touches
   @FeatureFlag public final boolean listPrivateDatasets;
   @FeatureFlag public final boolean subscriptionSystemActive;
   @FeatureFlag public final boolean convertersActive;
@@ -266,6 +287,10 @@ public class EDConfig {
   public final int mqttSessionExpiry;
   public final int mqttConnectionTimeout;
   public final boolean mqttAutomaticReconnect;
+  // EDDTableFromMqtt buffers messages and appends them to the files when this many rows are
+  // buffered, or every mqttFlushMillis. mqttFlushMaxRows=1 appends each message when it arrives.
+  public final int mqttFlushMaxRows;
+  public final int mqttFlushMillis;
 
   @FeatureFlag public final boolean variablesMustHaveIoosCategory;
   @FeatureFlag public boolean useSaxParser;
@@ -325,6 +350,46 @@ public class EDConfig {
     EDStatic.setLogLevel(getSetupEVString(setup, ev, "logLevel", DEFAULT_logLevel));
 
     usePrometheusMetrics = getSetupEVBoolean(setup, ev, "usePrometheusMetrics", true);
+    workMaxThreads = getSetupEVInt(setup, ev, "workMaxThreads", -1);
+    if (workMaxThreads < 1 || workMaxThreads == Integer.MAX_VALUE)
+      workMaxThreads = defaultWorkMaxThreads();
+    useVirtualWorkThreads = getSetupEVBoolean(setup, ev, "useVirtualWorkThreads", false);
+    maxRequestsActive = getSetupEVInt(setup, ev, "maxRequestsActive", 0);
+    if (maxRequestsActive < 1 || maxRequestsActive == Integer.MAX_VALUE) maxRequestsActive = 0;
+    maxRequestsActiveWaitSeconds =
+        Math2.minMax(0, 120, getSetupEVInt(setup, ev, "maxRequestsActiveWaitSeconds", 10));
+    ncFileCacheSize = getSetupEVInt(setup, ev, "ncFileCacheSize", 100);
+    if (ncFileCacheSize < 0 || ncFileCacheSize == Integer.MAX_VALUE) ncFileCacheSize = 100;
+    loadDatasetsNThreads = getSetupEVInt(setup, ev, "loadDatasetsNThreads", 1);
+    if (loadDatasetsNThreads < 1 || loadDatasetsNThreads == Integer.MAX_VALUE)
+      loadDatasetsNThreads = 1;
+    fileVisitorNThreads = getSetupEVInt(setup, ev, "fileVisitorNThreads", 1);
+    if (fileVisitorNThreads < 1 || fileVisitorNThreads == Integer.MAX_VALUE)
+      fileVisitorNThreads = 1;
+    dapBlockCacheMB = getSetupEVInt(setup, ev, "dapBlockCacheMB", 0);
+    if (dapBlockCacheMB < 0 || dapBlockCacheMB == Integer.MAX_VALUE) dapBlockCacheMB = 0;
+    dapBlockCacheMemoryMB = getSetupEVInt(setup, ev, "dapBlockCacheMemoryMB", 32);
+    if (dapBlockCacheMemoryMB < 0 || dapBlockCacheMemoryMB == Integer.MAX_VALUE)
+      dapBlockCacheMemoryMB = 32;
+    interpolateNThreads = getSetupEVInt(setup, ev, "interpolateNThreads", 4);
+    if (interpolateNThreads < 1 || interpolateNThreads == Integer.MAX_VALUE)
+      interpolateNThreads = 4;
+    interpolatePostMaxRows = getSetupEVInt(setup, ev, "interpolatePostMaxRows", 100000);
+    if (interpolatePostMaxRows < 1 || interpolatePostMaxRows == Integer.MAX_VALUE)
+      interpolatePostMaxRows = 100000;
+    httpGetCompactKB = getSetupEVInt(setup, ev, "httpGetCompactKB", 0);
+    if (httpGetCompactKB < 0 || httpGetCompactKB == Integer.MAX_VALUE) httpGetCompactKB = 0;
+    httpGetCompactEveryNSeconds = getSetupEVInt(setup, ev, "httpGetCompactEveryNSeconds", 60);
+    if (httpGetCompactEveryNSeconds < 1 || httpGetCompactEveryNSeconds == Integer.MAX_VALUE)
+      httpGetCompactEveryNSeconds = 60;
+    taskThreadNThreads = getSetupEVInt(setup, ev, "taskThreadNThreads", 4);
+    if (taskThreadNThreads < 1 || taskThreadNThreads == Integer.MAX_VALUE) taskThreadNThreads = 4;
+    touchMaxConcurrent = getSetupEVInt(setup, ev, "touchMaxConcurrent", 8);
+    if (touchMaxConcurrent < 1 || touchMaxConcurrent == Integer.MAX_VALUE) touchMaxConcurrent = 8;
+    touchMaxPerHost = getSetupEVInt(setup, ev, "touchMaxPerHost", 2);
+    if (touchMaxPerHost < 1 || touchMaxPerHost == Integer.MAX_VALUE) touchMaxPerHost = 2;
+    touchMaxRetries = getSetupEVInt(setup, ev, "touchMaxRetries", 3);
+    if (touchMaxRetries < 0 || touchMaxRetries == Integer.MAX_VALUE) touchMaxRetries = 3;
 
     bigParentDirectory = getSetupEVNotNothingString(setup, ev, "bigParentDirectory", "");
     bigParentDirectory = File2.addSlash(bigParentDirectory);
@@ -704,6 +769,17 @@ public class EDConfig {
         getSetupEVInt(setup, ev, "mqttConnectionTimeout", DEFAULT_CONNECTION_TIMEOUT);
     mqttAutomaticReconnect =
         getSetupEVBoolean(setup, ev, "mqttAutomaticReconnect", DEFAULT_AUTO_RECONNECT);
+    int tFlushMaxRows =
+        getSetupEVInt(setup, ev, "mqttFlushMaxRows", DEFAULT_MQTT_FLUSH_MAX_ROWS);
+    mqttFlushMaxRows =
+        tFlushMaxRows < 1 || tFlushMaxRows == Integer.MAX_VALUE
+            ? DEFAULT_MQTT_FLUSH_MAX_ROWS
+            : tFlushMaxRows;
+    int tFlushMillis = getSetupEVInt(setup, ev, "mqttFlushMillis", DEFAULT_MQTT_FLUSH_MILLIS);
+    mqttFlushMillis =
+        tFlushMillis < 1 || tFlushMillis == Integer.MAX_VALUE
+            ? DEFAULT_MQTT_FLUSH_MILLIS
+            : tFlushMillis;
 
     copyContentImagesToWebApps();
     // ensure images exist and get their sizes
@@ -744,8 +820,20 @@ public class EDConfig {
     }
   }
 
+  /**
+   * This returns the default workMaxThreads. Most tasks are I/O bound, so this is more than the
+   * number of processors.
+   *
+   * @return the default workMaxThreads
+   */
+  public static int defaultWorkMaxThreads() {
+    return Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+  }
+
   private void lazyInitializeStatics() {
     FileVisitorDNLS.FILE_VISITOR_DIRECTORY = fullFileVisitorDirectory;
+    FileVisitorDNLS.nCrawlThreads = fileVisitorNThreads;
+    DapBlockCache.maxMemoryBytes = dapBlockCacheMemoryMB * (long) Math2.BytesPerMB;
     SgtMap.drawPoliticalBoundaries = politicalBoundariesActive;
   }
 
@@ -23,6 +23,7 @@ import com.cohort.util.XML;
 import com.google.common.collect.ImmutableList;
 import com.google.common.io.Resources;
 import com.sun.management.UnixOperatingSystemMXBean;
+import gov.noaa.pfel.coastwatch.griddata.NcFileCache;
 import gov.noaa.pfel.coastwatch.griddata.NcHelper;
 import gov.noaa.pfel.coastwatch.griddata.OpendapHelper;
 import gov.noaa.pfel.coastwatch.pointdata.Table;
@@ -46,6 +47,8 @@ import gov.noaa.pfel.erddap.dataset.EDD;
 import gov.noaa.pfel.erddap.dataset.EDDGrid;
 import gov.noaa.pfel.erddap.dataset.EDDTable;
 import gov.noaa.pfel.erddap.dataset.EDDTableFromCassandra;
+import gov.noaa.pfel.erddap.dataset.EDDTableFromHttpGet;
+import gov.noaa.pfel.erddap.dataset.EDDTableFromMqtt;
 import gov.noaa.pfel.erddap.dataset.GridDataAccessor;
 import gov.noaa.pfel.erddap.dataset.OutputStreamFromHttpResponse;
 import gov.noaa.pfel.erddap.dataset.metadata.LocalizedAttributes;
@@ -79,6 +82,7 @@ import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -270,11 +274,18 @@ public class EDStatic {
   public static long lastMajorLoadDatasetsStartTimeMillis = System.currentTimeMillis();
   public static long lastMajorLoadDatasetsStopTimeMillis = System.currentTimeMillis() - 1;
   public static long lastCacheClear = System.currentTimeMillis();
-  // Currently Loading Dataset
+  // Currently Loading Datasets (more than 1 if LoadDatasets is loading datasets in parallel)
   public static volatile boolean cldMajor = false;
-  public static volatile int cldNTry = 0; //   0=none actively loading
-  public static volatile String cldDatasetID = null; // null=none actively loading
-  public static volatile long cldStartMillis = 0; //   0=none actively loading
+  // datasetID -> CldInfo for each dataset which is actively loading
+  public static final ConcurrentHashMap<String, CldInfo> cldLoading = new ConcurrentHashMap<>();
+
+  /**
+   * Information about a dataset which LoadDatasets is actively loading.
+   *
+   * @param nTry the dataset's number in this LoadDatasets
+   * @param startMillis when LoadDatasets started to load the dataset
+   */
+  public record CldInfo(int nTry, long startMillis) {}
 
   public static final ConcurrentHashMap<String, String> activeRequests =
       new ConcurrentHashMap<>(); // request# -> 1 line info about request
@@ -405,45 +416,36 @@ public class EDStatic {
   public static final AtomicInteger nextEmail = new AtomicInteger(0);
 
   // taskThread variables
-  // Funnelling all taskThread tasks through one taskThread ensures
+  // Funnelling all taskThread tasks through a few taskThreads (config.taskThreadNThreads)
+  //  and limiting how many of each dataset's tasks run at once ensures
   //  that the memory requirements, bandwidth usage, cpu usage,
-  //  and stress on remote servers will be minimal
-  //  (although at the cost of not doing the tasks faster / in parallel).
-  // In a grid of erddaps, each will have its own taskThread, which is appropriate.
+  //  and stress on remote servers will be limited.
+  // taskQueue decides which task is next, so one dataset's tasks can't delay the others'.
+  // In a grid of erddaps, each will have its own taskThreads, which is appropriate.
+  // A finished task's taskList element is set to null.
   public static final ArrayList<Object[]> taskList =
-      new ArrayList<>(); // keep here in case TaskThread needs to be restarted
-  private static TaskThread taskThread;
-
-  /**
-   * lastAssignedTask is used by EDDxxxCopy instances to keep track of the number of the last task
-   * assigned to taskThread for a given datasetID. key=datasetID value=Integer(task#)
-   */
-  public static final ConcurrentHashMap<String, Integer> lastAssignedTask =
-      new ConcurrentHashMap<>(16, 0.75f, 4);
+      new ArrayList<>(); // keep here in case TaskThreads need to be restarted
+  static final TaskQueue taskQueue = new TaskQueue(); // synchronize on taskList to use it
+  private static TaskThread taskThreads[] = new TaskThread[0]; // null if not running
 
   /**
-   * This returns the index number of the task in taskList (-1,0..) of the last completed task
-   * (successful or not). nFinishedTasks = lastFinishedTask + 1;
+   * This returns the index number of the task in taskList (-1,0..) of the last task for which it
+   * and all earlier tasks are completed (successful or not).
    */
   public static final AtomicInteger lastFinishedTask = new AtomicInteger(-1);
 
-  /**
-   * This returns the index number of the task in taskList (0..) that will be started when the
-   * current task is finished.
-   */
-  public static final AtomicInteger nextTask = new AtomicInteger(0);
-
   // touchThread variables
-  // Funnelling all touchThread tasks through one touchThread ensures that
-  //  touches that timeout don't slow down other processes.
+  // Funnelling all touchThread tasks through one touchThread (which hands them to
+  //  TouchDispatcher) ensures that touches that timeout don't slow down other processes.
   public static final RequestQueue<String> touchList =
       new RequestQueue<>(); // keep here in case TouchThread needs to be restarted
   private static TouchThread touchThread;
 
   // no lastAssignedTouch since not needed
   /**
-   * This returns the index number of the touch in touchList (-1,0..) of the last completed touch
-   * (successful or not). nFinishedTouches = lastFinishedTouch + 1;
+   * This returns the number of completed touches (successful or not) - 1. Since TouchDispatcher
+   * does several touches at once, they may finish out of order. nFinishedTouches =
+   * lastFinishedTouch + 1;
    */
   public static final AtomicInteger lastFinishedTouch = new AtomicInteger(-1);
 
@@ -868,6 +870,7 @@ public class EDStatic {
     GridDataAccessor.verbose = verbose;
     GSHHS.verbose = verbose;
     LoadDatasets.verbose = verbose;
+    NcFileCache.verbose = verbose;
     NcHelper.verbose = verbose;
     OutputStreamFromHttpResponse.verbose = verbose;
     PathCartesianRenderer.verbose = verbose;
@@ -1575,23 +1578,25 @@ public class EDStatic {
 
     // make local copies to avoid trouble from volatile variables
     boolean tcldMajor = cldMajor;
-    int tcldNTry = cldNTry; //   0=none actively loading
-    String tcldDatasetID = cldDatasetID; // null=none actively loading
-    long tcldStartMillis = cldStartMillis; //   0=none actively loading
-    if (tcldNTry == 0 || tcldDatasetID == null || tcldStartMillis == 0) {
+    List<Map.Entry<String, CldInfo>> tcldLoading = new ArrayList<>(cldLoading.entrySet());
+    tcldLoading.sort(Map.Entry.comparingByValue(Comparator.comparingInt(CldInfo::nTry)));
+    if (tcldLoading.isEmpty()) {
       sb.append("Currently, no dataset is loading.\n");
     } else {
-      sb.append(
-          "Currently, "
-              + (tcldMajor ? "major" : "minor")
-              + " LoadDatasets is loading dataset #"
-              + tcldNTry
-              + "="
-              + tcldDatasetID
-              + " ("
-              + Calendar2.elapsedTimeString(
-                  Math2.longToDoubleNaN(System.currentTimeMillis() - tcldStartMillis))
-              + ").\n");
+      for (Map.Entry<String, CldInfo> entry : tcldLoading) {
+        sb.append(
+            "Currently, "
+                + (tcldMajor ? "major" : "minor")
+                + " LoadDatasets is loading dataset #"
+                + entry.getValue().nTry()
+                + "="
+                + entry.getKey()
+                + " ("
+                + Calendar2.elapsedTimeString(
+                    Math2.longToDoubleNaN(
+                        System.currentTimeMillis() - entry.getValue().startMillis()))
+                + ").\n");
+      }
     }
 
     // make local copy of volatile variables to avoid null pointers and so sum is correct
@@ -1629,18 +1634,25 @@ public class EDStatic {
     synchronized (taskList) {
       ensureTaskThreadIsRunningIfNeeded(); // clients (like this class) are responsible for checking
       // on it
-      long tElapsedTime = taskThread == null ? -1 : taskThread.elapsedTime();
+      long tElapsedTime = -1; // of the longest running task
+      for (TaskThread tt : taskThreads) {
+        if (tt != null) tElapsedTime = Math.max(tElapsedTime, tt.elapsedTime());
+      }
       sb.append(
-          "TaskThread has finished "
-              + (lastFinishedTask.get() + 1)
+          "TaskThreads have finished "
+              + (taskList.size() - taskQueue.nQueued() - taskQueue.nRunning())
               + " out of "
               + taskList.size()
               + " tasks.  "
               + (tElapsedTime < 0
                   ? "Currently, no task is running.\n"
-                  : "The current task has been running for "
+                  : "Currently, "
+                      + taskQueue.nRunning()
+                      + " tasks are running, the oldest for "
                       + Calendar2.elapsedTimeString(tElapsedTime)
                       + ".\n"));
+      if (taskQueue.nQueued() + taskQueue.nRunning() > 0)
+        sb.append("TaskThread unfinished tasks by dataset:\n" + taskQueue.summary(10));
     }
 
     sb.append("TaskThread Failed    Time (since last Daily Report)     ");
@@ -1683,18 +1695,17 @@ public class EDStatic {
     synchronized (touchList) {
       ensureTouchThreadIsRunningIfNeeded(); // clients (like this class) are responsible for
       // checking on it
-      long tElapsedTime = touchThread == null ? -1 : touchThread.elapsedTime();
+      TouchDispatcher touchDispatcher = TouchDispatcher.get();
       sb.append(
           "TouchThread has finished "
               + (lastFinishedTouch.get() + 1)
               + " out of "
               + touchList.size()
               + " touches.  "
-              + (tElapsedTime < 0
-                  ? "Currently, the thread is sleeping.\n"
-                  : "The current touch has been running for "
-                      + Calendar2.elapsedTimeString(tElapsedTime)
-                      + ".\n"));
+              + touchDispatcher.getNActive()
+              + " touches are in progress and "
+              + touchDispatcher.getNWaiting()
+              + " are waiting for their host.\n");
       sb.append("TouchThread Failed    Time (since last Daily Report)    ");
       sb.append(String2.getBriefTimeDistributionStatistics(touchThreadFailedDistribution24) + "\n");
       sb.append("TouchThread Succeeded Time (since last Daily Report)    ");
@@ -2417,6 +2428,12 @@ public class EDStatic {
       // shutdown Cassandra clusters/sessions
       EDDTableFromCassandra.shutdown();
 
+      // flush MQTT datasets' buffered rows
+      EDDTableFromMqtt.shutdown();
+
+      // stop HttpGet datasets' file compaction
+      EDDTableFromHttpGet.shutdown();
+
       // interrupt all of them
       for (String name : names) {
         try {
@@ -2492,12 +2509,20 @@ public class EDStatic {
         touchThread.interrupt();
         touchThread = null;
       }
+      TouchDispatcher.shutdown();
 
-      if (taskThread != null) {
-        taskThread.interrupt();
-        taskThread = null;
+      synchronized (taskList) {
+        for (int i = 0; i < taskThreads.length; i++) {
+          if (taskThreads[i] != null) {
+            taskThreads[i].interrupt();
+            taskThreads[i] = null;
+          }
+        }
       }
 
+      SharedWorkExecutor.shutdown();
+      NcFileCache.clear();
+
       if (emailThread != null) {
         emailThread.interrupt();
         emailThread = null;
@@ -2597,48 +2622,57 @@ public class EDStatic {
   }
 
   /**
-   * This checks if the task thread is live/running and not stalled. If it is stalled, this will
-   * stop it.
+   * This checks if the task threads are live/running and not stalled. If one is stalled, this will
+   * stop it. The task of a thread which has stopped (or was stopped) is marked as finished.
    *
-   * @return true if the task thread is live/running. If false, taskThread will be null.
+   * @return true if any task thread is live/running. The taskThreads which aren't running are set
+   *     to null.
    */
   public static boolean isTaskThreadRunning() {
     synchronized (taskList) {
-      if (taskThread == null) return false;
-
-      if (taskThread.isAlive()) {
-        // is it stalled?
-        long eTime = taskThread.elapsedTime();
-        long maxTime = 6 * Calendar2.MILLIS_PER_HOUR; // appropriate??? user settable???
-        if (eTime > maxTime) {
-
-          // taskThread is stalled; interrupt it
-          String tError =
-              "%%% TaskThread ERROR: EDStatic is interrupting a stalled taskThread ("
-                  + Calendar2.elapsedTimeString(eTime)
-                  + " > "
-                  + Calendar2.elapsedTimeString(maxTime)
-                  + ") at "
-                  + Calendar2.getCurrentISODateTimeStringLocalTZ();
-          email(config.emailEverythingToCsv, "taskThread Stalled", tError);
-          String2.log(tError);
-
-          stopThread(taskThread, 10); // short time; it is already in trouble
-          // runningThreads.remove   not necessary since new one is put() in below
-          lastFinishedTask.set(nextTask.get() - 1);
-          taskThread = null;
-          return false;
+      boolean running = false;
+      for (int i = 0; i < taskThreads.length; i++) {
+        TaskThread tt = taskThreads[i];
+        if (tt == null) continue;
+
+        if (tt.isAlive()) {
+          // is it stalled?
+          long eTime = tt.elapsedTime();
+          long maxTime = 6 * Calendar2.MILLIS_PER_HOUR; // appropriate??? user settable???
+          if (eTime > maxTime) {
+
+            // taskThread is stalled; interrupt it
+            String tError =
+                "%%% TaskThread ERROR: EDStatic is interrupting a stalled "
+                    + tt.getName()
+                    + " ("
+                    + Calendar2.elapsedTimeString(eTime)
+                    + " > "
+                    + Calendar2.elapsedTimeString(maxTime)
+                    + ") at "
+                    + Calendar2.getCurrentISODateTimeStringLocalTZ();
+            email(config.emailEverythingToCsv, "taskThread Stalled", tError);
+            String2.log(tError);
+
+            stopThread(tt, 10); // short time; it is already in trouble
+            // runningThreads.remove   not necessary since new one is put() in below
+            taskThreads[i] = null;
+            taskFinished(tt.currentTask());
+          } else {
+            running = true;
+          }
+        } else {
+          // it isn't alive
+          String2.log(
+              "%%% TaskThread: EDStatic noticed that "
+                  + tt.getName()
+                  + " is finished at "
+                  + Calendar2.getCurrentISODateTimeStringLocalTZ());
+          taskThreads[i] = null;
+          taskFinished(tt.currentTask());
         }
-        return true;
-      } else {
-        // it isn't alive
-        String2.log(
-            "%%% TaskThread: EDStatic noticed that taskThread is finished at "
-                + Calendar2.getCurrentISODateTimeStringLocalTZ());
-        lastFinishedTask.set(nextTask.get() - 1);
-        taskThread = null;
-        return false;
       }
+      return running;
     }
   }
 
@@ -2671,7 +2705,6 @@ public class EDStatic {
 
           stopThread(touchThread, 10); // short time; it is already in trouble
           // runningThreads.remove   not necessary since new one is put() in below
-          lastFinishedTouch.set(nextTouch.get() - 1);
           touchThread = null;
           return false;
         }
@@ -2681,7 +2714,6 @@ public class EDStatic {
         String2.log(
             "%%% TouchThread: EDStatic noticed that touchThread isn't alive at "
                 + Calendar2.getCurrentISODateTimeStringLocalTZ());
-        lastFinishedTouch.set(nextTouch.get() - 1);
         touchThread = null;
         return false;
       }
@@ -2710,29 +2742,86 @@ public class EDStatic {
   }
 
   /**
-   * This ensures the task thread is running if there are tasks to do. This won't throw an
-   * exception.
+   * This ensures enough task threads (up to config.taskThreadNThreads) are running to do the tasks
+   * which can start now. This won't throw an exception.
    */
   public static void ensureTaskThreadIsRunningIfNeeded() {
     synchronized (taskList) {
-      // this checks if it is running and not stalled
-      if (isTaskThreadRunning()) return;
+      // this checks if they are running and not stalled
+      isTaskThreadRunning();
+      int maxThreads = config == null ? 1 : config.taskThreadNThreads;
+      if (taskThreads.length != maxThreads) taskThreads = Arrays.copyOf(taskThreads, maxThreads);
+
+      // each running thread will do a task (or more), so are more needed?
+      int nNeeded = taskQueue.nRunning() + taskQueue.nReady();
+      int nThreads = 0;
+      for (TaskThread tt : taskThreads) if (tt != null) nThreads++;
+      for (int i = 0; i < taskThreads.length && nThreads < nNeeded; i++) {
+        if (taskThreads[i] != null) continue;
+
+        // need to start a new taskThread
+        TaskThread tt = new TaskThread(i);
+        taskThreads[i] = tt;
+        nThreads++;
+        runningThreads.put(tt.getName(), tt);
+        String2.log(
+            "%%% TaskThread: new "
+                + tt.getName()
+                + " started at "
+                + Calendar2.getCurrentISODateTimeStringLocalTZ()
+                + " nPendingTasks="
+                + taskQueue.nQueued());
+        tt.start();
+      }
+    }
+  }
 
-      // taskThread isn't running
-      // Are there no tasks to do?
-      int nPending = taskList.size() - nextTask.get();
-      if (nPending <= 0) return; // no need to start it
+  /**
+   * TaskThreads call this to get their next task. If there isn't one, the TaskThread must exit.
+   *
+   * @param tt the TaskThread
+   * @return the task number (or -1 if there is no task that can start now)
+   */
+  static int nextTask(TaskThread tt) {
+    synchronized (taskList) {
+      int taskNumber = taskQueue.next();
+      if (taskNumber < 0) {
+        // it will exit, so let ensureTaskThreadIsRunningIfNeeded start another if needed
+        for (int i = 0; i < taskThreads.length; i++) {
+          if (taskThreads[i] == tt) taskThreads[i] = null;
+        }
+      }
+      updateTaskGauges();
+      return taskNumber;
+    }
+  }
 
-      // need to start a new taskThread
-      taskThread = new TaskThread(nextTask.get());
-      runningThreads.put(taskThread.getName(), taskThread);
-      String2.log(
-          "%%% TaskThread: new TaskThread started at "
-              + Calendar2.getCurrentISODateTimeStringLocalTZ()
-              + " nPendingTasks="
-              + nPending);
-      taskThread.start();
-      return;
+  /**
+   * TaskThreads call this when they finish a task (successfully or not).
+   *
+   * @param taskNumber the task number (or -1 to do nothing)
+   */
+  static void taskFinished(int taskNumber) {
+    if (taskNumber < 0) return;
+    synchronized (taskList) {
+      Object taskOA[] = taskList.get(taskNumber);
+      if (taskOA == null) return; // already finished
+      taskQueue.finished(taskNumber, (Integer) taskOA[0]);
+      taskList.set(taskNumber, null); // throw away the task info (gc)
+      int last = lastFinishedTask.get();
+      while (last + 1 < taskList.size() && taskList.get(last + 1) == null) last++;
+      lastFinishedTask.set(last);
+      updateTaskGauges();
+      ensureTaskThreadIsRunningIfNeeded(); // e.g., a TASK_SET_FLAG may be able to start now
+    }
+  }
+
+  private static void updateTaskGauges() {
+    if (metrics == null) return;
+    for (Map.Entry<Integer, int[]> entry : taskQueue.nOfType().entrySet()) {
+      String taskType = "" + entry.getKey();
+      metrics.taskQueuedTasks.labelValues(taskType).set(entry.getValue()[0]);
+      metrics.taskActiveTasks.labelValues(taskType).set(entry.getValue()[1]);
     }
   }
 
@@ -2761,26 +2850,61 @@ public class EDStatic {
 
   /** This returns the number of unfinished tasks. */
   public static int nUnfinishedTasks() {
-    return taskList.size() - lastFinishedTask.get() - 1;
+    synchronized (taskList) {
+      return taskQueue.nQueued() + taskQueue.nRunning();
+    }
   }
 
   /**
-   * This adds a task to the taskList if it (other than TASK_SET_FLAG) isn't already on the
-   * taskList.
+   * This returns the number of a dataset's unfinished tasks.
    *
-   * @return the task number that was assigned to the task, or -1 if it was a duplicate task.
+   * @param datasetID the datasetID that the tasks were added for
+   * @return the number of the dataset's unfinished tasks
    */
-  public static int addTask(Object taskOA[]) {
+  public static int nUnfinishedTasks(String datasetID) {
     synchronized (taskList) {
+      return taskQueue.nUnfinished(datasetID);
+    }
+  }
 
-      // Note that all task creators check that
-      //   EDStatic.lastFinishedTask >= lastAssignedTask(datasetID).  I.E., tasks are all done,
-      // before again creating new tasks.
-      // So no need to see if this new task duplicates an existing unfinished task.
+  /**
+   * This adds a task to the taskList. The task is for the dataset that taskOA[1] is (or, for
+   * TASK_SET_FLAG, identifies), if any, and only one of the dataset's tasks will run at once.
+   *
+   * @return the task number that was assigned to the task.
+   */
+  public static int addTask(Object taskOA[]) {
+    String datasetID =
+        taskOA.length < 2
+            ? ""
+            : taskOA[1] instanceof EDD edd
+                ? edd.datasetID()
+                : TaskThread.TASK_SET_FLAG.equals(taskOA[0]) ? (String) taskOA[1] : "";
+    return addTask(datasetID, 1, taskOA);
+  }
 
+  /**
+   * This adds a task for a dataset to the taskList.
+   *
+   * <p>Note that all task creators check that the dataset has no unfinished tasks (see
+   * nUnfinishedTasks(datasetID)) before again creating new tasks. So no need to see if this new
+   * task duplicates an existing unfinished task.
+   *
+   * @param datasetID the datasetID (or "" if the task isn't for a dataset). A TASK_SET_FLAG for the
+   *     dataset waits for the dataset's earlier tasks.
+   * @param maxRunning the max number of the dataset's tasks which may run at once (e.g., the
+   *     dataset's nThreads). Values less than 1 are treated as 1. This is ignored if the dataset
+   *     already has unfinished tasks.
+   * @return the task number that was assigned to the task.
+   */
+  public static int addTask(String datasetID, int maxRunning, Object taskOA[]) {
+    synchronized (taskList) {
       // add the task to the list
       taskList.add(taskOA);
-      return taskList.size() - 1;
+      int taskNumber = taskList.size() - 1;
+      taskQueue.add(taskNumber, (Integer) taskOA[0], datasetID, maxRunning);
+      updateTaskGauges();
+      return taskNumber;
     }
   }
 
@@ -3490,6 +3614,35 @@ public class EDStatic {
     }
   }
 
+  /**
+   * Create tasks to download files so a local dir mimics a remote dir, one file at a time. <br>
+   * This won't throw an exception.
+   *
+   * @param maxTasks This let's you just see what would happen (0), or just make a limited or
+   *     unlimited (Integer.MAX_VALUE) number of download tasks.
+   * @param tDatasetID
+   */
+  public static int makeCopyFileTasks(
+      String tClassName,
+      int maxTasks,
+      String tDatasetID,
+      String tSourceUrl,
+      String tFileNameRegex,
+      boolean tRecursive,
+      String tPathRegex,
+      String tLocalDir) {
+    return makeCopyFileTasks(
+        tClassName,
+        maxTasks,
+        tDatasetID,
+        1,
+        tSourceUrl,
+        tFileNameRegex,
+        tRecursive,
+        tPathRegex,
+        tLocalDir);
+  }
+
   /**
    * Create tasks to download files so a local dir mimics a remote dir. <br>
    * This won't throw an exception.
@@ -3497,11 +3650,13 @@ public class EDStatic {
    * @param maxTasks This let's you just see what would happen (0), or just make a limited or
    *     unlimited (Integer.MAX_VALUE) number of download tasks.
    * @param tDatasetID
+   * @param tnThreads the max number of the dataset's download tasks which may run at once
    */
   public static int makeCopyFileTasks(
       String tClassName,
       int maxTasks,
       String tDatasetID,
+      int tnThreads,
       String tSourceUrl,
       String tFileNameRegex,
       boolean tRecursive,
@@ -3534,20 +3689,17 @@ public class EDStatic {
     try {
       // if previous tasks are still running, return
       ensureTaskThreadIsRunningIfNeeded(); // ensure info is up-to-date
-      Integer datasetLastAssignedTask = lastAssignedTask.get(tDatasetID);
-      boolean pendingTasks =
-          datasetLastAssignedTask != null && lastFinishedTask.get() < datasetLastAssignedTask;
+      int nUnfinishedTasks = nUnfinishedTasks(tDatasetID);
+      boolean pendingTasks = nUnfinishedTasks > 0;
       if (verbose)
         String2.log(
             "  "
                 + tClassName
-                + ".makeCopyFileTasks: lastFinishedTask="
-                + lastFinishedTask.get()
-                + " < datasetLastAssignedTask("
+                + ".makeCopyFileTasks: nUnfinishedTasks("
                 + tDatasetID
                 + ")="
-                + datasetLastAssignedTask
-                + "? pendingTasks="
+                + nUnfinishedTasks
+                + " pendingTasks="
                 + pendingTasks);
       if (pendingTasks) return 0;
 
@@ -3634,7 +3786,7 @@ public class EDStatic {
           nFilesToDownload++;
           int tTaskNumber = -1;
           if (nFilesToDownload <= maxTasks) {
-            tTaskNumber = lastTask = addTask(taskOA);
+            tTaskNumber = lastTask = addTask(tDatasetID, tnThreads, taskOA);
           } else {
             // This is weird but the number is really only used in the log below.
             tTaskNumber = -nFilesToDownload;
@@ -3670,14 +3822,14 @@ public class EDStatic {
         Object taskOA[] = new Object[2];
         taskOA[0] = TaskThread.TASK_SET_FLAG;
         taskOA[1] = tDatasetID;
-        lastTask = addTask(taskOA); // TASK_SET_FLAG will always be added
+        // TASK_SET_FLAG will always be added
+        lastTask = addTask(tDatasetID, tnThreads, taskOA);
         if (reallyVerbose)
           String2.log("% created task#" + lastTask + " TASK_SET_FLAG " + tDatasetID);
-        lastAssignedTask.put(tDatasetID, lastTask);
         ensureTaskThreadIsRunningIfNeeded(); // ensure info is up-to-date
 
         if (config.forceSynchronousLoading) {
-          while (lastFinishedTask.get() < lastTask) {
+          while (nUnfinishedTasks(tDatasetID) > 0) {
             Thread.sleep(2000);
           }
         }
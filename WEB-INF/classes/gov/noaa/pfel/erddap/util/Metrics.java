@@ -69,6 +69,22 @@ public class Metrics {
           .nativeOnly()
           .build();
 
+  public Histogram touchHostDuration =
+      Histogram.builder()
+          .name("touch_host_duration_seconds")
+          .help("Time to touch a URL (each try) in seconds, by the URL's host")
+          .unit(Unit.SECONDS)
+          .labelNames("host", "success")
+          .nativeOnly()
+          .build();
+
+  public Counter touchRetries =
+      Counter.builder()
+          .name("touch_retries_total")
+          .help("Count of failed URL touches which will be tried again, by the URL's host")
+          .labelNames("host")
+          .build();
+
   public Histogram taskThreadDuration =
       Histogram.builder()
           .name("task_thread_duration_seconds")
@@ -78,6 +94,20 @@ public class Metrics {
           .nativeOnly()
           .build();
 
+  public Gauge taskQueuedTasks =
+      Gauge.builder()
+          .name("task_thread_queued_tasks")
+          .help("Count of tasks waiting for a TaskThread")
+          .labelNames("task_type")
+          .build();
+
+  public Gauge taskActiveTasks =
+      Gauge.builder()
+          .name("task_thread_active_tasks")
+          .help("Count of tasks running in TaskThreads")
+          .labelNames("task_type")
+          .build();
+
   public Histogram loadDatasetsDuration =
       Histogram.builder()
           .name("load_datasets_duration_seconds")
@@ -87,6 +117,15 @@ public class Metrics {
           .nativeOnly()
           .build();
 
+  public Histogram datasetLoadDuration =
+      Histogram.builder()
+          .name("dataset_load_duration_seconds")
+          .help("Time to construct one dataset in LoadDatasets, in seconds")
+          .unit(Unit.SECONDS)
+          .labelNames("category", "success")
+          .nativeOnly()
+          .build();
+
   public Histogram emailsCountDistribution =
       Histogram.builder()
           .name("email_count_distribution")
@@ -133,6 +172,42 @@ public class Metrics {
           .help("Count of failed requests due to memory")
           .build();
 
+  public Gauge workQueuedTasks =
+      Gauge.builder()
+          .name("work_executor_queued_tasks")
+          .help("Count of tasks waiting for a SharedWorkExecutor thread")
+          .build();
+
+  public Gauge workActiveTasks =
+      Gauge.builder()
+          .name("work_executor_active_tasks")
+          .help("Count of tasks running in SharedWorkExecutor threads")
+          .build();
+
+  public Histogram workWaitDuration =
+      Histogram.builder()
+          .name("work_executor_wait_seconds")
+          .help("Time tasks waited in the SharedWorkExecutor queue in seconds")
+          .unit(Unit.SECONDS)
+          .nativeOnly()
+          .build();
+
+  public Gauge requestQueueDepth =
+      Gauge.builder()
+          .name("request_queue_depth")
+          .help("Count of requests waiting to be processed")
+          .labelNames("queue")
+          .build();
+
+  public Histogram requestWaitDuration =
+      Histogram.builder()
+          .name("request_queue_wait_seconds")
+          .help("Time requests waited to be processed in seconds")
+          .labelNames("queue")
+          .unit(Unit.SECONDS)
+          .nativeOnly()
+          .build();
+
   public Counter sgtMapTopoRequest =
       Counter.builder()
           .name("topo_request_total")
@@ -140,14 +215,57 @@ public class Metrics {
           .labelNames("cache")
           .build();
 
+  public Counter ncFileCacheRequest =
+      Counter.builder()
+          .name("nc_file_cache_request_total")
+          .help("Count of requests for open nc files")
+          .labelNames("cache")
+          .build();
+
+  public Counter dapBlockCacheRequest =
+      Counter.builder()
+          .name("dap_block_cache_request_total")
+          .help("Count of requests for blocks of remote OPeNDAP grid data")
+          .labelNames("cache")
+          .build();
+
+  public Counter mqttIngestRows =
+      Counter.builder()
+          .name("mqtt_ingest_rows_total")
+          .help("Count of MQTT messages (rows) buffered by EDDTableFromMqtt datasets")
+          .labelNames("dataset_id")
+          .build();
+
+  public Histogram mqttFlushRows =
+      Histogram.builder()
+          .name("mqtt_flush_rows")
+          .help("Number of buffered MQTT rows appended to the files per flush")
+          .labelNames("dataset_id")
+          .nativeOnly()
+          .build();
+
+  public Histogram mqttFlushDuration =
+      Histogram.builder()
+          .name("mqtt_flush_duration_seconds")
+          .help("Time to append buffered MQTT rows to the files and save the file table in seconds")
+          .labelNames("dataset_id")
+          .unit(Unit.SECONDS)
+          .nativeOnly()
+          .build();
+
   public void initialize(boolean registerPrometheus) {
     if (registerPrometheus) {
       JvmMetrics.builder().register(); // initialize the out-of-the-box JVM metrics
       addInfoMetrics();
       PrometheusRegistry.defaultRegistry.register(loadDatasetsDuration);
+      PrometheusRegistry.defaultRegistry.register(datasetLoadDuration);
       PrometheusRegistry.defaultRegistry.register(emailThreadDuration);
       PrometheusRegistry.defaultRegistry.register(taskThreadDuration);
+      PrometheusRegistry.defaultRegistry.register(taskQueuedTasks);
+      PrometheusRegistry.defaultRegistry.register(taskActiveTasks);
       PrometheusRegistry.defaultRegistry.register(touchThreadDuration);
+      PrometheusRegistry.defaultRegistry.register(touchHostDuration);
+      PrometheusRegistry.defaultRegistry.register(touchRetries);
       PrometheusRegistry.defaultRegistry.register(responseDuration);
       PrometheusRegistry.defaultRegistry.register(emailsCountDistribution);
       PrometheusRegistry.defaultRegistry.register(datasetsCount);
@@ -156,6 +274,16 @@ public class Metrics {
       PrometheusRegistry.defaultRegistry.register(dangerousMemoryEmails);
       PrometheusRegistry.defaultRegistry.register(dangerousMemoryFailures);
       PrometheusRegistry.defaultRegistry.register(sgtMapTopoRequest);
+      PrometheusRegistry.defaultRegistry.register(ncFileCacheRequest);
+      PrometheusRegistry.defaultRegistry.register(dapBlockCacheRequest);
+      PrometheusRegistry.defaultRegistry.register(workQueuedTasks);
+      PrometheusRegistry.defaultRegistry.register(workActiveTasks);
+      PrometheusRegistry.defaultRegistry.register(workWaitDuration);
+      PrometheusRegistry.defaultRegistry.register(requestQueueDepth);
+      PrometheusRegistry.defaultRegistry.register(requestWaitDuration);
+      PrometheusRegistry.defaultRegistry.register(mqttIngestRows);
+      PrometheusRegistry.defaultRegistry.register(mqttFlushRows);
+      PrometheusRegistry.defaultRegistry.register(mqttFlushDuration);
       GSHHS.requestStatus.register(PrometheusRegistry.defaultRegistry);
       SgtMap.nationalBoundaries.counter.register(PrometheusRegistry.defaultRegistry);
       SgtMap.stateBoundaries.counter.register(PrometheusRegistry.defaultRegistry);
@@ -163,6 +291,8 @@ public class Metrics {
     }
     datasetsCount.initLabelValues(DatasetCategory.grid.name());
     datasetsCount.initLabelValues(DatasetCategory.table.name());
+    requestQueueDepth.initLabelValues("ip_address");
+    requestQueueDepth.initLabelValues("global");
   }
 
   private void addInfoMetrics() {
@@ -0,0 +1,151 @@
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.array.IntArray;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This is the "on-ramp metering" system which decides when Erddap.doGet may start processing a
+ * request.
+ *
+ * <p>Each IP address has a queue (an IntArray of requestNumbers, in EDStatic.ipAddressQueue). A
+ * request may be processed once it is in the first ipAddressMaxRequestsActive slots of its queue.
+ * Waiting requests wait on the queue's monitor and are woken as soon as a request from the same IP
+ * address finishes (see remove), so there is no polling delay. Since the queue is in arrival
+ * order, the requests from an IP address are processed in the order they arrived.
+ *
+ * <p>Optionally (if EDStatic.config.maxRequestsActive &gt; 0), there is also a limit on the number
+ * of requests (from all IP addresses) which are processed at once. Requests wait in a fair (first
+ * come, first served) queue for up to maxRequestsActiveWaitSeconds. After that, they are shed.
+ */
+public class RequestAdmission {
+
+  private static Semaphore globalSlots;
+  private static boolean globalSlotsMade = false;
+  private static final AtomicInteger nIpAddressWaiting = new AtomicInteger();
+  private static final AtomicInteger nGlobalWaiting = new AtomicInteger();
+
+  /**
+   * This waits until requestNumber is in the first nActive slots of an IP address' queue.
+   *
+   * @param queue the IP address' queue of requestNumbers (which includes requestNumber)
+   * @param requestNumber the request's number
+   * @param nActive the number of requests from the IP address which may be processed at once
+   * @param timeoutMillis the maximum time to wait
+   * @return true if the request may be processed now, or false if it timed out
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public static boolean awaitTurn(
+      IntArray queue, int requestNumber, int nActive, long timeoutMillis)
+      throws InterruptedException {
+    long start = System.nanoTime();
+    boolean waited = false;
+    try {
+      synchronized (queue) {
+        while (!isActive(queue, requestNumber, nActive)) {
+          long remaining =
+              timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+          if (remaining <= 0) return false;
+          if (!waited) {
+            waited = true;
+            updateQueueDepth("ip_address", nIpAddressWaiting.incrementAndGet());
+          }
+          queue.wait(remaining); // until a request from this IP address finishes
+        }
+        return true;
+      }
+    } finally {
+      if (waited) {
+        updateQueueDepth("ip_address", nIpAddressWaiting.decrementAndGet());
+        observeWait("ip_address", start);
+      }
+    }
+  }
+
+  private static boolean isActive(IntArray queue, int requestNumber, int nActive) {
+    for (int which = Math.min(queue.size(), nActive) - 1; which >= 0; which--)
+      if (queue.get(which) == requestNumber) return true;
+    return false;
+  }
+
+  /**
+   * This removes a finished (or rejected) request from its IP address' queue and wakes the
+   * requests which are waiting for their turn.
+   *
+   * @param queue the IP address' queue of requestNumbers
+   * @param requestNumber the request's number
+   */
+  public static void remove(IntArray queue, int requestNumber) {
+    synchronized (queue) {
+      int which = queue.indexOf(requestNumber);
+      if (which >= 0) { // it should be
+        queue.remove(which);
+        queue.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * If there is a limit on the number of requests which are processed at once, this waits for one
+   * of the slots.
+   *
+   * @return true if the request got a slot (and must call releaseGlobalSlot when it is done) or
+   *     there is no limit, or false if it didn't get a slot in time (so the request should be shed)
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public static boolean acquireGlobalSlot() throws InterruptedException {
+    Semaphore slots = globalSlots();
+    if (slots == null || slots.tryAcquire()) return true;
+
+    long start = System.nanoTime();
+    updateQueueDepth("global", nGlobalWaiting.incrementAndGet());
+    try {
+      return slots.tryAcquire(EDStatic.config.maxRequestsActiveWaitSeconds, TimeUnit.SECONDS);
+    } finally {
+      updateQueueDepth("global", nGlobalWaiting.decrementAndGet());
+      observeWait("global", start);
+    }
+  }
+
+  /** This releases the slot from acquireGlobalSlot (if there is a limit). */
+  public static void releaseGlobalSlot() {
+    Semaphore slots = globalSlots();
+    if (slots != null) slots.release();
+  }
+
+  /**
+   * This returns the semaphore for the global limit (made the first time it is needed, from
+   * config.maxRequestsActive), or null if there is no limit.
+   */
+  private static synchronized Semaphore globalSlots() {
+    if (!globalSlotsMade && EDStatic.config != null) {
+      int size = EDStatic.config.maxRequestsActive;
+      globalSlots = size > 0 ? new Semaphore(size, true) : null; // true=fair
+      globalSlotsMade = true;
+    }
+    return globalSlots;
+  }
+
+  /** The number of requests waiting for their turn in their IP address' queue. */
+  public static int getNIpAddressWaiting() {
+    return nIpAddressWaiting.get();
+  }
+
+  /** The number of requests waiting for a global slot. */
+  public static int getNGlobalWaiting() {
+    return nGlobalWaiting.get();
+  }
+
+  private static void updateQueueDepth(String queue, int depth) {
+    if (EDStatic.metrics != null) EDStatic.metrics.requestQueueDepth.labelValues(queue).set(depth);
+  }
+
+  private static void observeWait(String queue, long startNanos) {
+    if (EDStatic.metrics != null)
+      EDStatic.metrics
+          .requestWaitDuration
+          .labelValues(queue)
+          .observe((System.nanoTime() - startNanos) / 1e9);
+  }
+}
@@ -0,0 +1,306 @@
+package gov.noaa.pfel.erddap.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This is the server-wide executor for the tasks that requests split their work into (e.g., reading
+ * one data file). It replaces the thread pool that ThreadedWorkManager used to make (and shut down)
+ * for each request.
+ *
+ * <p>Each request gets its own Group, which limits how many of the request's tasks may run at once.
+ * A group's tasks wait in the group's queue until they can run. The groups with waiting tasks take
+ * turns (round robin), so one big request can't starve the others. The total number of running
+ * tasks is limited to maxThreads.
+ *
+ * <p>A task must not wait for other tasks which were submitted to the same executor (that could
+ * deadlock when all of the threads are in use). So work which is submitted from one of this
+ * executor's threads (e.g., EDDGridSideBySide's child requests while GridDataAccessor reads ahead)
+ * goes to a separate, equally bounded, nested executor (see forCurrentThread). The nested
+ * executor's tasks never wait for other tasks: work submitted from one of its threads is done in
+ * the calling thread.
+ */
+public class SharedWorkExecutor {
+
+  private static SharedWorkExecutor instance;
+
+  // the executor whose task the current thread is running (or null)
+  private static final ThreadLocal<SharedWorkExecutor> currentExecutor = new ThreadLocal<>();
+
+  private final ExecutorService executor;
+  private final int maxThreads;
+  private final boolean useVirtualThreads;
+  private final boolean isNested;
+  private SharedWorkExecutor nestedExecutor; // made when first needed
+  // the groups which have waiting tasks and can start one, in the order they get a turn
+  private final ArrayDeque<Group> readyGroups = new ArrayDeque<>();
+  private int nActive = 0;
+  private int nQueued = 0;
+
+  /**
+   * This returns the server-wide instance, making it (based on EDStatic.config) if needed.
+   *
+   * @return the server-wide instance
+   */
+  public static synchronized SharedWorkExecutor get() {
+    if (instance == null) {
+      EDConfig config = EDStatic.config;
+      instance =
+          config == null
+              ? new SharedWorkExecutor(EDConfig.defaultWorkMaxThreads(), false)
+              : new SharedWorkExecutor(config.workMaxThreads, config.useVirtualWorkThreads);
+    }
+    return instance;
+  }
+
+  /** This shuts down the server-wide instance (if any), interrupting the running tasks. */
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.shutdownNow();
+      instance = null;
+    }
+  }
+
+  /**
+   * This returns true if the current thread is running a task for a SharedWorkExecutor.
+   *
+   * @return true if the current thread is running a task for a SharedWorkExecutor
+   */
+  public static boolean isWorkerThread() {
+    return currentExecutor.get() != null;
+  }
+
+  /**
+   * This returns the executor that work submitted from the current thread should use: the
+   * server-wide instance if this isn't a worker thread, that executor's nested executor if this is
+   * one of its worker threads, or null if this is a nested executor's worker thread. In that last
+   * case, the caller must do the work itself (in this thread), so nested work more than one level
+   * deep is done serially.
+   *
+   * @return the executor to use, or null if the work must be done in this thread
+   */
+  public static SharedWorkExecutor forCurrentThread() {
+    SharedWorkExecutor current = currentExecutor.get();
+    return current == null ? get() : current.nested();
+  }
+
+  /**
+   * The constructor.
+   *
+   * @param tMaxThreads the maximum number of tasks (from all groups) which may run at once
+   * @param useVirtualThreads if true, each task is run in a new virtual thread (which is good for
+   *     I/O bound tasks). If false, the tasks are run in a pool of platform threads (which stop if
+   *     they are idle for a minute).
+   */
+  public SharedWorkExecutor(int tMaxThreads, boolean useVirtualThreads) {
+    this(tMaxThreads, useVirtualThreads, false);
+  }
+
+  private SharedWorkExecutor(int tMaxThreads, boolean tUseVirtualThreads, boolean tIsNested) {
+    maxThreads = Math.max(1, tMaxThreads);
+    useVirtualThreads = tUseVirtualThreads;
+    isNested = tIsNested;
+    String prefix = isNested ? "ErddapNestedWork-" : "ErddapWork-";
+    if (useVirtualThreads) {
+      executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory());
+    } else {
+      ThreadFactory factory = Thread.ofPlatform().name(prefix, 0).daemon(true).factory();
+      ThreadPoolExecutor pool =
+          new ThreadPoolExecutor(
+              maxThreads, maxThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), factory);
+      pool.allowCoreThreadTimeOut(true);
+      executor = pool;
+    }
+  }
+
+  /**
+   * This returns the executor for the work submitted by this executor's tasks (with the same
+   * maxThreads), making it if needed.
+   *
+   * @return the nested executor, or null if this is a nested executor
+   */
+  public synchronized SharedWorkExecutor nested() {
+    if (isNested) return null;
+    if (nestedExecutor == null)
+      nestedExecutor = new SharedWorkExecutor(maxThreads, useVirtualThreads, true);
+    return nestedExecutor;
+  }
+
+  /** This shuts down this executor (and its nested executor), interrupting the running tasks. */
+  private synchronized void shutdownNow() {
+    executor.shutdownNow();
+    if (nestedExecutor != null) nestedExecutor.shutdownNow();
+  }
+
+  /**
+   * This makes a new group (e.g., for one request).
+   *
+   * @param maxConcurrent the maximum number of this group's tasks which may run at once
+   * @return a new group
+   */
+  public Group newGroup(int maxConcurrent) {
+    return new Group(maxConcurrent);
+  }
+
+  public int getMaxThreads() {
+    return maxThreads;
+  }
+
+  /** The number of tasks which are running now. */
+  public synchronized int getNActive() {
+    return nActive;
+  }
+
+  /** The number of tasks which are waiting to run. */
+  public synchronized int getNQueued() {
+    return nQueued;
+  }
+
+  /** This starts as many waiting tasks as possible. */
+  private void dispatch() {
+    List<Task<?>> toStart = new ArrayList<>();
+    synchronized (this) {
+      while (nActive < maxThreads) {
+        Group group = readyGroups.poll();
+        if (group == null) break;
+        group.isReady = false;
+        Task<?> task = group.pending.poll();
+        if (task == null) continue;
+        nQueued--;
+        nActive++;
+        group.running.add(task);
+        if (group.canStart()) {
+          group.isReady = true;
+          readyGroups.add(group); // at the end, so the other groups get a turn first
+        }
+        toStart.add(task);
+      }
+      updateGauges();
+    }
+
+    for (Task<?> task : toStart) {
+      if (EDStatic.metrics != null)
+        EDStatic.metrics.workWaitDuration.observe((System.nanoTime() - task.queuedAt) / 1e9);
+      try {
+        executor.execute(() -> run(task));
+      } catch (RejectedExecutionException e) { // executor was shut down
+        task.cancel(false);
+        finished(task);
+      }
+    }
+  }
+
+  private void run(Task<?> task) {
+    currentExecutor.set(this);
+    try {
+      task.run(); // FutureTask catches all Throwables
+    } finally {
+      currentExecutor.remove();
+      finished(task);
+    }
+  }
+
+  private void finished(Task<?> task) {
+    synchronized (this) {
+      nActive--;
+      Group group = task.group;
+      group.running.remove(task);
+      if (!group.isReady && group.canStart()) {
+        group.isReady = true;
+        readyGroups.add(group);
+      }
+    }
+    dispatch();
+  }
+
+  private void updateGauges() {
+    if (EDStatic.metrics != null && !isNested) { // the gauges are for the top-level tasks
+      EDStatic.metrics.workQueuedTasks.set(nQueued);
+      EDStatic.metrics.workActiveTasks.set(nActive);
+    }
+  }
+
+  private static class Task<T> extends FutureTask<T> {
+    final Group group;
+    final long queuedAt = System.nanoTime();
+
+    Task(Group group, Callable<T> callable) {
+      super(callable);
+      this.group = group;
+    }
+  }
+
+  /** The tasks for one request. The methods are thread safe. */
+  public class Group {
+    private final int maxConcurrent;
+    private final ArrayDeque<Task<?>> pending = new ArrayDeque<>();
+    private final Set<Task<?>> running = new HashSet<>();
+    private boolean isReady = false; // true if this group is in readyGroups
+    private boolean isCancelled = false;
+
+    private Group(int tMaxConcurrent) {
+      maxConcurrent = Math.max(1, tMaxConcurrent);
+    }
+
+    private boolean canStart() {
+      return !pending.isEmpty() && running.size() < maxConcurrent;
+    }
+
+    /**
+     * This adds a task to this group's queue. It will be run when this group and the executor have
+     * a free slot.
+     *
+     * @param callable the work to be done
+     * @return a Future for the result
+     * @throws RejectedExecutionException if the group has been cancelled
+     */
+    public <T> Future<T> submit(Callable<T> callable) {
+      Task<T> task = new Task<>(this, callable);
+      synchronized (SharedWorkExecutor.this) {
+        if (isCancelled) throw new RejectedExecutionException("The work group was cancelled.");
+        pending.add(task);
+        nQueued++;
+        if (!isReady && canStart()) {
+          isReady = true;
+          readyGroups.add(this);
+        }
+      }
+      dispatch();
+      return task;
+    }
+
+    /**
+     * This cancels this group's waiting tasks, interrupts its running tasks, and rejects any tasks
+     * submitted later.
+     */
+    public void cancel() {
+      List<Task<?>> toCancel = new ArrayList<>();
+      synchronized (SharedWorkExecutor.this) {
+        isCancelled = true;
+        toCancel.addAll(pending);
+        nQueued -= pending.size();
+        pending.clear();
+        if (isReady) {
+          readyGroups.remove(this);
+          isReady = false;
+        }
+        toCancel.addAll(running);
+        updateGauges();
+      }
+      for (Task<?> task : toCancel) task.cancel(true);
+    }
+  }
+}
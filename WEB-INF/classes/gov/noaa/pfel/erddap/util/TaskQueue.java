@@ -0,0 +1,211 @@
+/*
+ * TaskQueue Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * This holds the unfinished tasks (by their task numbers in EDStatic.taskList) and decides which
+ * task a TaskThread does next.
+ *
+ * <p>Each dataset's tasks wait in the dataset's own queue, in the order they were added. The
+ * datasets whose next task can start take turns (round robin), so one dataset's initial copy of
+ * thousands of remote files can't delay the other datasets' tasks for days. Datasets whose next
+ * task is a quick, high priority task (TASK_CLEAR_CACHE or TASK_SET_FLAG, then
+ * TASK_CREATE_SUBSET_TABLE) go before datasets whose next task is a bulk task (e.g.,
+ * TASK_MAKE_A_DATAFILE or TASK_DOWNLOAD).
+ *
+ * <p>Each dataset may have up to its maxRunning tasks running at once (e.g., the dataset's
+ * nThreads). TASK_SET_FLAG (which tells ERDDAP to reload the dataset after its files have been
+ * made) only starts after all of the dataset's earlier tasks have finished.
+ *
+ * <p>This isn't thread safe. EDStatic uses it while synchronized on taskList.
+ */
+class TaskQueue {
+
+  /** The number of priorities (0 is the highest). */
+  static final int N_PRIORITIES = 3;
+
+  private record Task(int number, int type) {}
+
+  /** The unfinished tasks for one dataset (or for the tasks which aren't for a dataset). */
+  private static class DatasetQueue {
+    final String datasetID;
+    final ArrayDeque<Task> queued = new ArrayDeque<>();
+    int maxRunning = 1;
+    int nRunning = 0;
+    boolean isReady = false; // i.e., in one of the ready queues
+
+    DatasetQueue(String datasetID) {
+      this.datasetID = datasetID;
+    }
+
+    boolean canStart() {
+      Task next = queued.peek();
+      return next != null
+          && nRunning < maxRunning
+          && (nRunning == 0 || !TaskThread.TASK_SET_FLAG.equals(next.type));
+    }
+  }
+
+  private final HashMap<String, DatasetQueue> datasetQueues = new HashMap<>();
+  // for each priority, the datasets whose next task can start, in the order they get a turn
+  private final ArrayList<ArrayDeque<DatasetQueue>> readyQueues = new ArrayList<>();
+  private final HashMap<Integer, DatasetQueue> runningTasks = new HashMap<>(); // key=task number
+  // key=task type, value=[nQueued, nRunning]
+  private final TreeMap<Integer, int[]> nOfType = new TreeMap<>();
+  private int nQueued = 0;
+
+  TaskQueue() {
+    for (int p = 0; p < N_PRIORITIES; p++) readyQueues.add(new ArrayDeque<>());
+  }
+
+  /**
+   * This returns the priority of a type of task.
+   *
+   * @param taskType one of the TaskThread.TASK_ constants
+   * @return the priority (0 is the highest)
+   */
+  static int priority(int taskType) {
+    if (taskType == TaskThread.TASK_CLEAR_CACHE || taskType == TaskThread.TASK_SET_FLAG) return 0;
+    if (taskType == TaskThread.TASK_CREATE_SUBSET_TABLE) return 1;
+    return 2;
+  }
+
+  /**
+   * This adds a task to the end of a dataset's queue.
+   *
+   * @param taskNumber the task's number in EDStatic.taskList
+   * @param taskType the task's type (one of the TaskThread.TASK_ constants)
+   * @param datasetID the datasetID (or "" if the task isn't for a dataset)
+   * @param maxRunning the max number of the dataset's tasks which may run at once. Values less than
+   *     1 are treated as 1. This is ignored if the dataset already has unfinished tasks.
+   */
+  void add(int taskNumber, int taskType, String datasetID, int maxRunning) {
+    DatasetQueue dq = datasetQueues.get(datasetID);
+    if (dq == null) {
+      dq = new DatasetQueue(datasetID);
+      dq.maxRunning = Math.max(1, maxRunning);
+      datasetQueues.put(datasetID, dq);
+    }
+    dq.queued.add(new Task(taskNumber, taskType));
+    nQueued++;
+    nOfType.computeIfAbsent(taskType, k -> new int[2])[0]++;
+    updateReady(dq);
+  }
+
+  /**
+   * This removes the next task that can start from its queue and notes that it is running.
+   *
+   * @return the task number, or -1 if no task can start now
+   */
+  int next() {
+    for (ArrayDeque<DatasetQueue> readyQueue : readyQueues) {
+      DatasetQueue dq = readyQueue.poll();
+      if (dq == null) continue;
+      dq.isReady = false;
+      Task task = dq.queued.remove();
+      nQueued--;
+      dq.nRunning++;
+      int counts[] = nOfType.get(task.type);
+      counts[0]--;
+      counts[1]++;
+      runningTasks.put(task.number, dq);
+      updateReady(dq); // it goes to the end of the line
+      return task.number;
+    }
+    return -1;
+  }
+
+  /**
+   * This notes that a running task has finished (successfully or not).
+   *
+   * @param taskNumber the task's number
+   * @param taskType the task's type
+   */
+  void finished(int taskNumber, int taskType) {
+    DatasetQueue dq = runningTasks.remove(taskNumber);
+    if (dq == null) return;
+    dq.nRunning--;
+    nOfType.get(taskType)[1]--;
+    if (dq.nRunning == 0 && dq.queued.isEmpty()) datasetQueues.remove(dq.datasetID);
+    else updateReady(dq);
+  }
+
+  private void updateReady(DatasetQueue dq) {
+    if (!dq.isReady && dq.canStart()) {
+      dq.isReady = true;
+      readyQueues.get(priority(dq.queued.peek().type)).add(dq);
+    }
+  }
+
+  /** This returns the number of tasks which are waiting to start. */
+  int nQueued() {
+    return nQueued;
+  }
+
+  /** This returns the number of tasks which are running. */
+  int nRunning() {
+    return runningTasks.size();
+  }
+
+  /** This returns the number of datasets whose next task can start now. */
+  int nReady() {
+    int n = 0;
+    for (ArrayDeque<DatasetQueue> readyQueue : readyQueues) n += readyQueue.size();
+    return n;
+  }
+
+  /**
+   * This returns the number of a dataset's tasks which are waiting or running.
+   *
+   * @param datasetID the datasetID (or "" for the tasks which aren't for a dataset)
+   * @return the number of the dataset's unfinished tasks
+   */
+  int nUnfinished(String datasetID) {
+    DatasetQueue dq = datasetQueues.get(datasetID);
+    return dq == null ? 0 : dq.queued.size() + dq.nRunning;
+  }
+
+  /**
+   * This returns the number of waiting and running tasks of each type which has been added.
+   *
+   * @return key=task type, value=[nQueued, nRunning]. Don't change the values.
+   */
+  TreeMap<Integer, int[]> nOfType() {
+    return nOfType;
+  }
+
+  /**
+   * This returns a summary of the datasets with the most unfinished tasks, e.g.,
+   * "erdMH1chla1day: 40123 queued, 2 running", one per line.
+   *
+   * @param maxDatasets the max number of datasets to include
+   * @return the summary (or "" if there are no unfinished tasks)
+   */
+  String summary(int maxDatasets) {
+    ArrayList<DatasetQueue> list = new ArrayList<>(datasetQueues.values());
+    list.sort(
+        (a, b) -> Integer.compare(b.queued.size() + b.nRunning, a.queued.size() + a.nRunning));
+    StringBuilder sb = new StringBuilder();
+    int n = Math.min(maxDatasets, list.size());
+    for (int i = 0; i < n; i++) {
+      DatasetQueue dq = list.get(i);
+      sb.append(
+          "  "
+              + (dq.datasetID.length() == 0 ? "(no dataset)" : dq.datasetID)
+              + ": "
+              + dq.queued.size()
+              + " queued, "
+              + dq.nRunning
+              + " running\n");
+    }
+    if (list.size() > n) sb.append("  (and " + (list.size() - n) + " more datasets)\n");
+    return sb.toString();
+  }
+}
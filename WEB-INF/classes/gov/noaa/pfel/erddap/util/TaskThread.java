@@ -16,7 +16,8 @@ import gov.noaa.pfel.erddap.dataset.EDDTable;
 import io.prometheus.metrics.model.snapshots.Unit;
 
 /**
- * This does a series of tasks.
+ * This does a series of tasks. Several TaskThreads may run at once. Each gets its next task from
+ * EDStatic (see TaskQueue) until there is no task that can start.
  *
  * @author Bob Simons (was bob.simons@noaa.gov, now BobSimons2.00@gmail.com) 2009-05-20
  */
@@ -67,53 +68,64 @@ public class TaskThread extends Thread {
   public static boolean reallyVerbose = false;
 
   // set while running
-  private long lastStartTime;
+  private volatile long lastStartTime;
+  private volatile int currentTask = -1;
 
-  /** The constructor. TaskThread uses task variables in EDStatic. */
-  public TaskThread(int tNextTask) {
-    EDStatic.nextTask.set(tNextTask);
-    EDStatic.lastFinishedTask.set(tNextTask - 1);
-    setName("TaskThread");
+  /**
+   * The constructor. TaskThread uses task variables in EDStatic.
+   *
+   * @param tNumber the number of this TaskThread (0..), for its name
+   */
+  public TaskThread(int tNumber) {
+    setName("TaskThread" + tNumber);
   }
 
   /** This returns elapsed time for the current task (or -1 if no task is running). */
   public long elapsedTime() {
-    return System.currentTimeMillis() - lastStartTime;
+    return currentTask < 0 ? -1 : System.currentTimeMillis() - lastStartTime;
+  }
+
+  /** This returns the number of the current task (or -1 if no task is running). */
+  public int currentTask() {
+    return currentTask;
   }
 
   /** This does any pending tasks, then exits. */
   @Override
   public void run() {
-    while (EDStatic.nextTask.get() < EDStatic.taskList.size()) {
+    while (true) {
+      // check isInterrupted
+      if (isInterrupted()) {
+        String2.log(
+            "%%% "
+                + getName()
+                + " was interrupted at "
+                + Calendar2.getCurrentISODateTimeStringLocalTZ());
+        return;
+      }
+
+      // get the next task
+      lastStartTime = System.currentTimeMillis();
+      int taskNumber = EDStatic.nextTask(this);
+      if (taskNumber < 0) return;
+      currentTask = taskNumber;
+      Object taskOA[];
+      synchronized (EDStatic.taskList) {
+        taskOA = EDStatic.taskList.get(taskNumber);
+      }
+      Integer taskType = (Integer) taskOA[0];
       String taskSummary = null;
       try {
-        // check isInterrupted
-        if (isInterrupted()) {
-          String2.log(
-              "%%% TaskThread was interrupted at "
-                  + Calendar2.getCurrentISODateTimeStringLocalTZ());
-          return;
-        }
-
         // start to do the task
-        // do these things quickly to keep internal consistency
-        lastStartTime = System.currentTimeMillis();
         String2.log(
-            "\n%%% TaskThread started task #"
-                + EDStatic.nextTask.get()
+            "\n%%% "
+                + getName()
+                + " started task #"
+                + taskNumber
                 + " of "
                 + (EDStatic.taskList.size() - 1)
                 + " at "
                 + Calendar2.getCurrentISODateTimeStringLocalTZ());
-        EDStatic.nextTask.incrementAndGet();
-
-        // get the task settings
-        Object taskOA[] = EDStatic.taskList.get(EDStatic.nextTask.get() - 1);
-        if (taskOA == null) {
-          String2.log("task #" + (EDStatic.nextTask.get() - 1) + " was null.");
-          continue;
-        }
-        Integer taskType = (Integer) taskOA[0];
 
         // TASK_MAKE_A_DATAFILE
         if (taskType.equals(TASK_MAKE_A_DATAFILE)) {
@@ -238,18 +250,16 @@ public class TaskThread extends Thread {
           // UNKNOWN taskType
         } else {
           String2.log(
-              "TaskThread error: Unknown taskType="
-                  + taskType
-                  + " for task #"
-                  + (EDStatic.nextTask.get() - 1)
-                  + ".");
+              "TaskThread error: Unknown taskType=" + taskType + " for task #" + taskNumber + ".");
         }
 
         // task finished successfully
         long tElapsedTime = elapsedTime();
         String2.log(
-            "%%% TaskThread task #"
-                + (EDStatic.nextTask.get() - 1)
+            "%%% "
+                + getName()
+                + " task #"
+                + taskNumber
                 + " of "
                 + (EDStatic.taskList.size() - 1)
                 + " succeeded.  elapsedTime = "
@@ -265,15 +275,13 @@ public class TaskThread extends Thread {
         long tElapsedTime = elapsedTime();
         String2.distributeTime(tElapsedTime, EDStatic.taskThreadFailedDistribution24);
         String2.distributeTime(tElapsedTime, EDStatic.taskThreadFailedDistributionTotal);
-        Object taskOA[] = EDStatic.taskList.get(EDStatic.nextTask.get() - 1);
-        Integer taskType = (Integer) taskOA[0];
         EDStatic.metrics
             .taskThreadDuration
             .labelValues(Metrics.ThreadStatus.fail.name(), "" + taskType)
             .observe(Unit.millisToSeconds(tElapsedTime));
         String subject =
             "TaskThread error: task #"
-                + (EDStatic.nextTask.get() - 1)
+                + taskNumber
                 + " failed after "
                 + Calendar2.elapsedTimeString(tElapsedTime);
         String content = taskSummary + "\n" + MustBe.throwableToString(t);
@@ -282,10 +290,8 @@ public class TaskThread extends Thread {
       }
 
       // whether succeeded or failed
-      synchronized (EDStatic.taskList) {
-        EDStatic.lastFinishedTask.set(EDStatic.nextTask.get() - 1);
-        EDStatic.taskList.set(EDStatic.nextTask.get() - 1, null); // throw away the task info (gc)
-      }
+      currentTask = -1;
+      EDStatic.taskFinished(taskNumber);
     }
   }
 }
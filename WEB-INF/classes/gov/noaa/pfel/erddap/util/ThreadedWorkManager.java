@@ -4,34 +4,37 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
 
+/**
+ * This manages the tasks for one request. If nThreads &gt; 1, the tasks are run by the server-wide
+ * SharedWorkExecutor (at most nThreads of this request's tasks at once) and the results are
+ * processed in the order the tasks were added. If this is already running in a SharedWorkExecutor
+ * thread (e.g., EDDGridSideBySide's child requests while GridDataAccessor reads ahead), the tasks
+ * are run by that executor's nested executor (see SharedWorkExecutor.forCurrentThread). Otherwise
+ * (or if this is running in a nested executor's thread), each task is done and processed as it is
+ * added.
+ */
 public class ThreadedWorkManager<T> {
-  ExecutorService executorService = null;
-  final List<FutureTask<T>> taskList = new ArrayList<>();
+  SharedWorkExecutor.Group workGroup = null;
+  final List<Future<T>> taskList = new ArrayList<>();
   final WorkConsumer<T> processor;
 
   int completed = 0;
 
   public ThreadedWorkManager(int nThreads, WorkConsumer<T> processResult) {
-    if (nThreads > 1) {
-      executorService = Executors.newFixedThreadPool(nThreads);
+    // A task waiting for tasks in its own executor could deadlock it (see forCurrentThread).
+    SharedWorkExecutor executor = nThreads > 1 ? SharedWorkExecutor.forCurrentThread() : null;
+    if (executor != null) {
+      workGroup = executor.newGroup(nThreads);
     }
     processor = processResult;
   }
 
   public void addTask(Callable<T> callable) throws Exception, Throwable {
-    // If we're threaded add the work to the thread.
-    if (executorService != null) {
-      FutureTask<T> task = new FutureTask<>(callable);
-      taskList.add(task);
-      if (executorService != null) {
-        @SuppressWarnings("unused")
-        Future<?> unused = executorService.submit(task);
-      }
+    // If we're threaded add the work to the shared executor.
+    if (workGroup != null) {
+      taskList.add(workGroup.submit(callable));
     } else {
       // No threading here, just do the work and process it.
       processor.accept(callable.call());
@@ -43,21 +46,19 @@ public class ThreadedWorkManager<T> {
   }
 
   public T getNextTaskResult() throws InterruptedException, ExecutionException {
-    // get results table from a futureTask
-    // Put null in that position in futureTasks so it can be gc'd after this method
-    FutureTask<T> task = taskList.set(completed++, null);
+    // get results table from a future
+    // Put null in that position in taskList so it can be gc'd after this method
+    Future<T> task = taskList.set(completed++, null);
     return task.get();
   }
 
   public void finishedEnqueing() {
-    if (executorService != null) {
-      executorService.shutdown();
-    }
+    // Nothing to shut down: the shared executor's threads are reused by other requests.
   }
 
   public void forceShutdown() {
-    if (executorService != null) {
-      executorService.shutdownNow();
+    if (workGroup != null) {
+      workGroup.cancel();
     }
   }
 
@@ -0,0 +1,355 @@
+/*
+ * TouchDispatcher Copyright 2026, NOAA.
+ * See the LICENSE.txt file in this file's directory.
+ */
+package gov.noaa.pfel.erddap.util;
+
+import com.cohort.util.MustBe;
+import com.cohort.util.String2;
+import gov.noaa.pfel.coastwatch.util.SSR;
+import io.prometheus.metrics.model.snapshots.Unit;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This touches URLs (e.g., subscription actions and setDatasetFlag URLs) asynchronously, so a slow
+ * or dead host doesn't delay the touches of the other hosts. TouchThread gives each URL from
+ * EDStatic.touchList to touch(), which returns right away.
+ *
+ * <p>All of the touches use one (pooled) HttpClient. At most maxConcurrent touches are in progress
+ * at once, and at most maxPerHost for each host. The other touches wait in their host's queue, and
+ * the hosts with waiting touches take turns (round robin). A touch which fails because of a
+ * connection problem, a timeout, or an HTTP 429 or 5xx response is tried again (up to maxRetries
+ * times) after a delay which doubles each time.
+ *
+ * <p>AWS S3 URLs are touched with SSR.touchUrl (which uses the S3 SDK, so private buckets work) on
+ * this dispatcher's executor, with the same limits and retries.
+ */
+public class TouchDispatcher {
+
+  private static TouchDispatcher instance;
+
+  private final HttpClient client;
+  private final ExecutorService executor; // for the client's async work
+  private final int maxConcurrent;
+  private final int maxPerHost;
+  private final int maxRetries;
+  private final long retryMillis;
+  private final long timeoutMillis;
+
+  // the hosts which have waiting touches and can start one, in the order they get a turn
+  private final ArrayDeque<HostQueue> readyHosts = new ArrayDeque<>();
+  private final HashMap<String, HostQueue> hostQueues = new HashMap<>();
+  private final HashSet<String> waitingUrls = new HashSet<>(); // don't queue a url twice
+  private int nActive = 0;
+  private boolean isShutdown = false;
+
+  private static class Touch {
+    final String url;
+    final String host;
+    int attempt = 0; // 0 = the first try
+    long startMillis;
+
+    Touch(String url, String host) {
+      this.url = url;
+      this.host = host;
+    }
+  }
+
+  /** The touches for one host. */
+  private static class HostQueue {
+    final String host;
+    final ArrayDeque<Touch> waiting = new ArrayDeque<>();
+    int nActive = 0;
+    boolean isReady = false; // i.e., in readyHosts
+
+    HostQueue(String host) {
+      this.host = host;
+    }
+  }
+
+  /**
+   * This returns the server-wide instance, making it (based on EDStatic.config) if needed.
+   *
+   * @return the server-wide instance
+   */
+  public static synchronized TouchDispatcher get() {
+    if (instance == null) {
+      EDConfig config = EDStatic.config;
+      instance =
+          config == null
+              ? new TouchDispatcher(8, 2, 3, 5000, TouchThread.TIMEOUT_MILLIS)
+              : new TouchDispatcher(
+                  config.touchMaxConcurrent,
+                  config.touchMaxPerHost,
+                  config.touchMaxRetries,
+                  5000,
+                  TouchThread.TIMEOUT_MILLIS);
+    }
+    return instance;
+  }
+
+  /** This shuts down the server-wide instance (if any), abandoning the unfinished touches. */
+  public static synchronized void shutdown() {
+    if (instance != null) {
+      instance.close();
+      instance = null;
+    }
+  }
+
+  /**
+   * The constructor.
+   *
+   * @param maxConcurrent the max number of touches in progress at once
+   * @param maxPerHost the max number of touches of one host in progress at once
+   * @param maxRetries the max number of times a failed touch is tried again
+   * @param retryMillis the delay before the first retry (it doubles for each later retry)
+   * @param timeoutMillis the timeout for connecting and for getting the response
+   */
+  public TouchDispatcher(
+      int maxConcurrent, int maxPerHost, int maxRetries, long retryMillis, long timeoutMillis) {
+    this.maxConcurrent = Math.max(1, maxConcurrent);
+    this.maxPerHost = Math.max(1, maxPerHost);
+    this.maxRetries = Math.max(0, maxRetries);
+    this.retryMillis = retryMillis;
+    this.timeoutMillis = timeoutMillis;
+    executor =
+        Executors.newCachedThreadPool(
+            r -> {
+              Thread thread = new Thread(r, "TouchDispatcher");
+              thread.setDaemon(true);
+              return thread;
+            });
+    client =
+        HttpClient.newBuilder()
+            .executor(executor)
+            .connectTimeout(Duration.ofMillis(timeoutMillis))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+  }
+
+  /**
+   * This adds a touch of a URL to its host's queue and returns right away.
+   *
+   * @param url the URL
+   * @return false if the URL is already waiting to be touched (so this was ignored and counted as
+   *     finished)
+   */
+  public boolean touch(String url) {
+    String host;
+    try {
+      URI uri = URI.create(url);
+      host = uri.getHost() == null ? "" : uri.getHost();
+      if (uri.getPort() != -1) host += ":" + uri.getPort();
+    } catch (Exception e) {
+      String2.log(
+          "%%% TouchThread error: invalid url=" + url + "\n" + MustBe.throwableToString(e));
+      EDStatic.lastFinishedTouch.incrementAndGet();
+      return true;
+    }
+    synchronized (this) {
+      if (isShutdown) return false;
+      if (!waitingUrls.add(url)) {
+        EDStatic.lastFinishedTouch.incrementAndGet();
+        return false;
+      }
+      enqueue(new Touch(url, host));
+    }
+    dispatch();
+    return true;
+  }
+
+  /** This returns the number of touches in progress. */
+  public synchronized int getNActive() {
+    return nActive;
+  }
+
+  /** This returns the number of touches waiting to be started (but not waiting to be retried). */
+  public synchronized int getNWaiting() {
+    return waitingUrls.size();
+  }
+
+  /** This stops accepting touches and abandons the unfinished touches. */
+  void close() {
+    synchronized (this) {
+      isShutdown = true;
+      hostQueues.clear();
+      readyHosts.clear();
+      waitingUrls.clear();
+    }
+    client.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  // call this while synchronized
+  private void enqueue(Touch touch) {
+    HostQueue hq = hostQueues.computeIfAbsent(touch.host, HostQueue::new);
+    hq.waiting.add(touch);
+    updateReady(hq);
+  }
+
+  // call this while synchronized
+  private void updateReady(HostQueue hq) {
+    if (!hq.isReady && !hq.waiting.isEmpty() && hq.nActive < maxPerHost) {
+      hq.isReady = true;
+      readyHosts.add(hq);
+    }
+  }
+
+  /** This starts waiting touches while there are free slots. */
+  private void dispatch() {
+    while (true) {
+      Touch touch;
+      synchronized (this) {
+        if (isShutdown || nActive >= maxConcurrent) return;
+        HostQueue hq = readyHosts.poll();
+        if (hq == null) return;
+        hq.isReady = false;
+        touch = hq.waiting.remove();
+        waitingUrls.remove(touch.url);
+        hq.nActive++;
+        nActive++;
+        updateReady(hq); // it goes to the end of the line
+        touch.startMillis = System.currentTimeMillis();
+      }
+      start(touch);
+    }
+  }
+
+  // the futures are ignored because finished() handles completion and errors
+  @SuppressWarnings("FutureReturnValueIgnored")
+  private void start(Touch touch) {
+    try {
+      if (String2.isAwsS3Url(touch.url)) {
+        CompletableFuture.runAsync(
+                () -> {
+                  try {
+                    SSR.touchUrl(touch.url, (int) Math.min(timeoutMillis, Integer.MAX_VALUE), true);
+                  } catch (Exception e) {
+                    throw new CompletionException(e);
+                  }
+                },
+                executor)
+            .whenComplete((v, t) -> finished(touch, null, t));
+        return;
+      }
+      HttpRequest request =
+          HttpRequest.newBuilder(URI.create(touch.url))
+              .timeout(Duration.ofMillis(timeoutMillis))
+              .header("User-Agent", "Mozilla/5.0 ERDDAP/" + SSR.erddapVersion)
+              .GET()
+              .build();
+      client
+          .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+          .whenComplete((response, t) -> finished(touch, response, t));
+    } catch (Throwable t) {
+      finished(touch, null, t);
+    }
+  }
+
+  private void finished(Touch touch, HttpResponse<Void> response, Throwable t) {
+    long elapsedTime = System.currentTimeMillis() - touch.startMillis;
+    int status = response == null ? -1 : response.statusCode();
+    boolean success = t == null && status < 400;
+    boolean retry =
+        !success
+            && touch.attempt < maxRetries
+            && (t instanceof IOException
+                || (t != null && t.getCause() instanceof IOException)
+                || status == 429
+                || status >= 500);
+    if (EDStatic.metrics != null) {
+      EDStatic.metrics
+          .touchHostDuration
+          .labelValues(
+              touch.host,
+              success ? Metrics.ThreadStatus.success.name() : Metrics.ThreadStatus.fail.name())
+          .observe(Unit.millisToSeconds(elapsedTime));
+      if (retry) EDStatic.metrics.touchRetries.labelValues(touch.host).inc();
+    }
+
+    if (retry) {
+      long delay = retryMillis << Math.min(touch.attempt, 10);
+      touch.attempt++;
+      String2.log(
+          "%%% TouchThread touch failed (attempt #"
+              + touch.attempt
+              + ", "
+              + (t == null ? "HTTP status code=" + status : t.toString())
+              + "), so it will be tried again in "
+              + delay
+              + "ms. url="
+              + touch.url);
+      CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS, executor)
+          .execute(
+              () -> {
+                synchronized (this) {
+                  if (isShutdown) return;
+                  if (!waitingUrls.add(touch.url)) { // it was added again, so it is waiting
+                    EDStatic.lastFinishedTouch.incrementAndGet();
+                    return;
+                  }
+                  enqueue(touch);
+                }
+                dispatch();
+              });
+    } else if (success) {
+      String2.log(
+          "%%% TouchThread touch succeeded.  elapsedTime="
+              + elapsedTime
+              + "ms"
+              + (elapsedTime > 10000 ? " (>10s!)" : "")
+              + " url="
+              + touch.url);
+      String2.distributeTime(elapsedTime, EDStatic.touchThreadSucceededDistribution24);
+      String2.distributeTime(elapsedTime, EDStatic.touchThreadSucceededDistributionTotal);
+      if (EDStatic.metrics != null)
+        EDStatic.metrics
+            .touchThreadDuration
+            .labelValues(Metrics.ThreadStatus.success.name())
+            .observe(Unit.millisToSeconds(elapsedTime));
+    } else {
+      String2.log(
+          "%%% TouchThread error: touch failed after "
+              + elapsedTime
+              + "ms"
+              + (elapsedTime > 10000 ? " (>10s!)" : "")
+              + (touch.attempt > 0 ? " and " + touch.attempt + " retries" : "")
+              + " url="
+              + touch.url
+              + "\n"
+              + (t == null ? "HTTP status code=" + status : MustBe.throwableToString(t)));
+      String2.distributeTime(elapsedTime, EDStatic.touchThreadFailedDistribution24);
+      String2.distributeTime(elapsedTime, EDStatic.touchThreadFailedDistributionTotal);
+      if (EDStatic.metrics != null)
+        EDStatic.metrics
+            .touchThreadDuration
+            .labelValues(Metrics.ThreadStatus.fail.name())
+            .observe(Unit.millisToSeconds(elapsedTime));
+    }
+    if (!retry) EDStatic.lastFinishedTouch.incrementAndGet();
+
+    synchronized (this) {
+      nActive--;
+      HostQueue hq = hostQueues.get(touch.host);
+      if (hq != null) {
+        hq.nActive--;
+        if (hq.nActive == 0 && hq.waiting.isEmpty()) hostQueues.remove(touch.host);
+        else updateReady(hq);
+      }
+    }
+    dispatch();
+  }
+}
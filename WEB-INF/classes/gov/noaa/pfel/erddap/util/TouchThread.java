@@ -8,11 +8,10 @@ import com.cohort.util.Calendar2;
 import com.cohort.util.Math2;
 import com.cohort.util.MustBe;
 import com.cohort.util.String2;
-import gov.noaa.pfel.coastwatch.util.SSR;
-import io.prometheus.metrics.model.snapshots.Unit;
 
 /**
- * This does a series of touches.
+ * This does a series of touches. It gives each URL in EDStatic.touchList to TouchDispatcher (which
+ * does the touches asynchronously), so a slow touch doesn't delay the other touches.
  *
  * @author Bob Simons (was bob.simons@noaa.gov, now BobSimons2.00@gmail.com) 2022-08-27
  */
@@ -30,16 +29,18 @@ public class TouchThread extends Thread {
   public static final int sleepMillis = 500;
 
   // set while running
-  private long lastStartTime = -1; // for 1 touch
+  private long lastStartTime = -1; // for handing 1 touch to TouchDispatcher
 
   /** The constructor. TouchThread uses touch variables in EDStatic. */
   public TouchThread(int tNextTouch) {
     EDStatic.nextTouch.set(tNextTouch);
-    EDStatic.lastFinishedTouch.set(tNextTouch - 1);
     setName("TouchThread");
   }
 
-  /** This returns elapsed time for the current touch (or -1 if no touch is running). */
+  /**
+   * This returns elapsed time for handing the current touch to TouchDispatcher (or -1 if no touch
+   * is being handed off).
+   */
   public long elapsedTime() {
     return lastStartTime == -1 ? -1 : System.currentTimeMillis() - lastStartTime;
   }
@@ -75,72 +76,38 @@ public class TouchThread extends Thread {
           return; // only return (stop thread) if interrupted
         }
 
-        // start to do the touch
         // do these things quickly to keep internal consistency
-        EDStatic.nextTouch.incrementAndGet();
-        url = EDStatic.touchList.getNext();
         lastStartTime = System.currentTimeMillis();
-        String2.log(
-            "%%% TouchThread started touch #"
-                + EDStatic.nextTouch.get()
-                + " of "
-                + (EDStatic.touchList.size() - 1)
-                + " at "
-                + Calendar2.getCurrentISODateTimeStringLocalTZ()
-                + " url="
-                + url);
-
-        // do the touch
-        SSR.touchUrl(url, TIMEOUT_MILLIS, true); // handleS3ViaSDK=false
-
-        // touch finished successfully
-        long tElapsedTime = elapsedTime();
-        String2.log(
-            "%%% TouchThread touch #"
-                + (EDStatic.nextTouch.get() - 1)
-                + " of "
-                + (EDStatic.touchList.size() - 1)
-                + " succeeded.  elapsedTime="
-                + tElapsedTime
-                + "ms"
-                + (tElapsedTime > 10000 ? " (>10s!)" : ""));
-        String2.distributeTime(tElapsedTime, EDStatic.touchThreadSucceededDistribution24);
-        String2.distributeTime(tElapsedTime, EDStatic.touchThreadSucceededDistributionTotal);
-        EDStatic.metrics
-            .touchThreadDuration
-            .labelValues(Metrics.ThreadStatus.success.name())
-            .observe(Unit.millisToSeconds(tElapsedTime));
-
-      } catch (InterruptedException e) {
-        String2.log("%%% TouchThread was interrupted.");
-        return; // only return (stop thread) if interrupted
+        synchronized (EDStatic.touchList) {
+          url = EDStatic.touchList.getNext();
+          EDStatic.nextTouch.incrementAndGet();
+        }
+        if (reallyVerbose)
+          String2.log(
+              "%%% TouchThread queued touch #"
+                  + (EDStatic.nextTouch.get() - 1)
+                  + " of "
+                  + (EDStatic.touchList.size() - 1)
+                  + " at "
+                  + Calendar2.getCurrentISODateTimeStringLocalTZ()
+                  + " url="
+                  + url);
+
+        // TouchDispatcher does the touch (and counts it as finished)
+        TouchDispatcher.get().touch(url);
 
       } catch (Exception e) {
-        long tElapsedTime = elapsedTime();
         String2.log(
             "%%% TouchThread error: touch #"
                 + (EDStatic.nextTouch.get() - 1)
-                + " failed after "
-                + tElapsedTime
-                + "ms"
-                + (tElapsedTime > 10000 ? " (>10s!)" : "")
                 + " url="
                 + url
                 + "\n"
                 + MustBe.throwableToString(e));
-        String2.distributeTime(tElapsedTime, EDStatic.touchThreadFailedDistribution24);
-        String2.distributeTime(tElapsedTime, EDStatic.touchThreadFailedDistributionTotal);
-        EDStatic.metrics
-            .touchThreadDuration
-            .labelValues(Metrics.ThreadStatus.fail.name())
-            .observe(Unit.millisToSeconds(tElapsedTime));
+        EDStatic.lastFinishedTouch.incrementAndGet();
 
       } finally {
-        // whether succeeded or failed
         lastStartTime = -1;
-        synchronized (EDStatic.touchList) {
-          EDStatic.lastFinishedTouch.set(EDStatic.nextTouch.get() - 1);
-        }
       }
     }
   }
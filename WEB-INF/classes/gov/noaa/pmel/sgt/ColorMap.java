@@ -57,6 +57,17 @@ public abstract class ColorMap implements Cloneable, PropertyChangeListener, Ser
    */
   public abstract Color getColor(double val);
 
+  /**
+   * Get the ARGB value of the <code>Color</code> for a value. Subclasses can override this to avoid
+   * making a <code>Color</code> object for each value (e.g., when filling an image raster).
+   *
+   * @param val Value
+   * @return the ARGB value, the same as <code>getColor(val).getRGB()</code>
+   */
+  public int getRGB(double val) {
+    return getColor(val).getRGB();
+  }
+
   /**
    * Get the current user range for the <code>Transform</code>s or <code>ContourLevel</code>.
    *
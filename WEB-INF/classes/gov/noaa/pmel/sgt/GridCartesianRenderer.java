@@ -20,11 +20,20 @@ import gov.noaa.pmel.sgt.dm.SGTGrid;
 import gov.noaa.pmel.util.Debug;
 import gov.noaa.pmel.util.GeoDate;
 import gov.noaa.pmel.util.Range2D;
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsDevice;
 import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
 import java.beans.PropertyChangeEvent;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.stream.IntStream;
 
 /**
  * Produces a cartesian plot from a <code>SGTGrid</code> object.
@@ -57,6 +66,14 @@ public class GridCartesianRenderer extends CartesianRenderer {
    */
   private Contour con_ = null;
 
+  /** drawRasterImage fills rasters with at least this many pixels in parallel. */
+  static final int PARALLEL_MIN_PIXELS = 1 << 18;
+
+  /** drawRasterImage won't make rasters with more pixels than this. */
+  private static final long MAX_RASTER_PIXELS = 1L << 26;
+
+  private static final int RASTER_THREADS = Runtime.getRuntime().availableProcessors();
+
   /** Bob Simons added this to avoid memory leak problems. */
   @Override
   public void releaseResources() throws Exception {
@@ -235,19 +252,119 @@ public class GridCartesianRenderer extends CartesianRenderer {
               + "\n"
               + ">>yp[]="
               + String2.toCSSVString(yp));
+    ColorMap colorMap = attr_.getColorMap();
+    if (drawRasterImage(g, xp, yp, xSize, ySize, gValues, colorMap)) return;
     for (i = 0; i < xSize; i++) {
       for (j = 0; j < ySize; j++) {
         val = gValues[count++];
         if (!Double.isNaN(val)) {
           // if (count<20) String2.log(">>val=" + val + " color=0x" +
           // Integer.toHexString(color.getRGB()));
-          g.setColor(attr_.getColorMap().getColor(val));
+          g.setColor(colorMap.getColor(val));
           drawRect(g, xp[i], yp[j], xp[i + 1], yp[j + 1]);
         }
       }
     }
   }
 
+  /**
+   * This draws the grid's cells as one image, which is much faster than drawRaster's cell-by-cell
+   * fillRect calls for big grids (e.g., WMS tiles and .png maps). If g draws into an image (not,
+   * e.g., a PDF) in a way that makes this pixel-identical (no scaling or rotation, an opaque SrcOver
+   * composite, only opaque colors), this fills an ARGB raster (in horizontal bands, in parallel, if
+   * there are at least PARALLEL_MIN_PIXELS pixels) and draws it with one drawImage call.
+   *
+   * @param xp the x device coordinates of the cell edges (xSize + 1 values)
+   * @param yp the y device coordinates of the cell edges (ySize + 1 values)
+   * @param gValues the grid's values (x major, y minor). NaN cells aren't drawn.
+   * @return true if the grid was drawn. If false, nothing was drawn and the caller must draw the
+   *     cells.
+   */
+  static boolean drawRasterImage(
+      Graphics g, int[] xp, int[] yp, int xSize, int ySize, double[] gValues, ColorMap colorMap) {
+    if (!(g instanceof Graphics2D g2)
+        || g2.getDeviceConfiguration().getDevice().getType() != GraphicsDevice.TYPE_IMAGE_BUFFER
+        || !g2.getClass().getName().equals("sun.java2d.SunGraphics2D") // e.g., not iText's PDF
+        || !(g2.getDeviceConfiguration().getColorModel() instanceof DirectColorModel)) return false;
+    AffineTransform transform = g2.getTransform();
+    if ((transform.getType() & ~AffineTransform.TYPE_TRANSLATION) != 0
+        || transform.getTranslateX() != Math.rint(transform.getTranslateX())
+        || transform.getTranslateY() != Math.rint(transform.getTranslateY())) return false;
+    if (!(g2.getComposite() instanceof AlphaComposite composite)
+        || composite.getRule() != AlphaComposite.SRC_OVER
+        || composite.getAlpha() != 1f) return false;
+    if (xp.length <= xSize || yp.length <= ySize || gValues.length < xSize * ySize) return false;
+
+    // the area to be drawn: the cells' bounds, limited to the clip
+    int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE;
+    int minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+    for (int i = 0; i <= xSize; i++) {
+      minX = Math.min(minX, xp[i]);
+      maxX = Math.max(maxX, xp[i]);
+    }
+    for (int j = 0; j <= ySize; j++) {
+      minY = Math.min(minY, yp[j]);
+      maxY = Math.max(maxY, yp[j]);
+    }
+    Rectangle area = new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    Rectangle clip = g2.getClipBounds();
+    if (clip != null) area = area.intersection(clip);
+    if (area.isEmpty()) return false; // let fillRect deal with it
+    if ((long) area.width * area.height > MAX_RASTER_PIXELS) return false;
+
+    // get the cells' colors (0 = NaN = don't draw)
+    int nCells = xSize * ySize;
+    int[] rgb = new int[nCells];
+    boolean parallel = (long) area.width * area.height >= PARALLEL_MIN_PIXELS;
+    int nColumnChunks = parallel ? Math.min(xSize, 4 * RASTER_THREADS) : 1;
+    boolean[] allOpaque = {true};
+    IntStream columnChunks = IntStream.range(0, nColumnChunks);
+    (parallel ? columnChunks.parallel() : columnChunks)
+        .forEach(
+            chunk -> {
+              int i0 = (int) ((long) xSize * chunk / nColumnChunks);
+              int i1 = (int) ((long) xSize * (chunk + 1) / nColumnChunks);
+              for (int po = i0 * ySize; po < i1 * ySize; po++) {
+                double val = gValues[po];
+                if (Double.isNaN(val)) continue;
+                int c = colorMap.getRGB(val);
+                if (c >>> 24 != 0xFF) allOpaque[0] = false;
+                rgb[po] = c;
+              }
+            });
+    if (!allOpaque[0]) return false; // a translucent color: let fillRect blend it
+
+    // fill the raster (in horizontal bands), drawing the cells in the same order as drawRaster
+    BufferedImage image = new BufferedImage(area.width, area.height, BufferedImage.TYPE_INT_ARGB);
+    int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    int nBands = parallel ? Math.min(area.height, 4 * RASTER_THREADS) : 1;
+    final Rectangle fArea = area;
+    IntStream bands = IntStream.range(0, nBands);
+    (parallel ? bands.parallel() : bands)
+        .forEach(
+            band -> {
+              int bandY0 = fArea.y + (int) ((long) fArea.height * band / nBands);
+              int bandY1 = fArea.y + (int) ((long) fArea.height * (band + 1) / nBands);
+              for (int i = 0; i < xSize; i++) {
+                int x0 = Math.max(fArea.x, Math.min(xp[i], xp[i + 1]));
+                int x1 = Math.min(fArea.x + fArea.width, Math.max(xp[i], xp[i + 1]));
+                if (x0 >= x1) continue;
+                for (int j = 0; j < ySize; j++) {
+                  int c = rgb[i * ySize + j];
+                  if (c == 0) continue;
+                  int y0 = Math.max(bandY0, Math.min(yp[j], yp[j + 1]));
+                  int y1 = Math.min(bandY1, Math.max(yp[j], yp[j + 1]));
+                  for (int y = y0; y < y1; y++) {
+                    int rowStart = (y - fArea.y) * fArea.width - fArea.x;
+                    Arrays.fill(pixels, rowStart + x0, rowStart + x1, c);
+                  }
+                }
+              }
+            });
+    g2.drawImage(image, area.x, area.y, null);
+    return true;
+  }
+
   /**
    * Get the <code>Attribute</code> associated with the <code>SGTGrid</code> data.
    *
@@ -258,7 +375,7 @@ public class GridCartesianRenderer extends CartesianRenderer {
     return attr_;
   }
 
-  private void drawRect(Graphics g, int x1, int y1, int x2, int y2) {
+  private static void drawRect(Graphics g, int x1, int y1, int x2, int y2) {
     int x, y, width, height;
     if (x1 < x2) {
       x = x1;
@@ -0,0 +1,71 @@
+package com.cohort.array;
+
+import java.util.BitSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This compares PrimitiveArray.applyConstraint (which uses the ConstraintKernels) with
+ * applyConstraintGeneric (the old getXxx() + testValueOpValue code) for each numeric PAType.
+ *
+ * <p>This isn't a unit test. Run it with main() (after mvn test-compile), e.g., from your IDE.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplyConstraintBenchmark {
+
+  @Param({"byte", "short", "int", "long", "float", "double"})
+  public String paType;
+
+  @Param({"<=", "="})
+  public String op;
+
+  private static final int N_ROWS = 100000;
+  private PrimitiveArray pa;
+  private BitSet allKeep;
+  private String value2;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(17);
+    pa = PrimitiveArray.factory(PAType.fromCohortString(paType), N_ROWS, false);
+    for (int row = 0; row < N_ROWS; row++) pa.addInt(random.nextInt(100));
+    pa.setMaxIsMV(true);
+    allKeep = new BitSet();
+    allKeep.set(0, N_ROWS);
+    value2 = "50";
+  }
+
+  @Benchmark
+  public int kernel() {
+    return pa.applyConstraint(false, (BitSet) allKeep.clone(), op, value2);
+  }
+
+  @Benchmark
+  public int generic() {
+    return pa.applyConstraintGeneric(false, (BitSet) allKeep.clone(), op, value2);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(
+            new OptionsBuilder().include(ApplyConstraintBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
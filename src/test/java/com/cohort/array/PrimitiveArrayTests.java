@@ -1487,4 +1487,40 @@ class PrimitiveArrayTests {
             + (System.currentTimeMillis() - tTime)
             + " (Java 1.8 31ms, 1.7M4700 32ms, 2012-06-29: 282 ms)");
   }
+
+  /** This tests that the applyConstraint kernels get the same results as the generic code. */
+  @org.junit.jupiter.api.Test
+  void testApplyConstraintKernels() {
+    String2.log("*** PrimitiveArray.testApplyConstraintKernels");
+    String values[] = {
+      "-3", "0", "1", "2", "2.0000000001", "1.9999999", "126", "127", "32767", "2147483647",
+      "9223372036854775807", "1e20", "-1e20", "NaN", "Infinity"
+    };
+    String ops[] = {"=", "!=", "<=", ">=", "<", ">"};
+    for (PAType paType :
+        new PAType[] {
+          PAType.BYTE, PAType.SHORT, PAType.INT, PAType.LONG, PAType.FLOAT, PAType.DOUBLE
+        }) {
+      for (boolean maxIsMV : new boolean[] {false, true}) {
+        PrimitiveArray pa = PrimitiveArray.factory(paType, values.length, false);
+        for (String value : values) pa.addString(value);
+        pa.setMaxIsMV(maxIsMV);
+        for (boolean morePrecise : new boolean[] {false, true}) {
+          for (String op : ops) {
+            for (String value2 : values) {
+              String msg = paType + " maxIsMV=" + maxIsMV + " " + morePrecise + " " + op + value2;
+              for (int keepEvery = 1; keepEvery <= 2; keepEvery++) {
+                BitSet keep = new BitSet();
+                for (int row = 0; row < pa.size(); row += keepEvery) keep.set(row);
+                BitSet expectedKeep = (BitSet) keep.clone();
+                int expected = pa.applyConstraintGeneric(morePrecise, expectedKeep, op, value2);
+                Test.ensureEqual(pa.applyConstraint(morePrecise, keep, op, value2), expected, msg);
+                Test.ensureEqual(keep.toString(), expectedKeep.toString(), msg);
+              }
+            }
+          }
+        }
+      }
+    }
+  }
 }
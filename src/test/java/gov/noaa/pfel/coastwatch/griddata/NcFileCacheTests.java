@@ -0,0 +1,115 @@
+package gov.noaa.pfel.coastwatch.griddata;
+
+import com.cohort.array.IntArray;
+import com.cohort.util.File2;
+import com.cohort.util.String2;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import java.io.File;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import testDataset.Initialization;
+import ucar.nc2.NetcdfFile;
+
+class NcFileCacheTests {
+  @TempDir private static Path TEMP_DIR;
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  private static void writeFile(String fullName, int value) throws Exception {
+    Table table = new Table();
+    IntArray ia = new IntArray();
+    ia.add(value);
+    table.addColumn("value", ia);
+    table.saveAsFlatNc(fullName, "row");
+  }
+
+  private static int readValue(String fullName) throws Exception {
+    try (NcFileCache.Handle handle = NcFileCache.acquire(fullName)) {
+      NetcdfFile ncFile = handle.file();
+      int value = ncFile.findVariable("value").read().getInt(0);
+      handle.finished();
+      return value;
+    }
+  }
+
+  /** This tests that files are reused, limited, and reopened when they change. */
+  @org.junit.jupiter.api.Test
+  void testCache() throws Exception {
+    if (String2.OSIsWindows) return; // files are never cached on Windows
+    int oNcFileCacheSize = EDStatic.config.ncFileCacheSize;
+    String dir = TEMP_DIR.toAbsolutePath().toString() + "/";
+    try {
+      EDStatic.config.ncFileCacheSize = 2;
+      NcFileCache.clear();
+      for (int i = 0; i < 3; i++) writeFile(dir + "f" + i + ".nc", i);
+
+      // the file is returned to the cache and reused
+      Test.ensureEqual(readValue(dir + "f0.nc"), 0, "");
+      Test.ensureEqual(NcFileCache.getNIdle(), 1, "");
+      NetcdfFile first;
+      try (NcFileCache.Handle handle = NcFileCache.acquire(dir + "f0.nc")) {
+        first = handle.file();
+        Test.ensureEqual(NcFileCache.getNIdle(), 0, "");
+
+        // a file in use isn't shared, so a second handle gets another NetcdfFile
+        try (NcFileCache.Handle handle2 = NcFileCache.acquire(dir + "f0.nc")) {
+          Test.ensureTrue(handle2.file() != first, "");
+          handle2.finished();
+        }
+        handle.finished();
+      }
+      try (NcFileCache.Handle handle = NcFileCache.acquire(dir + "f0.nc")) {
+        Test.ensureTrue(handle.file() == first, "");
+        handle.finished();
+      }
+
+      // the number of idle files is limited
+      Test.ensureEqual(readValue(dir + "f1.nc"), 1, "");
+      Test.ensureEqual(readValue(dir + "f2.nc"), 2, "");
+      Test.ensureEqual(NcFileCache.getNIdle(), 2, "");
+
+      // a changed file is reopened
+      writeFile(dir + "f2.nc", 22);
+      File2.setLastModified(dir + "f2.nc", new File(dir + "f2.nc").lastModified() + 2000);
+      Test.ensureEqual(readValue(dir + "f2.nc"), 22, "");
+
+      // a replaced file with the same lastModified (but a different size) is reopened
+      long lastModified = new File(dir + "f2.nc").lastModified();
+      Table table = new Table();
+      table.addColumn("value", new IntArray(new int[] {222, 0, 0}));
+      table.saveAsFlatNc(dir + "f2.nc", "row");
+      File2.setLastModified(dir + "f2.nc", lastModified);
+      Test.ensureEqual(readValue(dir + "f2.nc"), 222, "");
+
+      // a file which wasn't read successfully isn't returned to the cache
+      NcFileCache.clear();
+      try (NcFileCache.Handle handle = NcFileCache.acquire(dir + "f0.nc")) {
+        first = handle.file();
+        try {
+          handle.file().findVariable("noSuchVariable").read();
+          handle.finished();
+        } catch (NullPointerException e) {
+          // expected
+        }
+      }
+      Test.ensureEqual(NcFileCache.getNIdle(), 0, "");
+      try (NcFileCache.Handle handle = NcFileCache.acquire(dir + "f0.nc")) {
+        Test.ensureTrue(handle.file() != first, "");
+        handle.finished();
+      }
+      Test.ensureEqual(NcFileCache.getNIdle(), 1, "");
+
+      NcFileCache.clear();
+      Test.ensureEqual(NcFileCache.getNIdle(), 0, "");
+    } finally {
+      NcFileCache.clear();
+      EDStatic.config.ncFileCacheSize = oNcFileCacheSize;
+    }
+  }
+}
@@ -305,4 +305,130 @@ class TableParquetTests {
         "int_col type rt");
     Test.ensureTrue(table2.getColumn("bool_col") instanceof ByteArray, "bool_col type rt");
   }
+
+  @org.junit.jupiter.api.Test
+  void testParquetColumnsAndRowGroups() throws Exception {
+    String fileName = tempDir.resolve("testRowGroups.parquet").toString();
+    String schemaString =
+        "message test {\n"
+            + "  required int32 station;\n"
+            + "  required double time;\n"
+            + "  optional binary name (UTF8);\n"
+            + "}";
+    MessageType schema = MessageTypeParser.parseMessageType(schemaString);
+
+    // write a file with several small row groups
+    int nRows = 10000;
+    try (ParquetWriter<Group> writer =
+        ExampleParquetWriter.builder(new LocalOutputFile(java.nio.file.Path.of(fileName)))
+            .withType(schema)
+            .withConf(new Configuration())
+            .withRowGroupSize(4096)
+            .build()) {
+      SimpleGroupFactory factory = new SimpleGroupFactory(schema);
+      for (int row = 0; row < nRows; row++) {
+        Group group = factory.newGroup().append("station", row / 100).append("time", row * 10.0);
+        if (row % 3 != 0) group.append("name", "n" + row);
+        writer.write(group);
+      }
+    }
+    int nRowGroups;
+    try (ParquetFileReader fileReader =
+        ParquetFileReader.open(new LocalInputFile(java.nio.file.Path.of(fileName)))) {
+      nRowGroups = fileReader.getRowGroups().size();
+    }
+    Test.ensureTrue(nRowGroups > 1, "nRowGroups=" + nRowGroups);
+
+    // just read some columns, as Strings
+    Table table = new Table();
+    table.readParquet(fileName, StringArray.fromCSV("time,name"), null, false);
+    Test.ensureEqual(table.getColumnNamesCSVString(), "time,name", "");
+    Test.ensureEqual(table.nRows(), nRows, "");
+    Test.ensureEqual(table.getStringData(0, 1234), "12340.0", "");
+    Test.ensureEqual(table.getStringData(1, 1234), "n1234", "");
+    Test.ensureEqual(table.getStringData(1, 1233), "", ""); // null
+
+    // just read some columns, with types
+    table.readParquet(
+        fileName, StringArray.fromCSV("name,station"), new String[] {"String", "short"}, false);
+    Test.ensureEqual(table.getColumnNamesCSVString(), "name,station", "");
+    Test.ensureEqual(table.nRows(), nRows, "");
+    Test.ensureTrue(table.getColumn(1) instanceof com.cohort.array.ShortArray, "");
+    Test.ensureEqual(table.getIntData(1, 1234), 12, "");
+
+    // skip all the row groups
+    table.readParquet(fileName, null, null, false, rowGroup -> false);
+    Test.ensureEqual(table.nRows(), 0, "");
+
+    // skip the row groups which don't have station>=95
+    StringArray colNames = StringArray.fromCSV("station,time");
+    String colTypes[] = {"int", "double"};
+    table.readParquet(
+        fileName,
+        colNames,
+        colTypes,
+        false,
+        gov.noaa.pfel.erddap.dataset.EDDTableFromParquetFiles.rowGroupTest(
+            colNames,
+            colTypes,
+            StringArray.fromCSV("station"),
+            StringArray.fromCSV(">="),
+            StringArray.fromCSV("95")));
+    int nRowsRead = table.nRows();
+    Test.ensureTrue(nRowsRead < nRows, "nRowsRead=" + nRowsRead);
+    Test.ensureEqual(table.getIntData(0, nRowsRead - 1), 99, "");
+    Test.ensureEqual(table.getDoubleData(1, nRowsRead - 1), (nRows - 1) * 10.0, "");
+    Test.ensureTrue(table.getIntData(0, nRowsRead - 500) <= 95, "");
+  }
+
+  /** This tests that the rows read don't depend on which columns are read. */
+  @org.junit.jupiter.api.Test
+  void testParquetNullRows() throws Exception {
+    String fileName = tempDir.resolve("testNullRows.parquet").toString();
+    String schemaString =
+        "message test {\n"
+            + "  optional int32 station;\n"
+            + "  optional binary name (UTF8);\n"
+            + "  optional double value;\n"
+            + "}";
+    MessageType schema = MessageTypeParser.parseMessageType(schemaString);
+
+    // name is often null when station isn't, and every 5th row is all null
+    int nRows = 1000;
+    try (ParquetWriter<Group> writer =
+        ExampleParquetWriter.builder(new LocalOutputFile(java.nio.file.Path.of(fileName)))
+            .withType(schema)
+            .withConf(new Configuration())
+            .withRowGroupSize(4096)
+            .build()) {
+      SimpleGroupFactory factory = new SimpleGroupFactory(schema);
+      for (int row = 0; row < nRows; row++) {
+        Group group = factory.newGroup();
+        if (row % 5 != 0) {
+          group.append("station", row);
+          if (row % 3 == 0) group.append("name", "n" + row);
+          if (row % 7 == 0) group.append("value", row / 10.0);
+        }
+        writer.write(group);
+      }
+    }
+    int nNonNullRows = nRows - nRows / 5;
+
+    Table table = new Table();
+    table.readParquet(fileName, null, null, false);
+    Test.ensureEqual(table.nRows(), nNonNullRows, "");
+
+    // just read the column which is usually null, as Strings and with a type
+    table.readParquet(fileName, StringArray.fromCSV("name"), null, false);
+    Test.ensureEqual(table.getColumnNamesCSVString(), "name", "");
+    Test.ensureEqual(table.nRows(), nNonNullRows, "");
+    Test.ensureEqual(table.getStringData(0, 0), "", ""); // row 1
+    Test.ensureEqual(table.getStringData(0, 2), "n3", "");
+    table.readParquet(
+        fileName, StringArray.fromCSV("value,name"), new String[] {"double", "String"}, false);
+    Test.ensureEqual(table.nRows(), nNonNullRows, "");
+    Test.ensureEqual(table.getDoubleData(0, 5), 0.7, ""); // row 7
+    Test.ensureEqual(table.getStringData(1, 5), "", "");
+    Test.ensureTrue(Double.isNaN(table.getDoubleData(0, 4)), "");
+  }
 }
@@ -4122,6 +4122,97 @@ public class TableTests {
     Test.ensureEqual(results, expected3, "results=\n" + results);
   }
 
+  /** This tests readNccsvChunks(). */
+  @org.junit.jupiter.api.Test
+  void testReadNccsvChunks() throws Throwable {
+    Table source = new Table();
+    source.globalAttributes().add("title", "chunk test");
+    StringArray ship = new StringArray();
+    IntArray ia = new IntArray();
+    LongArray la = new LongArray();
+    for (int i = 0; i < 5; i++) {
+      ship.add("Bell M. Shimada"); // becomes a *SCALAR*
+      ia.add(i);
+      la.add(i * 10000000000L);
+    }
+    source.addColumn("ship", ship);
+    source.addColumn("i", ia);
+    source.addColumn("l", la);
+    source.columnAttributes(1).add("units", "count");
+    String nccsv = source.saveAsNccsv(true, true, 0, Integer.MAX_VALUE);
+    Test.ensureTrue(nccsv.indexOf("ship,*SCALAR*,") >= 0, nccsv);
+
+    // the chunks have the same data and metadata as reading it all at once
+    Table all = new Table();
+    all.lowReadNccsv("all", true, new BufferedReader(new StringReader(nccsv)));
+    Table chunks = new Table();
+    IntArray chunkNRows = new IntArray();
+    Table metadata = new Table();
+    metadata.readNccsvChunks(
+        "chunks",
+        new BufferedReader(new StringReader(nccsv)),
+        2,
+        chunk -> {
+          chunkNRows.add(chunk.nRows());
+          Test.ensureEqual(chunk.globalAttributes().getString("title"), "chunk test", "");
+          Test.ensureEqual(chunk.columnAttributes(1).getString("units"), "count", "");
+          if (chunks.nColumns() == 0) {
+            for (int c = 0; c < chunk.nColumns(); c++)
+              chunks.addColumn(chunk.getColumnName(c), chunk.getColumn(c));
+          } else {
+            chunks.append(chunk);
+          }
+          return true;
+        });
+    Test.ensureEqual(chunkNRows.toString(), "2, 2, 1", "");
+    Test.ensureEqual(chunks.dataToString(), all.dataToString(), "");
+    Test.ensureEqual(metadata.nRows(), 1, ""); // just the scalar
+    Test.ensureEqual(metadata.getColumn(1).size(), 0, "");
+
+    // the consumer can stop the reading
+    chunkNRows.clear();
+    BufferedReader reader = new BufferedReader(new StringReader(nccsv));
+    new Table()
+        .readNccsvChunks(
+            "stop",
+            reader,
+            2,
+            chunk -> {
+              chunkNRows.add(chunk.nRows());
+              return false;
+            });
+    Test.ensureEqual(chunkNRows.toString(), "2", "");
+    Test.ensureEqual(reader.readLine(), "2,20000000000L", "");
+
+    // with no data, the consumer gets 1 chunk with 0 rows
+    chunkNRows.clear();
+    new Table()
+        .readNccsvChunks(
+            "empty",
+            new BufferedReader(new StringReader(source.saveAsNccsv(true, true, 0, 0))),
+            2,
+            chunk -> {
+              chunkNRows.add(chunk.nRows());
+              return true;
+            });
+    Test.ensureEqual(chunkNRows.toString(), "0", "");
+
+    // Throwables thrown by the consumer are rethrown unchanged
+    try {
+      new Table()
+          .readNccsvChunks(
+              "throw",
+              new BufferedReader(new StringReader(nccsv)),
+              2,
+              chunk -> {
+                throw new InterruptedException("stop!");
+              });
+      throw new RuntimeException("shouldn't get here");
+    } catch (InterruptedException e) {
+      Test.ensureEqual(e.getMessage(), "stop!", "");
+    }
+  }
+
   /**
    * This tests saveAsMatlab().
    *
@@ -0,0 +1,45 @@
+package gov.noaa.pfel.coastwatch.sgt;
+
+import com.cohort.util.Test;
+import java.util.BitSet;
+
+class TiledPolygonIndexTests {
+
+  private static String candidates(
+      TiledPolygonIndex index, double west, double east, double south, double north) {
+    BitSet bitSet = index.candidates(west, east, south, north);
+    return bitSet.toString();
+  }
+
+  /** This tests add() and candidates(). */
+  @org.junit.jupiter.api.Test
+  void basicTest() throws Exception {
+    TiledPolygonIndex index = new TiledPolygonIndex();
+    index.add(0, 1, 5, 1, 5); // small, near 0,0
+    index.add(1, 200, 210, 30, 40); // in the western hemisphere (stored 0..360)
+    index.add(2, -1, 3, -10, -5); // crosses greenwich (like GSHHS)
+    index.add(3, 0, 360, -90, -63); // antarctica
+    index.add(4, Double.NaN, 10, 0, 10); // unusual: in every tile
+    Test.ensureEqual(index.nPolygons(), 5, "");
+
+    // request near 0,0
+    Test.ensureEqual(candidates(index, 0, 10, 0, 10), "{0, 4}", "");
+    Test.ensureEqual(candidates(index, 2, 4, -8, 3), "{0, 2, 4}", "");
+
+    // +/-180 and -720..720 requests find polygons stored as 0..360
+    Test.ensureEqual(candidates(index, -160, -150, 30, 40), "{1, 4}", "");
+    Test.ensureEqual(candidates(index, 560, 570, 30, 40), "{1, 4}", "");
+    Test.ensureEqual(candidates(index, 355, 365, -8, -6), "{2, 4}", "");
+
+    // far from everything except antarctica
+    Test.ensureEqual(candidates(index, 100, 110, -80, -70), "{3, 4}", "");
+    Test.ensureEqual(candidates(index, 100, 110, 60, 70), "{4}", "");
+
+    // whole world
+    Test.ensureEqual(candidates(index, -180, 180, -90, 90), "{0, 1, 2, 3, 4}", "");
+
+    // unusual requests get everything (so the caller's tests decide)
+    Test.ensureEqual(candidates(index, 10, 0, 0, 10), "{0, 1, 2, 3, 4}", "");
+    Test.ensureEqual(candidates(index, Double.NaN, 10, 0, 10), "{0, 1, 2, 3, 4}", "");
+  }
+}
@@ -1659,4 +1659,39 @@ class FileVisitorDNLSTests {
       Test.ensureTrue(name.endsWith(".nc"), "File name should end with .nc: " + name);
     }
   }
+
+  /** This tests that crawling subdirectories in parallel gets the same results as walkFileTree. */
+  @org.junit.jupiter.api.Test
+  void testParallelCrawl() throws Throwable {
+    String dirPath =
+        File2.addSlash(
+            Path.of(FileVisitorDNLSTests.class.getResource("/data/CFPointConventions/").toURI())
+                .toString()
+                .replace('\\', '/'));
+    String regexes[][] = {
+      {".*", ".*"},
+      {".*\\.nc$", ".*/trajectory/trajectory-Incomplete-Multidimensional.*"},
+      {".*\\.cdl", ".*H\\.2\\.1.*"},
+      {"noSuchFile", ".*"}
+    };
+    int oNCrawlThreads = FileVisitorDNLS.nCrawlThreads;
+    try {
+      for (String regex[] : regexes) {
+        for (boolean directoriesToo : new boolean[] {false, true}) {
+          String msg = "fileNameRegex=" + regex[0] + " pathRegex=" + regex[1];
+          FileVisitorDNLS.nCrawlThreads = 1;
+          String expected =
+              FileVisitorDNLS.oneStep(dirPath, regex[0], true, regex[1], directoriesToo)
+                  .dataToString();
+          FileVisitorDNLS.nCrawlThreads = 4;
+          String results =
+              FileVisitorDNLS.oneStep(dirPath, regex[0], true, regex[1], directoriesToo)
+                  .dataToString();
+          Test.ensureEqual(results, expected, msg);
+        }
+      }
+    } finally {
+      FileVisitorDNLS.nCrawlThreads = oNCrawlThreads;
+    }
+  }
 }
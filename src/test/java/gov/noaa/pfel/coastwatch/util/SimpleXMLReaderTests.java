@@ -245,4 +245,40 @@ class SimpleXMLReaderTests {
 
     String2.log("SimpleXMLReader.tests's tests finished successfully.\n");
   }
+
+  /** This tests startRecording(), stopRecording() and setLineNumber(). */
+  @org.junit.jupiter.api.Test
+  void recordingTest() throws Exception {
+    SimpleXMLReader xmlReader =
+        new SimpleXMLReader(
+            new ByteArrayInputStream(
+                String2.toByteArray(
+                    "<?xml version=\"1.0\" encoding=\"ISO-8859-1\" ?>\n"
+                        + "<a>\n"
+                        + "<b id=\"1\">\n"
+                        + "  <c>x &amp; y</c>\n"
+                        + "  <!-- comment -->\n"
+                        + "</b>\n"
+                        + "<d/>\n"
+                        + "</a>\n")),
+            "a");
+    xmlReader.nextTag();
+    Test.ensureEqual(xmlReader.allTags(), "<a><b>", "");
+    xmlReader.startRecording();
+    while (!xmlReader.allTags().equals("<a></b>")) xmlReader.nextTag();
+    Test.ensureEqual(
+        xmlReader.stopRecording(), "\n  <c>x &amp; y</c>\n  <!-- comment -->\n</b>", "");
+
+    // not recording
+    xmlReader.nextTag();
+    Test.ensureEqual(xmlReader.allTags(), "<a><d>", "");
+    Test.ensureEqual(xmlReader.stopRecording(), "", "");
+
+    xmlReader.setLineNumber(100);
+    xmlReader.nextTag();
+    xmlReader.nextTag();
+    Test.ensureEqual(xmlReader.allTags(), "</a>", "");
+    Test.ensureEqual(xmlReader.lineNumber(), 101, "");
+    xmlReader.close();
+  }
 }
@@ -461,6 +461,63 @@ class ErddapTests {
 
   }
 
+  /**
+   * Test that interpolating many points at once (with shared and merged boxes of data, gotten
+   * several at once) gets the same values as interpolating each point by itself.
+   */
+  @org.junit.jupiter.api.Test
+  void testConvertInterpolateBatch() throws Throwable {
+    int language = 0;
+    ConcurrentHashMap<String, EDDGrid> tGridDatasetHashMap = new ConcurrentHashMap<>();
+    tGridDatasetHashMap.put("testGriddedNcFiles", (EDDGrid) EDDTestDataset.gettestGriddedNcFiles());
+    String requestCSV =
+        "testGriddedNcFiles/x_wind/Nearest/1,testGriddedNcFiles/x_wind/Bilinear/4,"
+            + "testGriddedNcFiles/x_wind/Mean/16,testGriddedNcFiles/x_wind/Nearest/8,"
+            + "testGriddedNcFiles/x_wind/InverseDistance2/36";
+
+    // a track which wanders back and forth in time and space
+    String header = "ID,latitude,longitude,time\n";
+    StringBuilder tll = new StringBuilder(header);
+    String rows[] = new String[150];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] =
+          "TC1,"
+              + String2.genEFormat6(32.4 + (i % 40) * 0.021)
+              + ","
+              + String2.genEFormat6(176.3 + (i % 55) * 0.027)
+              + ",2008-01-"
+              + (i % 3 == 0 ? "09" : "10")
+              + "T"
+              + String2.zeroPad("" + (i % 24), 2)
+              + "Z\n";
+      tll.append(rows[i]);
+    }
+
+    // too many rows for the usual limit
+    String results;
+    try {
+      Erddap.interpolate(language, tGridDatasetHashMap, tll.toString(), requestCSV);
+      results = "shouldn't get here";
+    } catch (Exception e) {
+      results = e.getMessage();
+    }
+    Test.ensureEqual(results, "Query error: The TLLTable must not have more than 100 rows.", "");
+
+    String batch[] =
+        String2.split(
+            Erddap.interpolate(language, tGridDatasetHashMap, tll.toString(), requestCSV, 1000)
+                .dataToString(),
+            '\n');
+    for (int i = 0; i < rows.length; i++) {
+      String single[] =
+          String2.split(
+              Erddap.interpolate(language, tGridDatasetHashMap, header + rows[i], requestCSV)
+                  .dataToString(),
+              '\n');
+      Test.ensureEqual(batch[i + 1], single[1], "i=" + i);
+    }
+  }
+
   /**
    * This is used by Bob to do simple tests of Categorize.
    *
@@ -0,0 +1,61 @@
+package gov.noaa.pfel.erddap;
+
+import com.cohort.util.Test;
+
+class InterpolatePlanTests {
+
+  private static InterpolatePlan.Box add(
+      InterpolatePlan plan, int dv, String variable, int min[], int max[]) {
+    return plan.add(
+        new InterpolatePlan.Group(dv, 0, 1), "testDataset", null, variable, 0, 4, min, max);
+  }
+
+  /** This tests that contained and overlapping boxes are shared, and others aren't. */
+  @org.junit.jupiter.api.Test
+  void basicTest() throws Exception {
+    InterpolatePlan plan = new InterpolatePlan();
+
+    // time, altitude, lat, lon
+    InterpolatePlan.Box box0 =
+        add(plan, 0, "sst", new int[] {10, 0, 100, 200}, new int[] {12, 0, 103, 203});
+    Test.ensureEqual(box0.query(), "sst[10:12][0:0][100:103][200:203]", "");
+    Test.ensureEqual(box0.nValues(), 48, "");
+    Test.ensureEqual(box0.nBytes(), 192, "");
+
+    // the same box (e.g., for another algorithm) and a contained box share it
+    Test.ensureTrue(
+        add(plan, 1, "sst", new int[] {10, 0, 100, 200}, new int[] {12, 0, 103, 203}) == box0, "");
+    Test.ensureTrue(
+        add(plan, 2, "sst", new int[] {11, 0, 101, 201}, new int[] {11, 0, 102, 202}) == box0, "");
+
+    // a different variable gets its own box
+    InterpolatePlan.Box box1 =
+        add(plan, 3, "chla", new int[] {10, 0, 100, 200}, new int[] {12, 0, 103, 203});
+    Test.ensureTrue(box1 != box0, "");
+
+    // a mostly overlapping box is merged (even at an earlier time)
+    Test.ensureTrue(
+        add(plan, 0, "sst", new int[] {9, 0, 100, 200}, new int[] {12, 0, 104, 203}) == box0, "");
+    Test.ensureEqual(box0.query(), "sst[9:12][0:0][100:104][200:203]", "");
+
+    // a barely overlapping box isn't merged (that would get more values than 2 boxes)
+    InterpolatePlan.Box box2 =
+        add(plan, 0, "sst", new int[] {12, 0, 104, 203}, new int[] {14, 0, 108, 207});
+    Test.ensureTrue(box2 != box0, "");
+
+    // a far away box isn't merged
+    InterpolatePlan.Box box3 =
+        add(plan, 0, "sst", new int[] {100, 0, 100, 200}, new int[] {101, 0, 103, 203});
+    Test.ensureTrue(box3 != box0 && box3 != box2, "");
+
+    // after that, the moved box is still found
+    Test.ensureTrue(
+        add(plan, 4, "sst", new int[] {9, 0, 100, 200}, new int[] {9, 0, 100, 200}) == box0, "");
+
+    Test.ensureEqual(plan.nGroups(), 8, "");
+    Test.ensureEqual(plan.boxes.size(), 4, "");
+    Test.ensureEqual(box0.groups.size(), 5, "");
+    Test.ensureEqual(
+        box0.groups.get(2).toString(), "Group[dv=2, startOfGroup=0, endOfGroup=1]", "");
+  }
+}
@@ -1,11 +1,21 @@
 package gov.noaa.pfel.erddap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.cohort.util.File2;
+import gov.noaa.pfel.coastwatch.util.SimpleXMLReader;
+import gov.noaa.pfel.erddap.dataset.EDD;
 import gov.noaa.pfel.erddap.util.EDStatic;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import testDataset.Initialization;
@@ -60,4 +70,61 @@ public class LoadDatasetsTests {
         EDStatic.errorsDuringMajorReload,
         "ERROR: Duplicate datasetIDs in datasets.xml:\n" + "    etopo180\n");
   }
+
+  @Test
+  @SuppressWarnings("DoNotCall")
+  void parallelLoadDatasetsTest() throws Throwable {
+    String pathToDatasetsXml =
+        Objects.requireNonNull(
+                Path.of(
+                    LoadDatasets.class
+                        .getResource("/datasets/parallelLoadDatasetsTest.xml")
+                        .toURI()))
+            .toString();
+    int oLoadDatasetsNThreads = EDStatic.config.loadDatasetsNThreads;
+    boolean oUseSaxParser = EDStatic.config.useSaxParser;
+    EDStatic.config.loadDatasetsNThreads = 4;
+    EDStatic.config.useSaxParser = false; // only SimpleXMLReader loads datasets in parallel
+    try {
+      List<String> events = Collections.synchronizedList(new ArrayList<>());
+      // etopo180 and etopo360 don't depend on each other, so they are loaded at the same time
+      Set<String> loadingAtOnce = ConcurrentHashMap.newKeySet();
+      CyclicBarrier bothLoading =
+          new CyclicBarrier(2, () -> loadingAtOnce.addAll(EDStatic.cldLoading.keySet()));
+      loadDatasets =
+          new LoadDatasets(
+              new Erddap(),
+              EDStatic.config.datasetsRegex,
+              File2.getBufferedInputStream(pathToDatasetsXml),
+              true) {
+            @Override
+            EDD makeDataset(String type, SimpleXMLReader xmlReader) throws Throwable {
+              String id = xmlReader.attributeValue("datasetID");
+              events.add("start " + id);
+              try {
+                if (!id.startsWith("etopo"))
+                  throw new RuntimeException("This test doesn't make " + id + ".");
+                bothLoading.await(10, TimeUnit.SECONDS);
+                return super.makeDataset(type, xmlReader);
+              } finally {
+                events.add("finish " + id);
+              }
+            }
+          };
+      loadDatasets.run();
+
+      assertEquals(Set.of("etopo180", "etopo360"), loadingAtOnce, events.toString());
+      // the local child is only started after etopo180 has finished loading
+      assertTrue(
+          events.indexOf("start testParallelLocalChild") > events.indexOf("finish etopo180"),
+          events.toString());
+      assertTrue(
+          EDStatic.datasetsThatFailedToLoad.contains("testParallelLocalChild"),
+          EDStatic.datasetsThatFailedToLoad);
+      assertTrue(EDStatic.cldLoading.isEmpty(), EDStatic.cldLoading.toString());
+    } finally {
+      EDStatic.config.loadDatasetsNThreads = oLoadDatasetsNThreads;
+      EDStatic.config.useSaxParser = oUseSaxParser;
+    }
+  }
 }
@@ -0,0 +1,179 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.IntArray;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.util.File2;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.util.SSR;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class DapBlockCacheTests {
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /** This gets the values for the constraints from a grid (in standard order) of int values. */
+  private static PrimitiveArray subset(IntArray grid, int[] sizes, IntArray constraints) {
+    int nAv = sizes.length;
+    IntArray results = new IntArray(8, false);
+    int k[] = new int[nAv];
+    for (int av = 0; av < nAv; av++) k[av] = constraints.get(av * 3);
+    while (true) {
+      int index = 0;
+      for (int av = 0; av < nAv; av++) index = index * sizes[av] + k[av];
+      results.add(grid.get(index));
+      int av = nAv - 1;
+      while (av >= 0) {
+        k[av] += constraints.get(av * 3 + 1);
+        if (k[av] <= constraints.get(av * 3 + 2)) break;
+        k[av] = constraints.get(av * 3);
+        av--;
+      }
+      if (av < 0) break;
+    }
+    return results;
+  }
+
+  private static IntArray makeGrid(int[] sizes) {
+    int n = 1;
+    for (int size : sizes) n *= size;
+    IntArray grid = new IntArray(n, false);
+    for (int i = 0; i < n; i++) grid.add(i * 7 + 3);
+    return grid;
+  }
+
+  /** This tests that getData returns the same values as reading directly from the source. */
+  @org.junit.jupiter.api.Test
+  void basicTest() throws Throwable {
+    String dir = SSR.getTempDirectory() + "DapBlockCacheTests/";
+    File2.deleteAllFiles(dir, true, true);
+    Random random = new Random(17);
+    for (int[] sizes : new int[][] {{7, 300, 500}, {40}, {5, 3, 70, 90}}) {
+      int nAv = sizes.length;
+      IntArray grid = makeGrid(sizes);
+      AtomicInteger nReads = new AtomicInteger();
+      DapBlockCache.BlockReader reader =
+          (sourceName, constraints) -> {
+            nReads.incrementAndGet();
+            return subset(grid, sizes, constraints);
+          };
+      DapBlockCache cache = new DapBlockCache("test", dir, 1L << 30, sizes);
+      String msg = "sizes=" + Arrays.toString(sizes);
+
+      for (int test = 0; test < 100; test++) {
+        IntArray constraints = new IntArray(nAv * 3, false);
+        for (int av = 0; av < nAv; av++) {
+          int start = random.nextInt(sizes[av]);
+          constraints.add(start);
+          constraints.add(1 + (random.nextBoolean() ? 0 : random.nextInt(4)));
+          constraints.add(start + random.nextInt(sizes[av] - start));
+        }
+        Test.ensureEqual(
+            cache.getData("sst", constraints, sizes, reader).toString(),
+            subset(grid, sizes, constraints).toString(),
+            msg + " constraints=" + constraints);
+      }
+
+      // the whole grid: after the first request, it is all from the cache
+      IntArray all = new IntArray(nAv * 3, false);
+      for (int av = 0; av < nAv; av++) {
+        all.add(0);
+        all.add(1);
+        all.add(sizes[av] - 1);
+      }
+      Test.ensureEqual(
+          cache.getData("sst", all, sizes, reader).toString(), grid.toString(), msg);
+      int nReadsBefore = nReads.get();
+      Test.ensureEqual(
+          cache.getData("sst", all, sizes, reader).toString(), grid.toString(), msg);
+      Test.ensureEqual(nReads.get(), nReadsBefore, msg);
+      Test.ensureTrue(cache.isWorthwhile(all, sizes), msg);
+    }
+
+    // a time series at one point needs lots more values than requested
+    int sizes[] = {100, 300, 500};
+    DapBlockCache cache = new DapBlockCache("test", dir, 1L << 30, sizes);
+    IntArray timeSeries = new IntArray(new int[] {0, 1, 99, 7, 1, 7, 9, 1, 9});
+    Test.ensureTrue(!cache.isWorthwhile(timeSeries, sizes), "");
+    File2.deleteAllFiles(dir, true, true);
+  }
+
+  /** This tests that blocks at the end of a growing leftmost axis aren't used after it grows. */
+  @org.junit.jupiter.api.Test
+  void growTest() throws Throwable {
+    String dir = SSR.getTempDirectory() + "DapBlockCacheTests/";
+    File2.deleteAllFiles(dir, true, true);
+    int oldSizes[] = {10};
+    int newSizes[] = {12};
+    IntArray grid = makeGrid(newSizes);
+    AtomicInteger nReads = new AtomicInteger();
+    DapBlockCache.BlockReader reader =
+        (sourceName, constraints) -> {
+          nReads.incrementAndGet();
+          return subset(grid, newSizes, constraints);
+        };
+    DapBlockCache cache = new DapBlockCache("test", dir, 1L << 30, oldSizes);
+    IntArray constraints = new IntArray(new int[] {5, 1, 9});
+    Test.ensureEqual(
+        cache.getData("sst", constraints, oldSizes, reader).toString(), "38, 45, 52, 59, 66", "");
+    Test.ensureEqual(cache.getNDiskBlocks(), 1, "");
+
+    cache.leftmostAxisGrew();
+    Test.ensureEqual(cache.getNDiskBlocks(), 0, "");
+    constraints = new IntArray(new int[] {5, 1, 11});
+    Test.ensureEqual(
+        cache.getData("sst", constraints, newSizes, reader).toString(),
+        "38, 45, 52, 59, 66, 73, 80",
+        "");
+    Test.ensureEqual(nReads.get(), 2, "");
+    File2.deleteAllFiles(dir, true, true);
+  }
+
+  /** This tests that concurrent requests for a block only read it from the source once. */
+  @org.junit.jupiter.api.Test
+  void coalesceTest() throws Throwable {
+    String dir = SSR.getTempDirectory() + "DapBlockCacheTests/";
+    File2.deleteAllFiles(dir, true, true);
+    int sizes[] = {1000};
+    IntArray grid = makeGrid(sizes);
+    AtomicInteger nReads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    DapBlockCache.BlockReader reader =
+        (sourceName, constraints) -> {
+          nReads.incrementAndGet();
+          release.await();
+          return subset(grid, sizes, constraints);
+        };
+    DapBlockCache cache = new DapBlockCache("test", dir, 1L << 30, sizes);
+    IntArray constraints = new IntArray(new int[] {0, 1, 99});
+    String expected = subset(grid, sizes, constraints).toString();
+    String results[] = new String[4];
+    Thread threads[] = new Thread[results.length];
+    for (int i = 0; i < threads.length; i++) {
+      int ti = i;
+      threads[i] =
+          new Thread(
+              () -> {
+                try {
+                  results[ti] = cache.getData("sst", constraints, sizes, reader).toString();
+                } catch (Throwable t) {
+                  results[ti] = t.toString();
+                }
+              });
+      threads[i].start();
+    }
+    Thread.sleep(500);
+    release.countDown();
+    for (Thread thread : threads) thread.join();
+    for (String result : results) Test.ensureEqual(result, expected, "");
+    Test.ensureEqual(nReads.get(), 1, "");
+    File2.deleteAllFiles(dir, true, true);
+  }
+}
@@ -1,12 +1,19 @@
 package gov.noaa.pfel.erddap.dataset;
 
+import com.cohort.array.IntArray;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.StringArray;
 import com.cohort.util.Calendar2;
 import com.cohort.util.File2;
 import com.cohort.util.Image2Tests;
 import com.cohort.util.String2;
 import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.dataset.metadata.LocalizedAttributes;
 import gov.noaa.pfel.erddap.util.EDStatic;
 import gov.noaa.pfel.erddap.variable.EDV;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -632,4 +639,135 @@ class EDDGridSideBySideTests {
     Image2Tests.testImagesIdentical(tName, baseName + ".png", baseName + "_diff.png");
     /* */
   }
+
+  /**
+   * An etopo180 child dataset whose data variable is named altitude[offset], whose values are
+   * offset by offset, and which notes each source request, is slow, and may fail.
+   */
+  private static class TestChild extends EDDGridFromEtopo {
+    final int offset;
+    final AtomicInteger nRequests;
+    final boolean fail;
+    final int sleepMillis;
+
+    TestChild(int offset, AtomicInteger nRequests, boolean fail, int sleepMillis)
+        throws Throwable {
+      super("etopo180", true, false, 1, true);
+      this.offset = offset;
+      this.nRequests = nRequests;
+      this.fail = fail;
+      this.sleepMillis = sleepMillis;
+      EDV edv = dataVariables[0];
+      dataVariables[0] =
+          new EDV(
+              datasetID,
+              "altitude",
+              "altitude" + offset,
+              edv.sourceAttributes(),
+              new LocalizedAttributes(),
+              "short");
+      dataVariables[0].setActualRangeFromDestinationMinMax(0);
+    }
+
+    @Override
+    public PrimitiveArray[] getSourceData(
+        int language,
+        Table tDirTable,
+        Table tFileTable,
+        EDV tDataVariables[],
+        IntArray tConstraints)
+        throws Throwable {
+      nRequests.incrementAndGet();
+      if (fail) throw new WaitThenTryAgainException("test failure of altitude" + offset);
+      Thread.sleep(sleepMillis);
+      PrimitiveArray results[] =
+          super.getSourceData(language, tDirTable, tFileTable, tDataVariables, tConstraints);
+      PrimitiveArray data = results[2];
+      for (int i = 0; i < data.size(); i++) data.setInt(i, data.getInt(i) + offset);
+      return results;
+    }
+  }
+
+  /**
+   * This tests that the children's data (gotten concurrently) is returned in the requested order.
+   */
+  @org.junit.jupiter.api.Test
+  void testConcurrentChildrenOrder() throws Throwable {
+    int nChildren = 4;
+    AtomicInteger nRequests = new AtomicInteger();
+    EDDGrid children[] = new EDDGrid[nChildren];
+    for (int c = 0; c < nChildren; c++)
+      children[c] =
+          new TestChild(c, nRequests, false, ThreadLocalRandom.current().nextInt(50)); // any order
+    EDDGridSideBySide sbs = makeSideBySide(children, 4);
+
+    IntArray constraints = new IntArray(new int[] {10, 2, 40, 100, 1, 160});
+    EDDGridFromEtopo etopo = new EDDGridFromEtopo("etopo180", true, false, 1, true);
+    PrimitiveArray expected[] =
+        etopo.getSourceData(0, null, null, etopo.dataVariables(), constraints);
+
+    // request them out of order, with one twice
+    int request[] = {3, 0, 2, 1, 3};
+    EDV tDataVariables[] = new EDV[request.length];
+    for (int i = 0; i < request.length; i++) tDataVariables[i] = sbs.dataVariables()[request[i]];
+    PrimitiveArray results[] = sbs.getSourceData(0, null, null, tDataVariables, constraints);
+
+    Test.ensureEqual(results.length, 2 + request.length, "");
+    Test.ensureEqual(results[0].toString(), expected[0].toString(), "");
+    Test.ensureEqual(results[1].toString(), expected[1].toString(), "");
+    for (int i = 0; i < request.length; i++) {
+      PrimitiveArray tExpected = (PrimitiveArray) expected[2].clone();
+      for (int j = 0; j < tExpected.size(); j++)
+        tExpected.setInt(j, tExpected.getInt(j) + request[i]);
+      Test.ensureEqual(results[2 + i].toString(), tExpected.toString(), "i=" + i);
+    }
+    Test.ensureEqual(nRequests.get(), request.length, "");
+  }
+
+  /**
+   * This tests that a child's exception is rethrown unwrapped and that the other children's tasks
+   * are cancelled.
+   */
+  @org.junit.jupiter.api.Test
+  void testConcurrentChildrenFailure() throws Throwable {
+    int nChildren = 6;
+    AtomicInteger nRequests = new AtomicInteger();
+    EDDGrid children[] = new EDDGrid[nChildren];
+    for (int c = 0; c < nChildren; c++) children[c] = new TestChild(c, nRequests, c == 1, 200);
+    EDDGridSideBySide sbs = makeSideBySide(children, 2);
+
+    IntArray constraints = new IntArray(new int[] {10, 2, 40, 100, 1, 160});
+    try {
+      sbs.getSourceData(0, null, null, sbs.dataVariables(), constraints);
+      throw new RuntimeException("Shouldn't get here.");
+    } catch (WaitThenTryAgainException e) {
+      Test.ensureEqual(e.getMessage(), "test failure of altitude1", "");
+    }
+
+    // the tasks after the failure were cancelled, so not all of the children were asked
+    Thread.sleep(500);
+    int tnRequests = nRequests.get();
+    Test.ensureTrue(tnRequests < nChildren, "nRequests=" + tnRequests);
+    Thread.sleep(300);
+    Test.ensureEqual(nRequests.get(), tnRequests, "");
+  }
+
+  private static EDDGridSideBySide makeSideBySide(EDDGrid children[], int nThreads)
+      throws Throwable {
+    return new EDDGridSideBySide(
+        "testSideBySide",
+        null,
+        null,
+        false,
+        false,
+        EDDGrid.DEFAULT_MATCH_AXIS_N_DIGITS,
+        new StringArray(),
+        null,
+        null,
+        null,
+        null,
+        children,
+        nThreads,
+        true);
+  }
 }
@@ -1,12 +1,21 @@
 package gov.noaa.pfel.erddap.dataset;
 
+import com.cohort.array.DoubleArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.PAOne;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.ShortArray;
+import com.cohort.array.StringArray;
 import com.cohort.util.File2;
 import com.cohort.util.Math2;
 import com.cohort.util.String2;
 import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
 import gov.noaa.pfel.coastwatch.util.SSR;
 import gov.noaa.pfel.erddap.GenerateDatasetsXml;
+import gov.noaa.pfel.erddap.dataset.metadata.LocalizedAttributes;
 import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.variable.EDV;
 import org.junit.jupiter.api.BeforeAll;
 import tags.TagDisabledLocalERDDAP;
 import testDataset.Initialization;
@@ -1532,4 +1541,134 @@ class EDDTableFromEDDGridTests {
           t);
     }
   }
+
+  /**
+   * An etopo180 dataset with made up values: (latIndex % 50) * 100 + lonIndex % 100, so a data
+   * constraint can reject some latitudes (and so whole chunks) and keep parts of others.
+   */
+  private static class TestEtopo extends EDDGridFromEtopo {
+    TestEtopo() throws Throwable {
+      super("etopo180", true, false, 1, true);
+    }
+
+    @Override
+    public PrimitiveArray[] getSourceData(
+        int language,
+        Table tDirTable,
+        Table tFileTable,
+        EDV tDataVariables[],
+        IntArray tConstraints)
+        throws Throwable {
+      PrimitiveArray results[] = new PrimitiveArray[3];
+      for (int av = 0; av < 2; av++)
+        results[av] =
+            axisVariables[av]
+                .sourceValues()
+                .subset(
+                    tConstraints.get(av * 3 + 0),
+                    tConstraints.get(av * 3 + 1),
+                    tConstraints.get(av * 3 + 2));
+      ShortArray data = new ShortArray();
+      for (int lat = tConstraints.get(0); lat <= tConstraints.get(2); lat += tConstraints.get(1))
+        for (int lon = tConstraints.get(3); lon <= tConstraints.get(5); lon += tConstraints.get(4))
+          data.add((short) ((lat % 50) * 100 + lon % 100));
+      results[2] = data;
+      return results;
+    }
+  }
+
+  /**
+   * This tests that walking the child's results one chunk at a time (testing the data constraints
+   * on each chunk) gets the same results as walking them one cell at a time and testing each row.
+   */
+  @org.junit.jupiter.api.Test
+  void testChunks() throws Throwable {
+    TestEtopo child = new TestEtopo();
+    LocalizedAttributes addGlobalAtts = new LocalizedAttributes();
+    addGlobalAtts.set(0, "maxAxis0", new IntArray(new int[] {0})); // no limit
+    EDDTableFromEDDGrid edd =
+        new EDDTableFromEDDGrid(
+            null,
+            "testEtopoAsATable",
+            null,
+            null,
+            false,
+            new StringArray(),
+            null,
+            null,
+            null,
+            null,
+            null,
+            null,
+            addGlobalAtts,
+            EDD.DEFAULT_RELOAD_EVERY_N_MINUTES,
+            child);
+
+    // the latitudes (index 0 - 29, maybe 30) and longitudes (index 0 - 18, maybe 19) (see below)
+    double maxLat = -89.505;
+    double maxLon = -179.695;
+    // latitude index 12 (1205 - 1218), 13 - 15 (all), 16 (1600 - 1609), the others (none)
+    String dataConstraints[] = {
+      "&altitude>=1205&altitude<1610", "&altitude>=1200&altitude<1700", ""
+    };
+    double minAlts[] = {1205, 1200, -Double.MAX_VALUE};
+    double maxAlts[] = {1610, 1700, Double.MAX_VALUE};
+    int oPartialRequestMaxBytes = EDStatic.config.partialRequestMaxBytes;
+    try {
+      // 100 bytes: a chunk for each latitude, so latitude is a driver axis (with size > 1).
+      // Otherwise: 1 chunk with all of the rows, so latitude's value changes within the chunk.
+      for (int partialRequestMaxBytes : new int[] {100, oPartialRequestMaxBytes}) {
+        EDStatic.config.partialRequestMaxBytes = partialRequestMaxBytes;
+        for (int dc = 0; dc < dataConstraints.length; dc++) {
+          String dataConstraint = dataConstraints[dc];
+          String msg =
+              "partialRequestMaxBytes=" + partialRequestMaxBytes + " constraint=" + dataConstraint;
+
+          // the old way: walk the grid one cell at a time
+          DoubleArray expectedLon = new DoubleArray();
+          DoubleArray expectedLat = new DoubleArray();
+          ShortArray expectedAlt = new ShortArray();
+          try (GridDataAccessor gda =
+              new GridDataAccessor(0, child, "", "altitude[0:40][0:30]", true, false)) {
+            PAOne latPAOne = new PAOne(gda.axisValues(0));
+            PAOne lonPAOne = new PAOne(gda.axisValues(1));
+            while (gda.increment()) {
+              double lat = gda.getAxisValueAsPAOne(0, latPAOne).getDouble();
+              double lon = gda.getAxisValueAsPAOne(1, lonPAOne).getDouble();
+              double alt = gda.getDataValueAsDouble(0);
+              if (lat < maxLat && lon < maxLon && alt >= minAlts[dc] && alt < maxAlts[dc]) {
+                expectedLon.add(lon);
+                expectedLat.add(lat);
+                expectedAlt.add((short) alt);
+              }
+            }
+          }
+
+          Table table;
+          String dir = EDStatic.config.fullTestCacheDirectory;
+          try (TableWriterAll twa = new TableWriterAll(0, edd, "", dir, "testChunks")) {
+            edd.getDataForDapQuery(
+                0,
+                null,
+                "",
+                "longitude,latitude,altitude&latitude<"
+                    + maxLat
+                    + "&longitude<"
+                    + maxLon
+                    + dataConstraint,
+                twa);
+            table = twa.cumulativeTable();
+          }
+          Test.ensureEqual(table.getColumnNamesCSVString(), "longitude,latitude,altitude", msg);
+          Test.ensureEqual(
+              table.nRows(), dataConstraint.isEmpty() ? 30 * 19 : expectedAlt.size(), msg);
+          Test.ensureEqual(table.getColumn(0).toString(), expectedLon.toString(), msg);
+          Test.ensureEqual(table.getColumn(1).toString(), expectedLat.toString(), msg);
+          Test.ensureEqual(table.getColumn(2).toString(), expectedAlt.toString(), msg);
+        }
+      }
+    } finally {
+      EDStatic.config.partialRequestMaxBytes = oPartialRequestMaxBytes;
+    }
+  }
 }
@@ -1,13 +1,26 @@
 package gov.noaa.pfel.erddap.dataset;
 
+import com.cohort.array.DoubleArray;
+import com.cohort.array.FloatArray;
 import com.cohort.array.PAType;
 import com.cohort.array.PrimitiveArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.Calendar2;
+import com.cohort.util.File2;
 import com.cohort.util.String2;
 import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Random;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
 import testDataset.Initialization;
 
 class EDDTableFromFilesTests {
+
+  @TempDir private static Path TEMP_DIR;
+
   @BeforeAll
   static void init() {
     Initialization.edStatic();
@@ -349,4 +362,254 @@ class EDDTableFromFilesTests {
     Test.ensureEqual(String2.extractRegex(s, "^[0-9]{8}_", 0), "20070925_", "");
     Test.ensureEqual(String2.extractRegex(s, "_5day\\.csv$", 0), "_5day.csv", "");
   }
+
+  /** Test that FileTableIndex's candidates are a superset of the files which pass isOK(). */
+  @org.junit.jupiter.api.Test
+  void testFileTableIndex() {
+    String2.log("\n*** EDDTableFromFiles.testFileTableIndex()");
+    Random random = new Random(17);
+    int n = 1000;
+    double min[] = new double[n];
+    double max[] = new double[n];
+    for (int row = 0; row < n; row++) {
+      if (row % 97 == 0) { // all NaN
+        min[row] = Double.NaN;
+        max[row] = Double.NaN;
+      } else {
+        min[row] = Math.rint(random.nextDouble() * 2000 - 1000) / 10;
+        max[row] = min[row] + (row % 5 == 0 ? 0 : Math.rint(random.nextDouble() * 500) / 10);
+      }
+    }
+    FileTableIndex.Intervals intervals = new FileTableIndex.Intervals(min, max);
+
+    String ops[] = {"<", "<=", "=", ">=", ">"};
+    PAType paTypes[] = {PAType.FLOAT, PAType.DOUBLE, PAType.LONG};
+    for (int i = 0; i < 200; i++) {
+      // half are exact file bounds (from rows 1 - 96, which aren't NaN),
+      // which test the almostEqual edge cases
+      double conValue =
+          i % 2 == 0
+              ? (i % 4 == 0 ? min[1 + i % 96] : max[1 + i % 96])
+              : Math.rint(random.nextDouble() * 3000 - 1500) / 10;
+      for (String op : ops) {
+        for (PAType paType : paTypes) {
+          BitSet candidates = new BitSet(n);
+          Test.ensureTrue(intervals.candidates(paType, op, conValue, candidates), op);
+          for (int row = 0; row < n; row++) {
+            if (EDDTableFromFiles.isOK(paType, min[row], max[row], 0, op, conValue))
+              Test.ensureTrue(
+                  candidates.get(row),
+                  "row=" + row + " min=" + min[row] + " max=" + max[row] + " " + op + conValue);
+          }
+        }
+      }
+    }
+
+    // ops which can't be indexed
+    BitSet candidates = new BitSet(n);
+    Test.ensureEqual(intervals.candidates(PAType.DOUBLE, "!=", 5, candidates), false, "");
+    Test.ensureEqual(
+        intervals.candidates(PAType.DOUBLE, PrimitiveArray.REGEX_OP, 5, candidates), false, "");
+    Test.ensureEqual(intervals.candidates(PAType.DOUBLE, "=", Double.NaN, candidates), false, "");
+    Test.ensureEqual(candidates.cardinality(), 0, "");
+
+    // a narrow range finds few files
+    intervals =
+        new FileTableIndex.Intervals(new double[] {0, 10, 20, 30}, new double[] {9, 19, 29, 39});
+    intervals.candidates(PAType.DOUBLE, "=", 25, candidates);
+    Test.ensureEqual(candidates.toString(), "{2}", "");
+    candidates.clear();
+    intervals.candidates(PAType.DOUBLE, ">", 15, candidates);
+    Test.ensureEqual(candidates.toString(), "{1, 2, 3}", "");
+    candidates.clear();
+    intervals.candidates(PAType.DOUBLE, "<=", 15, candidates);
+    Test.ensureEqual(candidates.toString(), "{0, 1}", "");
+  }
+
+  /**
+   * Test that a FileTableIndex is only for the version of the fileTable it was made for, even if a
+   * change keeps the same number of rows.
+   */
+  @org.junit.jupiter.api.Test
+  void testFileTableIndexIsFor() {
+    Table fileTable = new Table();
+    fileTable.addColumn("min", new DoubleArray(new double[] {0, 10}));
+    fileTable.addColumn("max", new DoubleArray(new double[] {9, 19}));
+
+    // in memory: the same table and modCount
+    FileTableIndex index = new FileTableIndex(fileTable, true, 5);
+    Test.ensureTrue(index.isFor(fileTable, true, 5), "");
+    fileTable.setDoubleData(1, 0, 12); // changed in place, same nRows, so modCount was incremented
+    Test.ensureTrue(!index.isFor(fileTable, true, 6), "");
+    Test.ensureTrue(!index.isFor(new Table(), true, 5), "another table");
+    Test.ensureTrue(!index.isFor(fileTable, false, 5), "");
+
+    // not in memory: each request loads its own copy, so just the modCount identifies the version
+    index = new FileTableIndex(fileTable, false, 7);
+    Table copy = new Table();
+    copy.addColumn("min", new DoubleArray(new double[] {0, 10}));
+    copy.addColumn("max", new DoubleArray(new double[] {12, 19}));
+    Test.ensureTrue(index.isFor(copy, false, 7), "");
+    Test.ensureTrue(!index.isFor(copy, false, 8), "saved again, same nRows");
+    Test.ensureTrue(!index.isFor(copy, true, 7), "");
+  }
+
+  /**
+   * Test the fileTable's epochSeconds columns for String times: they are added to an old fileTable
+   * when it is loaded, they survive a save and reload, they are updated when a file changes (on
+   * reload or in place), and older code (which doesn't know about them) can still load the
+   * fileTable.
+   */
+  @org.junit.jupiter.api.Test
+  void testFileTableEpochColumns() throws Throwable {
+    String id = "testFileTableEpochColumns";
+    String dataDir = TEMP_DIR.toAbsolutePath().toString().replace('\\', '/') + "/" + id + "/";
+    File2.makeDirectory(dataDir);
+    File2.writeToFile88591(
+        dataDir + "a.csv", "time,wtmp\n2020-01-01T00:00:00Z,1.5\n2020-01-02T00:00:00Z,2.5\n");
+    File2.writeToFile88591(
+        dataDir + "b.csv", "time,wtmp\n2020-02-01T00:00:00Z,3.5\n2020-02-03T00:00:00Z,4.5\n");
+    String xml =
+        "<dataset type=\"EDDTableFromAsciiFiles\" datasetID=\""
+            + id
+            + "\" active=\"true\">\n"
+            + "    <reloadEveryNMinutes>10080</reloadEveryNMinutes>\n"
+            + "    <fileDir>"
+            + dataDir
+            + "</fileDir>\n"
+            + "    <fileNameRegex>.*\\.csv</fileNameRegex>\n"
+            + "    <recursive>false</recursive>\n"
+            + "    <charset>ISO-8859-1</charset>\n"
+            + "    <columnNamesRow>1</columnNamesRow>\n"
+            + "    <firstDataRow>2</firstDataRow>\n"
+            + "    <fileTableInMemory>true</fileTableInMemory>\n"
+            + "    <addAttributes>\n"
+            + "        <att name=\"cdm_data_type\">Other</att>\n"
+            + "        <att name=\"Conventions\">COARDS, CF-1.10, ACDD-1.3</att>\n"
+            + "        <att name=\"infoUrl\">https://www.ndbc.noaa.gov/</att>\n"
+            + "        <att name=\"institution\">NOAA NDBC</att>\n"
+            + "        <att name=\"license\">[standard]</att>\n"
+            + "        <att name=\"summary\">Test fileTable epochSeconds columns.</att>\n"
+            + "        <att name=\"title\">Test fileTable epochSeconds columns</att>\n"
+            + "    </addAttributes>\n"
+            + "    <dataVariable>\n"
+            + "        <sourceName>time</sourceName>\n"
+            + "        <destinationName>time</destinationName>\n"
+            + "        <dataType>String</dataType>\n"
+            + "        <addAttributes>\n"
+            + "            <att name=\"ioos_category\">Time</att>\n"
+            + "            <att name=\"units\">yyyy-MM-dd&#39;T&#39;HH:mm:ss&#39;Z&#39;</att>\n"
+            + "        </addAttributes>\n"
+            + "    </dataVariable>\n"
+            + "    <dataVariable>\n"
+            + "        <sourceName>wtmp</sourceName>\n"
+            + "        <destinationName>wtmp</destinationName>\n"
+            + "        <dataType>float</dataType>\n"
+            + "        <addAttributes>\n"
+            + "            <att name=\"ioos_category\">Temperature</att>\n"
+            + "            <att name=\"units\">degree_C</att>\n"
+            + "        </addAttributes>\n"
+            + "    </dataVariable>\n"
+            + "</dataset>\n";
+    String fileTableName = EDD.datasetDir(id) + EDD.FILE_TABLE_FILENAME;
+
+    // a new fileTable has the epochSeconds columns
+    EDD.deleteCachedDatasetInfo(id);
+    EDDTableFromFiles edd =
+        (EDDTableFromFiles) EDDTableFromAsciiFiles.oneFromXmlFragment(null, xml);
+    Table fileTable = edd.tryToLoadDirFileTable(fileTableName);
+    testEpochColumns(fileTable, "a.csv", "2020-01-01T00:00:00Z", "2020-01-02T00:00:00Z");
+    testEpochColumns(fileTable, "b.csv", "2020-02-01T00:00:00Z", "2020-02-03T00:00:00Z");
+
+    // older code can still load it: the version is unchanged and
+    // the loader's reorderColumns(desiredOrder, discardOthers=true) drops the new columns
+    Test.ensureEqual(
+        fileTable.globalAttributes().getInt(EDD._dirFileTableVersion_),
+        EDD.DIR_FILE_TABLE_VERSION,
+        "");
+    StringArray oldOrder =
+        StringArray.fromCSV(
+            "dirIndex, fileName, lastMod, size, sortedSpacing, "
+                + "time_min_, time_max_, time_hasNaN_, wtmp_min_, wtmp_max_, wtmp_hasNaN_");
+    Table oldTable = (Table) fileTable.clone();
+    Test.ensureEqual(oldTable.reorderColumns(oldOrder, true), oldOrder.size(), "");
+    Test.ensureEqual(oldTable.nColumns(), oldOrder.size(), "");
+    Test.ensureEqual(oldTable.nRows(), 2, "");
+
+    // an old fileTable (without the columns) is upgraded when it is loaded
+    oldTable.saveAsEnhancedFlatNc(fileTableName);
+    edd = (EDDTableFromFiles) EDDTableFromAsciiFiles.oneFromXmlFragment(null, xml);
+    testEpochColumns(edd.getFileTable(), "a.csv", "2020-01-01T00:00:00Z", "2020-01-02T00:00:00Z");
+    testEpochColumns(edd.getFileTable(), "b.csv", "2020-02-01T00:00:00Z", "2020-02-03T00:00:00Z");
+
+    // and saved, so they survive a reload
+    fileTable = edd.tryToLoadDirFileTable(fileTableName);
+    testEpochColumns(fileTable, "a.csv", "2020-01-01T00:00:00Z", "2020-01-02T00:00:00Z");
+    testEpochColumns(fileTable, "b.csv", "2020-02-01T00:00:00Z", "2020-02-03T00:00:00Z");
+    edd = (EDDTableFromFiles) EDDTableFromAsciiFiles.oneFromXmlFragment(null, xml);
+    testEpochColumns(edd.getFileTable(), "a.csv", "2020-01-01T00:00:00Z", "2020-01-02T00:00:00Z");
+    testEpochColumns(edd.getFileTable(), "b.csv", "2020-02-01T00:00:00Z", "2020-02-03T00:00:00Z");
+
+    // a changed file and a new file get new values on reload
+    File2.writeToFile88591(
+        dataDir + "b.csv",
+        "time,wtmp\n2020-02-01T00:00:00Z,3.5\n2020-02-05T00:00:00Z,4.5\n"
+            + "2020-02-07T00:00:00Z,5.5\n");
+    File2.writeToFile88591(dataDir + "c.csv", "time,wtmp\n2020-03-01T00:00:00Z,6.5\n");
+    edd = (EDDTableFromFiles) EDDTableFromAsciiFiles.oneFromXmlFragment(null, xml);
+    fileTable = edd.getFileTable();
+    testEpochColumns(fileTable, "a.csv", "2020-01-01T00:00:00Z", "2020-01-02T00:00:00Z");
+    testEpochColumns(fileTable, "b.csv", "2020-02-01T00:00:00Z", "2020-02-07T00:00:00Z");
+    testEpochColumns(fileTable, "c.csv", "2020-03-01T00:00:00Z", "2020-03-01T00:00:00Z");
+    testEpochColumns(
+        edd.tryToLoadDirFileTable(fileTableName),
+        "b.csv",
+        "2020-02-01T00:00:00Z",
+        "2020-02-07T00:00:00Z");
+
+    // a change in place (e.g., by EDDTableFromHttpGet) invalidates the row's values
+    // and fileTableChangedInPlace recalculates them
+    EDDTableFromFiles.updateFileTableWithStats(
+        fileTable,
+        dataDir + "a.csv",
+        edd.dirTable,
+        2,
+        new boolean[] {false, false},
+        new String[] {"time", "wtmp"},
+        new PAType[] {PAType.STRING, PAType.FLOAT},
+        new PrimitiveArray[] {null, null},
+        new PrimitiveArray[] {
+          new StringArray(new String[] {"2019-12-01T00:00:00Z", "2020-01-09T00:00:00Z"}),
+          new FloatArray(new float[] {7.5f, 8.5f})
+        },
+        0,
+        2);
+    int row = fileTable.findColumn("fileName").indexOf("a.csv");
+    Test.ensureTrue(Double.isNaN(fileTable.findColumn("time_minEpoch_").getDouble(row)), "");
+    Test.ensureTrue(Double.isNaN(fileTable.findColumn("time_maxEpoch_").getDouble(row)), "");
+    edd.fileTableChangedInPlace(fileTable);
+    testEpochColumns(fileTable, "a.csv", "2019-12-01T00:00:00Z", "2020-01-09T00:00:00Z");
+    testEpochColumns(fileTable, "b.csv", "2020-02-01T00:00:00Z", "2020-02-07T00:00:00Z");
+
+    EDD.deleteCachedDatasetInfo(id);
+  }
+
+  /**
+   * This ensures that the fileTable has epochSeconds columns for the time variable with the
+   * expected values for a file.
+   */
+  private static void testEpochColumns(
+      Table fileTable, String fileName, String expectedMin, String expectedMax) {
+    int row = fileTable.findColumn("fileName").indexOf(fileName);
+    Test.ensureTrue(row >= 0, fileName + " not found");
+    Test.ensureEqual(fileTable.findColumn("time_min_").getString(row), expectedMin, fileName);
+    Test.ensureEqual(
+        fileTable.findColumn("time_minEpoch_").getDouble(row),
+        Calendar2.isoStringToEpochSeconds(expectedMin),
+        fileName);
+    Test.ensureEqual(
+        fileTable.findColumn("time_maxEpoch_").getDouble(row),
+        Calendar2.isoStringToEpochSeconds(expectedMax),
+        fileName);
+  }
 }
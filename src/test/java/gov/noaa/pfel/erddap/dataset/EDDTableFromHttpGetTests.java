@@ -556,6 +556,96 @@ class EDDTableFromHttpGetTests {
             + ",bsimons,0\n";
     Test.ensureEqual(results, expected, "results=" + results);
 
+    // *** compact the file: readFile's results are unchanged
+    String2.log("\n>> compactFile");
+    String dataFile = startDir + "46088/46088_1980-01.jsonl";
+    for (int compaction = 0; compaction < 2; compaction++) {
+      double timestamps[] = {Double.NaN, timestamp1, System.currentTimeMillis() / 1000.0};
+      String before[] = new String[timestamps.length * 2];
+      for (int i = 0; i < before.length; i++)
+        before[i] =
+            EDDTableFromHttpGet.readFile(
+                    dataFile,
+                    new StringArray(columnNamesSA),
+                    columnTypes,
+                    requiredVariableNames,
+                    requiredVariableTypes,
+                    i % 2 == 0, // process
+                    timestamps[i / 2])
+                .dataToString();
+      Test.ensureEqual(
+          EDDTableFromHttpGet.compactFile(
+              dataFile, columnNames, columnPATypes, requiredVariableNames),
+          compaction == 0 ? 6 : 1,
+          "");
+      Test.ensureEqual(
+          EDDTableFromHttpGet.compactFile(
+              dataFile, columnNames, columnPATypes, requiredVariableNames),
+          0,
+          ""); // nothing new
+      Test.ensureEqual(
+          File2.directReadFromUtf8File(dataFile),
+          "[\"stationID\",\"time\",\"aByte\",\"aChar\",\"aShort\",\"anInt\",\"aFloat\",\"aDouble\","
+              + "\"aString\",\"timestamp\",\"author\",\"command\"]\n",
+          "");
+      for (int i = 0; i < before.length; i++)
+        Test.ensureEqual(
+            EDDTableFromHttpGet.readFile(
+                    dataFile,
+                    new StringArray(columnNamesSA),
+                    columnTypes,
+                    requiredVariableNames,
+                    requiredVariableTypes,
+                    i % 2 == 0, // process
+                    timestamps[i / 2])
+                .dataToString(),
+            before[i],
+            "i=" + i);
+
+      // a change after the compaction is in the log
+      if (compaction == 0) {
+        Math2.sleep(2);
+        results =
+            EDDTableFromHttpGet.insertOrDelete(
+                language,
+                startDir,
+                dsColumnName,
+                dsN,
+                dsCalendar,
+                keys,
+                tGlobalAttributes,
+                columnNames,
+                columnUnits,
+                columnPATypes,
+                columnMvFv,
+                requiredVariableNames,
+                EDDTableFromHttpGet.INSERT_COMMAND,
+                "stationID=\"46088\"&time=4.4&aByte=21" + "&author=bsimons_aSecret",
+                null,
+                null); // Table dirTable, Table fileTable
+        double timestamp6 = EDDTableFromHttpGet.extractTimestamp(results);
+        results =
+            EDDTableFromHttpGet.readFile(
+                    dataFile,
+                    new StringArray(columnNamesSA),
+                    columnTypes,
+                    requiredVariableNames,
+                    requiredVariableTypes,
+                    true,
+                    Double.NaN)
+                .dataToString();
+        expected =
+            "stationID,time,aByte,aChar,aShort,anInt,aFloat,aDouble,aString,timestamp,author,command\n"
+                + "46088,4.4,21,,,,,,,"
+                + timestamp6
+                + ",bsimons,0\n"
+                + "46088,5.5,19,\" \",30003,3,1.67,1.4,\" \\n\\u20ac \","
+                + timestamp2
+                + ",bsimons,0\n";
+        Test.ensureEqual(results, expected, "results=" + results);
+      }
+    }
+
     // *** test errors
     String2.log("\n>> insertOrDelete #5: expected errors");
 
@@ -0,0 +1,66 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.IntArray;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class ExternalTableSortTests {
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /** This tests the sort against Table.sort and tests that groups are never split. */
+  @org.junit.jupiter.api.Test
+  void testSort() throws Throwable {
+    int nRows = 2503;
+    Table table = TableWriterTestUtil.makeTable(nRows, 7, 1000, 17);
+    Table expected = (Table) table.clone();
+    int keys[] = {0, 1, 3}; // station, name, value (time shows that the sort is stable)
+    boolean ascending[] = {true, false, true};
+    expected.sort(keys, ascending);
+
+    try (TableWriterAll twa =
+        new TableWriterAll(
+            0, null, null, EDStatic.config.fullCacheDirectory, "ExternalTableSortTests")) {
+      TableWriterTestUtil.writeInChunks(table, twa, 1000);
+      twa.finish();
+
+      for (int nGroupKeys = 0; nGroupKeys <= 1; nGroupKeys++) {
+        Table results = twa.makeEmptyTable();
+        IntArray chunkNRows = new IntArray();
+        IntArray chunkFirstStation = new IntArray();
+        IntArray chunkLastStation = new IntArray();
+        ExternalTableSort.sort(
+            twa,
+            keys,
+            ascending,
+            nGroupKeys,
+            300,
+            chunk -> {
+              chunkNRows.add(chunk.nRows());
+              chunkFirstStation.add(chunk.getColumn(0).getInt(0));
+              chunkLastStation.add(chunk.getColumn(0).getInt(chunk.nRows() - 1));
+              results.append(chunk);
+            });
+        Test.ensureEqual(results.nRows(), nRows, "nGroupKeys=" + nGroupKeys);
+        for (int col = 0; col < expected.nColumns(); col++)
+          Test.ensureEqual(
+              results.getColumn(col).toString(),
+              expected.getColumn(col).toString(),
+              "nGroupKeys=" + nGroupKeys + " col=" + col);
+        if (nGroupKeys == 0) {
+          for (int c = 0; c < chunkNRows.size() - 1; c++)
+            Test.ensureEqual(chunkNRows.get(c), 300, "c=" + c);
+        } else {
+          // a station's rows are never split between chunks
+          for (int c = 1; c < chunkNRows.size(); c++)
+            Test.ensureTrue(chunkFirstStation.get(c) != chunkLastStation.get(c - 1), "c=" + c);
+        }
+      }
+    }
+  }
+}
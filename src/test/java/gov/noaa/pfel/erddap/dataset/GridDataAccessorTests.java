@@ -0,0 +1,153 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.IntArray;
+import com.cohort.array.PAOne;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import gov.noaa.pfel.erddap.variable.EDV;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class GridDataAccessorTests {
+
+  // 31 latitudes (so 31 chunks, see partialRequestMaxBytes below) and 61 longitudes
+  private static final String QUERY = "altitude%5B(-90.0):(-89.5)%5D%5B(-180.0):(-179.0)%5D";
+  private static final int N_CHUNKS = 31;
+
+  /** An etopo180 dataset which notes each source request, is slow, and may fail. */
+  private static class TestEtopo extends EDDGridFromEtopo {
+    final AtomicInteger nRequests = new AtomicInteger();
+    volatile int failAtLatIndex = -1;
+
+    TestEtopo(int tnThreads) throws Throwable {
+      super("etopo180", true, false, tnThreads, true);
+    }
+
+    @Override
+    public PrimitiveArray[] getSourceData(
+        int language,
+        Table tDirTable,
+        Table tFileTable,
+        EDV tDataVariables[],
+        IntArray tConstraints)
+        throws Throwable {
+      nRequests.incrementAndGet();
+      Thread.sleep(ThreadLocalRandom.current().nextInt(10)); // so tasks finish out of order
+      if (tConstraints.get(0) == failAtLatIndex)
+        throw new WaitThenTryAgainException("test failure at latIndex=" + failAtLatIndex);
+      return super.getSourceData(language, tDirTable, tFileTable, tDataVariables, tConstraints);
+    }
+  }
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /** This tests that read ahead chunks fit in partialRequestMaxBytes and arrive in order. */
+  @org.junit.jupiter.api.Test
+  void readAheadOrderTest() throws Throwable {
+    int oPartialRequestMaxBytes = EDStatic.config.partialRequestMaxBytes;
+    try {
+      EDStatic.config.partialRequestMaxBytes = 500; // 1 latitude (61 shorts) per chunk
+      TestEtopo readAhead = new TestEtopo(8);
+      TestEtopo serial = new TestEtopo(1);
+      try (GridDataAccessor gda1 = new GridDataAccessor(0, readAhead, "", QUERY, true, true);
+          GridDataAccessor gda2 = new GridDataAccessor(0, serial, "", QUERY, true, true)) {
+        long nBytesPerChunk = gda1.totalNBytes() / N_CHUNKS;
+        Test.ensureEqual(nBytesPerChunk, 122, "");
+        // at most 4 * 122 bytes fit in 500 bytes (adjustNThreads may lower it further)
+        Test.ensureTrue(
+            gda1.readAheadDepth >= 1 && gda1.readAheadDepth <= 4, "" + gda1.readAheadDepth);
+        Test.ensureEqual(gda2.readAheadDepth, 1, "");
+
+        PAOne lat1 = new PAOne(gda1.axisValues(0));
+        PAOne lat2 = new PAOne(gda2.axisValues(0));
+        int n = 0;
+        while (gda1.increment()) {
+          Test.ensureTrue(gda2.increment(), "n=" + n);
+          Test.ensureEqual(gda1.getDataValueAsDouble(0), gda2.getDataValueAsDouble(0), "n=" + n);
+          Test.ensureEqual(
+              gda1.getAxisValueAsPAOne(0, lat1), gda2.getAxisValueAsPAOne(0, lat2), "n=" + n);
+          n++;
+        }
+        Test.ensureTrue(!gda2.increment(), "");
+        Test.ensureTrue(gda1.readAheadGroup == null, "released when the last chunk was used");
+        Test.ensureEqual(n, N_CHUNKS * 61, "");
+        Test.ensureEqual(readAhead.nRequests.get(), N_CHUNKS, "");
+      }
+    } finally {
+      EDStatic.config.partialRequestMaxBytes = oPartialRequestMaxBytes;
+    }
+  }
+
+  /**
+   * This tests that a failed chunk's exception is thrown when that chunk is reached (not before),
+   * and that the later chunks aren't requested.
+   */
+  @org.junit.jupiter.api.Test
+  void readAheadErrorTest() throws Throwable {
+    int oPartialRequestMaxBytes = EDStatic.config.partialRequestMaxBytes;
+    try {
+      EDStatic.config.partialRequestMaxBytes = 500;
+      TestEtopo readAhead = new TestEtopo(8);
+      GridDataAccessor gda = new GridDataAccessor(0, readAhead, "", QUERY, true, true);
+      readAhead.failAtLatIndex = gda.constraints().get(0) + 10 * gda.constraints().get(1);
+      int n = 0;
+      try {
+        while (gda.increment()) n++;
+        throw new RuntimeException("Shouldn't get here.");
+      } catch (WaitThenTryAgainException e) {
+        Test.ensureTrue(e.getMessage().indexOf("test failure") >= 0, e.getMessage());
+      } finally {
+        gda.close();
+      }
+      Test.ensureEqual(n, 10 * 61, ""); // the first 10 chunks were all used
+
+      // the tasks were cancelled, so (at most) the chunks read ahead of chunk 10 were requested
+      Thread.sleep(500);
+      int nRequests = readAhead.nRequests.get();
+      Test.ensureTrue(nRequests <= 11 + gda.readAheadDepth, "nRequests=" + nRequests);
+      Thread.sleep(200);
+      Test.ensureEqual(readAhead.nRequests.get(), nRequests, "");
+    } finally {
+      EDStatic.config.partialRequestMaxBytes = oPartialRequestMaxBytes;
+    }
+  }
+
+  /**
+   * This tests that if the caller stops between increments (e.g., because writing to the client
+   * failed), closing the accessor (here, via try-with-resources) cancels the read ahead tasks.
+   */
+  @org.junit.jupiter.api.Test
+  void readAheadAbandonTest() throws Throwable {
+    int oPartialRequestMaxBytes = EDStatic.config.partialRequestMaxBytes;
+    try {
+      EDStatic.config.partialRequestMaxBytes = 500;
+      TestEtopo readAhead = new TestEtopo(8);
+      int n = 0;
+      try (GridDataAccessor gda = new GridDataAccessor(0, readAhead, "", QUERY, true, true)) {
+        while (gda.increment()) {
+          if (++n == 5 * 61 + 1) throw new IOException("test client disconnected");
+        }
+        throw new RuntimeException("Shouldn't get here.");
+      } catch (IOException e) {
+        Test.ensureEqual(e.getMessage(), "test client disconnected", "");
+      }
+
+      // the tasks were cancelled, so no more chunks are requested
+      Thread.sleep(500);
+      int nRequests = readAhead.nRequests.get();
+      Test.ensureTrue(nRequests < N_CHUNKS, "nRequests=" + nRequests);
+      Thread.sleep(200);
+      Test.ensureEqual(readAhead.nRequests.get(), nRequests, "");
+    } finally {
+      EDStatic.config.partialRequestMaxBytes = oPartialRequestMaxBytes;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class TableWriterAllReduceOrderByTests {
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /**
+   * This writes the table to tw in chunks and returns the results from tw's otherTableWriter (a
+   * TableWriterAll).
+   *
+   * @param onDisk if true, this ensures that the reduced rows went to disk (else stayed in memory)
+   */
+  private static Table reduceInChunks(
+      Table table, String type, String csv, int chunkNRows, boolean onDisk, TableWriterAll results)
+      throws Throwable {
+    String dir = EDStatic.config.fullCacheDirectory;
+    String name = "TableWriterAllReduceOrderByTests";
+    TableWriterAllReduceOrderBy tw =
+        switch (type) {
+          case "max" -> new TableWriterOrderByMax(0, null, null, dir, name, results, csv);
+          case "min" -> new TableWriterOrderByMin(0, null, null, dir, name, results, csv);
+          case "minMax" -> new TableWriterOrderByMinMax(0, null, null, dir, name, results, csv);
+          case "limit" -> new TableWriterOrderByLimit(0, null, null, dir, name, results, csv);
+          default -> new TableWriterOrderByClosest(0, null, null, dir, name, results, csv);
+        };
+    try (tw) {
+      TableWriterTestUtil.writeInChunks(table, tw, chunkNRows);
+      Test.ensureEqual(tw.columnStreams != null, onDisk, type + " chunkNRows=" + chunkNRows);
+      tw.finish();
+    }
+    return results.cumulativeTable();
+  }
+
+  private static void testType(String type, String csv, Table expected, int nStations)
+      throws Throwable {
+    String dir = EDStatic.config.fullCacheDirectory;
+    for (int chunkNRows : new int[] {1000, 7000, 100000}) {
+      try (TableWriterAll results = new TableWriterAll(0, null, null, dir, "results")) {
+        Table table = TableWriterTestUtil.makeTable(50000, nStations, 1000, 5);
+        // the reduced rows only go to disk if there are more than maxRowsInMemory (1000)
+        Table observed =
+            reduceInChunks(table, type, csv, chunkNRows, expected.nRows() > 1000, results);
+        Test.ensureEqual(
+            observed.dataToString(),
+            expected.dataToString(),
+            type + " nStations=" + nStations + " chunkNRows=" + chunkNRows);
+      }
+    }
+  }
+
+  /** This tests that reducing in chunks (in memory and on disk) is the same as all at once. */
+  @org.junit.jupiter.api.Test
+  void testReduce() throws Throwable {
+    // nStations=5000 makes the reduced rows go to disk and be sorted in chunks of 1000 rows
+    TableWriterTestUtil.withSmallPartialRequests(
+        () -> {
+          for (int nStations : new int[] {10, 5000}) {
+            Table expected = TableWriterTestUtil.makeTable(50000, nStations, 1000, 5);
+            expected.orderByMax(new String[] {"station", "time"});
+            testType("max", "station,time", expected, nStations);
+
+            expected = TableWriterTestUtil.makeTable(50000, nStations, 1000, 5);
+            expected.orderByMin(new String[] {"station", "value"});
+            testType("min", "station,value", expected, nStations);
+
+            expected = TableWriterTestUtil.makeTable(50000, nStations, 1000, 5);
+            expected.orderByMinMax(new String[] {"station", "time"});
+            testType("minMax", "station,time", expected, nStations);
+
+            expected = TableWriterTestUtil.makeTable(50000, nStations, 1000, 5);
+            expected.orderByLimit(new String[] {"station"}, 3);
+            testType("limit", "station,3", expected, nStations);
+
+            expected = TableWriterTestUtil.makeTable(50000, nStations, 1000, 5);
+            expected.orderByClosest(new String[] {"station", "time"}, new double[] {1000, 1});
+            testType("closest", "station,time,1000", expected, nStations);
+          }
+        });
+  }
+}
@@ -0,0 +1,217 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.DoubleArray;
+import com.cohort.array.FloatArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.Calendar2;
+import com.cohort.util.String2;
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * This compares the data loop of each text TableWriter (which writes with a TextEncoder) with the
+ * data loop the TableWriter had before (a String for each value, written to a BufferedWriter). Both
+ * sides write the same rows, with the same separators, NaN strings and escaping, and without the
+ * header, metadata and attributes (which are the same for both and only written once), so the
+ * difference is just the cost of encoding the values.
+ *
+ * <p>This isn't a unit test. Run it with main() (after mvn test-compile), e.g., from your IDE.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TableWriterBenchmark {
+
+  @Param({"csv", "tsv", "json", "jsonl", "nccsv"})
+  public String fileType;
+
+  private static final int N_ROWS = 100000;
+  private static final int TIME_COL = 0, STRING_COL = 4;
+  private PrimitiveArray pas[];
+  private final DateTimeFormatter format = Calendar2.timePrecisionToDateTimeFormatter(null);
+
+  @Setup
+  public void setup() {
+    Random random = new Random(17);
+    DoubleArray time = new DoubleArray(N_ROWS, false);
+    FloatArray latitude = new FloatArray(N_ROWS, false);
+    IntArray depth = new IntArray(N_ROWS, false);
+    DoubleArray temperature = new DoubleArray(N_ROWS, false);
+    StringArray station = new StringArray(N_ROWS, false);
+    for (int row = 0; row < N_ROWS; row++) {
+      time.add(1.7e9 + row / 10 * 60); // 10 depths at each time
+      latitude.add(30 + random.nextInt(10000) / 1000f);
+      depth.add(row % 10 * 5);
+      temperature.add(random.nextInt(3) == 0 ? Double.NaN : 10 + random.nextDouble() * 10);
+      station.add("station" + row / 1000);
+    }
+    pas = new PrimitiveArray[] {time, latitude, depth, temperature, station};
+  }
+
+  private boolean isUtf8() {
+    return !fileType.equals("csv") && !fileType.equals("tsv");
+  }
+
+  /** This is the data loop of the TableWriters, which write with a TextEncoder. */
+  @Benchmark
+  public void textEncoder() throws Throwable {
+    TextEncoder writer = new TextEncoder(OutputStream.nullOutputStream(), isUtf8());
+    TextEncoder.TimeEncoder timeEncoder = writer.timeEncoder(format);
+    int nColumns = pas.length;
+    switch (fileType) {
+      case "csv", "tsv" -> { // TableWriterSeparatedValue
+        boolean twoQuotes = fileType.equals("csv");
+        byte[] separatorBytes = writer.encode(twoQuotes ? "," : "\t");
+        byte[] newlineBytes = writer.encode("\n");
+        byte[] nanBytes = writer.encode("NaN");
+        for (int row = 0; row < N_ROWS; row++) {
+          for (int col = 0; col < nColumns; col++) {
+            if (col == TIME_COL) {
+              timeEncoder.write(pas[col].getDouble(row));
+            } else if (col == STRING_COL) {
+              String s = pas[col].getSVString(row);
+              if (twoQuotes) s = String2.replaceAll(s, "\\\"", "\"\"");
+              writer.write(s);
+            } else if (!writer.writeNumber(pas[col], row)) {
+              writer.write(nanBytes);
+            }
+            writer.write(col == nColumns - 1 ? newlineBytes : separatorBytes);
+          }
+        }
+      }
+      case "json", "jsonl" -> { // TableWriterJson and TableWriterJsonl (without kvp)
+        boolean json = fileType.equals("json");
+        for (int row = 0; row < N_ROWS; row++) {
+          writer.write('[');
+          for (int col = 0; col < nColumns; col++) {
+            if (col > 0) writer.write(", ");
+            if (col == TIME_COL) {
+              double d = pas[col].getDouble(row);
+              if (Double.isNaN(d)) {
+                writer.write("null");
+              } else {
+                writer.write('"');
+                timeEncoder.write(d);
+                writer.write('"');
+              }
+            } else {
+              writer.writeJson(pas[col], row);
+            }
+          }
+          writer.write(json ? (row < N_ROWS - 1 ? "],\n" : "]") : "]\n");
+        }
+      }
+      default -> { // TableWriterNccsv (there are no long or ulong columns)
+        for (int row = 0; row < N_ROWS; row++) {
+          for (int col = 0; col < nColumns; col++) {
+            if (col == TIME_COL) {
+              timeEncoder.write(pas[col].getDouble(row));
+            } else if (col == STRING_COL) {
+              writer.write(pas[col].getNccsvDataString(row));
+            } else {
+              writer.writeNumber(pas[col], row);
+            }
+            writer.write(col == nColumns - 1 ? "\n" : ",");
+          }
+        }
+      }
+    }
+    writer.flush();
+  }
+
+  /** This is the data loop the TableWriters had before, which wrote to a BufferedWriter. */
+  @Benchmark
+  public void bufferedWriter() throws Throwable {
+    Writer writer =
+        new BufferedWriter(
+            new OutputStreamWriter(
+                OutputStream.nullOutputStream(),
+                isUtf8() ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1));
+    int nColumns = pas.length;
+    switch (fileType) {
+      case "csv", "tsv" -> { // TableWriterSeparatedValue
+        boolean twoQuotes = fileType.equals("csv");
+        String separator = twoQuotes ? "," : "\t";
+        String nanString = "NaN";
+        for (int row = 0; row < N_ROWS; row++) {
+          for (int col = 0; col < nColumns; col++) {
+            if (col == TIME_COL) {
+              writer.write(
+                  Calendar2.epochSecondsToLimitedIsoStringT(format, pas[col].getDouble(row), ""));
+            } else if (col == STRING_COL) {
+              String s = pas[col].getSVString(row);
+              if (twoQuotes) s = String2.replaceAll(s, "\\\"", "\"\"");
+              writer.write(s);
+            } else {
+              String s = pas[col].getString(row);
+              writer.write(s.length() == 0 ? nanString : s);
+            }
+            writer.write(col == nColumns - 1 ? "\n" : separator);
+          }
+        }
+      }
+      case "json", "jsonl" -> { // TableWriterJson and TableWriterJsonl (without kvp)
+        boolean json = fileType.equals("json");
+        for (int row = 0; row < N_ROWS; row++) {
+          writer.write('[');
+          for (int col = 0; col < nColumns; col++) {
+            if (col > 0) writer.write(", ");
+            if (col == TIME_COL) {
+              double d = pas[col].getDouble(row);
+              writer.write(
+                  Double.isNaN(d)
+                      ? "null"
+                      : "\"" + Calendar2.epochSecondsToLimitedIsoStringT(format, d, "") + "\"");
+            } else {
+              writer.write(pas[col].getJsonString(row));
+            }
+          }
+          writer.write(json ? (row < N_ROWS - 1 ? "],\n" : "]") : "]\n");
+        }
+      }
+      default -> { // TableWriterNccsv (there are no long or ulong columns)
+        for (int row = 0; row < N_ROWS; row++) {
+          for (int col = 0; col < nColumns; col++) {
+            if (col == TIME_COL) {
+              writer.write(
+                  Calendar2.epochSecondsToLimitedIsoStringT(format, pas[col].getDouble(row), ""));
+            } else {
+              writer.write(pas[col].getNccsvDataString(row));
+            }
+            writer.write(col == nColumns - 1 ? "\n" : ",");
+          }
+        }
+      }
+    }
+    writer.flush();
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(TableWriterBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+}
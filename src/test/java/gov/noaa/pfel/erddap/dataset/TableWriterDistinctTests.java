@@ -0,0 +1,57 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class TableWriterDistinctTests {
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /** This makes a table (station, name, value) with lots of duplicate rows. */
+  private static Table makeTable(int nRows, int nStations) {
+    Table table = TableWriterTestUtil.makeTable(nRows, nStations, 3, 3);
+    table.removeColumn("time");
+    return table;
+  }
+
+  /**
+   * This tests that the distinct rows found in chunks (in memory, and with the hash partitions on
+   * disk, which are deduplicated in memory or, if too big, by sorting them on disk) are the same as
+   * the distinct rows found all at once.
+   */
+  @org.junit.jupiter.api.Test
+  void testDistinct() throws Throwable {
+    String dir = EDStatic.config.fullCacheDirectory;
+    int nRows = 30000;
+    TableWriterTestUtil.withSmallPartialRequests(
+        () -> {
+          // nStations=2000 makes >1000 distinct rows, so they go to disk.
+          // nStations=20000 makes most rows distinct, so the partitions have >1000 rows.
+          for (int nStations : new int[] {10, 2000, 20000}) {
+            Table expected = makeTable(nRows, nStations);
+            expected.leftToRightSortIgnoreCase(expected.nColumns());
+            expected.removeDuplicates();
+
+            for (int chunkNRows : new int[] {1000, 7000, 100000}) {
+              Table table = makeTable(nRows, nStations);
+              try (TableWriterAll results = new TableWriterAll(0, null, null, dir, "results");
+                  TableWriterDistinct tw =
+                      new TableWriterDistinct(
+                          0, null, null, dir, "TableWriterDistinctTests", results)) {
+                TableWriterTestUtil.writeInChunks(table, tw, chunkNRows);
+                tw.finish();
+                Test.ensureEqual(
+                    results.cumulativeTable().dataToString(),
+                    expected.dataToString(),
+                    "nStations=" + nStations + " chunkNRows=" + chunkNRows);
+              }
+            }
+          }
+        });
+  }
+}
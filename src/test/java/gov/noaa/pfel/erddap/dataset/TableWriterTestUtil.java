@@ -0,0 +1,73 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.DoubleArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.StringArray;
+import gov.noaa.pfel.coastwatch.pointdata.Table;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import java.util.Random;
+
+/** Test data and helpers shared by the tests of the TableWriters which may use the disk. */
+class TableWriterTestUtil {
+
+  /** The names, including some which only differ by case. */
+  static final String NAMES[] = {"a", "A", "b", "B", "aB", "Ab"};
+
+  interface Body {
+    void run() throws Throwable;
+  }
+
+  /**
+   * This makes a table with random station (int), name (String), time (double), and value (double,
+   * 10% NaN) columns. The same parameters always make the same table.
+   *
+   * @param nRows the number of rows
+   * @param nStations the number of different station values
+   * @param nValues the number of different (non-NaN) values
+   * @param seed the Random seed
+   */
+  static Table makeTable(int nRows, int nStations, int nValues, int seed) {
+    Random random = new Random(seed);
+    IntArray station = new IntArray();
+    StringArray name = new StringArray();
+    DoubleArray time = new DoubleArray();
+    DoubleArray value = new DoubleArray();
+    for (int row = 0; row < nRows; row++) {
+      station.add(random.nextInt(nStations));
+      name.add(NAMES[random.nextInt(NAMES.length)]);
+      time.add(random.nextInt(100000));
+      value.add(random.nextInt(10) == 0 ? Double.NaN : random.nextInt(nValues) / 10.0);
+    }
+    Table table = new Table();
+    table.addColumn("station", station);
+    table.addColumn("name", name);
+    table.addColumn("time", time);
+    table.addColumn("value", value);
+    return table;
+  }
+
+  /** This writes a copy of the table to tw in chunks of chunkNRows rows. It doesn't call finish. */
+  static void writeInChunks(Table table, TableWriter tw, int chunkNRows) throws Throwable {
+    int nRows = table.nRows();
+    for (int start = 0; start < nRows; start += chunkNRows) {
+      Table chunk = (Table) table.clone();
+      chunk.removeRows(Math.min(nRows, start + chunkNRows), nRows);
+      chunk.removeRows(0, start);
+      tw.writeSome(chunk);
+    }
+  }
+
+  /**
+   * This runs body with EDStatic.config.partialRequestMaxCells set to 3000, so that tables with a
+   * few thousand rows are too big for ExternalTableSort.maxRowsInMemory and go to disk.
+   */
+  static void withSmallPartialRequests(Body body) throws Throwable {
+    int oPartialRequestMaxCells = EDStatic.config.partialRequestMaxCells;
+    try {
+      EDStatic.config.partialRequestMaxCells = 3000;
+      body.run();
+    } finally {
+      EDStatic.config.partialRequestMaxCells = oPartialRequestMaxCells;
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package gov.noaa.pfel.erddap.dataset;
+
+import com.cohort.array.ByteArray;
+import com.cohort.array.DoubleArray;
+import com.cohort.array.FloatArray;
+import com.cohort.array.IntArray;
+import com.cohort.array.LongArray;
+import com.cohort.array.PrimitiveArray;
+import com.cohort.array.ShortArray;
+import com.cohort.array.StringArray;
+import com.cohort.util.Calendar2;
+import com.cohort.util.Test;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+class TextEncoderTests {
+
+  private interface Writing {
+    void write(TextEncoder encoder, Writer writer) throws Exception;
+  }
+
+  /** This ensures that TextEncoder writes the same bytes as a BufferedWriter. */
+  private static void ensureSameBytes(boolean utf8, Writing writing) throws Exception {
+    ByteArrayOutputStream encoderBytes = new ByteArrayOutputStream();
+    ByteArrayOutputStream writerBytes = new ByteArrayOutputStream();
+    TextEncoder encoder = new TextEncoder(encoderBytes, utf8);
+    Writer writer =
+        new BufferedWriter(
+            new OutputStreamWriter(
+                writerBytes, utf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1));
+    writing.write(encoder, writer);
+    encoder.close();
+    writer.close();
+    byte[] a = encoderBytes.toByteArray();
+    byte[] b = writerBytes.toByteArray();
+    int i = Arrays.mismatch(a, b);
+    Test.ensureEqual(i, -1, "utf8=" + utf8 + " nBytes=" + a.length + " vs " + b.length);
+  }
+
+  /** This tests writeNumber and writeJson with random and special values of each type. */
+  @org.junit.jupiter.api.Test
+  void numberTests() throws Exception {
+    Random random = new Random(17);
+    int n = 20000;
+    double special[] = {
+      0, -0.0, 1, -1, 0.1, 100, 1e7, 1e-3, 1e-4, 1e21, 1e22, 123456789012.0, Double.MIN_VALUE,
+      Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+    double ds[] = new double[n];
+    float fs[] = new float[n];
+    long ls[] = new long[n];
+    int is[] = new int[n];
+    short ss[] = new short[n];
+    byte bs[] = new byte[n];
+    for (int i = 0; i < n; i++) {
+      ds[i] =
+          i < special.length
+              ? special[i]
+              : i % 3 == 0
+                  ? Double.longBitsToDouble(random.nextLong())
+                  : i % 3 == 1
+                      ? Math.round(random.nextGaussian() * 1000)
+                      : random.nextGaussian() * Math.pow(10, random.nextInt(40) - 20);
+      fs[i] = i % 2 == 0 ? Float.intBitsToFloat(random.nextInt()) : (float) ds[i];
+      ls[i] = i == 0 ? Long.MIN_VALUE : i == 1 ? Long.MAX_VALUE : random.nextLong();
+      is[i] = i == 0 ? Integer.MIN_VALUE : i == 1 ? Integer.MAX_VALUE : random.nextInt();
+      ss[i] = i == 0 ? Short.MIN_VALUE : i == 1 ? Short.MAX_VALUE : (short) random.nextInt();
+      bs[i] = i == 0 ? Byte.MIN_VALUE : i == 1 ? Byte.MAX_VALUE : (byte) random.nextInt();
+    }
+    PrimitiveArray pas[] = {
+      new DoubleArray(ds),
+      new FloatArray(fs),
+      new LongArray(ls),
+      new IntArray(is),
+      new ShortArray(ss),
+      new ByteArray(bs),
+      new StringArray(new String[] {"aé中😀", ""})
+    };
+    for (boolean maxIsMV : new boolean[] {false, true}) {
+      for (PrimitiveArray pa : pas) {
+        pa.setMaxIsMV(maxIsMV);
+        for (boolean utf8 : new boolean[] {false, true}) {
+          ensureSameBytes(
+              utf8,
+              (encoder, writer) -> {
+                byte nan[] = encoder.encode("NaN");
+                for (int row = 0; row < pa.size(); row++) {
+                  if (!encoder.writeNumber(pa, row)) encoder.write(nan);
+                  encoder.write(',');
+                  String s = pa.getString(row);
+                  writer.write(s.length() == 0 ? "NaN" : s);
+                  writer.write(',');
+                }
+              });
+          ensureSameBytes(
+              utf8,
+              (encoder, writer) -> {
+                for (int row = 0; row < pa.size(); row++) {
+                  encoder.writeJson(pa, row);
+                  encoder.write(", ");
+                  writer.write(pa.getJsonString(row));
+                  writer.write(", ");
+                }
+              });
+        }
+      }
+    }
+  }
+
+  /** This tests writing chars which need 1 to 4 bytes (or can't be encoded). */
+  @org.junit.jupiter.api.Test
+  void charTests() throws Exception {
+    Random random = new Random(17);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 50000; i++)
+      sb.append((char) (i % 7 == 0 ? random.nextInt(65536) : random.nextInt(300)));
+    sb.append("😀x\ud83dy\ude00z\ud83d"); // a pair, then unpaired surrogates
+    String s = sb.toString();
+    for (boolean utf8 : new boolean[] {false, true}) {
+      ensureSameBytes(
+          utf8,
+          (encoder, writer) -> {
+            encoder.write(s);
+            writer.write(s);
+          });
+
+      // pieces (so some surrogate pairs are split) with pre-encoded bytes between them
+      ensureSameBytes(
+          utf8,
+          (encoder, writer) -> {
+            byte separator[] = encoder.encode("é|");
+            for (int i = 0; i < s.length(); i += 1000) {
+              String piece = s.substring(i, Math.min(s.length(), i + 1000));
+              encoder.write(piece);
+              encoder.write(separator);
+              writer.write(piece);
+              writer.write("é|");
+            }
+          });
+    }
+  }
+
+  /** This tests TimeEncoder with each time_precision. */
+  @org.junit.jupiter.api.Test
+  void timeTests() throws Exception {
+    Random random = new Random(17);
+    double special[] = {
+      Double.NaN,
+      Double.POSITIVE_INFINITY,
+      0,
+      -0.0005,
+      -0.0015,
+      0.0005,
+      -1e-9,
+      1e20,
+      -1e20,
+      9.3e15,
+      -6.2e13,
+      253402300799.9996,
+      -62135596800.0
+    };
+    double times[] = new double[20000];
+    for (int i = 0; i < times.length; i++) {
+      times[i] =
+          i < special.length
+              ? special[i]
+              : i % 3 == 0
+                  ? 1.7e9 + i / 10 // repeated seconds
+                  : i % 3 == 1
+                      ? (random.nextDouble() - 0.5) * 2e11
+                      : 1.7e9 + random.nextInt(100000) / 1000.0 + random.nextDouble() * 1e-3;
+    }
+
+    String wholePrecisions[] = {
+      "1970", "1970-01", "1970-01-01", "1970-01-01T00", "1970-01-01T00:00", "1970-01-01T00:00:00"
+    };
+    ArrayList<DateTimeFormatter> formats = new ArrayList<>();
+    formats.add(null);
+    for (String z : new String[] {"", "Z"}) {
+      for (String tp : wholePrecisions)
+        formats.add(Calendar2.timePrecisionToDateTimeFormatter(tp + z));
+      for (int digits = 1; digits <= 9; digits++)
+        formats.add(
+            Calendar2.timePrecisionToDateTimeFormatter(
+                "1970-01-01T00:00:00." + "0".repeat(digits) + z));
+    }
+    formats.add(DateTimeFormatter.ofPattern("uuuu-MM-dd HH:mm:ss")); // not a time_precision
+
+    for (DateTimeFormatter format : formats) {
+      ensureSameBytes(
+          true,
+          (encoder, writer) -> {
+            TextEncoder.TimeEncoder timeEncoder = encoder.timeEncoder(format);
+            for (double time : times) {
+              timeEncoder.write(time);
+              encoder.write('|');
+              writer.write(Calendar2.epochSecondsToLimitedIsoStringT(format, time, ""));
+              writer.write('|');
+            }
+          });
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package gov.noaa.pfel.erddap.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class DatasetLoadSchedulerTests {
+
+  @Test
+  void dependenciesTests() throws Exception {
+    DatasetLoadScheduler scheduler = new DatasetLoadScheduler(4);
+    try {
+      List<String> finished = Collections.synchronizedList(new ArrayList<>());
+      CountDownLatch release = new CountDownLatch(1);
+
+      // "child" is slow, "parent" depends on it, "other" doesn't
+      scheduler.submit(
+          "child",
+          Set.of(),
+          () -> {
+            try {
+              release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+            finished.add("child");
+          });
+      scheduler.submit("parent", Set.of("child", "notSubmitted"), () -> finished.add("parent"));
+      CountDownLatch otherDone = new CountDownLatch(1);
+      scheduler.submit(
+          "other",
+          Set.of(),
+          () -> {
+            finished.add("other");
+            otherDone.countDown();
+          });
+
+      // independent datasets load while child is still loading
+      assertTrue(otherDone.await(10, TimeUnit.SECONDS));
+      assertEquals(List.of("other"), finished);
+      assertEquals(2, scheduler.getNUnfinished());
+
+      // parent is started after child has finished
+      release.countDown();
+      scheduler.awaitAll();
+      assertEquals(List.of("other", "child", "parent"), finished);
+      assertEquals(0, scheduler.getNUnfinished());
+
+      // a dependency which has already finished (or failed) doesn't delay a dataset
+      scheduler.submit(
+          "failed",
+          Set.of(),
+          () -> {
+            throw new RuntimeException("trouble");
+          });
+      scheduler.awaitAll();
+      scheduler.submit("late", Set.of("failed", "child"), () -> finished.add("late"));
+      scheduler.awaitAll();
+      assertEquals(List.of("other", "child", "parent", "late"), finished);
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package gov.noaa.pfel.erddap.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.cohort.array.IntArray;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import testDataset.Initialization;
+
+public class RequestAdmissionTests {
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  @Test
+  void awaitTurnTests() throws Exception {
+    IntArray queue = new IntArray();
+    queue.add(1);
+    queue.add(2);
+    queue.add(3);
+
+    // in the first 2 slots, so no wait
+    assertTrue(RequestAdmission.awaitTurn(queue, 1, 2, 0));
+    assertTrue(RequestAdmission.awaitTurn(queue, 2, 2, 0));
+
+    // not in the first 2 slots, so it times out
+    long start = System.currentTimeMillis();
+    assertFalse(RequestAdmission.awaitTurn(queue, 3, 2, 100));
+    assertTrue(System.currentTimeMillis() - start >= 100);
+    assertEquals(0, RequestAdmission.getNIpAddressWaiting());
+
+    // it is woken as soon as an earlier request is removed
+    CompletableFuture<Long> waiter =
+        CompletableFuture.supplyAsync(
+            () -> {
+              try {
+                long waitStart = System.nanoTime();
+                assertTrue(RequestAdmission.awaitTurn(queue, 3, 2, 60000));
+                return System.nanoTime() - waitStart;
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+            });
+    Thread.sleep(50);
+    assertFalse(waiter.isDone());
+    RequestAdmission.remove(queue, 1);
+    long waited = waiter.get(10, TimeUnit.SECONDS);
+    assertTrue(waited < TimeUnit.SECONDS.toNanos(10), "waited=" + waited);
+    assertEquals("2, 3", queue.toString());
+
+    // removing a request which isn't in the queue does nothing
+    RequestAdmission.remove(queue, 99);
+    assertEquals("2, 3", queue.toString());
+  }
+}
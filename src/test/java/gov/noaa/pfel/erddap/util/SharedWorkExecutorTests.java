@@ -0,0 +1,137 @@
+package gov.noaa.pfel.erddap.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class SharedWorkExecutorTests {
+
+  /** This tracks the max number of tasks running at once. */
+  private static Future<Integer> submitTracked(
+      SharedWorkExecutor.Group group, int value, AtomicInteger running, AtomicInteger maxRunning) {
+    return group.submit(
+        () -> {
+          int now = running.incrementAndGet();
+          maxRunning.accumulateAndGet(now, Math::max);
+          Thread.sleep(5);
+          running.decrementAndGet();
+          assertTrue(SharedWorkExecutor.isWorkerThread());
+          return value;
+        });
+  }
+
+  @Test
+  void limitsTests() throws Exception {
+    SharedWorkExecutor executor = new SharedWorkExecutor(3, false);
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    AtomicInteger groupRunning = new AtomicInteger();
+    AtomicInteger groupMaxRunning = new AtomicInteger();
+
+    SharedWorkExecutor.Group group1 = executor.newGroup(2);
+    SharedWorkExecutor.Group group2 = executor.newGroup(10);
+    List<Future<Integer>> futures1 = new ArrayList<>();
+    List<Future<Integer>> futures2 = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      futures1.add(submitTracked(group1, i, groupRunning, groupMaxRunning));
+      futures2.add(submitTracked(group2, i, running, maxRunning));
+    }
+
+    // results are available in the order the tasks were submitted
+    for (int i = 0; i < 20; i++) {
+      assertEquals(i, futures1.get(i).get(10, TimeUnit.SECONDS));
+      assertEquals(i, futures2.get(i).get(10, TimeUnit.SECONDS));
+    }
+    assertTrue(groupMaxRunning.get() <= 2, "groupMaxRunning=" + groupMaxRunning.get());
+    assertTrue(maxRunning.get() <= 3, "maxRunning=" + maxRunning.get());
+    assertFalse(SharedWorkExecutor.isWorkerThread());
+    assertEquals(0, executor.getNQueued());
+  }
+
+  @Test
+  void cancelTests() throws Exception {
+    SharedWorkExecutor executor = new SharedWorkExecutor(1, false);
+    SharedWorkExecutor.Group group = executor.newGroup(1);
+    CountDownLatch started = new CountDownLatch(1);
+    Future<Integer> blocked =
+        group.submit(
+            () -> {
+              started.countDown();
+              Thread.sleep(60000); // until interrupted
+              return 1;
+            });
+    Future<Integer> waiting = group.submit(() -> 2);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    assertEquals(1, executor.getNQueued());
+
+    group.cancel();
+    assertThrows(CancellationException.class, () -> blocked.get());
+    assertThrows(CancellationException.class, () -> waiting.get());
+    assertThrows(RejectedExecutionException.class, () -> group.submit(() -> 3));
+    assertEquals(0, executor.getNQueued());
+
+    // other groups still work
+    SharedWorkExecutor.Group group2 = executor.newGroup(1);
+    assertEquals(4, group2.submit(() -> 4).get(10, TimeUnit.SECONDS));
+  }
+
+  /**
+   * This tests that work submitted from a worker thread goes to the nested executor (so a task can
+   * wait for it without deadlocking, even if all of the threads are in use), and that work
+   * submitted from a nested worker thread is deliberately done in that thread.
+   */
+  @Test
+  void nestedTests() throws Exception {
+    SharedWorkExecutor executor = new SharedWorkExecutor(1, false);
+    SharedWorkExecutor nested = executor.nested();
+    assertTrue(nested != null && nested != executor);
+    assertTrue(nested.nested() == null);
+    assertTrue(SharedWorkExecutor.forCurrentThread() == SharedWorkExecutor.get());
+
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    Future<List<String>> outer =
+        executor
+            .newGroup(1)
+            .submit(
+                () -> {
+                  // the only top-level thread is busy (this), but the nested tasks still run
+                  assertTrue(SharedWorkExecutor.forCurrentThread() == nested);
+                  SharedWorkExecutor.Group group = nested.newGroup(3);
+                  List<Future<String>> futures = new ArrayList<>();
+                  for (int i = 0; i < 3; i++) {
+                    int fi = i;
+                    futures.add(
+                        group.submit(
+                            () -> {
+                              int now = running.incrementAndGet();
+                              maxRunning.accumulateAndGet(now, Math::max);
+                              // one level deeper: no executor, so no threads
+                              SharedWorkExecutor deeper = SharedWorkExecutor.forCurrentThread();
+                              ThreadedWorkManager<Integer> twm =
+                                  new ThreadedWorkManager<>(4, result -> {});
+                              running.decrementAndGet();
+                              return fi + " " + (deeper == null) + " " + (twm.workGroup == null);
+                            }));
+                  }
+                  List<String> results = new ArrayList<>();
+                  for (Future<String> future : futures)
+                    results.add(future.get(10, TimeUnit.SECONDS));
+                  return results;
+                });
+    assertEquals(
+        List.of("0 true true", "1 true true", "2 true true"), outer.get(10, TimeUnit.SECONDS));
+    assertEquals(1, maxRunning.get()); // the nested executor has the same maxThreads
+  }
+}
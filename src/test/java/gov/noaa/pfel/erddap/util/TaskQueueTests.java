@@ -0,0 +1,70 @@
+package gov.noaa.pfel.erddap.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class TaskQueueTests {
+
+  private static final int DOWNLOAD = TaskThread.TASK_DOWNLOAD;
+  private static final int SET_FLAG = TaskThread.TASK_SET_FLAG;
+  private static final int CLEAR_CACHE = TaskThread.TASK_CLEAR_CACHE;
+
+  @Test
+  void priorityFairnessAndLimitsTests() {
+    TaskQueue queue = new TaskQueue();
+    assertEquals(-1, queue.next());
+
+    // datasetA may run 2 tasks at once, datasetB 1
+    for (int t = 0; t < 4; t++) queue.add(t, DOWNLOAD, "datasetA", 2);
+    queue.add(4, SET_FLAG, "datasetA", 2);
+    queue.add(5, DOWNLOAD, "datasetB", 1);
+    queue.add(6, SET_FLAG, "datasetB", 1);
+    queue.add(7, CLEAR_CACHE, "", 1);
+    assertEquals(8, queue.nQueued());
+    assertEquals(5, queue.nUnfinished("datasetA"));
+
+    // the cache clear goes first, then the datasets take turns
+    assertEquals(7, queue.next());
+    assertEquals(0, queue.next());
+    assertEquals(5, queue.next());
+    assertEquals(1, queue.next());
+    assertEquals(-1, queue.next()); // datasetA is at its limit and datasetB's flag must wait
+    assertEquals(4, queue.nRunning());
+    assertEquals(2, queue.nOfType().get(DOWNLOAD)[0]);
+    assertEquals(3, queue.nOfType().get(DOWNLOAD)[1]);
+
+    // datasetB's flag goes as soon as datasetB's download is finished
+    queue.finished(7, CLEAR_CACHE);
+    queue.finished(5, DOWNLOAD);
+    assertEquals(6, queue.next());
+    queue.finished(6, SET_FLAG);
+    assertEquals(0, queue.nUnfinished("datasetB"));
+
+    queue.finished(0, DOWNLOAD);
+    assertEquals(2, queue.next());
+    queue.finished(1, DOWNLOAD);
+    assertEquals(3, queue.next());
+    queue.finished(2, DOWNLOAD);
+    assertEquals(-1, queue.next()); // datasetA's flag waits for task 3
+    queue.finished(3, DOWNLOAD);
+    assertEquals(4, queue.next());
+    assertEquals(1, queue.nUnfinished("datasetA"));
+    queue.finished(4, SET_FLAG);
+
+    assertEquals(0, queue.nQueued());
+    assertEquals(0, queue.nRunning());
+    assertEquals(0, queue.nUnfinished("datasetA"));
+    assertEquals("", queue.summary(10));
+  }
+
+  @Test
+  void summaryTests() {
+    TaskQueue queue = new TaskQueue();
+    for (int t = 0; t < 3; t++) queue.add(t, DOWNLOAD, "datasetA", 1);
+    queue.add(3, DOWNLOAD, "datasetB", 1);
+    queue.add(4, DOWNLOAD, "datasetC", 1);
+    assertEquals(0, queue.next());
+    assertEquals("  datasetA: 2 queued, 1 running\n  (and 2 more datasets)\n", queue.summary(1));
+  }
+}
@@ -0,0 +1,127 @@
+package gov.noaa.pfel.erddap.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import testDataset.Initialization;
+
+public class TouchDispatcherTests {
+
+  private HttpServer server;
+  private String localhost; // e.g., http://localhost:8123
+  private String loopback; // the same server, but a different host, e.g., http://127.0.0.1:8123
+  private final ConcurrentHashMap<String, AtomicInteger> nRequests = new ConcurrentHashMap<>();
+  private final AtomicInteger nSlowActive = new AtomicInteger();
+  private final AtomicInteger maxSlowActive = new AtomicInteger();
+  private final CountDownLatch releaseSlow = new CountDownLatch(1);
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  @BeforeEach
+  void startServer() throws Exception {
+    server = HttpServer.create(new InetSocketAddress(0), 0);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext(
+        "/",
+        exchange -> {
+          String path = exchange.getRequestURI().getPath();
+          int n = nRequests.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+          int status = 200;
+          if (path.startsWith("/slow")) {
+            maxSlowActive.accumulateAndGet(nSlowActive.incrementAndGet(), Math::max);
+            try {
+              releaseSlow.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            nSlowActive.decrementAndGet();
+          } else if (path.startsWith("/flaky") && n == 1) {
+            status = 503;
+          } else if (path.startsWith("/notFound")) {
+            status = 404;
+          }
+          exchange.sendResponseHeaders(status, -1);
+          exchange.close();
+        });
+    server.start();
+    int port = server.getAddress().getPort();
+    localhost = "http://localhost:" + port;
+    loopback = "http://127.0.0.1:" + port;
+  }
+
+  @AfterEach
+  void stopServer() {
+    releaseSlow.countDown();
+    server.stop(0);
+  }
+
+  private int nRequests(String path) {
+    AtomicInteger n = nRequests.get(path);
+    return n == null ? 0 : n.get();
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws Exception {
+    long stopTime = System.currentTimeMillis() + 10000;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < stopTime, "timed out");
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  void slowHostAndPerHostLimitTests() throws Exception {
+    TouchDispatcher dispatcher = new TouchDispatcher(4, 2, 0, 10, 10000);
+    try {
+      // 5 slow touches of one host: only 2 run at once, the others wait
+      for (int i = 0; i < 5; i++) assertTrue(dispatcher.touch(localhost + "/slow" + i));
+      assertEquals(false, dispatcher.touch(localhost + "/slow4")); // already waiting
+      waitFor(() -> nSlowActive.get() == 2);
+
+      // the other host's touches aren't delayed by the slow host
+      for (int i = 0; i < 3; i++) dispatcher.touch(loopback + "/ok" + i);
+      waitFor(() -> nRequests("/ok0") + nRequests("/ok1") + nRequests("/ok2") == 3);
+      assertEquals(2, nSlowActive.get());
+      assertEquals(3, dispatcher.getNWaiting());
+
+      releaseSlow.countDown();
+      waitFor(() -> dispatcher.getNActive() == 0 && dispatcher.getNWaiting() == 0);
+      assertEquals(2, maxSlowActive.get());
+      for (int i = 0; i < 5; i++) assertEquals(1, nRequests("/slow" + i));
+    } finally {
+      dispatcher.close();
+    }
+  }
+
+  @Test
+  void retryTests() throws Exception {
+    TouchDispatcher dispatcher = new TouchDispatcher(4, 2, 2, 10, 10000);
+    try {
+      // a 503 response is tried again
+      dispatcher.touch(localhost + "/flaky");
+      waitFor(() -> nRequests("/flaky") == 2 && dispatcher.getNActive() == 0);
+
+      // a 404 response isn't tried again
+      dispatcher.touch(localhost + "/notFound");
+      waitFor(() -> nRequests("/notFound") == 1 && dispatcher.getNActive() == 0);
+      Thread.sleep(100);
+      assertEquals(1, nRequests("/notFound"));
+      assertEquals(2, nRequests("/flaky"));
+    } finally {
+      dispatcher.close();
+    }
+  }
+}
@@ -0,0 +1,183 @@
+package gov.noaa.pmel.sgt;
+
+import com.cohort.util.File2;
+import com.cohort.util.Test;
+import gov.noaa.pfel.coastwatch.sgt.CompoundColorMap;
+import gov.noaa.pfel.coastwatch.util.SSR;
+import gov.noaa.pfel.erddap.util.EDStatic;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeAll;
+import testDataset.Initialization;
+
+class GridCartesianRendererTests {
+
+  @BeforeAll
+  static void init() {
+    Initialization.edStatic();
+  }
+
+  /** This draws the cells the old way: one fillRect per cell. */
+  private static void drawRects(
+      Graphics2D g, int[] xp, int[] yp, int xSize, int ySize, double[] gValues, ColorMap cm) {
+    int count = 0;
+    for (int i = 0; i < xSize; i++) {
+      for (int j = 0; j < ySize; j++) {
+        double val = gValues[count++];
+        if (Double.isNaN(val)) continue;
+        g.setColor(cm.getColor(val));
+        g.fillRect(
+            Math.min(xp[i], xp[i + 1]),
+            Math.min(yp[j], yp[j + 1]),
+            Math.abs(xp[i + 1] - xp[i]),
+            Math.abs(yp[j + 1] - yp[j]));
+      }
+    }
+  }
+
+  private static int[] pixels(BufferedImage image) {
+    return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+  }
+
+  /**
+   * This tests that drawRasterImage draws the same pixels as the cell-by-cell fillRects, for
+   * continuous and discrete linear and log palettes.
+   */
+  @org.junit.jupiter.api.Test
+  void drawRasterImageTest() throws Exception {
+    String basePaletteDir = EDStatic.config.fullPaletteDirectory;
+    String tempDir = SSR.getTempDirectory();
+    Random random = new Random(17);
+    for (String scale : new String[] {"Linear", "Log"}) {
+      for (boolean continuous : new boolean[] {true, false}) {
+        String palette =
+            CompoundColorMap.makeCPT(
+                basePaletteDir, "Rainbow", scale, 1, 1000, -1, continuous, tempDir);
+        CompoundColorMap ccm = new CompoundColorMap(palette);
+        String msg = scale + " continuous=" + continuous;
+
+        // getRGB matches getColor
+        for (int i = 0; i < 10000; i++) {
+          double val = i % 100 == 0 ? Double.NaN : -100 + 1200 * random.nextDouble();
+          Test.ensureEqual(ccm.getRGB(val), ccm.getColor(val).getRGB(), msg + " val=" + val);
+        }
+
+        // a grid with irregular (and reversed y) cell edges, some NaNs, and cells off the image
+        int xSize = 300, ySize = 200;
+        int[] xp = new int[xSize + 1];
+        int[] yp = new int[ySize + 1];
+        for (int i = 0; i <= xSize; i++) xp[i] = -20 + i * 2 + (i % 3 == 0 ? 1 : 0);
+        for (int j = 0; j <= ySize; j++) yp[j] = 420 - j * 2 - (j % 5 == 0 ? 1 : 0);
+        double[] gValues = new double[xSize * ySize];
+        for (int po = 0; po < gValues.length; po++)
+          gValues[po] = po % 37 == 0 ? Double.NaN : Math.pow(10, 3.2 * random.nextDouble() - 0.1);
+
+        for (boolean antialias : new boolean[] {false, true}) {
+          BufferedImage expected = new BufferedImage(500, 400, BufferedImage.TYPE_INT_ARGB);
+          BufferedImage observed = new BufferedImage(500, 400, BufferedImage.TYPE_INT_ARGB);
+          Graphics2D ge = expected.createGraphics();
+          Graphics2D go = observed.createGraphics();
+          for (Graphics2D g : new Graphics2D[] {ge, go}) {
+            g.setColor(Color.white);
+            g.fillRect(0, 0, 500, 400);
+            g.setRenderingHint(
+                RenderingHints.KEY_ANTIALIASING,
+                antialias
+                    ? RenderingHints.VALUE_ANTIALIAS_ON
+                    : RenderingHints.VALUE_ANTIALIAS_OFF);
+            g.translate(5, 3);
+            g.setClip(0, 0, 450, 380);
+          }
+          drawRects(ge, xp, yp, xSize, ySize, gValues, ccm);
+          Test.ensureTrue(
+              GridCartesianRenderer.drawRasterImage(go, xp, yp, xSize, ySize, gValues, ccm), msg);
+          ge.dispose();
+          go.dispose();
+          Test.ensureTrue(
+              Arrays.equals(pixels(expected), pixels(observed)), msg + " antialias=" + antialias);
+        }
+        File2.delete(palette);
+      }
+    }
+
+    // drawRasterImage declines when it can't be pixel-identical, e.g., scaling
+    BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = image.createGraphics();
+    g.scale(2, 2);
+    String palette =
+        CompoundColorMap.makeCPT(basePaletteDir, "Rainbow", "Linear", 0, 1, -1, true, tempDir);
+    CompoundColorMap ccm = new CompoundColorMap(palette);
+    Test.ensureTrue(
+        !GridCartesianRenderer.drawRasterImage(
+            g, new int[] {0, 1}, new int[] {0, 1}, 1, 1, new double[] {0.5}, ccm),
+        "");
+    g.dispose();
+    File2.delete(palette);
+  }
+
+  /**
+   * This tests that drawRasterImage's parallel path (for areas with at least PARALLEL_MIN_PIXELS
+   * pixels) draws the same pixels as its serial path and as the cell-by-cell fillRects. The serial
+   * image is drawn in clipped horizontal strips, each too small for the parallel path.
+   */
+  @org.junit.jupiter.api.Test
+  void drawRasterImageParallelTest() throws Exception {
+    String palette =
+        CompoundColorMap.makeCPT(
+            EDStatic.config.fullPaletteDirectory,
+            "Rainbow",
+            "Linear",
+            0,
+            1,
+            -1,
+            true,
+            SSR.getTempDirectory());
+    CompoundColorMap ccm = new CompoundColorMap(palette);
+    Random random = new Random(23);
+
+    // 2x2 (sometimes 3) pixel cells with reversed y, some NaNs
+    int xSize = 500, ySize = 300;
+    int width = 1024, height = 640;
+    int[] xp = new int[xSize + 1];
+    int[] yp = new int[ySize + 1];
+    for (int i = 0; i <= xSize; i++) xp[i] = 4 + i * 2 + (i % 7 == 0 ? 1 : 0);
+    for (int j = 0; j <= ySize; j++) yp[j] = 630 - j * 2 - (j % 3 == 0 ? 1 : 0);
+    double[] gValues = new double[xSize * ySize];
+    for (int po = 0; po < gValues.length; po++)
+      gValues[po] = po % 41 == 0 ? Double.NaN : random.nextDouble();
+    Test.ensureTrue(
+        (long) (xp[xSize] - xp[0]) * (yp[0] - yp[ySize])
+            >= GridCartesianRenderer.PARALLEL_MIN_PIXELS,
+        "The grid must be big enough for the parallel path.");
+
+    BufferedImage[] images = new BufferedImage[3]; // fillRects, parallel, serial
+    for (int im = 0; im < 3; im++) {
+      images[im] = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      Graphics2D g = images[im].createGraphics();
+      g.setColor(Color.white);
+      g.fillRect(0, 0, width, height);
+      if (im == 0) {
+        drawRects(g, xp, yp, xSize, ySize, gValues, ccm);
+      } else if (im == 1) {
+        Test.ensureTrue(
+            GridCartesianRenderer.drawRasterImage(g, xp, yp, xSize, ySize, gValues, ccm), "");
+      } else {
+        int stripHeight = GridCartesianRenderer.PARALLEL_MIN_PIXELS / width - 1;
+        for (int y = 0; y < height; y += stripHeight) {
+          g.setClip(0, y, width, stripHeight);
+          Test.ensureTrue(
+              GridCartesianRenderer.drawRasterImage(g, xp, yp, xSize, ySize, gValues, ccm),
+              "y=" + y);
+        }
+      }
+      g.dispose();
+    }
+    Test.ensureTrue(Arrays.equals(pixels(images[0]), pixels(images[1])), "parallel vs fillRects");
+    Test.ensureTrue(Arrays.equals(pixels(images[2]), pixels(images[1])), "parallel vs serial");
+    File2.delete(palette);
+  }
+}
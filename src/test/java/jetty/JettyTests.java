@@ -21795,6 +21795,7 @@ completeness, or usefulness, of this information.";
         .thenReturn(com.hivemq.client.mqtt.datatypes.MqttTopic.of(topic));
     Mockito.when(publish.getPayloadAsBytes()).thenReturn(payload.getBytes());
     eddTableFromMqtt.processMqttData(publish);
+    eddTableFromMqtt.flush();
 
     String expectedFilePath = eddTableFromMqtt.getFilePathForTopic(topic);
     Table resultTable = new Table();
@@ -21829,6 +21830,7 @@ completeness, or usefulness, of this information.";
         .thenReturn(com.hivemq.client.mqtt.datatypes.MqttTopic.of(topic));
     Mockito.when(publish.getPayloadAsBytes()).thenReturn(payload.getBytes());
     eddTableFromMqtt.processMqttData(publish);
+    eddTableFromMqtt.flush();
 
     String expectedFilePath = eddTableFromMqtt.getFilePathForTopic(topic);
     Table resultTable = new Table();
@@ -21851,6 +21853,7 @@ completeness, or usefulness, of this information.";
         .thenReturn(com.hivemq.client.mqtt.datatypes.MqttTopic.of(topic));
     Mockito.when(publish.getPayloadAsBytes()).thenReturn(payload.getBytes());
     eddTableFromMqtt.processMqttData(publish);
+    eddTableFromMqtt.flush();
 
     String expectedFilePath = eddTableFromMqtt.getFilePathForTopic(topic);
     Table resultTable = new Table();
@@ -21861,4 +21864,49 @@ completeness, or usefulness, of this information.";
     Test.ensureEqual(resultTable.getFloatData(1, 0), -150.0f, "lon");
     Test.ensureEqual(resultTable.getFloatData(2, 0), 22.5f, "temperature");
   }
+
+  @org.junit.jupiter.api.Test
+  @TagJetty
+  void testProcessMqttData_buffered() throws Throwable {
+    EDDTableFromMqtt eddTableFromMqtt = (EDDTableFromMqtt) EDDTestDataset.gettestFromMqtt();
+    String topic = "sensor/data_buffered_" + System.currentTimeMillis(); // unique topic for test
+    for (int i = 0; i < 2; i++) {
+      Mqtt5Publish publish = Mockito.mock(Mqtt5Publish.class);
+      String payload = "{\"lat\": 20.0, \"lon\": -150.0, \"temperature\": 2" + i + ".5}";
+      Mockito.when(publish.getTopic())
+          .thenReturn(com.hivemq.client.mqtt.datatypes.MqttTopic.of(topic));
+      Mockito.when(publish.getPayloadAsBytes()).thenReturn(payload.getBytes());
+      eddTableFromMqtt.processMqttData(publish);
+    }
+
+    // the buffered rows are visible before they are flushed
+    String fullFileName = eddTableFromMqtt.getFilePathForTopic(topic);
+    StringArray names = new StringArray(new String[] {"lat", "lon", "temperature"});
+    String types[] = {"float", "float", "float"};
+    for (int flush = 0; flush < 2; flush++) {
+      Table table =
+          eddTableFromMqtt.lowGetSourceDataFromFile(
+              File2.getDirectory(fullFileName),
+              File2.getNameAndExtension(fullFileName),
+              names,
+              types,
+              Double.NaN,
+              Double.NaN,
+              Double.NaN,
+              new StringArray(),
+              new StringArray(),
+              new StringArray(),
+              false,
+              true);
+      Test.ensureEqual(table.nRows(), 2, "flush=" + flush);
+      Test.ensureEqual(table.getFloatData(2, 0), 20.5f, "flush=" + flush);
+      Test.ensureEqual(table.getFloatData(2, 1), 21.5f, "flush=" + flush);
+      eddTableFromMqtt.flush();
+    }
+
+    // both rows were appended at once
+    Table resultTable = new Table();
+    resultTable.readJsonlCSV(fullFileName, null, null, true);
+    Test.ensureEqual(resultTable.nRows(), 2, "nRows");
+  }
 }